@@ -6,13 +6,16 @@ import TradePanel from './components/TradePanel'
 import MetricsPanel from './components/MetricsPanel'
 import LatencyChart from './components/LatencyChart'
 
-interface Trade {
-  tradeId: number
+// One conflated summary from /topic/market: activity since the previous interval
+interface MarketSummary {
   commodity: string
-  price: number
-  quantity: number
-  latencyMicros: number
-  timestamp: number
+  lastPrice: number
+  volume: number
+  trades: number
+  bestBid: number | null
+  bestAsk: number | null
+  lastTradeTime: number
+  intervalMillis: number
 }
 
 interface Metrics {
@@ -31,7 +34,7 @@ interface CommodityMetrics {
 }
 
 function App() {
-  const [trades, setTrades] = useState<Trade[]>([])
+  const [summaries, setSummaries] = useState<MarketSummary[]>([])
   const [metrics, setMetrics] = useState<Metrics | null>(null)
   const [selectedCommodity, setSelectedCommodity] = useState<string>('OIL')
   const [isConnected, setIsConnected] = useState(false)
@@ -56,20 +59,13 @@ function App() {
             setError(null)
             setReconnectAttempts(0)
 
-            stompClient.subscribe('/topic/trades', (message) => {
+            // Conflated rather than /topic/trades, so a busy market cannot flood the browser
+            stompClient.subscribe('/topic/market', (message) => {
               try {
-                const trade = JSON.parse(message.body)
-                setTrades(prev => [trade, ...prev].slice(0, 50))
-                
-                setLatencyData(prev => {
-                  const newData = [...prev, {
-                    time: Date.now(),
-                    latency: trade.latencyMicros
-                  }].slice(-30)
-                  return newData
-                })
+                const update: MarketSummary[] = JSON.parse(message.body)
+                setSummaries(prev => [...update.reverse(), ...prev].slice(0, 50))
               } catch (err) {
-                console.error('Error parsing trade message:', err)
+                console.error('Error parsing market data message:', err)
               }
             })
           },
@@ -114,6 +110,10 @@ function App() {
         })
         .then(data => {
           setMetrics(data)
+          setLatencyData(prev => [...prev, {
+            time: Date.now(),
+            latency: data.avgLatencyMicros
+          }].slice(-30))
           setError(null)
         })
         .catch(err => {
@@ -230,7 +230,7 @@ function App() {
         </div>
 
             <div className="grid grid-cols-1 lg:grid-cols-2 gap-6">
-              <TradePanel trades={trades.filter(t => t.commodity === selectedCommodity)} />
+              <TradePanel summaries={summaries.filter(s => s.commodity === selectedCommodity)} />
               <MetricsPanel metrics={metrics} selectedCommodity={selectedCommodity} />
             </div>
           </>
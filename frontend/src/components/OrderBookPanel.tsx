@@ -1,16 +1,15 @@
 import { useState, useEffect } from 'react'
 
-interface Order {
-  orderId: number
+interface Level {
   price: number
   quantity: number
-  side: string
+  orders: number
 }
 
 interface OrderBookData {
   commodity: string
-  bids: Order[]
-  asks: Order[]
+  bids: Level[]
+  asks: Level[]
   bestBid: number
   bestAsk: number
   spread: number
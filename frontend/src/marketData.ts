@@ -0,0 +1,131 @@
+// Decoder for the binary market data feeds (MarketDataEncoder on the server).
+// Connect to /ws-binary with a plain WebSocket and subscribe with an `encoding: binary`
+// header; the frame body is one little-endian message.
+
+export const COMMODITIES = ['OIL', 'GOLD', 'SILVER', 'COPPER', 'GAS'] as const
+
+const TRADE = 1
+const ORDER = 2
+const BOOK = 3
+const BBO = 4
+const VERSION = 1
+const HEADER_SIZE = 4
+const LEVEL_SIZE = 21
+
+export interface BinaryTrade {
+  kind: 'trade'
+  commodity: string
+  tradeId: number
+  buyOrderId: number
+  sellOrderId: number
+  price: number
+  quantity: number
+  timestamp: number
+  latencyMicros: number
+}
+
+export interface BinaryOrder {
+  kind: 'order'
+  commodity: string
+  orderId: number
+  price: number
+  quantity: number
+  timestamp: number
+  side: 'BUY' | 'SELL'
+  type: 'LIMIT' | 'MARKET'
+}
+
+export interface BinaryLevel {
+  price: number
+  quantity: number
+  orders: number
+}
+
+// Same shape as the JSON /topic/book updates; quantity 0 means the level is gone
+export interface BinaryBookUpdate {
+  kind: 'book'
+  commodity: string
+  sequence: number
+  bids: BinaryLevel[]
+  asks: BinaryLevel[]
+}
+
+// A null price means that side of the book is empty
+export interface BinaryBbo {
+  kind: 'bbo'
+  commodity: string
+  sequence: number
+  bidPrice: number | null
+  bidQuantity: number
+  askPrice: number | null
+  askQuantity: number
+}
+
+export type MarketDataMessage = BinaryTrade | BinaryOrder | BinaryBookUpdate | BinaryBbo
+
+export function decodeMarketData(body: Uint8Array): MarketDataMessage {
+  const view = new DataView(body.buffer, body.byteOffset, body.byteLength)
+  const type = view.getUint8(0)
+  if (view.getUint8(1) !== VERSION) {
+    throw new Error(`Unsupported market data version ${view.getUint8(1)}`)
+  }
+  const commodity = COMMODITIES[view.getUint8(2)] ?? `#${view.getUint8(2)}`
+  const scale = 10 ** view.getUint8(3)
+  const long = (offset: number) => Number(view.getBigInt64(offset, true))
+  const price = (offset: number) => long(offset) / scale
+
+  switch (type) {
+    case TRADE:
+      return {
+        kind: 'trade',
+        commodity,
+        tradeId: long(4),
+        buyOrderId: long(12),
+        sellOrderId: long(20),
+        price: price(28),
+        quantity: long(36),
+        timestamp: long(44),
+        latencyMicros: long(52) / 1000,
+      }
+    case ORDER:
+      return {
+        kind: 'order',
+        commodity,
+        orderId: long(4),
+        price: price(12),
+        quantity: long(20),
+        timestamp: long(28),
+        side: view.getUint8(36) === 0 ? 'BUY' : 'SELL',
+        type: view.getUint8(37) === 0 ? 'LIMIT' : 'MARKET',
+      }
+    case BOOK: {
+      const bids: BinaryLevel[] = []
+      const asks: BinaryLevel[] = []
+      const count = view.getUint16(HEADER_SIZE + 8, true)
+      for (let i = 0, offset = HEADER_SIZE + 10; i < count; i++, offset += LEVEL_SIZE) {
+        const level = {
+          price: price(offset + 1),
+          quantity: long(offset + 9),
+          orders: view.getInt32(offset + 17, true),
+        };
+        (view.getUint8(offset) === 0 ? bids : asks).push(level)
+      }
+      return { kind: 'book', commodity, sequence: long(4), bids, asks }
+    }
+    case BBO: {
+      const bidQuantity = long(20)
+      const askQuantity = long(36)
+      return {
+        kind: 'bbo',
+        commodity,
+        sequence: long(4),
+        bidPrice: bidQuantity > 0 ? price(12) : null,
+        bidQuantity,
+        askPrice: askQuantity > 0 ? price(28) : null,
+        askQuantity,
+      }
+    }
+    default:
+      throw new Error(`Unknown market data message type ${type}`)
+  }
+}
@@ -0,0 +1,85 @@
+package com.commodities.matching.engine;
+
+import com.commodities.matching.metrics.MetricsCollector;
+import com.commodities.matching.model.Commodity;
+import com.commodities.matching.model.OrderSide;
+import com.commodities.matching.model.OrderType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+// Matching on the calling thread, without the ring buffer: each operation is one aggressive
+// buy that sweeps the best crossLevels ask levels, followed by the sells that rebuild them, so
+// the book looks the same before every operation. The operation is handled as one batch, so
+// the depth view is published once at its end, and a trade listener is registered so trades
+// are published as they would be in the application.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" })
+public class MatchingBenchmark {
+    private static final Commodity COMMODITY = Commodity.CRUDE_OIL;
+    private static final int RESTING_LEVELS = 10_000;
+    private static final long LEVEL_QUANTITY = 10;
+
+    @Param({ "1", "10", "100" })
+    int crossLevels;
+
+    @Param({ "LIMIT", "MARKET" })
+    OrderType type;
+
+    private final MatchingEngine.OrderEvent event = new MatchingEngine.OrderEvent();
+    private MatchingEngine matchingEngine;
+    private long bestAsk;
+    private long nextOrderId;
+    private long sequence;
+    private long trades;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.commodities"))
+            .setLevel(ch.qos.logback.classic.Level.INFO);
+        matchingEngine = new MatchingEngine(new MetricsCollector(new SimpleMeterRegistry()));
+        matchingEngine.addTradeListener(trade -> trades++);
+        long midTicks = COMMODITY.toTicks(80.0);
+        bestAsk = midTicks + 1;
+        for (int i = 0; i < RESTING_LEVELS; i++) {
+            handle(OrderSide.BUY, OrderType.LIMIT, midTicks - 1 - i, LEVEL_QUANTITY, false);
+            handle(OrderSide.SELL, OrderType.LIMIT, bestAsk + i, LEVEL_QUANTITY, true);
+        }
+    }
+
+    @Benchmark
+    public long sweepAndReplenish() {
+        long limitPrice = type == OrderType.MARKET ? 0 : bestAsk + crossLevels - 1;
+        handle(OrderSide.BUY, type, limitPrice, crossLevels * LEVEL_QUANTITY, false);
+        for (int i = 0; i < crossLevels; i++) {
+            handle(OrderSide.SELL, OrderType.LIMIT, bestAsk + i, LEVEL_QUANTITY, i == crossLevels - 1);
+        }
+        return trades;
+    }
+
+    @TearDown(Level.Trial)
+    public void verify() {
+        if (matchingEngine.getOrderBook(COMMODITY).getAskLevelCount() != RESTING_LEVELS) {
+            throw new IllegalStateException("Book depth drifted during the benchmark");
+        }
+    }
+
+    private void handle(OrderSide side, OrderType orderType, long price, long quantity, boolean endOfBatch) {
+        event.eventType = MatchingEngine.EventType.NEW;
+        event.orderId = ++nextOrderId;
+        event.commodity = COMMODITY;
+        event.side = side;
+        event.type = orderType;
+        event.price = price;
+        event.quantity = quantity;
+        event.timestamp = System.currentTimeMillis();
+        event.submissionTime = System.nanoTime();
+        matchingEngine.handleOrderEvent(event, sequence++, endOfBatch);
+    }
+}
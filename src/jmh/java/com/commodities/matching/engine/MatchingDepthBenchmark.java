@@ -0,0 +1,76 @@
+package com.commodities.matching.engine;
+
+import com.commodities.matching.metrics.MetricsCollector;
+import com.commodities.matching.model.Commodity;
+import com.commodities.matching.model.OrderSide;
+import com.commodities.matching.model.OrderType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+// Whether the cost of a match depends on how deep the book is: each operation crosses the
+// best ask with a limit buy that fills its head order, then replenishes that order, so the
+// book keeps the same depth. With a ladder indexed by price it should not grow with depth.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" })
+public class MatchingDepthBenchmark {
+    private static final Commodity COMMODITY = Commodity.CRUDE_OIL;
+    private static final int ORDERS_PER_LEVEL = 10;
+
+    // Resting orders per side
+    @Param({ "1000", "10000", "100000" })
+    int depth;
+
+    private final MatchingEngine.OrderEvent event = new MatchingEngine.OrderEvent();
+    private MatchingEngine matchingEngine;
+    private OrderBook orderBook;
+    private long nextOrderId;
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.commodities"))
+            .setLevel(ch.qos.logback.classic.Level.INFO);
+        matchingEngine = new MatchingEngine(new MetricsCollector(new SimpleMeterRegistry()));
+        long midTicks = COMMODITY.toTicks(80.0);
+        for (int i = 0; i < depth; i++) {
+            handle(OrderSide.BUY, midTicks - 1 - i / ORDERS_PER_LEVEL, false);
+            handle(OrderSide.SELL, midTicks + 1 + i / ORDERS_PER_LEVEL, i == depth - 1);
+        }
+        orderBook = matchingEngine.getOrderBook(COMMODITY);
+    }
+
+    @Benchmark
+    public long matchAndReplenish() {
+        long bestAsk = orderBook.getBestAskLevel().getPrice();
+        handle(OrderSide.BUY, bestAsk, false);
+        handle(OrderSide.SELL, bestAsk, true);
+        return bestAsk;
+    }
+
+    @TearDown(Level.Trial)
+    public void verify() {
+        if (orderBook.getSellOrderCount() != depth) {
+            throw new IllegalStateException("Book depth drifted during the benchmark");
+        }
+    }
+
+    private void handle(OrderSide side, long price, boolean endOfBatch) {
+        event.eventType = MatchingEngine.EventType.NEW;
+        event.orderId = ++nextOrderId;
+        event.commodity = COMMODITY;
+        event.side = side;
+        event.type = OrderType.LIMIT;
+        event.price = price;
+        event.quantity = 10;
+        event.timestamp = System.currentTimeMillis();
+        event.submissionTime = System.nanoTime();
+        matchingEngine.handleOrderEvent(event, sequence++, endOfBatch);
+    }
+}
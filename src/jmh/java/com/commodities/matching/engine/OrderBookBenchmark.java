@@ -0,0 +1,80 @@
+package com.commodities.matching.engine;
+
+import com.commodities.matching.model.Commodity;
+import com.commodities.matching.model.Order;
+import com.commodities.matching.model.OrderSide;
+import com.commodities.matching.model.OrderType;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Book maintenance without matching: an order added to and removed from a book that already
+// rests depth orders per side, ten to a level, and the best-price lookup on the same book
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xms4g", "-Xmx4g" })
+public class OrderBookBenchmark {
+    private static final Commodity COMMODITY = Commodity.CRUDE_OIL;
+    private static final int ORDERS_PER_LEVEL = 10;
+    private static final int PRICES = 4096;
+
+    @Param({ "1000", "10000", "100000", "1000000" })
+    int depth;
+
+    private OrderBook orderBook;
+    private long midTicks;
+    // Existing bid levels, drawn up front so the benchmark does not time the random generator
+    private final long[] prices = new long[PRICES];
+    private long nextOrderId;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.commodities"))
+            .setLevel(ch.qos.logback.classic.Level.INFO);
+        orderBook = new OrderBook(COMMODITY, 2 * depth + 1024);
+        midTicks = COMMODITY.toTicks(80.0);
+        for (int i = 0; i < depth; i++) {
+            add(OrderSide.BUY, midTicks - 1 - i / ORDERS_PER_LEVEL);
+            add(OrderSide.SELL, midTicks + 1 + i / ORDERS_PER_LEVEL);
+        }
+        Random random = new Random(42);
+        int levels = (depth + ORDERS_PER_LEVEL - 1) / ORDERS_PER_LEVEL;
+        for (int i = 0; i < PRICES; i++) {
+            prices[i] = midTicks - 1 - random.nextInt(levels);
+        }
+    }
+
+    // Joins the back of an existing level somewhere in the book, then leaves it
+    @Benchmark
+    public int addAndRemoveAtExistingLevel() {
+        long orderId = add(OrderSide.BUY, prices[next++ & (PRICES - 1)]);
+        orderBook.releaseOrder(orderBook.removeOrder(orderId));
+        return orderBook.getBuyOrderCount();
+    }
+
+    // Opens a new best bid inside the spread, then empties it again
+    @Benchmark
+    public int addAndRemoveAtNewBest() {
+        long orderId = add(OrderSide.BUY, midTicks);
+        orderBook.releaseOrder(orderBook.removeOrder(orderId));
+        return orderBook.getBidLevelCount();
+    }
+
+    @Benchmark
+    public long bestPrices() {
+        return orderBook.getBestAskLevel().getPrice() - orderBook.getBestBidLevel().getPrice();
+    }
+
+    private long add(OrderSide side, long price) {
+        Order order = orderBook.acquireOrder();
+        order.init(++nextOrderId, COMMODITY, side, OrderType.LIMIT, price, 10, 0);
+        orderBook.addOrder(order);
+        return nextOrderId;
+    }
+}
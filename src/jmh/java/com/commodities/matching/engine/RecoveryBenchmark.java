@@ -0,0 +1,116 @@
+package com.commodities.matching.engine;
+
+import com.commodities.matching.config.MatchingEngineProperties;
+import com.commodities.matching.metrics.MetricsCollector;
+import com.commodities.matching.model.Commodity;
+import com.commodities.matching.model.OrderSide;
+import com.commodities.matching.model.OrderType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Engine startup over a journalled history: restingOrders bids followed by ten crossing orders
+// per resting one, standing in for a day of trading. JOURNAL replays all of it; SNAPSHOT starts
+// from a snapshot taken at the end, so only the book is loaded. Each shot is one startup, so
+// the JOURNAL times also give the replay rate (11 x restingOrders events per shot).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = { "-Xms4g", "-Xmx4g" })
+public class RecoveryBenchmark {
+    private static final Commodity COMMODITY = Commodity.CRUDE_OIL;
+    private static final int HISTORY_FACTOR = 10;
+
+    public enum StartFrom { JOURNAL, SNAPSHOT }
+
+    @Param({ "10000", "100000", "300000" })
+    int restingOrders;
+
+    @Param({ "JOURNAL", "SNAPSHOT" })
+    StartFrom startFrom;
+
+    private Path directory;
+    private MatchingEngineProperties properties;
+    private MatchingEngine matchingEngine;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.commodities"))
+            .setLevel(ch.qos.logback.classic.Level.WARN);
+        directory = Files.createTempDirectory("recovery-benchmark");
+        properties = new MatchingEngineProperties();
+        properties.getJournal().setEnabled(true);
+        properties.getJournal().setDirectory(directory.resolve("journal").toString());
+        properties.getSnapshot().setDirectory(directory.resolve("snapshots").toString());
+        writeHistory();
+        if (startFrom == StartFrom.SNAPSHOT) {
+            MatchingEngine replayed = start();
+            replayed.requestSnapshot();
+            replayed.awaitIdle();
+            // Waits for the snapshot file to be written
+            replayed.shutdown();
+        }
+    }
+
+    @Benchmark
+    public MatchingEngine startUp() {
+        matchingEngine = start();
+        return matchingEngine;
+    }
+
+    @TearDown(Level.Iteration)
+    public void stop() {
+        matchingEngine.shutdown();
+        if (matchingEngine.getOrderBook(COMMODITY).getBuyOrderCount() != restingOrders) {
+            throw new IllegalStateException("Recovered book does not match the history");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    private MatchingEngine start() {
+        MatchingEngine engine = new MatchingEngine(new MetricsCollector(new SimpleMeterRegistry()), properties);
+        engine.init();
+        return engine;
+    }
+
+    // Resting bids below the market, followed by pairs that trade with each other and leave the book unchanged
+    private void writeHistory() throws Exception {
+        InputJournal journal = new InputJournal(Path.of(properties.getJournal().getDirectory(), "matching-engine"),
+            properties.getJournal().getSegmentSize().toBytes(), false);
+        journal.replay((event, sequence, endOfBatch) -> { });
+        MatchingEngine.OrderEvent event = new MatchingEngine.OrderEvent();
+        event.eventType = MatchingEngine.EventType.NEW;
+        event.commodity = COMMODITY;
+        event.type = OrderType.LIMIT;
+        event.quantity = 10;
+        long mid = COMMODITY.toTicks(80.0);
+        long orderId = 1;
+        for (int i = 0; i < restingOrders; i++) {
+            event.orderId = orderId;
+            event.timestamp = orderId++;
+            event.side = OrderSide.BUY;
+            event.price = mid - 1 - i % 1000;
+            journal.append(event);
+        }
+        for (int i = 0; i < restingOrders * HISTORY_FACTOR; i++) {
+            event.orderId = orderId;
+            event.timestamp = orderId++;
+            event.side = i % 2 == 0 ? OrderSide.SELL : OrderSide.BUY;
+            event.price = mid;
+            journal.append(event);
+        }
+        journal.close();
+    }
+}
@@ -0,0 +1,70 @@
+package com.commodities.matching.engine;
+
+import com.commodities.matching.metrics.MetricsCollector;
+import com.commodities.matching.model.Commodity;
+import com.commodities.matching.model.OrderSide;
+import com.commodities.matching.model.OrderType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+// Order entry through the public API with the Disruptor running, from one, two and four
+// producer threads. Each producer alternates crossing buys and sells at one price, so books
+// stay shallow and the matching threads run at the rate orders arrive. A full ring buffer
+// blocks the producer, so sustained throughput is bounded by matching, not by publishing.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" })
+public class SubmitOrderBenchmark {
+    private static final Commodity[] COMMODITIES = Commodity.values();
+
+    private MatchingEngine matchingEngine;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.commodities"))
+            .setLevel(ch.qos.logback.classic.Level.INFO);
+        matchingEngine = new MatchingEngine(new MetricsCollector(new SimpleMeterRegistry()));
+        matchingEngine.init();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        matchingEngine.shutdown();
+    }
+
+    @State(Scope.Thread)
+    public static class Producer {
+        long count;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long oneProducer(Producer producer) {
+        return submit(producer);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public long twoProducers(Producer producer) {
+        return submit(producer);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long fourProducers(Producer producer) {
+        return submit(producer);
+    }
+
+    private long submit(Producer producer) {
+        long n = producer.count++;
+        Commodity commodity = COMMODITIES[(int) (n >>> 1) % COMMODITIES.length];
+        OrderSide side = (n & 1) == 0 ? OrderSide.BUY : OrderSide.SELL;
+        return matchingEngine.submitOrder(commodity, side, OrderType.LIMIT, commodity.toTicks(100.0), 10);
+    }
+}
@@ -0,0 +1,73 @@
+package com.commodities.matching.engine;
+
+import com.commodities.matching.config.MatchingEngineProperties;
+import com.commodities.matching.config.MatchingEngineProperties.WaitStrategyType;
+import com.commodities.matching.metrics.MetricsCollector;
+import com.commodities.matching.model.Commodity;
+import com.commodities.matching.model.OrderSide;
+import com.commodities.matching.model.OrderType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Time from submitOrder to the matching thread picking the order up, for each wait strategy.
+// The producer pauses before every order so the matching thread has gone idle and has to be
+// woken, which is the case the wait strategy decides; buys and sells alternate at one price
+// so the book stays empty.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" })
+public class WakeupLatencyBenchmark {
+    private static final Commodity COMMODITY = Commodity.GOLD;
+    private static final long PAUSE_NANOS = 500_000;
+
+    @Param({ "BLOCKING", "SLEEPING", "YIELDING", "PHASED_BACKOFF", "BUSY_SPIN" })
+    WaitStrategyType waitStrategy;
+
+    private MatchingEngine matchingEngine;
+    private long price;
+    private long submitted;
+    // Written by the matching thread only
+    private volatile long received;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.commodities"))
+            .setLevel(ch.qos.logback.classic.Level.INFO);
+        MatchingEngineProperties properties = new MatchingEngineProperties();
+        properties.getDisruptor().setWaitStrategy(waitStrategy);
+        properties.getDisruptor().setRingBufferSize(1024);
+        matchingEngine = new MatchingEngine(new MetricsCollector(new SimpleMeterRegistry()), properties);
+        matchingEngine.addOrderListener(order -> received++);
+        matchingEngine.init();
+        price = COMMODITY.toTicks(1800.0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        matchingEngine.shutdown();
+    }
+
+    // Per invocation on purpose: each pause is far longer than the setup overhead JMH warns about
+    @Setup(Level.Invocation)
+    public void pause() {
+        LockSupport.parkNanos(PAUSE_NANOS);
+    }
+
+    @Benchmark
+    public long submitAndAwaitPickUp() {
+        long expected = ++submitted;
+        OrderSide side = (expected & 1) == 0 ? OrderSide.SELL : OrderSide.BUY;
+        matchingEngine.submitOrder(COMMODITY, side, OrderType.LIMIT, price, 1);
+        while (received < expected) {
+            Thread.onSpinWait();
+        }
+        return expected;
+    }
+}
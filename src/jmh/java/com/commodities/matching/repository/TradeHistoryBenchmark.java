@@ -0,0 +1,66 @@
+package com.commodities.matching.repository;
+
+import com.commodities.matching.model.Commodity;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Queries over five million trades of one commodity in thousand-trade blocks: an aggregate
+// that only decodes the price, quantity and time columns, and a full scan that decodes every
+// column. Each operation covers the whole history, so trades per second is 5M / the score.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" })
+public class TradeHistoryBenchmark {
+    private static final int TRADES = 5_000_000;
+    private static final int BLOCK_TRADES = 1000;
+
+    private Path directory;
+    private TradeHistoryStore store;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("trade-history-benchmark");
+        store = new TradeHistoryStore(directory, 256L << 20, BLOCK_TRADES);
+        Random random = new Random(42);
+        long timestamp = 1_700_000_000_000L;
+        long price = 185_000;
+        for (int i = 0; i < TRADES; i++) {
+            timestamp += random.nextInt(3);
+            price += random.nextInt(5) - 2;
+            store.append(Commodity.GOLD, timestamp, i + 1, 2L * i + 1, 2L * i + 2, price,
+                (random.nextInt(20) + 1) * 100, 2_000 + random.nextInt(5_000));
+            if (i % BLOCK_TRADES == BLOCK_TRADES - 1) {
+                store.commit();
+            }
+        }
+        store.commit();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        store.close();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public TradeHistoryStore.TradeAggregate aggregate() {
+        return store.aggregate(Commodity.GOLD, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    @Benchmark
+    public long scan() {
+        long[] volume = new long[1];
+        store.scan(Commodity.GOLD, Long.MIN_VALUE, Long.MAX_VALUE,
+            (timestamp, tradeId, buyOrderId, sellOrderId, price, quantity, processingTimeNanos) -> volume[0] += quantity);
+        return volume[0];
+    }
+}
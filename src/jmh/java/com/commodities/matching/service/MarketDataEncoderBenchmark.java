@@ -0,0 +1,47 @@
+package com.commodities.matching.service;
+
+import com.commodities.matching.model.Commodity;
+import com.commodities.matching.model.Trade;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// One trade message as the JSON feed builds it, a map serialized by Jackson, against the
+// binary encoding sent to subscribers that negotiate it, written into a reused slot buffer as
+// the matching thread does
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MarketDataEncoderBenchmark {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MarketDataEncoder encoder = new MarketDataEncoder(Commodity.GOLD);
+    private final ByteBuffer slot = MarketDataEncoder.newBuffer();
+    private final Trade trade =
+        new Trade(123456, 2345678, 2345679, Commodity.GOLD, Commodity.GOLD.toTicks(1850.3), 25, 4321);
+
+    @Benchmark
+    public byte[] json() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(Map.of(
+            "tradeId", trade.getTradeId(),
+            "commodity", trade.getCommodity().getSymbol(),
+            "price", trade.getCommodity().toPrice(trade.getPrice()),
+            "quantity", trade.getQuantity(),
+            "buyOrderId", trade.getBuyOrderId(),
+            "sellOrderId", trade.getSellOrderId(),
+            "latencyMicros", trade.getProcessingTimeMicros(),
+            "timestamp", trade.getTimestamp()
+        ));
+    }
+
+    @Benchmark
+    public ByteBuffer binary() {
+        return encoder.encodeTrade(trade, slot);
+    }
+}
@@ -0,0 +1,155 @@
+package com.commodities.matching.config;
+
+import com.commodities.matching.model.Commodity;
+import com.lmax.disruptor.dsl.ProducerType;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "matching-engine")
+public class MatchingEngineProperties {
+
+    private Disruptor disruptor = new Disruptor();
+
+    private Sharding sharding = new Sharding();
+
+    private Journal journal = new Journal();
+
+    private Snapshot snapshot = new Snapshot();
+
+    private Persistence persistence = new Persistence();
+
+    private History history = new History();
+
+    private Candles candles = new Candles();
+
+    private MarketData marketData = new MarketData();
+
+    private OrderBook orderBook = new OrderBook();
+
+    private Capture capture = new Capture();
+
+    public enum WaitStrategyType {
+        BLOCKING,
+        SLEEPING,
+        YIELDING,
+        PHASED_BACKOFF,
+        BUSY_SPIN
+    }
+
+    @Data
+    public static class Disruptor {
+        // Per shard; must be a power of two
+        private int ringBufferSize = 65536;
+
+        private WaitStrategyType waitStrategy = WaitStrategyType.BLOCKING;
+
+        // SINGLE is only safe when exactly one thread ever submits orders
+        private ProducerType producerType = ProducerType.MULTI;
+
+        // CPUs the matching threads are pinned to, in shard order; empty leaves placement to the OS
+        private List<Integer> pinnedCpus = new ArrayList<>();
+    }
+
+    @Data
+    public static class Sharding {
+        // When disabled every commodity is matched on a single thread
+        private boolean enabled = false;
+
+        // Commodities that share a matching thread; unlisted commodities get a thread each
+        private List<Set<Commodity>> groups = new ArrayList<>();
+    }
+
+    @Data
+    public static class Journal {
+        private boolean enabled = false;
+
+        // Each matching thread journals to its own subdirectory, so the sharding layout
+        // must not change between restarts that replay the same journal
+        private String directory = "journal";
+
+        // Journal files roll over to a new segment at this size
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+        // Force each batch to disk before it is matched, rather than leaving it to the page cache
+        private boolean fsync = false;
+    }
+
+    // Snapshots are only taken while the journal is enabled, since recovery replays the
+    // journal from the snapshot's sequence onwards
+    @Data
+    public static class Snapshot {
+        private String directory = "snapshots";
+
+        // Zero disables the timer
+        private Duration interval = Duration.ZERO;
+
+        // Snapshot a shard after this many events; zero disables
+        private long everyEvents = 0;
+
+        // Older snapshots beyond this many per shard are deleted
+        private int retained = 2;
+    }
+
+    // Records each run's input with submission times, for replay into a fresh engine
+    @Data
+    public static class Capture {
+        private boolean enabled = false;
+
+        // Each engine run captures into its own subdirectory, one file per matching thread
+        private String directory = "captures";
+    }
+
+    @Data
+    public static class Persistence {
+        // Trades waiting to be written; when full, matching waits for the database. Must be a power of two
+        private int ringBufferSize = 65536;
+
+        // Trades per JDBC batch insert
+        private int batchSize = 1000;
+
+        // Longest a trade waits for its batch to fill before it is written anyway
+        private Duration maxDelay = Duration.ofMillis(100);
+    }
+
+    // Columnar trade log that history queries read instead of the database
+    @Data
+    public static class History {
+        private boolean enabled = false;
+
+        // One subdirectory per commodity
+        private String directory = "trades";
+
+        // History files roll over to a new segment at this size
+        private DataSize segmentSize = DataSize.ofMegabytes(256);
+    }
+
+    @Data
+    public static class Candles {
+        // Bars kept per commodity and interval; older bars are overwritten
+        private int capacity = 1000;
+    }
+
+    @Data
+    public static class MarketData {
+        // Trades within one interval are conflated into a single summary per commodity
+        private Duration conflationInterval = Duration.ofMillis(50);
+    }
+
+    @Data
+    public static class OrderBook {
+        // Expected resting orders per book; the order index and pool start at this size
+        private int initialCapacity = 1024;
+
+        // Price levels per side in the depth view published for readers
+        private int maxDepth = 20;
+    }
+}
@@ -1,13 +1,34 @@
 package com.commodities.matching.config;
 
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.config.annotation.*;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.List;
+import java.util.Map;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    // Binary feeds are published under this prefix, e.g. /topic/binary/trades/GOLD
+    public static final String BINARY_PREFIX = "/topic/binary/";
+    static final String ENCODING_HEADER = "encoding";
+    static final String BINARY_SESSION = "binaryFrames";
+    private static final List<String> BINARY_TOPICS = List.of(
+        "/topic/trades", "/topic/orders", "/topic/book/", "/topic/bbo/");
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         config.enableSimpleBroker("/topic");
@@ -19,5 +40,53 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         registry.addEndpoint("/ws")
             .setAllowedOriginPatterns("*")
             .withSockJS();
+        // SockJS frames are text, so binary feeds need a plain WebSocket endpoint
+        registry.addEndpoint("/ws-binary")
+            .setAllowedOriginPatterns("*")
+            .addInterceptors(new BinarySessionInterceptor());
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(new EncodingNegotiationInterceptor());
+    }
+
+    // A SUBSCRIBE to a feed with an "encoding: binary" header is moved to the feed's binary
+    // destination. The subscription id is unchanged, so clients unsubscribe as usual.
+    static final class EncodingNegotiationInterceptor implements ChannelInterceptor {
+        @Override
+        public Message<?> preSend(Message<?> message, MessageChannel channel) {
+            StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+            if (accessor == null || accessor.getCommand() != StompCommand.SUBSCRIBE || accessor.getDestination() == null) {
+                return message;
+            }
+            String destination = accessor.getDestination();
+            if ("binary".equals(accessor.getFirstNativeHeader(ENCODING_HEADER))) {
+                if (BINARY_TOPICS.stream().noneMatch(destination::startsWith)) {
+                    throw new IllegalArgumentException("Binary encoding is not available for " + destination);
+                }
+                destination = BINARY_PREFIX + destination.substring("/topic/".length());
+                accessor.setDestination(destination);
+            }
+            Map<String, Object> attributes = accessor.getSessionAttributes();
+            if (destination.startsWith(BINARY_PREFIX) && (attributes == null || !attributes.containsKey(BINARY_SESSION))) {
+                throw new IllegalArgumentException("Binary feeds require a connection to /ws-binary");
+            }
+            return message;
+        }
+    }
+
+    private static final class BinarySessionInterceptor implements HandshakeInterceptor {
+        @Override
+        public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                       WebSocketHandler wsHandler, Map<String, Object> attributes) {
+            attributes.put(BINARY_SESSION, Boolean.TRUE);
+            return true;
+        }
+
+        @Override
+        public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Exception exception) {
+        }
     }
 }
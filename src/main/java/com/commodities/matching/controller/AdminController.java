@@ -0,0 +1,26 @@
+package com.commodities.matching.controller;
+
+import com.commodities.matching.engine.MatchingEngine;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+    private final MatchingEngine matchingEngine;
+
+    public AdminController(MatchingEngine matchingEngine) {
+        this.matchingEngine = matchingEngine;
+    }
+
+    // Each shard snapshots when it reaches the request in its input; files are written asynchronously
+    @PostMapping("/snapshot")
+    public ResponseEntity<Map<String, Object>> snapshot() {
+        int shards = matchingEngine.requestSnapshot();
+        return ResponseEntity.accepted().body(Map.of(
+            "status", "snapshot_requested",
+            "shards", shards
+        ));
+    }
+}
@@ -0,0 +1,26 @@
+package com.commodities.matching.controller;
+
+import com.commodities.matching.model.*;
+import com.commodities.matching.service.CandleService;
+import org.springframework.web.bind.annotation.*;
+import java.util.*;
+
+@RestController
+@RequestMapping("/api/candles")
+public class CandleController {
+    private final CandleService candleService;
+
+    public CandleController(CandleService candleService) {
+        this.candleService = candleService;
+    }
+
+    // Oldest first; the last bar is still open if its close time is in the future
+    @GetMapping("/{commodity}")
+    public List<Map<String, Object>> getCandles(@PathVariable Commodity commodity,
+                                                @RequestParam(defaultValue = "1m") String interval,
+                                                @RequestParam(defaultValue = "100") int limit) {
+        return candleService.getCandles(commodity, CandleInterval.fromLabel(interval), limit).stream()
+            .map(CandleService::toMap)
+            .toList();
+    }
+}
@@ -1,7 +1,6 @@
 package com.commodities.matching.controller;
 
 import com.commodities.matching.engine.MatchingEngine;
-import com.commodities.matching.engine.OrderBook;
 import com.commodities.matching.model.*;
 import org.springframework.web.bind.annotation.*;
 import java.util.*;
@@ -15,35 +14,51 @@ public class OrderBookController {
         this.matchingEngine = matchingEngine;
     }
 
+    // Served from the view the matching thread publishes after each batch, so polling never
+    // touches live book state
     @GetMapping("/{commodity}")
     public Map<String, Object> getOrderBook(@PathVariable Commodity commodity, 
                                             @RequestParam(defaultValue = "10") int depth) {
-        OrderBook orderBook = matchingEngine.getOrderBook(commodity);
-        
-        List<Map<String, Object>> bids = orderBook.getBuyOrders(depth).stream()
-            .map(this::orderToMap)
-            .toList();
-            
-        List<Map<String, Object>> asks = orderBook.getSellOrders(depth).stream()
-            .map(this::orderToMap)
-            .toList();
-
-        Order bestBid = orderBook.getBestBid();
-        Order bestAsk = orderBook.getBestAsk();
+        checkDepth(depth);
+        BookDepth view = matchingEngine.getBookView(commodity);
+        BookDepth.Level bestBid = view.getBestBid();
+        BookDepth.Level bestAsk = view.getBestAsk();
         
         double spread = (bestBid != null && bestAsk != null) 
-            ? bestAsk.getPrice() - bestBid.getPrice() 
+            ? commodity.toPrice(bestAsk.getPrice() - bestBid.getPrice()) 
             : 0.0;
 
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("commodity", commodity.getSymbol());
+        result.put("sequence", view.getSequence());
+        result.put("bids", levelsToMaps(commodity, view.getBids(), depth));
+        result.put("asks", levelsToMaps(commodity, view.getAsks(), depth));
+        result.put("bestBid", bestBid != null ? commodity.toPrice(bestBid.getPrice()) : 0.0);
+        result.put("bestAsk", bestAsk != null ? commodity.toPrice(bestAsk.getPrice()) : 0.0);
+        result.put("spread", spread);
+        result.put("bidCount", view.getBidOrderCount());
+        result.put("askCount", view.getAskOrderCount());
+        result.put("bidLevels", view.getBidLevelCount());
+        result.put("askLevels", view.getAskLevelCount());
+        result.put("bidQuantity", view.getBidQuantity());
+        result.put("askQuantity", view.getAskQuantity());
+        result.put("imbalance", view.getImbalance());
+        result.put("topImbalance", view.getImbalance(depth));
+        result.put("timestamp", view.getTimestamp());
+        return result;
+    }
+
+    // Aggregated levels stamped with the book sequence that /topic/book/{symbol} deltas continue from
+    @GetMapping("/{commodity}/levels")
+    public Map<String, Object> getLevels(@PathVariable Commodity commodity,
+                                         @RequestParam(defaultValue = "20") int depth) {
+        checkDepth(depth);
+        BookDepth view = matchingEngine.getBookView(commodity);
         return Map.of(
             "commodity", commodity.getSymbol(),
-            "bids", bids,
-            "asks", asks,
-            "bestBid", bestBid != null ? bestBid.getPrice() : 0.0,
-            "bestAsk", bestAsk != null ? bestAsk.getPrice() : 0.0,
-            "spread", spread,
-            "bidCount", orderBook.getBuyOrderCount(),
-            "askCount", orderBook.getSellOrderCount()
+            "sequence", view.getSequence(),
+            "bids", levelsToMaps(commodity, view.getBids(), depth),
+            "asks", levelsToMaps(commodity, view.getAsks(), depth)
         );
     }
 
@@ -52,18 +67,32 @@ public class OrderBookController {
         Map<String, Map<String, Object>> result = new HashMap<>();
         
         for (Commodity commodity : Commodity.values()) {
-            result.put(commodity.getSymbol(), getOrderBook(commodity, 5));
+            result.put(commodity.getSymbol(), getOrderBook(commodity, Math.min(5, matchingEngine.getViewDepth())));
         }
         
         return result;
     }
 
-    private Map<String, Object> orderToMap(Order order) {
+    // The view only holds order-book.max-depth levels per side, so a deeper request could not be served
+    private void checkDepth(int depth) {
+        int maxDepth = matchingEngine.getViewDepth();
+        if (depth < 0 || depth > maxDepth) {
+            throw new IllegalArgumentException("depth must be between 0 and " + maxDepth
+                + " (matching-engine.order-book.max-depth)");
+        }
+    }
+
+    private List<Map<String, Object>> levelsToMaps(Commodity commodity, List<BookDepth.Level> levels, int depth) {
+        return levels.subList(0, Math.max(0, Math.min(depth, levels.size()))).stream()
+            .map(level -> levelToMap(commodity, level))
+            .toList();
+    }
+
+    private Map<String, Object> levelToMap(Commodity commodity, BookDepth.Level level) {
         return Map.of(
-            "orderId", order.getOrderId(),
-            "price", order.getPrice(),
-            "quantity", order.getRemainingQuantity(),
-            "side", order.getSide().toString()
+            "price", commodity.toPrice(level.getPrice()),
+            "quantity", level.getQuantity(),
+            "orders", level.getOrders()
         );
     }
 }
@@ -1,26 +1,42 @@
 package com.commodities.matching.controller;
 
+import com.commodities.matching.dto.OrderAmendRequest;
 import com.commodities.matching.dto.OrderRequest;
 import com.commodities.matching.engine.MatchingEngine;
 import com.commodities.matching.model.*;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import java.util.Map;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
 
 @RestController
 @RequestMapping("/api/orders")
 @Tag(name = "Order Management", description = "APIs for submitting and managing orders")
 public class OrderController {
     private static final Logger logger = LoggerFactory.getLogger(OrderController.class);
+    private static final String NDJSON = "application/x-ndjson";
     private final MatchingEngine matchingEngine;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
 
-    public OrderController(MatchingEngine matchingEngine) {
+    public OrderController(MatchingEngine matchingEngine, Validator validator, ObjectMapper objectMapper) {
         this.matchingEngine = matchingEngine;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping
@@ -30,26 +46,173 @@ public class OrderController {
             request.getSide(), request.getCommodity(), request.getType(), 
             request.getPrice(), request.getQuantity());
         
-        Order order = new Order(
+        long orderId = matchingEngine.submitOrder(
             request.getCommodity(),
             request.getSide(),
             request.getType(),
-            request.getPrice(),
+            toTicks(request),
             request.getQuantity()
         );
-
-        matchingEngine.submitOrder(order);
         
-        logger.info("Order submitted successfully with ID: {}", order.getOrderId());
+        logger.info("Order submitted successfully with ID: {}", orderId);
 
         return ResponseEntity.ok(Map.of(
-            "orderId", order.getOrderId(),
+            "orderId", orderId,
             "status", "submitted",
-            "commodity", order.getCommodity().getSymbol(),
-            "side", order.getSide(),
-            "type", order.getType(),
-            "price", order.getPrice(),
-            "quantity", order.getQuantity()
+            "commodity", request.getCommodity().getSymbol(),
+            "side", request.getSide(),
+            "type", request.getType(),
+            "price", request.getPrice(),
+            "quantity", request.getQuantity()
+        ));
+    }
+
+    // The commodity is required: order ids come from one engine-wide counter and say nothing about
+    // which shard holds the order, and the cancel must be sequenced on that shard's ring
+    @DeleteMapping("/{orderId}")
+    @Operation(summary = "Cancel an order", description = "Cancel a resting order; the cancel is sequenced behind earlier orders. "
+        + "The commodity query parameter is required and must be the one the order was submitted for.")
+    public ResponseEntity<Map<String, Object>> cancelOrder(@PathVariable long orderId,
+                                                           @RequestParam Commodity commodity) {
+        logger.info("Received cancel for order {} in {}", orderId, commodity);
+        
+        matchingEngine.cancelOrder(commodity, orderId);
+        
+        return ResponseEntity.accepted().body(Map.of(
+            "orderId", orderId,
+            "status", "cancel_submitted",
+            "commodity", commodity.getSymbol()
+        ));
+    }
+
+    @PatchMapping("/{orderId}")
+    @Operation(summary = "Amend an order", description = "Change the price and total quantity of a resting limit order. "
+        + "Reducing quantity at the same price keeps time priority; any other change re-queues the order.")
+    public ResponseEntity<Map<String, Object>> amendOrder(@PathVariable long orderId,
+                                                          @Valid @RequestBody OrderAmendRequest request) {
+        logger.info("Received amend for order {}: {} @ {} qty:{}",
+            orderId, request.getCommodity(), request.getPrice(), request.getQuantity());
+        
+        matchingEngine.replaceOrder(
+            request.getCommodity(),
+            orderId,
+            request.getCommodity().toTicks(request.getPrice()),
+            request.getQuantity()
+        );
+        
+        return ResponseEntity.accepted().body(Map.of(
+            "orderId", orderId,
+            "status", "amend_submitted",
+            "commodity", request.getCommodity().getSymbol(),
+            "price", request.getPrice(),
+            "quantity", request.getQuantity()
         ));
     }
+
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Submit a batch of orders", description = "Submit a JSON array of orders; each order is accepted or rejected individually")
+    public ResponseEntity<Map<String, Object>> submitOrders(@RequestBody List<OrderRequest> requests) {
+        return ResponseEntity.ok(submitBatch(requests, new ArrayList<>(Collections.nCopies(requests.size(), null))));
+    }
+
+    @PostMapping(value = "/batch", consumes = NDJSON)
+    @Operation(summary = "Stream a batch of orders", description = "Submit newline-delimited JSON orders, one per line")
+    public ResponseEntity<Map<String, Object>> submitOrderStream(InputStream body) throws IOException {
+        List<OrderRequest> requests = new ArrayList<>();
+        List<Map<String, Object>> results = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    requests.add(objectMapper.readValue(line, OrderRequest.class));
+                    results.add(null);
+                } catch (JsonProcessingException e) {
+                    requests.add(null);
+                    results.add(rejected(results.size(), "Malformed order: " + e.getOriginalMessage()));
+                }
+            }
+        }
+        return ResponseEntity.ok(submitBatch(requests, results));
+    }
+
+    // Validates each order on its own, then hands every valid one to the engine in a single batch.
+    // Slots in results already filled in (parse failures) stay rejected.
+    private Map<String, Object> submitBatch(List<OrderRequest> requests, List<Map<String, Object>> results) {
+        List<NewOrder> orders = new ArrayList<>(requests.size());
+        int[] positions = new int[requests.size()];
+        for (int i = 0; i < requests.size(); i++) {
+            if (results.get(i) != null) {
+                continue;
+            }
+            OrderRequest request = requests.get(i);
+            String error = validate(request);
+            if (error == null) {
+                try {
+                    long price = toTicks(request);
+                    positions[orders.size()] = i;
+                    orders.add(new NewOrder(request.getCommodity(), request.getSide(), request.getType(),
+                        price, request.getQuantity()));
+                    continue;
+                } catch (IllegalArgumentException e) {
+                    error = e.getMessage();
+                }
+            }
+            results.set(i, rejected(i, error));
+        }
+
+        long[] orderIds = matchingEngine.submitOrders(orders);
+        for (int j = 0; j < orderIds.length; j++) {
+            results.set(positions[j], Map.of(
+                "index", positions[j],
+                "orderId", orderIds[j],
+                "status", "submitted"
+            ));
+        }
+
+        logger.info("Batch received: {} orders, {} submitted, {} rejected",
+            requests.size(), orderIds.length, requests.size() - orderIds.length);
+
+        return Map.of(
+            "submitted", orderIds.length,
+            "rejected", requests.size() - orderIds.length,
+            "results", results
+        );
+    }
+
+    // A market order's price is never read, so it is neither required nor checked against the tick size
+    private static long toTicks(OrderRequest request) {
+        if (request.getType() == OrderType.MARKET) {
+            return 0;
+        }
+        if (request.getPrice() <= 0) {
+            throw new IllegalArgumentException("Limit order price must be positive");
+        }
+        return request.getCommodity().toTicks(request.getPrice());
+    }
+
+    private String validate(OrderRequest request) {
+        if (request == null) {
+            return "Order is required";
+        }
+        Set<ConstraintViolation<OrderRequest>> violations = validator.validate(request);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        StringJoiner errors = new StringJoiner(", ");
+        for (ConstraintViolation<OrderRequest> violation : violations) {
+            errors.add(violation.getPropertyPath() + ": " + violation.getMessage());
+        }
+        return errors.toString();
+    }
+
+    private static Map<String, Object> rejected(int index, String error) {
+        return Map.of(
+            "index", index,
+            "status", "rejected",
+            "error", error
+        );
+    }
 }
@@ -1,6 +1,10 @@
 package com.commodities.matching.controller;
 
+import com.commodities.matching.dto.LoadProfile;
+import com.commodities.matching.service.LoadGenerator;
 import com.commodities.matching.service.OrderSimulator;
+import jakarta.validation.Valid;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.util.Map;
 
@@ -8,9 +12,11 @@ import java.util.Map;
 @RequestMapping("/api/simulator")
 public class SimulatorController {
     private final OrderSimulator orderSimulator;
+    private final LoadGenerator loadGenerator;
 
-    public SimulatorController(OrderSimulator orderSimulator) {
+    public SimulatorController(OrderSimulator orderSimulator, LoadGenerator loadGenerator) {
         this.orderSimulator = orderSimulator;
+        this.loadGenerator = loadGenerator;
     }
 
     @PostMapping("/start")
@@ -29,4 +35,22 @@ public class SimulatorController {
     public Map<String, Object> status() {
         return Map.of("enabled", orderSimulator.isEnabled());
     }
+
+    // Starts an open-loop load run; poll GET /load for progress and the final report
+    @PostMapping("/load")
+    public ResponseEntity<LoadGenerator.Report> startLoad(@Valid @RequestBody(required = false) LoadProfile profile) {
+        loadGenerator.start(profile != null ? profile : new LoadProfile());
+        return ResponseEntity.accepted().body(loadGenerator.getReport());
+    }
+
+    @PostMapping("/load/stop")
+    public LoadGenerator.Report stopLoad() {
+        loadGenerator.stop();
+        return loadGenerator.getReport();
+    }
+
+    @GetMapping("/load")
+    public LoadGenerator.Report loadReport() {
+        return loadGenerator.getReport();
+    }
 }
@@ -0,0 +1,49 @@
+package com.commodities.matching.controller;
+
+import com.commodities.matching.entity.TradeEntity;
+import com.commodities.matching.model.Commodity;
+import com.commodities.matching.repository.TradeHistoryStore;
+import com.commodities.matching.service.TradePersistenceService;
+import org.springframework.web.bind.annotation.*;
+import java.time.Instant;
+import java.util.*;
+
+@RestController
+@RequestMapping("/api/trades")
+public class TradeController {
+    private final TradePersistenceService tradePersistenceService;
+
+    public TradeController(TradePersistenceService tradePersistenceService) {
+        this.tradePersistenceService = tradePersistenceService;
+    }
+
+    @GetMapping("/{commodity}")
+    public List<TradeEntity> getRecentTrades(@PathVariable Commodity commodity,
+                                             @RequestParam(defaultValue = "5") int minutes,
+                                             @RequestParam(defaultValue = "100") int limit) {
+        List<TradeEntity> trades = tradePersistenceService.getRecentTrades(commodity, minutes);
+        return trades.size() > limit ? trades.subList(0, limit) : trades;
+    }
+
+    @GetMapping("/{commodity}/summary")
+    public Map<String, Object> getSummary(@PathVariable Commodity commodity,
+                                          @RequestParam(defaultValue = "60") int minutes) {
+        Instant to = Instant.now();
+        Instant from = to.minusSeconds(minutes * 60L);
+        TradeHistoryStore.TradeAggregate summary = tradePersistenceService.getTradeSummary(commodity, from, to);
+        double vwap = summary.getVolume() == 0 ? 0.0 : commodity.toPrice(summary.getNotional()) / summary.getVolume();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("commodity", commodity.getSymbol());
+        result.put("from", from);
+        result.put("to", to);
+        result.put("trades", summary.getCount());
+        result.put("volume", summary.getVolume());
+        result.put("open", commodity.toPrice(summary.getOpen()));
+        result.put("high", commodity.toPrice(summary.getHigh()));
+        result.put("low", commodity.toPrice(summary.getLow()));
+        result.put("close", commodity.toPrice(summary.getClose()));
+        result.put("vwap", vwap);
+        return result;
+    }
+}
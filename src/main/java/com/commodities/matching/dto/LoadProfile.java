@@ -0,0 +1,65 @@
+package com.commodities.matching.dto;
+
+import com.commodities.matching.model.Commodity;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.Data;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+// Shape of a load run; every field has a default, so an empty body is a valid profile
+@Data
+public class LoadProfile {
+
+    public enum QuantityDistribution {
+        UNIFORM,
+        // Mean halfway between the bounds, capped at the maximum
+        EXPONENTIAL
+    }
+
+    // Orders per second across all producers, sent on schedule whether or not the engine keeps up
+    @Positive(message = "Target rate must be positive")
+    private int targetRate = 10_000;
+
+    @Min(value = 1, message = "At least one producer thread is required")
+    @Max(value = 64, message = "At most 64 producer threads are allowed")
+    private int producerThreads = 1;
+
+    @Positive(message = "Duration must be positive")
+    private int durationSeconds = 30;
+
+    // Relative weights; an empty mix spreads orders evenly over all commodities
+    private Map<Commodity, Double> commodityMix = new EnumMap<>(Commodity.class);
+
+    // Standard deviation of the mid-price move per order, in ticks
+    @PositiveOrZero(message = "Walk step must not be negative")
+    private double walkStepTicks = 1.0;
+
+    // Limit prices are drawn uniformly within this many ticks either side of the mid
+    @PositiveOrZero(message = "Spread must not be negative")
+    private int spreadTicks = 20;
+
+    private QuantityDistribution quantityDistribution = QuantityDistribution.UNIFORM;
+
+    @Positive(message = "Minimum quantity must be positive")
+    private long minQuantity = 100;
+
+    @Positive(message = "Maximum quantity must be positive")
+    private long maxQuantity = 2000;
+
+    // Relative shares of limit orders, market orders and cancels of the producer's own recent orders
+    @PositiveOrZero(message = "Limit ratio must not be negative")
+    private double limitRatio = 0.85;
+
+    @PositiveOrZero(message = "Market ratio must not be negative")
+    private double marketRatio = 0.05;
+
+    @PositiveOrZero(message = "Cancel ratio must not be negative")
+    private double cancelRatio = 0.10;
+
+    // Fixes the generated order flow; a random seed is used when absent
+    private Long seed;
+}
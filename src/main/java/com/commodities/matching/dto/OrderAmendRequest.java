@@ -0,0 +1,20 @@
+package com.commodities.matching.dto;
+
+import com.commodities.matching.model.Commodity;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.Data;
+
+@Data
+public class OrderAmendRequest {
+    
+    @NotNull(message = "Commodity is required")
+    private Commodity commodity;
+    
+    @Positive(message = "Price must be positive")
+    private double price;
+    
+    // New total quantity, including anything already executed
+    @Positive(message = "Quantity must be positive")
+    private long quantity;
+}
@@ -5,6 +5,7 @@ import com.commodities.matching.model.OrderSide;
 import com.commodities.matching.model.OrderType;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
 import lombok.Data;
 
 @Data
@@ -19,7 +20,8 @@ public class OrderRequest {
     @NotNull(message = "Order type is required")
     private OrderType type;
     
-    @Positive(message = "Price must be positive")
+    // Required only for limit orders; a market order may leave it out
+    @PositiveOrZero(message = "Price must not be negative")
     private double price;
     
     @Positive(message = "Quantity must be positive")
@@ -0,0 +1,293 @@
+package com.commodities.matching.engine;
+
+import com.commodities.matching.config.MatchingEngineProperties;
+import com.commodities.matching.metrics.LatencyStage;
+import com.commodities.matching.metrics.MetricsCollector;
+import com.commodities.matching.model.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+// Feeds a capture written by OrderCapture into a fresh engine, with no journal or listeners of
+// the application attached. At a speed of 1 events go in at their recorded pace, at N that pace
+// is compressed N times, and at 0 they go in as fast as the engine accepts them. The shard
+// files are merged by recorded time; each commodity's events keep their captured order, so the
+// books and trades come out the same whatever the sharding.
+//
+// Two replays of the same capture match exactly when their checksums do. The book checksum
+// covers every resting order in priority order; the trade checksum covers each commodity's
+// trades in sequence, leaving out trade ids and times.
+//
+// Usage: CaptureReplayer <capture directory> [speed, default max]
+public final class CaptureReplayer {
+    private static final Logger logger = LoggerFactory.getLogger(CaptureReplayer.class);
+    private static final Commodity[] COMMODITIES = Commodity.values();
+    private static final int READ_RECORDS = 1024;
+    private static final long SPIN_NANOS = 50_000;
+
+    private CaptureReplayer() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: CaptureReplayer <capture directory> [speed|max]");
+            System.exit(2);
+        }
+        double speed = args.length < 2 || args[1].equalsIgnoreCase("max") ? 0 : Double.parseDouble(args[1]);
+        MatchingEngineProperties properties = new MatchingEngineProperties();
+        properties.getSharding().setEnabled(true);
+        Report report = replay(Path.of(args[0]), speed, properties);
+        System.out.println(report);
+    }
+
+    // Only the disruptor, sharding and order book settings are taken from properties
+    public static Report replay(Path directory, double speed, MatchingEngineProperties properties) throws IOException {
+        if (speed < 0) {
+            throw new IllegalArgumentException("Replay speed must not be negative");
+        }
+        List<Reader> readers = openReaders(directory);
+        MatchingEngineProperties replayProperties = new MatchingEngineProperties();
+        replayProperties.setDisruptor(properties.getDisruptor());
+        replayProperties.setSharding(properties.getSharding());
+        replayProperties.setOrderBook(properties.getOrderBook());
+        MetricsCollector metricsCollector = new MetricsCollector(new SimpleMeterRegistry());
+        MatchingEngine engine = new MatchingEngine(metricsCollector, replayProperties);
+        TradeChecksums tradeChecksums = new TradeChecksums();
+        engine.addTradeListener(tradeChecksums::onTrade);
+        engine.init();
+
+        Report report = new Report();
+        report.capture = directory.toString();
+        report.speed = speed > 0 ? speed + "x" : "max";
+        try {
+            long start = System.nanoTime();
+            long maxLag = 0;
+            long lastOffset = 0;
+            while (true) {
+                Reader next = null;
+                for (Reader reader : readers) {
+                    if (reader.hasEvent && (next == null || reader.offsetNanos < next.offsetNanos)) {
+                        next = reader;
+                    }
+                }
+                if (next == null) {
+                    break;
+                }
+                if (speed > 0) {
+                    long due = start + (long) (next.offsetNanos / speed);
+                    long now = awaitTime(due);
+                    maxLag = Math.max(maxLag, now - due);
+                }
+                engine.publish(next.event);
+                lastOffset = Math.max(lastOffset, next.offsetNanos);
+                report.events++;
+                next.advance();
+            }
+            engine.awaitIdle();
+            long elapsed = System.nanoTime() - start;
+
+            report.capturedMillis = lastOffset / 1_000_000;
+            report.elapsedMillis = elapsed / 1_000_000;
+            report.eventsPerSecond = elapsed > 0 ? report.events * 1e9 / elapsed : 0;
+            report.maxScheduleLagMicros = maxLag / 1000.0;
+            report.latency = MetricsCollector.LatencyPercentiles.of(metricsCollector.getLatency(LatencyStage.END_TO_END));
+            report.trades = tradeChecksums.count();
+            report.tradeChecksum = tradeChecksums.combined();
+            report.bookChecksum = bookChecksum(engine);
+        } finally {
+            engine.shutdown();
+            for (Reader reader : readers) {
+                reader.close();
+            }
+        }
+        logger.info("Replayed {}", report);
+        return report;
+    }
+
+    private static List<Reader> openReaders(Path directory) throws IOException {
+        List<Reader> readers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(f -> f.getFileName().toString().endsWith(OrderCapture.SUFFIX)).sorted().toList()) {
+                readers.add(new Reader(file));
+            }
+        } catch (IOException e) {
+            for (Reader reader : readers) {
+                reader.close();
+            }
+            throw e;
+        }
+        if (readers.isEmpty()) {
+            throw new IllegalArgumentException("No capture files in " + directory);
+        }
+        return readers;
+    }
+
+    private static long awaitTime(long due) {
+        long now;
+        while ((now = System.nanoTime()) < due) {
+            if (due - now > 2 * SPIN_NANOS) {
+                LockSupport.parkNanos(due - now - SPIN_NANOS);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+        return now;
+    }
+
+    // Called once the engine is idle, so the books are not changing underneath
+    static String bookChecksum(MatchingEngine engine) {
+        CRC32C crc = new CRC32C();
+        ByteBuffer record = ByteBuffer.allocate(3 * Long.BYTES + 1);
+        for (Commodity commodity : COMMODITIES) {
+            OrderBook orderBook = engine.getOrderBook(commodity);
+            for (PriceLevel best : new PriceLevel[] { orderBook.getBestBidLevel(), orderBook.getBestAskLevel() }) {
+                for (PriceLevel level = best; level != null; level = level.next()) {
+                    for (Order order = level.peek(); order != null; order = order.getNext()) {
+                        record.clear();
+                        record.putLong(order.getOrderId()).put((byte) order.getSide().ordinal())
+                            .putLong(order.getPrice()).putLong(order.getRemainingQuantity());
+                        crc.update(record.array(), 0, record.position());
+                    }
+                }
+            }
+        }
+        return String.format("%08x", crc.getValue());
+    }
+
+    // One checksum per commodity, each updated only by the matching thread that owns it
+    private static final class TradeChecksums {
+        private final CRC32C[] crcs = new CRC32C[COMMODITIES.length];
+        private final ByteBuffer[] records = new ByteBuffer[COMMODITIES.length];
+        private final long[] counts = new long[COMMODITIES.length];
+
+        TradeChecksums() {
+            for (int i = 0; i < COMMODITIES.length; i++) {
+                crcs[i] = new CRC32C();
+                records[i] = ByteBuffer.allocate(4 * Long.BYTES);
+            }
+        }
+
+        void onTrade(Trade trade) {
+            int c = trade.getCommodity().ordinal();
+            ByteBuffer record = records[c];
+            record.clear();
+            record.putLong(trade.getBuyOrderId()).putLong(trade.getSellOrderId())
+                .putLong(trade.getPrice()).putLong(trade.getQuantity());
+            crcs[c].update(record.array(), 0, record.position());
+            counts[c]++;
+        }
+
+        // Read after the engine is idle and its threads have handed over through the ring buffer
+        long count() {
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            }
+            return total;
+        }
+
+        String combined() {
+            CRC32C crc = new CRC32C();
+            ByteBuffer values = ByteBuffer.allocate(COMMODITIES.length * Long.BYTES);
+            for (CRC32C commodityCrc : crcs) {
+                values.putLong(commodityCrc.getValue());
+            }
+            crc.update(values.array());
+            return String.format("%08x", crc.getValue());
+        }
+    }
+
+    // Streams one shard's capture file, one event ahead
+    private static final class Reader implements AutoCloseable {
+        private final Path file;
+        private final FileChannel channel;
+        private final OrderEventCodec codec = new OrderEventCodec();
+        private final ByteBuffer buffer = ByteBuffer.allocate(READ_RECORDS * OrderCapture.RECORD_SIZE);
+        final MatchingEngine.OrderEvent event = new MatchingEngine.OrderEvent();
+        long offsetNanos;
+        boolean hasEvent;
+        private long expected;
+
+        Reader(Path file) throws IOException {
+            this.file = file;
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            buffer.flip();
+            fill();
+            if (buffer.remaining() < OrderCapture.HEADER_SIZE || buffer.getInt() != OrderCapture.MAGIC
+                || buffer.getInt() != OrderCapture.VERSION) {
+                channel.close();
+                throw new IllegalArgumentException(file + " is not an order capture");
+            }
+            advance();
+        }
+
+        // A torn or corrupt record ends the file, as the capture may have stopped mid-write
+        void advance() throws IOException {
+            if (buffer.remaining() < OrderCapture.RECORD_SIZE) {
+                fill();
+            }
+            hasEvent = false;
+            if (buffer.remaining() < OrderCapture.RECORD_SIZE) {
+                return;
+            }
+            long offset = buffer.getLong();
+            if (codec.decode(buffer, event) != expected) {
+                logger.warn("Capture {} ends with a damaged record after {} events", file, expected);
+                return;
+            }
+            expected++;
+            offsetNanos = offset;
+            hasEvent = true;
+        }
+
+        private void fill() throws IOException {
+            buffer.compact();
+            while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+            }
+            buffer.flip();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    public static final class Report {
+        public String capture;
+        public String speed;
+        public long events;
+        public long trades;
+        // Span of the capture, from its start to its last event
+        public long capturedMillis;
+        public long elapsedMillis;
+        public double eventsPerSecond;
+        // How far behind the recorded pace events went in; only set when paced
+        public double maxScheduleLagMicros;
+        public MetricsCollector.LatencyPercentiles latency;
+        public String bookChecksum;
+        public String tradeChecksum;
+
+        @Override
+        public String toString() {
+            return String.format("%s at %s: %d events (%d ms captured) in %d ms, %.0f events/s, max lag %.1f us, "
+                    + "latency p50 %.1f us p99 %.1f us p99.9 %.1f us max %.1f us, %d trades, "
+                    + "book checksum %s, trade checksum %s",
+                capture, speed, events, capturedMillis, elapsedMillis, eventsPerSecond, maxScheduleLagMicros,
+                latency.p50Micros, latency.p99Micros, latency.p999Micros, latency.maxMicros, trades,
+                bookChecksum, tradeChecksum);
+        }
+    }
+}
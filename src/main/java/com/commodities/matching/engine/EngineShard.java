@@ -0,0 +1,346 @@
+package com.commodities.matching.engine;
+
+import com.commodities.matching.config.MatchingEngineProperties;
+import com.commodities.matching.config.MatchingEngineProperties.WaitStrategyType;
+import com.commodities.matching.model.Commodity;
+import com.lmax.disruptor.*;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.EventHandlerGroup;
+import net.openhft.affinity.AffinityLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// A ring buffer and its single matching thread for a group of commodities. Every event
+// for a commodity goes through the same shard, so per-instrument ordering is the ring
+// buffer's publication order and each book still has exactly one writer.
+//
+// Events flow through a staged pipeline: the journal and the replicator see each event in
+// parallel, and the matcher is gated on both, so nothing changes book state before it has
+// been recorded.
+//
+// A stage that throws fails the whole shard: from then on every stage skips its events, so the
+// ring keeps draining and shutdown completes, but nothing more is recorded or matched, and the
+// engine rejects new input for the shard.
+final class EngineShard {
+    private static final Logger logger = LoggerFactory.getLogger(EngineShard.class);
+    private static final long PHASED_SPIN_MICROS = 100;
+    private static final long PHASED_YIELD_MICROS = 1000;
+
+    private final String name;
+    private final List<Commodity> commodities;
+    private Disruptor<MatchingEngine.OrderEvent> disruptor;
+    private RingBuffer<MatchingEngine.OrderEvent> ringBuffer;
+    private InputJournal journal;
+    private OrderCapture capture;
+    // Journal sequence of ring sequence 0, so the matcher sees sequences that survive restarts
+    private long sequenceOffset;
+    // Only touched by the matching thread
+    long eventsSinceSnapshot;
+    // Each shard hands out its own ids, offset + 1, offset + 1 + stride, ..., so they never depend on
+    // how shards interleave and a shard's snapshot plus its journal restore the counter exactly
+    private int tradeIdOffset;
+    private int tradeIdStride = 1;
+    private long nextTradeId = 1;
+    private volatile Throwable failure;
+
+    EngineShard(String name, List<Commodity> commodities) {
+        this.name = name;
+        this.commodities = List.copyOf(commodities);
+    }
+
+    // A null journal, Replicator.NONE and a null capture drop their stages; a negative cpu leaves
+    // the matcher unpinned. A replayed journal must be passed in already recovered, positioned for appending.
+    void start(EventHandler<MatchingEngine.OrderEvent> matcher, MatchingEngineProperties.Disruptor settings, int cpu,
+               InputJournal journal, Replicator replicator, OrderCapture capture) {
+        this.journal = journal;
+        this.capture = capture;
+        this.sequenceOffset = journal != null ? journal.nextSequence() : 0;
+        // Distinct until each stage renames its thread for itself on start
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = r -> {
+            Thread t = new Thread(r);
+            t.setName(name + "-stage-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+
+        disruptor = new Disruptor<>(
+            MatchingEngine.OrderEvent::new,
+            settings.getRingBufferSize(),
+            threadFactory,
+            settings.getProducerType(),
+            createWaitStrategy(settings.getWaitStrategy())
+        );
+        disruptor.setDefaultExceptionHandler(new FailShard());
+
+        List<EventHandler<MatchingEngine.OrderEvent>> stages = new ArrayList<>();
+        if (journal != null) {
+            stages.add(new JournalStage(name + "-journal", journal));
+        }
+        if (replicator != Replicator.NONE) {
+            stages.add(new ReplicationStage(name + "-replicator", name, replicator, sequenceOffset));
+        }
+        MatchStage matchStage = new MatchStage(name, cpu, matcher, sequenceOffset);
+        if (stages.isEmpty()) {
+            disruptor.handleEventsWith(matchStage);
+        } else {
+            // Joined group by group, since a generic array of the stages cannot be created without a raw type
+            EventHandlerGroup<MatchingEngine.OrderEvent> gates = disruptor.handleEventsWith(stages.get(0));
+            for (int i = 1; i < stages.size(); i++) {
+                gates = gates.and(disruptor.handleEventsWith(stages.get(i)));
+            }
+            gates.then(matchStage);
+        }
+        // Not a dependency of the matcher, so recording never delays matching; it only holds
+        // back producers if it falls a whole ring buffer behind
+        if (capture != null) {
+            disruptor.handleEventsWith(new CaptureStage(name + "-capture", capture));
+        }
+        disruptor.start();
+        ringBuffer = disruptor.getRingBuffer();
+    }
+
+    // The strategy belongs to the ring buffer, so every stage waits with it. The journal and the
+    // replicator gate the matcher, so under BUSY_SPIN they must spin as well or their wake-up
+    // would become the matcher's; only the matcher is pinned.
+    static WaitStrategy createWaitStrategy(WaitStrategyType type) {
+        return switch (type) {
+            case BLOCKING -> new BlockingWaitStrategy();
+            case SLEEPING -> new SleepingWaitStrategy();
+            case YIELDING -> new YieldingWaitStrategy();
+            // Spins, then yields, then parks, so an idle engine costs little but a busy one wakes fast
+            case PHASED_BACKOFF -> PhasedBackoffWaitStrategy.withLiteLock(
+                PHASED_SPIN_MICROS, PHASED_YIELD_MICROS, TimeUnit.MICROSECONDS);
+            case BUSY_SPIN -> new BusySpinWaitStrategy();
+        };
+    }
+
+    void shutdown() {
+        if (disruptor != null) {
+            disruptor.shutdown();
+        }
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                logger.error("Failed to close journal for {}", name, e);
+            }
+        }
+        if (capture != null) {
+            try {
+                capture.close();
+            } catch (IOException e) {
+                logger.error("Failed to close order capture for {}", name, e);
+            }
+        }
+    }
+
+    // Called before the matching thread starts
+    void assignTradeIds(int offset, int stride) {
+        this.tradeIdOffset = offset;
+        this.tradeIdStride = stride;
+        this.nextTradeId = offset + 1;
+    }
+
+    // Only called on the matching thread
+    long nextTradeId() {
+        long tradeId = nextTradeId;
+        nextTradeId += tradeIdStride;
+        return tradeId;
+    }
+
+    long getNextTradeId() {
+        return nextTradeId;
+    }
+
+    // Rounded up into this shard's range, in case the snapshot was taken with a different layout
+    void restoreNextTradeId(long next) {
+        long first = tradeIdOffset + 1;
+        nextTradeId = next <= first ? first : first + (next - first + tradeIdStride - 1) / tradeIdStride * tradeIdStride;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    List<Commodity> getCommodities() {
+        return commodities;
+    }
+
+    RingBuffer<MatchingEngine.OrderEvent> getRingBuffer() {
+        return ringBuffer;
+    }
+
+    // Null while the shard is healthy
+    Throwable getFailure() {
+        return failure;
+    }
+
+    // The Disruptor's default handler would halt the stage's processor, and with it every stage
+    // gated on it and, once the ring fills, every producer. Recording the failure and returning lets
+    // the processor move on; the failure is visible to the matcher before the event's sequence is.
+    private final class FailShard implements ExceptionHandler<MatchingEngine.OrderEvent> {
+        @Override
+        public void handleEventException(Throwable ex, long sequence, MatchingEngine.OrderEvent event) {
+            if (failure == null) {
+                failure = ex;
+                logger.error("Shard {} stopped matching at sequence {}; new input is rejected",
+                    name, sequenceOffset + sequence, ex);
+            }
+        }
+
+        @Override
+        public void handleOnStartException(Throwable ex) {
+            logger.error("Failed to start a stage of shard {}", name, ex);
+        }
+
+        @Override
+        public void handleOnShutdownException(Throwable ex) {
+            logger.error("Failed to stop a stage of shard {}", name, ex);
+        }
+    }
+
+    // Threads are named and pinned from inside the stage, since the Disruptor's
+    // thread factory cannot tell which stage a thread is for
+    private abstract class Stage implements EventHandler<MatchingEngine.OrderEvent>, LifecycleAware {
+        private final String threadName;
+
+        Stage(String threadName) {
+            this.threadName = threadName;
+        }
+
+        @Override
+        public void onStart() {
+            Thread.currentThread().setName(threadName);
+        }
+
+        @Override
+        public void onShutdown() {
+        }
+
+        @Override
+        public final void onEvent(MatchingEngine.OrderEvent event, long sequence, boolean endOfBatch) throws Exception {
+            if (failure == null) {
+                process(event, sequence, endOfBatch);
+            }
+        }
+
+        abstract void process(MatchingEngine.OrderEvent event, long sequence, boolean endOfBatch) throws Exception;
+    }
+
+    // A failed journal write fails the shard before the matcher can see the event, so an event
+    // that could not be recorded is never applied to the books
+    private final class JournalStage extends Stage {
+        private final InputJournal journal;
+
+        JournalStage(String threadName, InputJournal journal) {
+            super(threadName);
+            this.journal = journal;
+        }
+
+        @Override
+        void process(MatchingEngine.OrderEvent event, long sequence, boolean endOfBatch) {
+            try {
+                journal.append(event);
+                if (endOfBatch) {
+                    journal.flush();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Journal write failed at sequence " + sequence, e);
+            }
+        }
+    }
+
+    private final class ReplicationStage extends Stage {
+        private final String shard;
+        private final Replicator replicator;
+        private final long sequenceOffset;
+        private final OrderEventCodec codec = new OrderEventCodec();
+        private final ByteBuffer record = ByteBuffer.allocateDirect(OrderEventCodec.RECORD_SIZE);
+
+        ReplicationStage(String threadName, String shard, Replicator replicator, long sequenceOffset) {
+            super(threadName);
+            this.shard = shard;
+            this.replicator = replicator;
+            this.sequenceOffset = sequenceOffset;
+        }
+
+        @Override
+        void process(MatchingEngine.OrderEvent event, long sequence, boolean endOfBatch) {
+            record.clear();
+            codec.encode(event, sequenceOffset + sequence, record);
+            record.flip();
+            replicator.replicate(shard, record);
+            if (endOfBatch) {
+                replicator.flush();
+            }
+        }
+    }
+
+    private final class CaptureStage extends Stage {
+        private final OrderCapture capture;
+
+        CaptureStage(String threadName, OrderCapture capture) {
+            super(threadName);
+            this.capture = capture;
+        }
+
+        @Override
+        void process(MatchingEngine.OrderEvent event, long sequence, boolean endOfBatch) {
+            capture.append(event);
+            if (endOfBatch) {
+                capture.flush();
+            }
+        }
+    }
+
+    private final class MatchStage extends Stage {
+        private final int cpu;
+        private final EventHandler<MatchingEngine.OrderEvent> matcher;
+        private final long sequenceOffset;
+        private AffinityLock lock;
+
+        MatchStage(String threadName, int cpu, EventHandler<MatchingEngine.OrderEvent> matcher, long sequenceOffset) {
+            super(threadName);
+            this.cpu = cpu;
+            this.matcher = matcher;
+            this.sequenceOffset = sequenceOffset;
+        }
+
+        @Override
+        public void onStart() {
+            super.onStart();
+            if (cpu < 0) {
+                return;
+            }
+            lock = AffinityLock.acquireLock(cpu);
+            if (lock.isBound()) {
+                logger.info("Matching thread {} pinned to cpu {}", Thread.currentThread().getName(), lock.cpuId());
+            } else {
+                logger.warn("Matching thread {} could not be pinned to cpu {}, running unpinned",
+                    Thread.currentThread().getName(), cpu);
+            }
+        }
+
+        @Override
+        public void onShutdown() {
+            if (lock != null) {
+                lock.release();
+            }
+        }
+
+        @Override
+        void process(MatchingEngine.OrderEvent event, long sequence, boolean endOfBatch) throws Exception {
+            matcher.onEvent(event, sequenceOffset + sequence, endOfBatch);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.commodities.matching.engine;
+
+import com.lmax.disruptor.EventHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Append-only log of a shard's input events, written through memory-mapped segment files
+// that roll over when full. Records carry a journal sequence that keeps counting across
+// restarts, and each segment is named after the sequence of its first record.
+//
+// A write lands in the page cache as soon as it is copied into the mapping, so a killed
+// process loses nothing; fsync additionally forces each batch to the device.
+final class InputJournal implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(InputJournal.class);
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path directory;
+    private final int segmentCapacity;
+    private final boolean fsync;
+    private final OrderEventCodec codec = new OrderEventCodec();
+
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long nextSequence;
+    private boolean recovered;
+
+    InputJournal(Path directory, long segmentSize, boolean fsync) throws IOException {
+        long records = segmentSize / OrderEventCodec.RECORD_SIZE;
+        if (records < 1 || records * OrderEventCodec.RECORD_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Journal segment size " + segmentSize + " is out of range");
+        }
+        Files.createDirectories(directory);
+        this.directory = directory;
+        this.segmentCapacity = (int) records * OrderEventCodec.RECORD_SIZE;
+        this.fsync = fsync;
+    }
+
+    long replay(EventHandler<MatchingEngine.OrderEvent> handler) throws Exception {
+        return replay(-1, handler);
+    }
+
+    // Feeds every intact record from fromSequence on (or from the start, if negative) to the
+    // handler and leaves the journal positioned to append after the last one. Reading stops at
+    // the first torn, corrupt or out-of-sequence record; anything after it is overwritten by
+    // new appends. Returns the number replayed.
+    long replay(long fromSequence, EventHandler<MatchingEngine.OrderEvent> handler) throws Exception {
+        if (recovered) {
+            throw new IllegalStateException("Journal " + directory + " has already been replayed");
+        }
+        recovered = true;
+
+        List<Path> segments = segmentFiles();
+        MatchingEngine.OrderEvent event = new MatchingEngine.OrderEvent();
+        long expected = fromSequence >= 0 ? fromSequence : segments.isEmpty() ? 0 : firstSequence(segments.get(0));
+        long replayed = 0;
+        int next = 0;
+        Path last = null;
+        int lastPosition = 0;
+
+        // Start in the segment holding fromSequence, skipping straight to its record
+        while (next + 1 < segments.size() && firstSequence(segments.get(next + 1)) <= expected) {
+            next++;
+        }
+        if (!segments.isEmpty() && firstSequence(segments.get(next)) > expected) {
+            throw new IllegalStateException("Journal " + directory + " does not reach back to sequence " + expected);
+        }
+
+        while (next < segments.size()) {
+            Path file = segments.get(next);
+            long first = firstSequence(file);
+            if (last != null ? first != expected : first > expected) {
+                break;
+            }
+            next++;
+            boolean complete;
+            try (FileChannel readChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer mapped = readChannel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    Math.min(readChannel.size(), segmentCapacity));
+                mapped.position((int) Math.min((expected - first) * OrderEventCodec.RECORD_SIZE, mapped.limit()));
+                while (true) {
+                    int position = mapped.position();
+                    if (codec.decode(mapped, event) != expected) {
+                        mapped.position(position);
+                        break;
+                    }
+                    handler.onEvent(event, expected, false);
+                    expected++;
+                    replayed++;
+                }
+                last = file;
+                lastPosition = mapped.position();
+                complete = mapped.remaining() < OrderEventCodec.RECORD_SIZE;
+            }
+            if (!complete) {
+                break;
+            }
+        }
+
+        // Whatever follows the last intact record cannot be trusted, and must not be mistaken
+        // for valid records once new appends reach it
+        for (int i = next; i < segments.size(); i++) {
+            logger.warn("Discarding journal segment {} that does not continue from sequence {}",
+                segments.get(i), expected);
+            Files.delete(segments.get(i));
+        }
+
+        nextSequence = expected;
+        if (last != null && lastPosition < segmentCapacity) {
+            openSegment(last, lastPosition);
+            while (segment.remaining() >= Long.BYTES) {
+                segment.putLong(0);
+            }
+            segment.position(lastPosition);
+        } else {
+            openSegment(directory.resolve(segmentName(nextSequence)), 0);
+        }
+        return replayed;
+    }
+
+    void append(MatchingEngine.OrderEvent event) throws IOException {
+        if (!segment.hasRemaining()) {
+            roll();
+        }
+        codec.encode(event, nextSequence++, segment);
+    }
+
+    void flush() {
+        if (fsync) {
+            segment.force();
+        }
+    }
+
+    // Sequence the next appended record will carry
+    long nextSequence() {
+        return nextSequence;
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    private void roll() throws IOException {
+        segment.force();
+        channel.close();
+        openSegment(directory.resolve(segmentName(nextSequence)), 0);
+    }
+
+    private void openSegment(Path file, int position) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentCapacity);
+        segment.position(position);
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = new ArrayList<>();
+            files.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                .sorted()
+                .forEach(segments::add);
+            return segments;
+        }
+    }
+
+    private static String segmentName(long firstSequence) {
+        return String.format("%020d%s", firstSequence, SEGMENT_SUFFIX);
+    }
+
+    private static long firstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            segment.force();
+            channel.close();
+        }
+    }
+}
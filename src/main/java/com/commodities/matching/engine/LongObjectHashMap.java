@@ -0,0 +1,173 @@
+package com.commodities.matching.engine;
+
+import java.util.Arrays;
+
+// Open-addressing map from primitive long keys, so lookups never box the key.
+// Linear probing with backward-shift deletion keeps removal tombstone-free.
+// Not thread-safe: owned by a single writer.
+public final class LongObjectHashMap<V> {
+    private static final long EMPTY_KEY = 0L;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    // Key 0 doubles as the empty-slot marker, so its mapping is held out of line
+    private boolean hasZeroKey;
+    private V zeroValue;
+
+    public LongObjectHashMap() {
+        this(1024);
+    }
+
+    public LongObjectHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) - 1) << 2;
+        allocate(capacity);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        if (key == EMPTY_KEY) {
+            return hasZeroKey ? zeroValue : null;
+        }
+        int index = slot(key);
+        long existing;
+        while ((existing = keys[index]) != EMPTY_KEY) {
+            if (existing == key) {
+                return (V) values[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not supported");
+        }
+        if (key == EMPTY_KEY) {
+            V previous = zeroValue;
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return previous;
+        }
+        int index = slot(key);
+        long existing;
+        while ((existing = keys[index]) != EMPTY_KEY) {
+            if (existing == key) {
+                V previous = (V) values[index];
+                values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++size > resizeThreshold) {
+            rehash(keys.length << 1);
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        if (key == EMPTY_KEY) {
+            if (!hasZeroKey) {
+                return null;
+            }
+            V previous = zeroValue;
+            hasZeroKey = false;
+            zeroValue = null;
+            size--;
+            return previous;
+        }
+        int index = slot(key);
+        long existing;
+        while ((existing = keys[index]) != EMPTY_KEY) {
+            if (existing == key) {
+                V previous = (V) values[index];
+                size--;
+                compactFrom(index);
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY_KEY);
+        Arrays.fill(values, null);
+        hasZeroKey = false;
+        zeroValue = null;
+        size = 0;
+    }
+
+    // Shifts later entries of the probe run back into the freed slot
+    private void compactFrom(int freed) {
+        int index = freed;
+        while (true) {
+            index = (index + 1) & mask;
+            long key = keys[index];
+            if (key == EMPTY_KEY) {
+                break;
+            }
+            int home = slot(key);
+            if (((index - home) & mask) >= ((index - freed) & mask)) {
+                keys[freed] = key;
+                values[freed] = values[index];
+                freed = index;
+            }
+        }
+        keys[freed] = EMPTY_KEY;
+        values[freed] = null;
+    }
+
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(newCapacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != EMPTY_KEY) {
+                int index = slot(key);
+                while (keys[index] != EMPTY_KEY) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = key;
+                values[index] = oldValues[i];
+            }
+        }
+    }
+}
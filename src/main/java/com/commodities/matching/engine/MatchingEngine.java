@@ -2,62 +2,169 @@ package com.commodities.matching.engine;
 
 import com.commodities.matching.model.*;
 import com.commodities.matching.metrics.MetricsCollector;
-import com.lmax.disruptor.*;
-import com.lmax.disruptor.dsl.Disruptor;
-import com.lmax.disruptor.dsl.ProducerType;
+import com.commodities.matching.config.MatchingEngineProperties;
+import com.commodities.matching.exception.ConflictException;
+import com.lmax.disruptor.RingBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.stereotype.Service;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
+// A lifecycle bean so that it stops, and drains its rings, after the web server has stopped
+// taking orders but before any bean is destroyed: trade persistence and the other listeners
+// are still running while the last events are matched
 @Service
-public class MatchingEngine {
+public class MatchingEngine implements SmartLifecycle {
+    static final int LIFECYCLE_PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
     private static final Logger logger = LoggerFactory.getLogger(MatchingEngine.class);
-    private static final int RING_BUFFER_SIZE = 1024 * 64;
-    private final Map<Commodity, OrderBook> orderBooks = new ConcurrentHashMap<>();
-    private final AtomicLong tradeIdGenerator = new AtomicLong(1);
-    private final MetricsCollector metricsCollector;
+    private static final Commodity[] COMMODITIES = Commodity.values();
+    private final OrderBook[] orderBooks = new OrderBook[COMMODITIES.length];
+    // One flyweight per commodity, so each is only touched by the shard thread owning that book
+    private final Trade[] trades = new Trade[COMMODITIES.length];
+    // Time spent in listeners during the current event, per commodity for the same reason
+    private final long[] fanOutNanos = new long[COMMODITIES.length];
+    private final EngineShard[] shards;
+    private final EngineShard[] shardByCommodity = new EngineShard[COMMODITIES.length];
+    private final AtomicLong orderIdGenerator = new AtomicLong(1);
+    // Swapped for a discarded collector while the journal is replayed; see recover()
+    private MetricsCollector metricsCollector;
+    private final MatchingEngineProperties.Disruptor disruptorSettings;
+    private final MatchingEngineProperties.Journal journalSettings;
+    private final MatchingEngineProperties.Snapshot snapshotSettings;
+    private final MatchingEngineProperties.Capture captureSettings;
+    private final int viewDepth;
+    private final SnapshotStore snapshotStore;
+    private ScheduledExecutorService snapshotScheduler;
+    private final Replicator replicator;
+    
+    // Set while the journal is replayed at startup, so that listeners do not see history again
+    private boolean replaying;
+    private volatile boolean started;
+    private volatile boolean stopped;
     
-    private Disruptor<OrderEvent> disruptor;
-    private RingBuffer<OrderEvent> ringBuffer;
     private final List<Consumer<Trade>> tradeListeners = new CopyOnWriteArrayList<>();
     private final List<Consumer<Order>> orderListeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<OrderBook>> bookListeners = new CopyOnWriteArrayList<>();
 
     public MatchingEngine(MetricsCollector metricsCollector) {
+        this(metricsCollector, new MatchingEngineProperties());
+    }
+
+    public MatchingEngine(MetricsCollector metricsCollector, MatchingEngineProperties properties) {
+        this(metricsCollector, properties, Replicator.NONE);
+    }
+
+    @Autowired
+    public MatchingEngine(MetricsCollector metricsCollector, MatchingEngineProperties properties,
+                          ObjectProvider<Replicator> replicator) {
+        this(metricsCollector, properties, replicator.getIfAvailable(() -> Replicator.NONE));
+    }
+
+    public MatchingEngine(MetricsCollector metricsCollector, MatchingEngineProperties properties,
+                          Replicator replicator) {
         this.metricsCollector = metricsCollector;
-        for (Commodity commodity : Commodity.values()) {
-            orderBooks.put(commodity, new OrderBook(commodity));
+        this.disruptorSettings = properties.getDisruptor();
+        this.journalSettings = properties.getJournal();
+        this.snapshotSettings = properties.getSnapshot();
+        this.captureSettings = properties.getCapture();
+        this.viewDepth = properties.getOrderBook().getMaxDepth();
+        this.snapshotStore = journalSettings.isEnabled()
+            ? new SnapshotStore(Path.of(snapshotSettings.getDirectory()), snapshotSettings.getRetained())
+            : null;
+        this.replicator = replicator;
+        for (Commodity commodity : COMMODITIES) {
+            orderBooks[commodity.ordinal()] = new OrderBook(commodity, properties.getOrderBook().getInitialCapacity());
+            trades[commodity.ordinal()] = new Trade();
+        }
+        this.shards = createShards(properties.getSharding());
+        for (int i = 0; i < shards.length; i++) {
+            shards[i].assignTradeIds(i, shards.length);
+            for (Commodity commodity : shards[i].getCommodities()) {
+                shardByCommodity[commodity.ordinal()] = shards[i];
+            }
+        }
+        logger.info("MatchingEngine initialized with {} commodity order books on {} matching threads",
+            COMMODITIES.length, shards.length);
+    }
+
+    private static EngineShard[] createShards(MatchingEngineProperties.Sharding sharding) {
+        if (!sharding.isEnabled()) {
+            return new EngineShard[] { new EngineShard("matching-engine", List.of(COMMODITIES)) };
         }
-        logger.info("MatchingEngine initialized with {} commodity order books", Commodity.values().length);
+
+        List<EngineShard> shards = new ArrayList<>();
+        Set<Commodity> assigned = EnumSet.noneOf(Commodity.class);
+        for (Set<Commodity> group : sharding.getGroups()) {
+            List<Commodity> commodities = new ArrayList<>();
+            for (Commodity commodity : group) {
+                if (!assigned.add(commodity)) {
+                    throw new IllegalArgumentException("Commodity " + commodity + " is assigned to more than one shard");
+                }
+                commodities.add(commodity);
+            }
+            if (!commodities.isEmpty()) {
+                shards.add(new EngineShard(shardName(commodities), commodities));
+            }
+        }
+        for (Commodity commodity : COMMODITIES) {
+            if (!assigned.contains(commodity)) {
+                shards.add(new EngineShard(shardName(List.of(commodity)), List.of(commodity)));
+            }
+        }
+        return shards.toArray(new EngineShard[0]);
+    }
+
+    private static String shardName(List<Commodity> commodities) {
+        StringBuilder name = new StringBuilder("matching-engine");
+        for (Commodity commodity : commodities) {
+            name.append('-').append(commodity.getSymbol().toLowerCase());
+        }
+        return name.toString();
     }
 
     @PostConstruct
     public void init() {
         try {
-            logger.info("Initializing LMAX Disruptor with ring buffer size: {}", RING_BUFFER_SIZE);
-            ThreadFactory threadFactory = r -> {
-                Thread t = new Thread(r);
-                t.setName("matching-engine");
-                t.setDaemon(true);
-                return t;
-            };
-
-            disruptor = new Disruptor<>(
-                OrderEvent::new,
-                RING_BUFFER_SIZE,
-                threadFactory,
-                ProducerType.MULTI,
-                new BlockingWaitStrategy()
-            );
-
-            disruptor.handleEventsWith(this::handleOrderEvent);
-            disruptor.start();
-            ringBuffer = disruptor.getRingBuffer();
+            logger.info("Initializing LMAX Disruptor: ring buffer size {}, {} wait strategy, {} producer",
+                disruptorSettings.getRingBufferSize(), disruptorSettings.getWaitStrategy(),
+                disruptorSettings.getProducerType());
+            InputJournal[] journals = new InputJournal[shards.length];
+            if (journalSettings.isEnabled()) {
+                recover(journals);
+            }
+            OrderCapture[] captures = new OrderCapture[shards.length];
+            if (captureSettings.isEnabled()) {
+                startCapture(captures);
+            }
+            List<Integer> pinnedCpus = disruptorSettings.getPinnedCpus();
+            for (int i = 0; i < shards.length; i++) {
+                int cpu = i < pinnedCpus.size() ? pinnedCpus.get(i) : -1;
+                shards[i].start(this::handleOrderEvent, disruptorSettings, cpu, journals[i], replicator, captures[i]);
+                logger.info("Matching thread {} started for {}", shards[i].getName(), shards[i].getCommodities());
+            }
+            if (snapshotStore != null && !snapshotSettings.getInterval().isZero()) {
+                long intervalMillis = snapshotSettings.getInterval().toMillis();
+                snapshotScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread t = new Thread(r);
+                    t.setName("snapshot-scheduler");
+                    t.setDaemon(true);
+                    return t;
+                });
+                snapshotScheduler.scheduleWithFixedDelay(this::requestSnapshot, intervalMillis, intervalMillis,
+                    TimeUnit.MILLISECONDS);
+            }
+            started = true;
             logger.info("MatchingEngine started successfully");
         } catch (Exception e) {
             logger.error("Failed to initialize MatchingEngine", e);
@@ -65,120 +172,432 @@ public class MatchingEngine {
         }
     }
 
+    // Rebuilds every book from its shard's latest snapshot plus the journal after it, on this
+    // thread, before any matching thread starts and so before any new order can be accepted
+    private void recover(InputJournal[] journals) throws Exception {
+        long start = System.nanoTime();
+        long replayed = 0;
+        long restored = 0;
+        long[] maxOrderId = { orderIdGenerator.get() - 1 };
+        // Replayed events were counted when they were first matched, so they go to a collector
+        // nobody reads rather than counting again across every restart
+        MetricsCollector liveMetrics = metricsCollector;
+        metricsCollector = new MetricsCollector(new SimpleMeterRegistry());
+        replaying = true;
+        try {
+            for (int i = 0; i < shards.length; i++) {
+                journals[i] = new InputJournal(Path.of(journalSettings.getDirectory(), shards[i].getName()),
+                    journalSettings.getSegmentSize().toBytes(), journalSettings.isFsync());
+                long fromSequence = -1;
+                SnapshotStore.Snapshot snapshot = snapshotStore.loadLatest(shards[i].getName());
+                if (snapshot != null) {
+                    restored += snapshot.restore(orderBooks);
+                    fromSequence = snapshot.sequence;
+                    maxOrderId[0] = Math.max(maxOrderId[0], snapshot.nextOrderId - 1);
+                    shards[i].restoreNextTradeId(snapshot.nextTradeId);
+                }
+                replayed += journals[i].replay(fromSequence, (event, sequence, endOfBatch) -> {
+                    if (event.eventType == EventType.NEW) {
+                        maxOrderId[0] = Math.max(maxOrderId[0], event.orderId);
+                    }
+                    event.submissionTime = System.nanoTime();
+                    handleOrderEvent(event, sequence, endOfBatch);
+                });
+            }
+        } finally {
+            replaying = false;
+            metricsCollector = liveMetrics;
+        }
+        for (OrderBook orderBook : orderBooks) {
+            orderBook.publishView(viewDepth);
+        }
+        orderIdGenerator.set(maxOrderId[0] + 1);
+        logger.info("Recovered {} resting orders from snapshots and replayed {} journalled events in {} ms",
+            restored, replayed, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Opens a capture file per shard and seeds it with the books as recovered, so that replaying
+    // the capture into an empty engine starts from the same state. Runs before any matching thread.
+    private void startCapture(OrderCapture[] captures) throws IOException {
+        Path directory = OrderCapture.createDirectory(captureSettings.getDirectory());
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < shards.length; i++) {
+            captures[i] = new OrderCapture(directory, shards[i].getName(), startNanos);
+            for (Commodity commodity : shards[i].getCommodities()) {
+                OrderBook orderBook = orderBooks[commodity.ordinal()];
+                for (PriceLevel level = orderBook.getBestBidLevel(); level != null; level = level.next()) {
+                    for (Order order = level.peek(); order != null; order = order.getNext()) {
+                        captures[i].appendResting(order);
+                    }
+                }
+                for (PriceLevel level = orderBook.getBestAskLevel(); level != null; level = level.next()) {
+                    for (Order order = level.peek(); order != null; order = order.getNext()) {
+                        captures[i].appendResting(order);
+                    }
+                }
+            }
+        }
+        logger.info("Capturing input to {}", directory);
+    }
+
+    // Asks every shard to snapshot its books once it reaches this point in its input
+    public int requestSnapshot() {
+        if (snapshotStore == null) {
+            throw new ConflictException("Snapshots require the input journal to be enabled");
+        }
+        for (EngineShard shard : shards) {
+            publishEvent(EventType.SNAPSHOT, 0, shard.getCommodities().get(0), null, null, 0, 0);
+        }
+        return shards.length;
+    }
+
+    // Runs on the shard's matching thread between two events, so the image reflects exactly the
+    // input before nextSequence. Only the in-memory copy is taken here; the file is written
+    // in the background.
+    private void takeSnapshot(EngineShard shard, long nextSequence) {
+        long start = System.nanoTime();
+        List<OrderBook> books = new ArrayList<>(shard.getCommodities().size());
+        for (Commodity commodity : shard.getCommodities()) {
+            books.add(orderBooks[commodity.ordinal()]);
+        }
+        byte[] image = SnapshotStore.capture(nextSequence, orderIdGenerator.get(), shard.getNextTradeId(), books);
+        shard.eventsSinceSnapshot = 0;
+        snapshotStore.write(shard.getName(), nextSequence, image);
+        logger.info("Captured snapshot of {} at sequence {} in {} us",
+            shard.getName(), nextSequence, (System.nanoTime() - start) / 1000);
+    }
+
+    // Started by init(), before the context finishes refreshing
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void stop() {
+        shutdown();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return started && !stopped;
+    }
+
+    @Override
+    public int getPhase() {
+        return LIFECYCLE_PHASE;
+    }
+
+    // Waits for every published event to be matched; runs once, whether stopped as a lifecycle bean or destroyed
     @PreDestroy
-    public void shutdown() {
+    public synchronized void shutdown() {
+        if (stopped) {
+            return;
+        }
+        stopped = true;
         try {
             logger.info("Shutting down MatchingEngine...");
-            if (disruptor != null) {
-                disruptor.shutdown();
-                logger.info("MatchingEngine shutdown completed");
+            if (snapshotScheduler != null) {
+                snapshotScheduler.shutdownNow();
+            }
+            for (EngineShard shard : shards) {
+                shard.shutdown();
             }
+            if (snapshotStore != null) {
+                snapshotStore.close();
+            }
+            logger.info("MatchingEngine shutdown completed");
         } catch (Exception e) {
             logger.error("Error during MatchingEngine shutdown", e);
         }
     }
 
-    public void submitOrder(Order order) {
-        if (order == null) {
-            logger.warn("Attempted to submit null order");
-            throw new IllegalArgumentException("Order cannot be null");
+    // Copies the order into a preallocated ring buffer slot and returns the assigned order id
+    public long submitOrder(Commodity commodity, OrderSide side, OrderType type, long price, long quantity) {
+        validateNewOrder(commodity, side, type, price, quantity);
+        
+        long orderId = orderIdGenerator.getAndIncrement();
+        publishEvent(EventType.NEW, orderId, commodity, side, type, price, quantity);
+        
+        if (logger.isDebugEnabled()) {
+            logger.debug("Order submitted: {} {} {} @ {} qty:{}", orderId, side, commodity, price, quantity);
+        }
+        return orderId;
+    }
+
+    // Submits many orders with one id reservation and one multi-slot claim per shard; returns
+    // the assigned ids in input order. Orders for the same commodity are matched in list order.
+    public long[] submitOrders(List<NewOrder> orders) {
+        int count = orders.size();
+        for (NewOrder order : orders) {
+            validateNewOrder(order.getCommodity(), order.getSide(), order.getType(), order.getPrice(), order.getQuantity());
+            liveShard(order.getCommodity());
+        }
+        
+        long[] orderIds = new long[count];
+        long firstId = orderIdGenerator.getAndAdd(count);
+        for (int i = 0; i < count; i++) {
+            orderIds[i] = firstId + i;
         }
         
+        int[] indices = new int[count];
+        for (EngineShard shard : shards) {
+            int shardCount = 0;
+            for (int i = 0; i < count; i++) {
+                if (shardByCommodity[orders.get(i).getCommodity().ordinal()] == shard) {
+                    indices[shardCount++] = i;
+                }
+            }
+            publishBatch(shard.getRingBuffer(), orders, orderIds, indices, shardCount);
+        }
+        
+        if (logger.isDebugEnabled()) {
+            logger.debug("Batch of {} orders submitted with ids {}..{}", count, firstId, firstId + count - 1);
+        }
+        return orderIds;
+    }
+
+    // Claims contiguous ranges of at most one ring's worth of slots and publishes each range at once
+    private static void publishBatch(RingBuffer<OrderEvent> ringBuffer, List<NewOrder> orders, long[] orderIds,
+                                     int[] indices, int count) {
+        int published = 0;
+        while (published < count) {
+            int chunk = Math.min(count - published, ringBuffer.getBufferSize());
+            long hi = ringBuffer.next(chunk);
+            long lo = hi - chunk + 1;
+            try {
+                long timestamp = System.currentTimeMillis();
+                for (long sequence = lo; sequence <= hi; sequence++) {
+                    int index = indices[published++];
+                    NewOrder order = orders.get(index);
+                    fillEvent(ringBuffer.get(sequence), EventType.NEW, orderIds[index], order.getCommodity(),
+                        order.getSide(), order.getType(), order.getPrice(), order.getQuantity(), timestamp);
+                }
+            } finally {
+                ringBuffer.publish(lo, hi);
+            }
+        }
+    }
+
+    // A market order's price is never read, so only a limit order needs one
+    private static void validateNewOrder(Commodity commodity, OrderSide side, OrderType type, long price, long quantity) {
+        if (commodity == null || side == null || type == null) {
+            logger.warn("Attempted to submit order without commodity, side or type");
+            throw new IllegalArgumentException("Order commodity, side and type are required");
+        }
+        if (type == OrderType.LIMIT && price <= 0) {
+            throw new IllegalArgumentException("Limit order price must be positive");
+        }
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Order quantity must be positive");
+        }
+    }
+
+    // Cancels are sequenced with new orders, so they apply to the book state the submitter has seen
+    public void cancelOrder(Commodity commodity, long orderId) {
+        if (commodity == null) {
+            throw new IllegalArgumentException("Order commodity is required");
+        }
+        publishEvent(EventType.CANCEL, orderId, commodity, null, null, 0, 0);
+    }
+
+    // Amends a resting limit order to a new price and total quantity. Reducing the quantity at the
+    // same price keeps the order's time priority; any price change or increase re-queues it.
+    public void replaceOrder(Commodity commodity, long orderId, long price, long quantity) {
+        if (commodity == null) {
+            throw new IllegalArgumentException("Order commodity is required");
+        }
+        if (price <= 0) {
+            throw new IllegalArgumentException("Order price must be positive");
+        }
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Order quantity must be positive");
+        }
+        publishEvent(EventType.REPLACE, orderId, commodity, null, null, price, quantity);
+    }
+
+    private void publishEvent(EventType eventType, long orderId, Commodity commodity,
+                              OrderSide side, OrderType type, long price, long quantity) {
+        RingBuffer<OrderEvent> ringBuffer = liveShard(commodity).getRingBuffer();
         long sequence = ringBuffer.next();
         try {
-            OrderEvent event = ringBuffer.get(sequence);
-            event.order = order;
-            event.submissionTime = System.nanoTime();
-            logger.debug("Order submitted: {} {} {} @ {} qty:{}", 
-                order.getOrderId(), order.getSide(), order.getCommodity(), 
-                order.getPrice(), order.getQuantity());
-        } catch (Exception e) {
-            logger.error("Error submitting order: {}", order.getOrderId(), e);
-            throw e;
+            fillEvent(ringBuffer.get(sequence), eventType, orderId, commodity, side, type, price, quantity,
+                System.currentTimeMillis());
         } finally {
             ringBuffer.publish(sequence);
         }
     }
 
-    private void handleOrderEvent(OrderEvent event, long sequence, boolean endOfBatch) {
+    // Publishes a recorded event as it was, keeping its order id and timestamp; used for replay
+    void publish(OrderEvent recorded) {
+        RingBuffer<OrderEvent> ringBuffer = liveShard(recorded.commodity).getRingBuffer();
+        long sequence = ringBuffer.next();
+        try {
+            fillEvent(ringBuffer.get(sequence), recorded.eventType, recorded.orderId, recorded.commodity,
+                recorded.side, recorded.type, recorded.price, recorded.quantity, recorded.timestamp);
+        } finally {
+            ringBuffer.publish(sequence);
+        }
+    }
+
+    // A failed shard would drop the event unmatched, so it is refused before it is published
+    private EngineShard liveShard(Commodity commodity) {
+        EngineShard shard = shardByCommodity[commodity.ordinal()];
+        if (shard.getFailure() != null) {
+            throw new IllegalStateException("Matching for " + commodity + " has stopped: " + shard.getFailure().getMessage());
+        }
+        return shard;
+    }
+
+    // Waits until every event published so far has been through every stage of every shard
+    void awaitIdle() {
+        for (EngineShard shard : shards) {
+            RingBuffer<OrderEvent> ringBuffer = shard.getRingBuffer();
+            while (ringBuffer.remainingCapacity() < ringBuffer.getBufferSize()) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private static void fillEvent(OrderEvent event, EventType eventType, long orderId, Commodity commodity,
+                                  OrderSide side, OrderType type, long price, long quantity, long timestamp) {
+        event.eventType = eventType;
+        event.orderId = orderId;
+        event.commodity = commodity;
+        event.side = side;
+        event.type = type;
+        event.price = price;
+        event.quantity = quantity;
+        event.timestamp = timestamp;
+        event.submissionTime = System.nanoTime();
+    }
+
+    void handleOrderEvent(OrderEvent event, long sequence, boolean endOfBatch) {
         long startTime = System.nanoTime();
-        Order order = event.order;
+        // Time from publication to the matching thread picking the event up: the wait strategy's wake-up cost
+        metricsCollector.recordWakeupLatency(event.commodity, startTime - event.submissionTime);
+        OrderBook orderBook = orderBooks[event.commodity.ordinal()];
+        fanOutNanos[event.commodity.ordinal()] = 0;
         
+        orderBook.beginUpdate();
         try {
-            metricsCollector.recordOrderReceived(order.getCommodity());
-            notifyOrderListeners(order);
-
-            OrderBook orderBook = orderBooks.get(order.getCommodity());
-            
-            if (order.getType() == OrderType.MARKET) {
-                matchMarketOrder(order, orderBook, startTime);
-            } else {
-                matchLimitOrder(order, orderBook, startTime);
+            switch (event.eventType) {
+                case NEW -> handleNewOrder(event, orderBook, event.submissionTime);
+                case CANCEL -> handleCancel(event, orderBook);
+                case REPLACE -> handleReplace(event, orderBook, event.submissionTime);
+                case SNAPSHOT -> {
+                    if (!replaying) {
+                        takeSnapshot(shardByCommodity[event.commodity.ordinal()], sequence + 1);
+                    }
+                }
+            }
+            if (snapshotSettings.getEveryEvents() > 0 && snapshotStore != null && !replaying) {
+                EngineShard shard = shardByCommodity[event.commodity.ordinal()];
+                if (++shard.eventsSinceSnapshot >= snapshotSettings.getEveryEvents()) {
+                    takeSnapshot(shard, sequence + 1);
+                }
             }
 
             long processingTime = System.nanoTime() - startTime;
-            metricsCollector.recordOrderProcessingTime(processingTime);
+            metricsCollector.recordOrderProcessingTime(event.commodity, processingTime);
             
             if (logger.isDebugEnabled()) {
-                logger.debug("Order {} processed in {} ns", order.getOrderId(), processingTime);
+                logger.debug("{} {} processed in {} ns", event.eventType, event.orderId, processingTime);
             }
         } catch (Exception e) {
-            logger.error("Error processing order: {}", order.getOrderId(), e);
+            logger.error("Error processing {} for order: {}", event.eventType, event.orderId, e);
+        } finally {
+            if (orderBook.endUpdate() > 0) {
+                notifyBookListeners(orderBook);
+            }
+            if (!replaying && event.eventType != EventType.SNAPSHOT) {
+                long fanOut = fanOutNanos[event.commodity.ordinal()];
+                long endTime = System.nanoTime();
+                metricsCollector.recordLatencies(event.commodity, startTime - event.submissionTime,
+                    endTime - startTime - fanOut, fanOut, endTime - event.submissionTime);
+            }
+            if (endOfBatch) {
+                publishViews(shardByCommodity[event.commodity.ordinal()]);
+            }
         }
     }
 
-    private void matchMarketOrder(Order order, OrderBook orderBook, long startTime) {
-        Comparator<Order> comparator = order.getSide() == OrderSide.BUY 
-            ? Comparator.comparingDouble(Order::getPrice)
-            : Comparator.comparingDouble(Order::getPrice).reversed();
+    // Once per batch rather than per event, so a burst costs one copy of each book it touched
+    private void publishViews(EngineShard shard) {
+        for (Commodity commodity : shard.getCommodities()) {
+            orderBooks[commodity.ordinal()].publishView(viewDepth);
+        }
+    }
+
+    private void handleNewOrder(OrderEvent event, OrderBook orderBook, long submissionTime) {
+        Order order = orderBook.acquireOrder();
+        order.init(event.orderId, event.commodity, event.side, event.type,
+            event.price, event.quantity, event.timestamp);
         
-        List<Order> orders = order.getSide() == OrderSide.BUY 
-            ? orderBook.getSellOrders(100)
-            : orderBook.getBuyOrders(100);
+        metricsCollector.recordOrderReceived(order.getCommodity());
+        notifyOrderListeners(order);
         
-        PriorityQueue<Order> oppositeBook = new PriorityQueue<>(comparator);
-        oppositeBook.addAll(orders);
+        if (order.getType() == OrderType.MARKET) {
+            matchMarketOrder(order, orderBook, submissionTime);
+        } else {
+            matchLimitOrder(order, orderBook, submissionTime);
+        }
+    }
 
-        while (!oppositeBook.isEmpty() && order.getRemainingQuantity() > 0) {
-            Order counterOrder = oppositeBook.poll();
-            if (counterOrder.isFilled()) continue;
+    private void handleCancel(OrderEvent event, OrderBook orderBook) {
+        Order order = orderBook.removeOrder(event.orderId);
+        if (order == null) {
+            metricsCollector.recordCancelRejected(event.commodity);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Cancel rejected, order {} is not resting in {}", event.orderId, event.commodity);
+            }
+            return;
+        }
+        metricsCollector.recordOrderCancelled(event.commodity);
+        orderBook.releaseOrder(order);
+    }
 
-            executeTrade(order, counterOrder, counterOrder.getPrice(), startTime);
+    private void handleReplace(OrderEvent event, OrderBook orderBook, long submissionTime) {
+        Order order = orderBook.getOrder(event.orderId);
+        if (order == null) {
+            metricsCollector.recordCancelRejected(event.commodity);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Replace rejected, order {} is not resting in {}", event.orderId, event.commodity);
+            }
+            return;
         }
 
-        if (order.getRemainingQuantity() > 0) {
-            metricsCollector.recordPartialFill(order.getCommodity());
+        long executed = order.getQuantity() - order.getRemainingQuantity();
+        long remaining = event.quantity - executed;
+        if (remaining <= 0) {
+            // Amended down to or below what has already traded: nothing is left to rest
+            orderBook.releaseOrder(orderBook.removeOrder(order.getOrderId()));
+            metricsCollector.recordOrderCancelled(event.commodity);
+            return;
+        }
+
+        metricsCollector.recordOrderReplaced(event.commodity);
+        if (event.price == order.getPrice() && remaining <= order.getRemainingQuantity()) {
+            orderBook.amend(order, event.price, event.quantity);
         } else {
-            metricsCollector.recordCompleteFill(order.getCommodity());
+            orderBook.removeOrder(order.getOrderId());
+            order.amend(event.price, event.quantity);
+            matchLimitOrder(order, orderBook, submissionTime);
         }
     }
 
-    private void matchLimitOrder(Order order, OrderBook orderBook, long startTime) {
-        boolean matched = false;
+    private void matchMarketOrder(Order order, OrderBook orderBook, long submissionTime) {
+        sweep(order, orderBook, submissionTime);
 
-        if (order.getSide() == OrderSide.BUY) {
-            List<Order> sellOrders = new ArrayList<>(orderBook.getSellOrders(100));
-            for (Order sellOrder : sellOrders) {
-                if (sellOrder.isFilled()) continue;
-                if (order.getPrice() >= sellOrder.getPrice() && order.getRemainingQuantity() > 0) {
-                    executeTrade(order, sellOrder, sellOrder.getPrice(), startTime);
-                    matched = true;
-                } else {
-                    break;
-                }
-            }
+        if (order.getRemainingQuantity() > 0) {
+            metricsCollector.recordPartialFill(order.getCommodity());
         } else {
-            List<Order> buyOrders = new ArrayList<>(orderBook.getBuyOrders(100));
-            for (Order buyOrder : buyOrders) {
-                if (buyOrder.isFilled()) continue;
-                if (order.getPrice() <= buyOrder.getPrice() && order.getRemainingQuantity() > 0) {
-                    executeTrade(order, buyOrder, buyOrder.getPrice(), startTime);
-                    matched = true;
-                } else {
-                    break;
-                }
-            }
+            metricsCollector.recordCompleteFill(order.getCommodity());
         }
+        orderBook.releaseOrder(order);
+    }
+
+    private void matchLimitOrder(Order order, OrderBook orderBook, long submissionTime) {
+        boolean matched = sweep(order, orderBook, submissionTime);
 
         if (order.getRemainingQuantity() > 0) {
             orderBook.addOrder(order);
@@ -189,79 +608,189 @@ public class MatchingEngine {
             }
         } else {
             metricsCollector.recordCompleteFill(order.getCommodity());
+            orderBook.releaseOrder(order);
+        }
+    }
+
+    // Walks the live opposite side from the best level outward until the order is filled,
+    // the side is empty or, for limit orders, the next level no longer crosses
+    private boolean sweep(Order order, OrderBook orderBook, long submissionTime) {
+        boolean buy = order.getSide() == OrderSide.BUY;
+        boolean limit = order.getType() == OrderType.LIMIT;
+        boolean matched = false;
+
+        while (order.getRemainingQuantity() > 0) {
+            PriceLevel level = buy ? orderBook.getBestAskLevel() : orderBook.getBestBidLevel();
+            if (level == null) break;
+            if (limit && (buy ? order.getPrice() < level.getPrice() : order.getPrice() > level.getPrice())) break;
+
+            Order counterOrder = level.peek();
+            if (counterOrder.isFilled()) {
+                orderBook.releaseOrder(orderBook.removeOrder(counterOrder.getOrderId()));
+                continue;
+            }
+            executeTrade(order, counterOrder, level.getPrice(), submissionTime);
+            matched = true;
         }
+        return matched;
     }
 
-    private void executeTrade(Order aggressiveOrder, Order passiveOrder, double tradePrice, long startTime) {
+    private void executeTrade(Order aggressiveOrder, Order passiveOrder, long tradePrice, long submissionTime) {
         long tradeQuantity = Math.min(aggressiveOrder.getRemainingQuantity(), passiveOrder.getRemainingQuantity());
         
+        OrderBook orderBook = orderBooks[aggressiveOrder.getCommodity().ordinal()];
         aggressiveOrder.setRemainingQuantity(aggressiveOrder.getRemainingQuantity() - tradeQuantity);
-        passiveOrder.setRemainingQuantity(passiveOrder.getRemainingQuantity() - tradeQuantity);
-
-        OrderBook orderBook = orderBooks.get(aggressiveOrder.getCommodity());
-        
-        if (passiveOrder.isFilled()) {
-            orderBook.removeOrder(passiveOrder.getOrderId());
-        }
+        orderBook.fill(passiveOrder, tradeQuantity);
 
-        long processingTime = System.nanoTime() - startTime;
+        long processingTime = System.nanoTime() - submissionTime;
         
-        Trade trade = new Trade(
-            tradeIdGenerator.getAndIncrement(),
+        Trade trade = trades[aggressiveOrder.getCommodity().ordinal()];
+        trade.init(
+            shardByCommodity[aggressiveOrder.getCommodity().ordinal()].nextTradeId(),
             aggressiveOrder.getSide() == OrderSide.BUY ? aggressiveOrder.getOrderId() : passiveOrder.getOrderId(),
             aggressiveOrder.getSide() == OrderSide.SELL ? aggressiveOrder.getOrderId() : passiveOrder.getOrderId(),
             aggressiveOrder.getCommodity(),
             tradePrice,
             tradeQuantity,
+            System.currentTimeMillis(),
             processingTime
         );
 
-        double slippage = Math.abs(aggressiveOrder.getPrice() - tradePrice);
-        metricsCollector.recordTrade(trade, slippage);
+        long slippageTicks = Math.abs(aggressiveOrder.getPrice() - tradePrice);
+        metricsCollector.recordTrade(trade, slippageTicks);
         notifyTradeListeners(trade);
         
-        logger.debug("Trade executed: {} - {} @ {} qty:{} (slippage: {})", 
-            trade.getTradeId(), aggressiveOrder.getCommodity(), tradePrice, tradeQuantity, slippage);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Trade executed: {} - {} @ {} qty:{} (slippage: {} ticks)", 
+                trade.getTradeId(), aggressiveOrder.getCommodity(), tradePrice, tradeQuantity, slippageTicks);
+        }
+
+        if (passiveOrder.isFilled()) {
+            orderBook.releaseOrder(orderBook.removeOrder(passiveOrder.getOrderId()));
+        }
     }
 
+    // Listeners run on the matching thread and must copy anything they keep from the trade
     public void addTradeListener(Consumer<Trade> listener) {
         tradeListeners.add(listener);
     }
 
+    // Listeners run on the matching thread and must not keep the order beyond the callback
     public void addOrderListener(Consumer<Order> listener) {
         orderListeners.add(listener);
     }
 
+    // Called after each event that changed price levels, with the book's sequence and changed levels
+    // readable for the duration of the callback; runs on the matching thread
+    public void addBookListener(Consumer<OrderBook> listener) {
+        bookListeners.add(listener);
+    }
+
+    private void notifyBookListeners(OrderBook orderBook) {
+        if (replaying) {
+            return;
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < bookListeners.size(); i++) {
+            try {
+                bookListeners.get(i).accept(orderBook);
+            } catch (Exception e) {
+                logger.error("Error notifying book listener for {} at sequence {}",
+                    orderBook.getCommodity(), orderBook.getSequence(), e);
+            }
+        }
+        fanOutNanos[orderBook.getCommodity().ordinal()] += System.nanoTime() - start;
+    }
+
     private void notifyTradeListeners(Trade trade) {
-        for (Consumer<Trade> listener : tradeListeners) {
+        if (replaying) {
+            return;
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < tradeListeners.size(); i++) {
             try {
-                listener.accept(trade);
+                tradeListeners.get(i).accept(trade);
             } catch (Exception e) {
                 logger.error("Error notifying trade listener for trade: {}", trade.getTradeId(), e);
             }
         }
+        fanOutNanos[trade.getCommodity().ordinal()] += System.nanoTime() - start;
     }
 
     private void notifyOrderListeners(Order order) {
-        for (Consumer<Order> listener : orderListeners) {
+        if (replaying) {
+            return;
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < orderListeners.size(); i++) {
             try {
-                listener.accept(order);
+                orderListeners.get(i).accept(order);
             } catch (Exception e) {
                 logger.error("Error notifying order listener for order: {}", order.getOrderId(), e);
             }
         }
+        fanOutNanos[order.getCommodity().ordinal()] += System.nanoTime() - start;
     }
 
     public OrderBook getOrderBook(Commodity commodity) {
-        return orderBooks.get(commodity);
+        return orderBooks[commodity.ordinal()];
+    }
+
+    // Depth view as of the last batch that changed the book; the way for other threads to read a book
+    public BookDepth getBookView(Commodity commodity) {
+        return orderBooks[commodity.ordinal()].getView();
+    }
+
+    // Levels per side a book view holds; the most any depth query can return
+    public int getViewDepth() {
+        return viewDepth;
+    }
+
+    public MatchingEngineProperties.WaitStrategyType getWaitStrategy() {
+        return disruptorSettings.getWaitStrategy();
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    // Shards that stopped matching after a stage failed, with the cause; empty while all are healthy
+    public Map<String, String> getFailedShards() {
+        Map<String, String> failed = new LinkedHashMap<>();
+        for (EngineShard shard : shards) {
+            Throwable failure = shard.getFailure();
+            if (failure != null) {
+                failed.put(shard.getName(), String.valueOf(failure.getMessage()));
+            }
+        }
+        return failed;
     }
 
     public Map<Commodity, OrderBook> getAllOrderBooks() {
-        return new HashMap<>(orderBooks);
+        Map<Commodity, OrderBook> books = new EnumMap<>(Commodity.class);
+        for (OrderBook orderBook : orderBooks) {
+            books.put(orderBook.getCommodity(), orderBook);
+        }
+        return books;
+    }
+
+    enum EventType {
+        NEW,
+        CANCEL,
+        REPLACE,
+        SNAPSHOT
     }
 
+    // Flat, preallocated ring buffer slot; producers copy order fields in place
     static class OrderEvent {
-        Order order;
+        EventType eventType;
+        long orderId;
+        Commodity commodity;
+        OrderSide side;
+        OrderType type;
+        long price;
+        long quantity;
+        long timestamp;
         long submissionTime;
     }
 }
@@ -2,100 +2,216 @@ package com.commodities.matching.engine;
 
 import com.commodities.matching.model.*;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.PriorityBlockingQueue;
 
+// Mutated and read only by the matching thread that owns this book.
+//
+// The matching thread brackets each event with beginUpdate and endUpdate. The price levels
+// changed in between are collected as L2 deltas under a new book sequence. Other threads
+// read the immutable view from getView, which the matching thread republishes after each
+// batch that changed the book.
 public class OrderBook {
+    private static final int DEFAULT_INITIAL_CAPACITY = 1024;
+    private static final int INITIAL_CHANGE_CAPACITY = 16;
+
     private final Commodity commodity;
-    private final PriorityBlockingQueue<Order> buyOrders;
-    private final PriorityBlockingQueue<Order> sellOrders;
-    private final Map<Long, Order> orderMap;
+    private final PriceLadder bidLevels;
+    private final PriceLadder askLevels;
+    private final LongObjectHashMap<Order> orderIndex;
+    private final OrderPool orderPool;
+
+    private long sequence;
+    private boolean updating;
+    // Levels touched by the current update, resolved to their final state by endUpdate. A level
+    // may appear more than once; every entry carries the same final state.
+    private boolean[] changedBid = new boolean[INITIAL_CHANGE_CAPACITY];
+    private long[] changedPrice = new long[INITIAL_CHANGE_CAPACITY];
+    private long[] changedQuantity = new long[INITIAL_CHANGE_CAPACITY];
+    private int[] changedOrders = new int[INITIAL_CHANGE_CAPACITY];
+    private int changeCount;
+    // Running totals per side, kept in step with every add, remove, fill and amend
+    private int bidOrderCount;
+    private int askOrderCount;
+    private long bidQuantity;
+    private long askQuantity;
+    private volatile BookDepth view;
+    // Set by any change since the view was last published
+    private boolean viewStale;
 
     public OrderBook(Commodity commodity) {
+        this(commodity, DEFAULT_INITIAL_CAPACITY);
+    }
+
+    public OrderBook(Commodity commodity, int initialCapacity) {
         this.commodity = commodity;
-        this.buyOrders = new PriorityBlockingQueue<>(1000, (o1, o2) -> {
-            int priceCompare = Double.compare(o2.getPrice(), o1.getPrice());
-            if (priceCompare != 0) return priceCompare;
-            return Long.compare(o1.getNanoTime(), o2.getNanoTime());
-        });
-        
-        this.sellOrders = new PriorityBlockingQueue<>(1000, (o1, o2) -> {
-            int priceCompare = Double.compare(o1.getPrice(), o2.getPrice());
-            if (priceCompare != 0) return priceCompare;
-            return Long.compare(o1.getNanoTime(), o2.getNanoTime());
-        });
-        
-        this.orderMap = new ConcurrentHashMap<>();
+        this.bidLevels = new PriceLadder(true);
+        this.askLevels = new PriceLadder(false);
+        this.orderIndex = new LongObjectHashMap<>(initialCapacity);
+        this.orderPool = new OrderPool(initialCapacity);
+        this.view = BookDepth.empty(commodity);
     }
 
     public void addOrder(Order order) {
-        orderMap.put(order.getOrderId(), order);
-        if (order.getSide() == OrderSide.BUY) {
-            buyOrders.offer(order);
-        } else {
-            sellOrders.offer(order);
-        }
+        orderIndex.put(order.getOrderId(), order);
+        levelsFor(order.getSide())
+            .getOrCreate(order.getPrice())
+            .append(order);
+        adjustTotals(order.getSide(), 1, order.getRemainingQuantity());
+        markChanged(order);
     }
 
-    public void removeOrder(long orderId) {
-        Order order = orderMap.remove(orderId);
+    public Order removeOrder(long orderId) {
+        Order order = orderIndex.remove(orderId);
         if (order != null) {
-            if (order.getSide() == OrderSide.BUY) {
-                buyOrders.remove(order);
-            } else {
-                sellOrders.remove(order);
+            adjustTotals(order.getSide(), -1, -order.getRemainingQuantity());
+            markChanged(order);
+            PriceLevel level = order.getLevel();
+            level.remove(order);
+            if (level.isEmpty()) {
+                levelsFor(order.getSide()).remove(level);
             }
         }
+        return order;
     }
 
-    public Order getBestBid() {
-        return buyOrders.peek();
+    public Order getOrder(long orderId) {
+        return orderIndex.get(orderId);
     }
 
-    public Order getBestAsk() {
-        return sellOrders.peek();
+    // Executes quantity against a resting order, keeping its level's aggregate in step
+    void fill(Order order, long quantity) {
+        order.setRemainingQuantity(order.getRemainingQuantity() - quantity);
+        order.getLevel().adjustQuantity(-quantity);
+        adjustTotals(order.getSide(), 0, -quantity);
+        markChanged(order);
     }
 
-    public List<Order> getBuyOrders(int limit) {
-        List<Order> orders = new ArrayList<>();
-        PriorityBlockingQueue<Order> tempQueue = new PriorityBlockingQueue<>(
-            Math.max(buyOrders.size(), 1),
-            buyOrders.comparator()
-        );
-        tempQueue.addAll(buyOrders);
-        
-        while (!tempQueue.isEmpty() && orders.size() < limit) {
-            Order order = tempQueue.poll();
-            if (!order.isFilled()) {
-                orders.add(order);
-            }
+    // Amends a resting order without moving it in its queue; the price must not change
+    void amend(Order order, long price, long quantity) {
+        long before = order.getRemainingQuantity();
+        order.amend(price, quantity);
+        order.getLevel().adjustQuantity(order.getRemainingQuantity() - before);
+        adjustTotals(order.getSide(), 0, order.getRemainingQuantity() - before);
+        markChanged(order);
+    }
+
+    void beginUpdate() {
+        updating = true;
+        changeCount = 0;
+    }
+
+    // Resolves the changed levels and returns how many there are; if any, the sequence has advanced
+    int endUpdate() {
+        updating = false;
+        for (int i = 0; i < changeCount; i++) {
+            PriceLevel level = (changedBid[i] ? bidLevels : askLevels).get(changedPrice[i]);
+            changedQuantity[i] = level != null ? level.getQuantity() : 0;
+            changedOrders[i] = level != null ? level.size() : 0;
         }
-        return orders;
+        if (changeCount > 0) {
+            sequence++;
+        }
+        return changeCount;
     }
 
-    public List<Order> getSellOrders(int limit) {
-        List<Order> orders = new ArrayList<>();
-        PriorityBlockingQueue<Order> tempQueue = new PriorityBlockingQueue<>(
-            Math.max(sellOrders.size(), 1),
-            sellOrders.comparator()
-        );
-        tempQueue.addAll(sellOrders);
-        
-        while (!tempQueue.isEmpty() && orders.size() < limit) {
-            Order order = tempQueue.poll();
-            if (!order.isFilled()) {
-                orders.add(order);
-            }
+    // Sequence of the last update that changed a level; read on the matching thread
+    public long getSequence() {
+        return sequence;
+    }
+
+    // The levels changed by the last update, valid until the next one. A quantity of zero means
+    // the level is gone.
+    public int getChangedLevelCount() {
+        return changeCount;
+    }
+
+    public boolean isChangedLevelBid(int i) {
+        return changedBid[i];
+    }
+
+    public long getChangedLevelPrice(int i) {
+        return changedPrice[i];
+    }
+
+    public long getChangedLevelQuantity(int i) {
+        return changedQuantity[i];
+    }
+
+    public int getChangedLevelOrders(int i) {
+        return changedOrders[i];
+    }
+
+    // The most recently published view; safe to call from any thread
+    public BookDepth getView() {
+        return view;
+    }
+
+    // Replaces the view with the top levels per side if the book changed since the last one.
+    // Called by the matching thread between events, so the view matches its sequence.
+    boolean publishView(int levels) {
+        if (!viewStale) {
+            return false;
         }
-        return orders;
+        viewStale = false;
+        view = new BookDepth(commodity, sequence, System.currentTimeMillis(),
+            captureSide(bidLevels, levels, bidOrderCount, bidQuantity),
+            captureSide(askLevels, levels, askOrderCount, askQuantity));
+        return true;
     }
-    
-    public PriorityBlockingQueue<Order> getBuyQueue() {
-        return buyOrders;
+
+    private void markChanged(Order order) {
+        viewStale = true;
+        if (!updating) {
+            return;
+        }
+        boolean bid = order.getSide() == OrderSide.BUY;
+        long price = order.getPrice();
+        int last = changeCount - 1;
+        if (last >= 0 && changedBid[last] == bid && changedPrice[last] == price) {
+            return;
+        }
+        if (changeCount == changedPrice.length) {
+            int capacity = changeCount * 2;
+            changedBid = Arrays.copyOf(changedBid, capacity);
+            changedPrice = Arrays.copyOf(changedPrice, capacity);
+            changedQuantity = Arrays.copyOf(changedQuantity, capacity);
+            changedOrders = Arrays.copyOf(changedOrders, capacity);
+        }
+        changedBid[changeCount] = bid;
+        changedPrice[changeCount++] = price;
     }
-    
-    public PriorityBlockingQueue<Order> getSellQueue() {
-        return sellOrders;
+
+    Order acquireOrder() {
+        return orderPool.acquire();
+    }
+
+    void releaseOrder(Order order) {
+        orderPool.release(order);
+    }
+
+    public PriceLevel getBestBidLevel() {
+        return bidLevels.best();
+    }
+
+    public PriceLevel getBestAskLevel() {
+        return askLevels.best();
+    }
+
+    public Order getBestBid() {
+        PriceLevel level = getBestBidLevel();
+        return level != null ? level.peek() : null;
+    }
+
+    public Order getBestAsk() {
+        PriceLevel level = getBestAskLevel();
+        return level != null ? level.peek() : null;
+    }
+
+    public List<Order> getBuyOrders(int limit) {
+        return collectOrders(bidLevels, limit);
+    }
+
+    public List<Order> getSellOrders(int limit) {
+        return collectOrders(askLevels, limit);
     }
 
     public Commodity getCommodity() {
@@ -103,10 +219,70 @@ public class OrderBook {
     }
 
     public int getBuyOrderCount() {
-        return (int) buyOrders.stream().filter(o -> !o.isFilled()).count();
+        return bidOrderCount;
     }
 
     public int getSellOrderCount() {
-        return (int) sellOrders.stream().filter(o -> !o.isFilled()).count();
+        return askOrderCount;
+    }
+
+    // Remaining quantity resting on each side
+    public long getBuyQuantity() {
+        return bidQuantity;
+    }
+
+    public long getSellQuantity() {
+        return askQuantity;
+    }
+
+    public int getBidLevelCount() {
+        return bidLevels.size();
+    }
+
+    public int getAskLevelCount() {
+        return askLevels.size();
+    }
+
+    private PriceLadder levelsFor(OrderSide side) {
+        return side == OrderSide.BUY ? bidLevels : askLevels;
+    }
+
+    private static List<Order> collectOrders(PriceLadder levels, int limit) {
+        List<Order> orders = new ArrayList<>();
+        for (PriceLevel level = levels.best(); level != null; level = level.next()) {
+            for (Order order = level.peek(); order != null; order = order.getNext()) {
+                if (orders.size() >= limit) {
+                    return orders;
+                }
+                if (!order.isFilled()) {
+                    orders.add(order);
+                }
+            }
+        }
+        return orders;
+    }
+
+    private void adjustTotals(OrderSide side, int orders, long quantity) {
+        if (side == OrderSide.BUY) {
+            bidOrderCount += orders;
+            bidQuantity += quantity;
+        } else {
+            askOrderCount += orders;
+            askQuantity += quantity;
+        }
+    }
+
+    private static BookDepth.Side captureSide(PriceLadder ladder, int limit, int orderCount, long totalQuantity) {
+        int count = Math.min(limit, ladder.size());
+        long[] prices = new long[count];
+        long[] quantities = new long[count];
+        int[] orders = new int[count];
+        PriceLevel level = ladder.best();
+        for (int i = 0; i < count; i++, level = level.next()) {
+            prices[i] = level.getPrice();
+            quantities[i] = level.getQuantity();
+            orders[i] = level.size();
+        }
+        return new BookDepth.Side(prices, quantities, orders, ladder.size(), orderCount, totalQuantity);
     }
 }
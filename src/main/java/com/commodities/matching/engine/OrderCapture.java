@@ -0,0 +1,110 @@
+package com.commodities.matching.engine;
+
+import com.commodities.matching.model.Order;
+import com.commodities.matching.model.OrderType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+// Recording of one shard's input events with their submission times, so a session's exact
+// order flow can be fed back into a fresh engine by CaptureReplayer. Every shard of an engine
+// run writes its own file into the same directory, and all share one time origin.
+//
+// Layout: magic, version, then per event the nanoseconds since the capture started followed
+// by the event in the journal's record format.
+final class OrderCapture implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(OrderCapture.class);
+    static final int MAGIC = 0x43415054;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 2 * Integer.BYTES;
+    static final int RECORD_SIZE = Long.BYTES + OrderEventCodec.RECORD_SIZE;
+    static final String SUFFIX = ".cap";
+    private static final int BUFFER_RECORDS = 1024;
+    private static final DateTimeFormatter DIRECTORY_NAME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final Path file;
+    private final long startNanos;
+    private final FileChannel channel;
+    private final OrderEventCodec codec = new OrderEventCodec();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_RECORDS * RECORD_SIZE);
+    private long records;
+    private boolean failed;
+
+    OrderCapture(Path directory, String shard, long startNanos) throws IOException {
+        this.file = directory.resolve(shard + SUFFIX);
+        this.startNanos = startNanos;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+    }
+
+    // A new directory for one engine run, named after the time it started
+    static Path createDirectory(String root) throws IOException {
+        Files.createDirectories(Path.of(root));
+        String name = LocalDateTime.now().format(DIRECTORY_NAME);
+        Path directory = Path.of(root, name);
+        for (int i = 1; Files.exists(directory); i++) {
+            directory = Path.of(root, name + "-" + i);
+        }
+        return Files.createDirectory(directory);
+    }
+
+    // Records a resting order as a limit order at time zero, so a replay starts from the same books
+    void appendResting(Order order) {
+        MatchingEngine.OrderEvent event = new MatchingEngine.OrderEvent();
+        event.eventType = MatchingEngine.EventType.NEW;
+        event.orderId = order.getOrderId();
+        event.commodity = order.getCommodity();
+        event.side = order.getSide();
+        event.type = OrderType.LIMIT;
+        event.price = order.getPrice();
+        event.quantity = order.getRemainingQuantity();
+        event.timestamp = order.getTimestamp();
+        event.submissionTime = startNanos;
+        append(event);
+    }
+
+    // Called on the shard's capture thread. A failed write is logged and ends the capture rather
+    // than stopping the thread, which would leave the ring buffer unable to wrap.
+    void append(MatchingEngine.OrderEvent event) {
+        if (failed || event.eventType == MatchingEngine.EventType.SNAPSHOT) {
+            return;
+        }
+        if (buffer.remaining() < RECORD_SIZE) {
+            flush();
+        }
+        buffer.putLong(Math.max(0, event.submissionTime - startNanos));
+        codec.encode(event, records++, buffer);
+    }
+
+    void flush() {
+        if (failed) {
+            return;
+        }
+        try {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        } catch (IOException e) {
+            failed = true;
+            logger.error("Order capture to {} failed after {} events; capture stopped", file, records, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+        logger.info("Order capture {} closed with {} events", file, records);
+    }
+}
@@ -0,0 +1,70 @@
+package com.commodities.matching.engine;
+
+import com.commodities.matching.model.Commodity;
+import com.commodities.matching.model.OrderSide;
+import com.commodities.matching.model.OrderType;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+// Fixed-size binary form of a sequenced input event, shared by the journal and replication.
+// Enums are stored by ordinal, so constants may only ever be appended.
+final class OrderEventCodec {
+    static final int RECORD_SIZE = 48;
+    private static final int PAYLOAD_SIZE = RECORD_SIZE - Integer.BYTES;
+    private static final MatchingEngine.EventType[] EVENT_TYPES = MatchingEngine.EventType.values();
+    private static final Commodity[] COMMODITIES = Commodity.values();
+    private static final OrderSide[] SIDES = OrderSide.values();
+    private static final OrderType[] TYPES = OrderType.values();
+
+    private final CRC32C crc = new CRC32C();
+
+    // Writes one record at the buffer's position and advances it
+    void encode(MatchingEngine.OrderEvent event, long sequence, ByteBuffer buffer) {
+        int start = buffer.position();
+        buffer.putLong(sequence);
+        buffer.putLong(event.orderId);
+        buffer.putLong(event.price);
+        buffer.putLong(event.quantity);
+        buffer.putLong(event.timestamp);
+        buffer.put((byte) event.eventType.ordinal());
+        buffer.put((byte) event.commodity.ordinal());
+        buffer.put((byte) (event.side != null ? event.side.ordinal() + 1 : 0));
+        buffer.put((byte) (event.type != null ? event.type.ordinal() + 1 : 0));
+        buffer.putInt(checksum(buffer, start));
+    }
+
+    // Reads one record at the buffer's position into the event and returns its sequence, or -1
+    // without consuming anything if the bytes there are not a complete, intact record
+    long decode(ByteBuffer buffer, MatchingEngine.OrderEvent event) {
+        int start = buffer.position();
+        if (buffer.remaining() < RECORD_SIZE
+            || buffer.getInt(start + PAYLOAD_SIZE) != checksum(buffer, start)) {
+            return -1;
+        }
+        long sequence = buffer.getLong();
+        event.orderId = buffer.getLong();
+        event.price = buffer.getLong();
+        event.quantity = buffer.getLong();
+        event.timestamp = buffer.getLong();
+        event.eventType = EVENT_TYPES[buffer.get()];
+        event.commodity = COMMODITIES[buffer.get()];
+        int side = buffer.get();
+        event.side = side > 0 ? SIDES[side - 1] : null;
+        int type = buffer.get();
+        event.type = type > 0 ? TYPES[type - 1] : null;
+        buffer.getInt();
+        return sequence;
+    }
+
+    // Checksums the payload in place, leaving the buffer's position and limit as they were
+    private int checksum(ByteBuffer buffer, int start) {
+        int position = buffer.position();
+        int limit = buffer.limit();
+        buffer.limit(start + PAYLOAD_SIZE).position(start);
+        crc.reset();
+        crc.update(buffer);
+        buffer.limit(limit).position(position);
+        return (int) crc.getValue();
+    }
+}
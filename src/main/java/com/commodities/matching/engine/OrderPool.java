@@ -0,0 +1,34 @@
+package com.commodities.matching.engine;
+
+import com.commodities.matching.model.Order;
+import java.util.Arrays;
+
+// Recycles Order instances for a single owning thread. Orders are preallocated up
+// front and the pool only grows when more orders are live than it has ever held.
+final class OrderPool {
+    private Order[] free;
+    private int freeCount;
+
+    OrderPool(int preallocate) {
+        free = new Order[Math.max(preallocate, 16)];
+        for (int i = 0; i < preallocate; i++) {
+            free[freeCount++] = new Order();
+        }
+    }
+
+    Order acquire() {
+        return freeCount > 0 ? free[--freeCount] : new Order();
+    }
+
+    void release(Order order) {
+        order.reset();
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, freeCount * 2);
+        }
+        free[freeCount++] = order;
+    }
+
+    int available() {
+        return freeCount;
+    }
+}
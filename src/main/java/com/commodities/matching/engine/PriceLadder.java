@@ -0,0 +1,126 @@
+package com.commodities.matching.engine;
+
+import java.util.Arrays;
+
+// Sorted price levels for one side of a book, best price first. A skip list whose
+// nodes are the levels themselves: the best level is the head's first link, a new
+// level is linked in O(log L) expected time, and emptied levels are kept on a free
+// list so that the ladder stops allocating once it has seen its working depth.
+final class PriceLadder {
+    static final int MAX_HEIGHT = 16;
+
+    private final boolean descending;
+    private final PriceLevel head = new PriceLevel(MAX_HEIGHT);
+    private final PriceLevel[] update = new PriceLevel[MAX_HEIGHT];
+    private PriceLevel[] free = new PriceLevel[64];
+    private int freeCount;
+    private int height = 1;
+    private int size;
+    private long seed = 0x2545F4914F6CDD1DL;
+
+    PriceLadder(boolean descending) {
+        this.descending = descending;
+    }
+
+    PriceLevel best() {
+        return head.forward[0];
+    }
+
+    int size() {
+        return size;
+    }
+
+    PriceLevel get(long price) {
+        PriceLevel node = head;
+        for (int i = height - 1; i >= 0; i--) {
+            PriceLevel next;
+            while ((next = node.forward[i]) != null && isBetter(next.getPrice(), price)) {
+                node = next;
+            }
+        }
+        PriceLevel candidate = node.forward[0];
+        return candidate != null && candidate.getPrice() == price ? candidate : null;
+    }
+
+    PriceLevel getOrCreate(long price) {
+        PriceLevel node = findPredecessors(price);
+        PriceLevel candidate = node.forward[0];
+        if (candidate != null && candidate.getPrice() == price) {
+            return candidate;
+        }
+
+        int levelHeight = randomHeight();
+        if (levelHeight > height) {
+            for (int i = height; i < levelHeight; i++) {
+                update[i] = head;
+            }
+            height = levelHeight;
+        }
+
+        PriceLevel level = acquire();
+        level.init(price, levelHeight);
+        for (int i = 0; i < levelHeight; i++) {
+            level.forward[i] = update[i].forward[i];
+            update[i].forward[i] = level;
+        }
+        size++;
+        return level;
+    }
+
+    void remove(PriceLevel level) {
+        findPredecessors(level.getPrice());
+        for (int i = 0; i < level.height; i++) {
+            if (update[i].forward[i] == level) {
+                update[i].forward[i] = level.forward[i];
+            }
+        }
+        while (height > 1 && head.forward[height - 1] == null) {
+            height--;
+        }
+        size--;
+        release(level);
+    }
+
+    private PriceLevel findPredecessors(long price) {
+        PriceLevel node = head;
+        for (int i = height - 1; i >= 0; i--) {
+            PriceLevel next;
+            while ((next = node.forward[i]) != null && isBetter(next.getPrice(), price)) {
+                node = next;
+            }
+            update[i] = node;
+        }
+        return node;
+    }
+
+    private boolean isBetter(long price, long than) {
+        return descending ? price > than : price < than;
+    }
+
+    // Geometric height distribution with p = 1/4, from a xorshift generator
+    private int randomHeight() {
+        long x = seed;
+        x ^= x << 13;
+        x ^= x >>> 7;
+        x ^= x << 17;
+        seed = x;
+        int levelHeight = 1;
+        while ((x & 3) == 0 && levelHeight < MAX_HEIGHT) {
+            levelHeight++;
+            x >>>= 2;
+        }
+        return levelHeight;
+    }
+
+    private PriceLevel acquire() {
+        return freeCount > 0 ? free[--freeCount] : new PriceLevel(MAX_HEIGHT);
+    }
+
+    private void release(PriceLevel level) {
+        level.reset();
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, freeCount * 2);
+        }
+        free[freeCount++] = level;
+    }
+}
@@ -0,0 +1,104 @@
+package com.commodities.matching.engine;
+
+import com.commodities.matching.model.Order;
+
+// FIFO queue of resting orders at one price, linked through the orders themselves
+// so that appending and unlinking any order are constant time. Levels are also the
+// nodes of their side's PriceLadder and are recycled once they empty.
+public class PriceLevel {
+    private long price;
+    private Order head;
+    private Order tail;
+    private int size;
+    // Remaining quantity of every order queued here
+    private long quantity;
+
+    // Skip list links, best price first; forward[0] is the next worse level
+    final PriceLevel[] forward;
+    int height;
+
+    PriceLevel(int maxHeight) {
+        this.forward = new PriceLevel[maxHeight];
+    }
+
+    void init(long price, int height) {
+        this.price = price;
+        this.height = height;
+    }
+
+    void reset() {
+        price = 0;
+        head = null;
+        tail = null;
+        size = 0;
+        quantity = 0;
+        for (int i = 0; i < height; i++) {
+            forward[i] = null;
+        }
+        height = 0;
+    }
+
+    public long getPrice() {
+        return price;
+    }
+
+    // The next level away from the top of the book, or null at the end of the side
+    public PriceLevel next() {
+        return forward[0];
+    }
+
+    void append(Order order) {
+        order.setLevel(this);
+        order.setPrev(tail);
+        order.setNext(null);
+        if (tail == null) {
+            head = order;
+        } else {
+            tail.setNext(order);
+        }
+        tail = order;
+        size++;
+        quantity += order.getRemainingQuantity();
+    }
+
+    void remove(Order order) {
+        Order prev = order.getPrev();
+        Order next = order.getNext();
+        if (prev == null) {
+            head = next;
+        } else {
+            prev.setNext(next);
+        }
+        if (next == null) {
+            tail = prev;
+        } else {
+            next.setPrev(prev);
+        }
+        order.setLevel(null);
+        order.setPrev(null);
+        order.setNext(null);
+        size--;
+        quantity -= order.getRemainingQuantity();
+    }
+
+    // Keeps the aggregate in step when a queued order's remaining quantity changes in place
+    void adjustQuantity(long delta) {
+        quantity += delta;
+    }
+
+    public Order peek() {
+        return head;
+    }
+
+    public boolean isEmpty() {
+        return head == null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getQuantity() {
+        return quantity;
+    }
+}
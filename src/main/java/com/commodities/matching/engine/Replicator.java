@@ -0,0 +1,17 @@
+package com.commodities.matching.engine;
+
+import java.nio.ByteBuffer;
+
+// Ships sequenced input events to a standby. Runs as a pipeline stage in parallel with the
+// journal, and an event is only matched once every stage has seen it.
+public interface Replicator {
+
+    Replicator NONE = (shard, record) -> { };
+
+    // record holds one encoded event and is only valid for the duration of the call
+    void replicate(String shard, ByteBuffer record);
+
+    // Called at the end of every batch the stage receives, so sends can be coalesced
+    default void flush() {
+    }
+}
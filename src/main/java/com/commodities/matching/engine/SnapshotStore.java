@@ -0,0 +1,211 @@
+package com.commodities.matching.engine;
+
+import com.commodities.matching.model.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+// Compact binary images of a shard's order books. The image is captured on the matching
+// thread between two events, so it is consistent with a journal sequence, and is written
+// to disk on a background thread so matching only pauses for the in-memory copy.
+//
+// Layout: magic, version, journal sequence, next order id, the shard's next trade id, book count, then
+// per book the commodity and its resting orders in price-time priority, and a CRC32C.
+final class SnapshotStore implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotStore.class);
+    private static final int MAGIC = 0x534E4150;
+    private static final int VERSION = 1;
+    private static final String SUFFIX = ".snap";
+    private static final long CLOSE_TIMEOUT_SECONDS = 30;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + 3 * Long.BYTES + Integer.BYTES;
+    private static final int BOOK_HEADER_SIZE = 1 + Integer.BYTES;
+    private static final int ORDER_SIZE = 5 * Long.BYTES + 1;
+    private static final Commodity[] COMMODITIES = Commodity.values();
+    private static final OrderSide[] SIDES = OrderSide.values();
+
+    private final Path directory;
+    private final int retained;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r);
+        t.setName("snapshot-writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    SnapshotStore(Path directory, int retained) {
+        this.directory = directory;
+        this.retained = Math.max(1, retained);
+    }
+
+    // Called on the matching thread that owns the books
+    static byte[] capture(long sequence, long nextOrderId, long nextTradeId, List<OrderBook> books) {
+        int size = HEADER_SIZE + Integer.BYTES;
+        for (OrderBook book : books) {
+            size += BOOK_HEADER_SIZE + ORDER_SIZE * (countOrders(book.getBestBidLevel()) + countOrders(book.getBestAskLevel()));
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(sequence);
+        buffer.putLong(nextOrderId);
+        buffer.putLong(nextTradeId);
+        buffer.putInt(books.size());
+        for (OrderBook book : books) {
+            buffer.put((byte) book.getCommodity().ordinal());
+            buffer.putInt(countOrders(book.getBestBidLevel()) + countOrders(book.getBestAskLevel()));
+            putOrders(buffer, book.getBestBidLevel());
+            putOrders(buffer, book.getBestAskLevel());
+        }
+        buffer.putInt(checksum(buffer.array(), buffer.position()));
+        return buffer.array();
+    }
+
+    void write(String shard, long sequence, byte[] snapshot) {
+        writer.execute(() -> {
+            try {
+                Path shardDirectory = directory.resolve(shard);
+                Files.createDirectories(shardDirectory);
+                Path file = shardDirectory.resolve(String.format("%020d%s", sequence, SUFFIX));
+                Path temporary = shardDirectory.resolve(file.getFileName() + ".tmp");
+                Files.write(temporary, snapshot);
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                logger.info("Snapshot of {} at sequence {} written ({} bytes)", shard, sequence, snapshot.length);
+                prune(shardDirectory);
+            } catch (IOException e) {
+                logger.error("Failed to write snapshot of {} at sequence {}", shard, sequence, e);
+            }
+        });
+    }
+
+    // Newest intact snapshot for the shard, or null if there is none
+    Snapshot loadLatest(String shard) throws IOException {
+        List<Path> files = snapshotFiles(directory.resolve(shard));
+        for (int i = files.size() - 1; i >= 0; i--) {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(files.get(i)));
+            int payload = buffer.limit() - Integer.BYTES;
+            if (payload < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                || buffer.getInt(payload) != checksum(buffer.array(), payload)) {
+                logger.warn("Ignoring damaged snapshot {}", files.get(i));
+                continue;
+            }
+            buffer.position(2 * Integer.BYTES);
+            return new Snapshot(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer);
+        }
+        return null;
+    }
+
+    private void prune(Path shardDirectory) throws IOException {
+        List<Path> files = snapshotFiles(shardDirectory);
+        for (int i = 0; i < files.size() - retained; i++) {
+            Files.delete(files.get(i));
+        }
+    }
+
+    private static List<Path> snapshotFiles(Path shardDirectory) throws IOException {
+        if (!Files.isDirectory(shardDirectory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(shardDirectory)) {
+            List<Path> snapshots = new ArrayList<>();
+            files.filter(file -> file.getFileName().toString().endsWith(SUFFIX))
+                .sorted(Comparator.comparing(Path::getFileName))
+                .forEach(snapshots::add);
+            return snapshots;
+        }
+    }
+
+    private static int countOrders(PriceLevel best) {
+        int count = 0;
+        for (PriceLevel level = best; level != null; level = level.next()) {
+            count += level.size();
+        }
+        return count;
+    }
+
+    private static void putOrders(ByteBuffer buffer, PriceLevel best) {
+        for (PriceLevel level = best; level != null; level = level.next()) {
+            for (Order order = level.peek(); order != null; order = order.getNext()) {
+                buffer.putLong(order.getOrderId());
+                buffer.put((byte) order.getSide().ordinal());
+                buffer.putLong(order.getPrice());
+                buffer.putLong(order.getQuantity());
+                buffer.putLong(order.getRemainingQuantity());
+                buffer.putLong(order.getTimestamp());
+            }
+        }
+    }
+
+    private static int checksum(byte[] bytes, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+
+    // Waits a bounded time for queued snapshots to reach disk. An interrupt cuts the wait short
+    // and is passed on to the caller through the thread's interrupt status.
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                logger.warn("Snapshot writer did not finish within {} s", CLOSE_TIMEOUT_SECONDS);
+            }
+        } catch (InterruptedException e) {
+            logger.warn("Interrupted while waiting for the snapshot writer");
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static final class Snapshot {
+        final long sequence;
+        final long nextOrderId;
+        final long nextTradeId;
+        private final ByteBuffer books;
+
+        private Snapshot(long sequence, long nextOrderId, long nextTradeId, ByteBuffer books) {
+            this.sequence = sequence;
+            this.nextOrderId = nextOrderId;
+            this.nextTradeId = nextTradeId;
+            this.books = books;
+        }
+
+        // Re-adds every resting order in its original priority; books are indexed by commodity ordinal
+        int restore(OrderBook[] orderBooks) {
+            int restored = 0;
+            int bookCount = books.getInt();
+            for (int b = 0; b < bookCount; b++) {
+                Commodity commodity = COMMODITIES[books.get()];
+                OrderBook book = orderBooks[commodity.ordinal()];
+                int orderCount = books.getInt();
+                for (int i = 0; i < orderCount; i++) {
+                    long orderId = books.getLong();
+                    OrderSide side = SIDES[books.get()];
+                    long price = books.getLong();
+                    long quantity = books.getLong();
+                    long remaining = books.getLong();
+                    long timestamp = books.getLong();
+                    Order order = book.acquireOrder();
+                    order.init(orderId, commodity, side, OrderType.LIMIT, price, quantity, timestamp);
+                    order.setRemainingQuantity(remaining);
+                    book.addOrder(order);
+                }
+                restored += orderCount;
+            }
+            return restored;
+        }
+    }
+}
@@ -15,8 +15,8 @@ import java.time.Instant;
 @NoArgsConstructor
 public class TradeEntity {
     
+    // Assigned from the trade id rather than generated, so inserts can be sent as JDBC batches
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     
     @Column(nullable = false)
@@ -46,6 +46,7 @@ public class TradeEntity {
     public TradeEntity(Long tradeId, Long buyOrderId, Long sellOrderId, 
                       String commodity, Double price, Long quantity, 
                       Long processingTimeNanos) {
+        this.id = tradeId;
         this.tradeId = tradeId;
         this.buyOrderId = buyOrderId;
         this.sellOrderId = sellOrderId;
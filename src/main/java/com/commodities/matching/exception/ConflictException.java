@@ -0,0 +1,12 @@
+package com.commodities.matching.exception;
+
+// A request the engine cannot serve in its current configuration or state, such as a feature that
+// is disabled or a run already in progress; answered with 409. Any other IllegalStateException is
+// an internal failure and is answered with 500.
+public class ConflictException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    public ConflictException(String message) {
+        super(message);
+    }
+}
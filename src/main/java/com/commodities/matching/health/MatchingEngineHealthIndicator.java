@@ -6,6 +6,8 @@ import org.springframework.boot.actuate.health.Health;
 import org.springframework.boot.actuate.health.HealthIndicator;
 import org.springframework.stereotype.Component;
 
+import java.util.Map;
+
 @Component
 public class MatchingEngineHealthIndicator implements HealthIndicator {
     
@@ -29,6 +31,14 @@ public class MatchingEngineHealthIndicator implements HealthIndicator {
                     .build();
             }
             
+            Map<String, String> failedShards = matchingEngine.getFailedShards();
+            if (!failedShards.isEmpty()) {
+                return Health.down()
+                    .withDetail("reason", "Matching stopped after a pipeline failure")
+                    .withDetail("failedShards", failedShards)
+                    .build();
+            }
+            
             // Check latency performance
             double avgLatency = metrics.avgLatencyMicros;
             if (avgLatency > 1000) { // More than 1ms average
@@ -47,6 +57,9 @@ public class MatchingEngineHealthIndicator implements HealthIndicator {
                 .withDetail("totalOrders", metrics.totalOrders)
                 .withDetail("totalTrades", metrics.totalTrades)
                 .withDetail("orderBooks", matchingEngine.getAllOrderBooks().size())
+                .withDetail("matchingThreads", matchingEngine.getShardCount())
+                .withDetail("waitStrategy", matchingEngine.getWaitStrategy())
+                .withDetail("avgWakeupLatencyMicros", metrics.avgWakeupLatencyMicros)
                 .build();
                 
         } catch (Exception e) {
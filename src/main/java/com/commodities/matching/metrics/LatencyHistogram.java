@@ -0,0 +1,114 @@
+package com.commodities.matching.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Log-linear latency histogram in the style of HdrHistogram: values below 32 ns get a bucket
+// each, and every power of two above that is split into 32 buckets, so a reported value is
+// within about 3% of the recorded one. Values above about 18 minutes share the last bucket.
+//
+// A histogram has a single writer, the matching thread that owns its commodity. Recording is a
+// plain increment published with a release store, so it neither allocates nor contends. Readers
+// take a snapshot at any time; it may miss the latest few values.
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final long MAX_VALUE = (1L << 40) - 1;
+    static final int BUCKETS = bucketOf(MAX_VALUE) + 1;
+    // The total count and the maximum are kept after the buckets, in the same array
+    private static final int COUNT = BUCKETS;
+    private static final int MAX = BUCKETS + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS + 2);
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        int bucket = bucketOf(Math.min(value, MAX_VALUE));
+        counts.lazySet(bucket, counts.get(bucket) + 1);
+        if (value > counts.get(MAX)) {
+            counts.lazySet(MAX, value);
+        }
+        counts.lazySet(COUNT, counts.get(COUNT) + 1);
+    }
+
+    public Snapshot snapshot() {
+        Snapshot snapshot = new Snapshot();
+        snapshot.add(this);
+        return snapshot;
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    // Largest value that falls into the bucket
+    static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long top = SUB_BUCKETS + bucket % SUB_BUCKETS;
+        return ((top + 1) << shift) - 1;
+    }
+
+    // Point-in-time copy that can merge several histograms, e.g. all commodities of a stage
+    public static final class Snapshot {
+        private final long[] buckets = new long[BUCKETS];
+        private long count;
+        private long max;
+
+        public Snapshot add(LatencyHistogram histogram) {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] += histogram.counts.get(i);
+            }
+            count += histogram.counts.get(COUNT);
+            max = Math.max(max, histogram.counts.get(MAX));
+            return this;
+        }
+
+        // Values recorded since an earlier snapshot of the same histograms. A running maximum
+        // cannot be subtracted, so the maximum becomes the top of the highest occupied bucket.
+        public Snapshot since(Snapshot earlier) {
+            Snapshot delta = new Snapshot();
+            for (int i = 0; i < BUCKETS; i++) {
+                delta.buckets[i] = buckets[i] - earlier.buckets[i];
+                if (delta.buckets[i] > 0) {
+                    delta.max = Math.min(highestValueOf(i), max);
+                }
+            }
+            delta.count = count - earlier.count;
+            return delta;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        // Smallest bucket bound at or below which the given fraction of values fall; 0 if empty
+        public long getValueAtQuantile(double quantile) {
+            long total = 0;
+            for (long bucket : buckets) {
+                total += bucket;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueOf(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
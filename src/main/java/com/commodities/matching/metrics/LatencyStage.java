@@ -0,0 +1,23 @@
+package com.commodities.matching.metrics;
+
+// Where an order's time goes between submitOrder and the end of its handling
+public enum LatencyStage {
+    // From publication to the ring buffer until the matching thread picks the event up
+    QUEUE_WAIT("queue_wait"),
+    // Matching and book maintenance on the matching thread, excluding listeners
+    MATCH("match"),
+    // Trade, order and book listeners run by the matching thread
+    FAN_OUT("fan_out"),
+    // From submission until the event, including its listeners, is fully handled
+    END_TO_END("end_to_end");
+
+    private final String tag;
+
+    LatencyStage(String tag) {
+        this.tag = tag;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+}
@@ -0,0 +1,35 @@
+package com.commodities.matching.metrics;
+
+import java.util.function.LongSupplier;
+
+// A histogram's values over a trailing window, so exported percentiles follow the current tail
+// instead of the whole process lifetime. The histogram itself is never reset, since only its
+// matching thread may write it: the reader keeps copies of its cumulative counts and subtracts
+// the one taken a period or two ago. The window rolls forward when read, one period at a time,
+// and covers the last one to two periods.
+final class LatencyWindow {
+    private final LatencyHistogram histogram;
+    private final long periodNanos;
+    private final LongSupplier nanoClock;
+    private LatencyHistogram.Snapshot previousStart = new LatencyHistogram.Snapshot();
+    private LatencyHistogram.Snapshot currentStart = new LatencyHistogram.Snapshot();
+    private long rollAt;
+
+    LatencyWindow(LatencyHistogram histogram, long periodNanos, LongSupplier nanoClock) {
+        this.histogram = histogram;
+        this.periodNanos = periodNanos;
+        this.nanoClock = nanoClock;
+        this.rollAt = nanoClock.getAsLong() + periodNanos;
+    }
+
+    synchronized LatencyHistogram.Snapshot snapshot() {
+        LatencyHistogram.Snapshot latest = histogram.snapshot();
+        long now = nanoClock.getAsLong();
+        if (now - rollAt >= 0) {
+            previousStart = currentStart;
+            currentStart = latest;
+            rollAt = now + periodNanos;
+        }
+        return latest.since(previousStart);
+    }
+}
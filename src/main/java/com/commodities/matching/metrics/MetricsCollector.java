@@ -4,108 +4,241 @@ import com.commodities.matching.model.Commodity;
 import com.commodities.matching.model.Trade;
 import io.micrometer.core.instrument.*;
 import org.springframework.stereotype.Component;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
 
+// Every commodity is recorded by the one matching thread that owns it, so its counters are
+// plain single-writer slots in an array indexed by commodity ordinal: recording is a read and
+// a release store, with no registry lookup, no contention and no allocation. Micrometer meters
+// are function-based and read the slots when scraped.
 @Component
 public class MetricsCollector {
+    private static final LatencyStage[] STAGES = LatencyStage.values();
+    private static final double[] QUANTILES = { 0.5, 0.99, 0.999 };
+    // Exported quantiles and maxima cover the last one to two of these
+    private static final long LATENCY_WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private static final int ORDERS_RECEIVED = 0;
+    private static final int ORDERS_ADDED = 1;
+    private static final int TRADES_EXECUTED = 2;
+    private static final int COMPLETE_FILLS = 3;
+    private static final int PARTIAL_FILLS = 4;
+    private static final int CANCELLED = 5;
+    private static final int REPLACED = 6;
+    private static final int CANCEL_REJECTED = 7;
+    private static final int SLIPPAGE_TICKS = 8;
+    private static final int TRADE_LATENCY_NANOS = 9;
+    private static final int PROCESSED = 10;
+    private static final int PROCESSING_NANOS = 11;
+    private static final int WAKEUPS = 12;
+    private static final int WAKEUP_NANOS = 13;
+    // Each commodity's slots are followed by a cache line of padding, so matching threads
+    // recording different commodities never write to the same line
+    private static final int STRIDE = 14 + 8;
+
     private final MeterRegistry meterRegistry;
-    private final ConcurrentHashMap<Commodity, AtomicLong> ordersReceived = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<Commodity, AtomicLong> tradesExecuted = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<Commodity, AtomicLong> completeFills = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<Commodity, AtomicLong> partialFills = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<Commodity, DoubleAdder> totalSlippage = new ConcurrentHashMap<>();
-    private final AtomicLong totalOrders = new AtomicLong(0);
-    private final AtomicLong totalTrades = new AtomicLong(0);
-    private final DoubleAdder avgLatencyNanos = new DoubleAdder();
-    private final AtomicLong latencyCount = new AtomicLong(0);
+    private final AtomicLongArray counts = new AtomicLongArray(Commodity.values().length * STRIDE);
+    // Per commodity and stage; each commodity's histograms are written by its matching thread only
+    private final LatencyHistogram[][] latencyHistograms;
 
     public MetricsCollector(MeterRegistry meterRegistry) {
         this.meterRegistry = meterRegistry;
-        
-        for (Commodity commodity : Commodity.values()) {
-            ordersReceived.put(commodity, new AtomicLong(0));
-            tradesExecuted.put(commodity, new AtomicLong(0));
-            completeFills.put(commodity, new AtomicLong(0));
-            partialFills.put(commodity, new AtomicLong(0));
-            totalSlippage.put(commodity, new DoubleAdder());
+
+        Commodity[] commodities = Commodity.values();
+        for (Commodity commodity : commodities) {
+            registerCounter("matching.engine.orders.received", commodity, ORDERS_RECEIVED);
+            registerCounter("matching.engine.orders.added", commodity, ORDERS_ADDED);
+            registerCounter("matching.engine.trades.executed", commodity, TRADES_EXECUTED);
+            registerCounter("matching.engine.fills.complete", commodity, COMPLETE_FILLS);
+            registerCounter("matching.engine.fills.partial", commodity, PARTIAL_FILLS);
+            registerCounter("matching.engine.orders.cancelled", commodity, CANCELLED);
+            registerCounter("matching.engine.orders.replaced", commodity, REPLACED);
+            registerCounter("matching.engine.cancels.rejected", commodity, CANCEL_REJECTED);
+            registerTimer("matching.engine.trade.latency", commodity, TRADES_EXECUTED, TRADE_LATENCY_NANOS);
+            registerTimer("matching.engine.processing.time", commodity, PROCESSED, PROCESSING_NANOS);
+            registerTimer("matching.engine.wakeup.latency", commodity, WAKEUPS, WAKEUP_NANOS);
+        }
+        latencyHistograms = new LatencyHistogram[commodities.length][STAGES.length];
+        for (Commodity commodity : commodities) {
+            for (LatencyStage stage : STAGES) {
+                LatencyHistogram histogram = new LatencyHistogram();
+                latencyHistograms[commodity.ordinal()][stage.ordinal()] = histogram;
+                Tags tags = Tags.of("commodity", commodity.getSymbol(), "stage", stage.getTag());
+                // Quantiles are computed from the buckets when scraped, never on the matching thread,
+                // and over a trailing window so that a recent spike in the tail shows up
+                LatencyWindow window = new LatencyWindow(histogram, LATENCY_WINDOW_NANOS, System::nanoTime);
+                for (double quantile : QUANTILES) {
+                    Gauge.builder("matching.engine.latency.nanos", window, w -> w.snapshot().getValueAtQuantile(quantile))
+                        .tags(tags).tag("quantile", String.valueOf(quantile))
+                        .register(meterRegistry);
+                }
+                Gauge.builder("matching.engine.latency.max.nanos", window, w -> w.snapshot().getMax())
+                    .tags(tags)
+                    .register(meterRegistry);
+                FunctionCounter.builder("matching.engine.latency.count", histogram, h -> h.snapshot().getCount())
+                    .tags(tags)
+                    .register(meterRegistry);
+            }
         }
 
-        Gauge.builder("matching.engine.total.orders", totalOrders, AtomicLong::get)
+        Gauge.builder("matching.engine.total.orders", this, m -> m.sum(ORDERS_RECEIVED))
             .description("Total orders received")
             .register(meterRegistry);
 
-        Gauge.builder("matching.engine.total.trades", totalTrades, AtomicLong::get)
+        Gauge.builder("matching.engine.total.trades", this, m -> m.sum(TRADES_EXECUTED))
             .description("Total trades executed")
             .register(meterRegistry);
 
         Gauge.builder("matching.engine.avg.latency.micros", this, MetricsCollector::getAvgLatencyMicros)
             .description("Average order processing latency in microseconds")
             .register(meterRegistry);
+
+        Gauge.builder("matching.engine.avg.wakeup.latency.micros", this, MetricsCollector::getAvgWakeupLatencyMicros)
+            .description("Average time from order publication to the matching thread picking it up")
+            .register(meterRegistry);
+    }
+
+    private void registerCounter(String name, Commodity commodity, int slot) {
+        FunctionCounter.builder(name, this, m -> m.get(commodity, slot))
+            .tag("commodity", commodity.getSymbol())
+            .register(meterRegistry);
+    }
+
+    private void registerTimer(String name, Commodity commodity, int countSlot, int nanosSlot) {
+        FunctionTimer.builder(name, this, m -> m.get(commodity, countSlot), m -> m.get(commodity, nanosSlot),
+                TimeUnit.NANOSECONDS)
+            .tag("commodity", commodity.getSymbol())
+            .register(meterRegistry);
+    }
+
+    // Only the thread that owns the commodity may call this
+    private void add(Commodity commodity, int slot, long delta) {
+        int index = commodity.ordinal() * STRIDE + slot;
+        counts.lazySet(index, counts.get(index) + delta);
+    }
+
+    private long get(Commodity commodity, int slot) {
+        return counts.get(commodity.ordinal() * STRIDE + slot);
+    }
+
+    private long sum(int slot) {
+        long total = 0;
+        for (Commodity commodity : Commodity.values()) {
+            total += get(commodity, slot);
+        }
+        return total;
     }
 
     public void recordOrderReceived(Commodity commodity) {
-        ordersReceived.get(commodity).incrementAndGet();
-        totalOrders.incrementAndGet();
-        meterRegistry.counter("matching.engine.orders.received", "commodity", commodity.getSymbol()).increment();
+        add(commodity, ORDERS_RECEIVED, 1);
     }
 
     public void recordOrderAdded(Commodity commodity) {
-        meterRegistry.counter("matching.engine.orders.added", "commodity", commodity.getSymbol()).increment();
+        add(commodity, ORDERS_ADDED, 1);
     }
 
-    public void recordTrade(Trade trade, double slippage) {
-        tradesExecuted.get(trade.getCommodity()).incrementAndGet();
-        totalTrades.incrementAndGet();
-        totalSlippage.get(trade.getCommodity()).add(slippage);
-        
-        meterRegistry.counter("matching.engine.trades.executed", "commodity", trade.getCommodity().getSymbol()).increment();
-        meterRegistry.summary("matching.engine.trade.latency.nanos", "commodity", trade.getCommodity().getSymbol())
-            .record(trade.getProcessingTimeNanos());
+    public void recordTrade(Trade trade, long slippageTicks) {
+        Commodity commodity = trade.getCommodity();
+        add(commodity, TRADES_EXECUTED, 1);
+        add(commodity, SLIPPAGE_TICKS, slippageTicks);
+        add(commodity, TRADE_LATENCY_NANOS, trade.getProcessingTimeNanos());
     }
 
     public void recordCompleteFill(Commodity commodity) {
-        completeFills.get(commodity).incrementAndGet();
-        meterRegistry.counter("matching.engine.fills.complete", "commodity", commodity.getSymbol()).increment();
+        add(commodity, COMPLETE_FILLS, 1);
     }
 
     public void recordPartialFill(Commodity commodity) {
-        partialFills.get(commodity).incrementAndGet();
-        meterRegistry.counter("matching.engine.fills.partial", "commodity", commodity.getSymbol()).increment();
+        add(commodity, PARTIAL_FILLS, 1);
     }
 
-    public void recordOrderProcessingTime(long nanos) {
-        avgLatencyNanos.add(nanos);
-        latencyCount.incrementAndGet();
-        meterRegistry.summary("matching.engine.processing.time.nanos").record(nanos);
+    public void recordOrderCancelled(Commodity commodity) {
+        add(commodity, CANCELLED, 1);
+    }
+
+    public void recordOrderReplaced(Commodity commodity) {
+        add(commodity, REPLACED, 1);
+    }
+
+    // Cancel or replace for an order that is not resting, typically because it has already filled
+    public void recordCancelRejected(Commodity commodity) {
+        add(commodity, CANCEL_REJECTED, 1);
+    }
+
+    public void recordOrderProcessingTime(Commodity commodity, long nanos) {
+        add(commodity, PROCESSED, 1);
+        add(commodity, PROCESSING_NANOS, nanos);
+    }
+
+    public void recordWakeupLatency(Commodity commodity, long nanos) {
+        add(commodity, WAKEUPS, 1);
+        add(commodity, WAKEUP_NANOS, nanos);
+    }
+
+    // One handled event's time in each stage; called on the matching thread that owns the commodity
+    public void recordLatencies(Commodity commodity, long queueWaitNanos, long matchNanos,
+                                long fanOutNanos, long endToEndNanos) {
+        LatencyHistogram[] histograms = latencyHistograms[commodity.ordinal()];
+        histograms[LatencyStage.QUEUE_WAIT.ordinal()].record(queueWaitNanos);
+        histograms[LatencyStage.MATCH.ordinal()].record(matchNanos);
+        histograms[LatencyStage.FAN_OUT.ordinal()].record(fanOutNanos);
+        histograms[LatencyStage.END_TO_END.ordinal()].record(endToEndNanos);
+    }
+
+    public LatencyHistogram.Snapshot getLatency(Commodity commodity, LatencyStage stage) {
+        return latencyHistograms[commodity.ordinal()][stage.ordinal()].snapshot();
+    }
+
+    // Across all commodities
+    public LatencyHistogram.Snapshot getLatency(LatencyStage stage) {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram.Snapshot();
+        for (LatencyHistogram[] histograms : latencyHistograms) {
+            snapshot.add(histograms[stage.ordinal()]);
+        }
+        return snapshot;
+    }
+
+    public double getAvgWakeupLatencyMicros() {
+        long count = sum(WAKEUPS);
+        if (count == 0) return 0;
+        return (sum(WAKEUP_NANOS) / (double) count) / 1000.0;
     }
 
     public double getAvgLatencyMicros() {
-        long count = latencyCount.get();
+        long count = sum(PROCESSED);
         if (count == 0) return 0;
-        return (avgLatencyNanos.sum() / count) / 1000.0;
+        return (sum(PROCESSING_NANOS) / (double) count) / 1000.0;
     }
 
     public EngineMetrics getMetrics() {
         EngineMetrics metrics = new EngineMetrics();
-        metrics.totalOrders = totalOrders.get();
-        metrics.totalTrades = totalTrades.get();
+        metrics.totalOrders = sum(ORDERS_RECEIVED);
+        metrics.totalTrades = sum(TRADES_EXECUTED);
         metrics.avgLatencyMicros = getAvgLatencyMicros();
+        metrics.avgWakeupLatencyMicros = getAvgWakeupLatencyMicros();
+        for (LatencyStage stage : STAGES) {
+            metrics.latency.put(stage.getTag(), LatencyPercentiles.of(getLatency(stage)));
+        }
         
         for (Commodity commodity : Commodity.values()) {
             CommodityMetrics cm = new CommodityMetrics();
             cm.commodity = commodity.getSymbol();
-            cm.ordersReceived = ordersReceived.get(commodity).get();
-            cm.tradesExecuted = tradesExecuted.get(commodity).get();
-            cm.completeFills = completeFills.get(commodity).get();
-            cm.partialFills = partialFills.get(commodity).get();
+            cm.ordersReceived = get(commodity, ORDERS_RECEIVED);
+            cm.tradesExecuted = get(commodity, TRADES_EXECUTED);
+            cm.completeFills = get(commodity, COMPLETE_FILLS);
+            cm.partialFills = get(commodity, PARTIAL_FILLS);
             
             long totalFills = cm.completeFills + cm.partialFills;
             cm.fillRate = totalFills > 0 ? (double) cm.completeFills / totalFills * 100.0 : 0.0;
             
-            long trades = tradesExecuted.get(commodity).get();
-            cm.avgSlippage = trades > 0 ? totalSlippage.get(commodity).sum() / trades : 0.0;
+            long trades = cm.tradesExecuted;
+            cm.avgSlippage = trades > 0 ? commodity.toPrice(get(commodity, SLIPPAGE_TICKS)) / trades : 0.0;
+            for (LatencyStage stage : STAGES) {
+                cm.latency.put(stage.getTag(), LatencyPercentiles.of(getLatency(commodity, stage)));
+            }
             
             metrics.commodities.put(commodity.getSymbol(), cm);
         }
@@ -117,6 +250,8 @@ public class MetricsCollector {
         public long totalOrders;
         public long totalTrades;
         public double avgLatencyMicros;
+        public double avgWakeupLatencyMicros;
+        public Map<String, LatencyPercentiles> latency = new LinkedHashMap<>();
         public ConcurrentHashMap<String, CommodityMetrics> commodities = new ConcurrentHashMap<>();
     }
 
@@ -128,5 +263,24 @@ public class MetricsCollector {
         public long partialFills;
         public double fillRate;
         public double avgSlippage;
+        public Map<String, LatencyPercentiles> latency = new LinkedHashMap<>();
+    }
+
+    public static class LatencyPercentiles {
+        public long count;
+        public double p50Micros;
+        public double p99Micros;
+        public double p999Micros;
+        public double maxMicros;
+
+        public static LatencyPercentiles of(LatencyHistogram.Snapshot snapshot) {
+            LatencyPercentiles percentiles = new LatencyPercentiles();
+            percentiles.count = snapshot.getCount();
+            percentiles.p50Micros = snapshot.getValueAtQuantile(0.5) / 1000.0;
+            percentiles.p99Micros = snapshot.getValueAtQuantile(0.99) / 1000.0;
+            percentiles.p999Micros = snapshot.getValueAtQuantile(0.999) / 1000.0;
+            percentiles.maxMicros = snapshot.getMax() / 1000.0;
+            return percentiles;
+        }
     }
 }
@@ -0,0 +1,162 @@
+package com.commodities.matching.model;
+
+import java.util.AbstractList;
+import java.util.List;
+
+// Immutable aggregated view of one book as of a book update sequence; prices are in ticks.
+// The matching thread publishes a new one after each batch that changed the book, so any
+// number of readers can share it without touching live book state.
+public class BookDepth {
+    private final Commodity commodity;
+    private final long sequence;
+    private final long timestamp;
+    private final Side bids;
+    private final Side asks;
+
+    public BookDepth(Commodity commodity, long sequence, long timestamp, Side bids, Side asks) {
+        this.commodity = commodity;
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.bids = bids;
+        this.asks = asks;
+    }
+
+    public static BookDepth empty(Commodity commodity) {
+        return new BookDepth(commodity, 0, 0, Side.EMPTY, Side.EMPTY);
+    }
+
+    public Commodity getCommodity() {
+        return commodity;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    // When the view was published, in epoch milliseconds
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    // Best price first
+    public List<Level> getBids() {
+        return bids.levels;
+    }
+
+    // Best price first
+    public List<Level> getAsks() {
+        return asks.levels;
+    }
+
+    public Level getBestBid() {
+        return bids.levels.isEmpty() ? null : bids.levels.get(0);
+    }
+
+    public Level getBestAsk() {
+        return asks.levels.isEmpty() ? null : asks.levels.get(0);
+    }
+
+    // Totals over the whole side, including levels beyond the view's depth
+    public int getBidLevelCount() {
+        return bids.levelCount;
+    }
+
+    public int getAskLevelCount() {
+        return asks.levelCount;
+    }
+
+    public int getBidOrderCount() {
+        return bids.orderCount;
+    }
+
+    public int getAskOrderCount() {
+        return asks.orderCount;
+    }
+
+    public long getBidQuantity() {
+        return bids.totalQuantity;
+    }
+
+    public long getAskQuantity() {
+        return asks.totalQuantity;
+    }
+
+    // (bid - ask) / (bid + ask) over all resting quantity: 1 is all bids, -1 all asks, 0 when empty
+    public double getImbalance() {
+        long total = bids.totalQuantity + asks.totalQuantity;
+        return total == 0 ? 0.0 : (double) (bids.totalQuantity - asks.totalQuantity) / total;
+    }
+
+    // The same ratio over the top levels of each side
+    public double getImbalance(int levels) {
+        long bid = bids.quantityOf(levels);
+        long ask = asks.quantityOf(levels);
+        return bid + ask == 0 ? 0.0 : (double) (bid - ask) / (bid + ask);
+    }
+
+    // The top levels of one side in parallel arrays, which the matching thread fills without
+    // allocating a Level per price
+    public static final class Side {
+        static final Side EMPTY = new Side(new long[0], new long[0], new int[0], 0, 0, 0);
+
+        private final long[] prices;
+        private final long[] quantities;
+        private final int[] orders;
+        private final int levelCount;
+        private final int orderCount;
+        private final long totalQuantity;
+        private final List<Level> levels = new AbstractList<>() {
+            @Override
+            public Level get(int index) {
+                return new Level(prices[index], quantities[index], orders[index]);
+            }
+
+            @Override
+            public int size() {
+                return prices.length;
+            }
+        };
+
+        // The arrays are taken over, not copied
+        public Side(long[] prices, long[] quantities, int[] orders, int levelCount, int orderCount, long totalQuantity) {
+            this.prices = prices;
+            this.quantities = quantities;
+            this.orders = orders;
+            this.levelCount = levelCount;
+            this.orderCount = orderCount;
+            this.totalQuantity = totalQuantity;
+        }
+
+        long quantityOf(int levels) {
+            long quantity = 0;
+            for (int i = 0; i < Math.min(levels, quantities.length); i++) {
+                quantity += quantities[i];
+            }
+            return quantity;
+        }
+    }
+
+    public static class Level {
+        private final long price;
+        private final long quantity;
+        private final int orders;
+
+        public Level(long price, long quantity, int orders) {
+            this.price = price;
+            this.quantity = quantity;
+            this.orders = orders;
+        }
+
+        public long getPrice() {
+            return price;
+        }
+
+        public long getQuantity() {
+            return quantity;
+        }
+
+        public int getOrders() {
+            return orders;
+        }
+    }
+}
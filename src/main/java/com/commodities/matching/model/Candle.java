@@ -0,0 +1,67 @@
+package com.commodities.matching.model;
+
+// One OHLCV bar; prices are in ticks and the open time is epoch milliseconds
+public class Candle {
+    private final Commodity commodity;
+    private final CandleInterval interval;
+    private final long openTime;
+    private final long open;
+    private final long high;
+    private final long low;
+    private final long close;
+    private final long volume;
+    private final long trades;
+
+    public Candle(Commodity commodity, CandleInterval interval, long openTime,
+                  long open, long high, long low, long close, long volume, long trades) {
+        this.commodity = commodity;
+        this.interval = interval;
+        this.openTime = openTime;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        this.volume = volume;
+        this.trades = trades;
+    }
+
+    public Commodity getCommodity() {
+        return commodity;
+    }
+
+    public CandleInterval getInterval() {
+        return interval;
+    }
+
+    public long getOpenTime() {
+        return openTime;
+    }
+
+    public long getCloseTime() {
+        return openTime + interval.getMillis();
+    }
+
+    public long getOpen() {
+        return open;
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    public long getClose() {
+        return close;
+    }
+
+    public long getVolume() {
+        return volume;
+    }
+
+    public long getTrades() {
+        return trades;
+    }
+}
@@ -0,0 +1,33 @@
+package com.commodities.matching.model;
+
+public enum CandleInterval {
+    ONE_SECOND("1s", 1_000L),
+    ONE_MINUTE("1m", 60_000L),
+    FIVE_MINUTES("5m", 300_000L),
+    ONE_HOUR("1h", 3_600_000L);
+
+    private final String label;
+    private final long millis;
+
+    CandleInterval(String label, long millis) {
+        this.label = label;
+        this.millis = millis;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    public static CandleInterval fromLabel(String label) {
+        for (CandleInterval interval : values()) {
+            if (interval.label.equals(label)) {
+                return interval;
+            }
+        }
+        throw new IllegalArgumentException("Unknown candle interval " + label + "; expected 1s, 1m, 5m or 1h");
+    }
+}
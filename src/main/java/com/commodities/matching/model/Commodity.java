@@ -1,18 +1,26 @@
 package com.commodities.matching.model;
 
 public enum Commodity {
-    CRUDE_OIL("Crude Oil", "OIL"),
-    GOLD("Gold", "GOLD"),
-    SILVER("Silver", "SILVER"),
-    COPPER("Copper", "COPPER"),
-    NATURAL_GAS("Natural Gas", "GAS");
+    CRUDE_OIL("Crude Oil", "OIL", 2, 1),
+    GOLD("Gold", "GOLD", 2, 10),
+    SILVER("Silver", "SILVER", 3, 5),
+    COPPER("Copper", "COPPER", 4, 5),
+    NATURAL_GAS("Natural Gas", "GAS", 3, 1);
 
     private final String displayName;
     private final String symbol;
+    // Number of decimal places a price is quoted with
+    private final int priceScale;
+    // Minimum price increment, in units of 10^-priceScale
+    private final long tickUnits;
+    private final double unitsPerPrice;
 
-    Commodity(String displayName, String symbol) {
+    Commodity(String displayName, String symbol, int priceScale, long tickUnits) {
         this.displayName = displayName;
         this.symbol = symbol;
+        this.priceScale = priceScale;
+        this.tickUnits = tickUnits;
+        this.unitsPerPrice = Math.pow(10, priceScale);
     }
 
     public String getDisplayName() {
@@ -22,4 +30,31 @@ public enum Commodity {
     public String getSymbol() {
         return symbol;
     }
+
+    public int getPriceScale() {
+        return priceScale;
+    }
+
+    public double getTickSize() {
+        return tickUnits / unitsPerPrice;
+    }
+
+    public long toTicks(double price) {
+        double scaled = price * unitsPerPrice;
+        long units = Math.round(scaled);
+        if (Math.abs(scaled - units) > 1e-6 || units % tickUnits != 0) {
+            throw new IllegalArgumentException(
+                "Price " + price + " is not a multiple of the " + symbol + " tick size " + getTickSize());
+        }
+        return units / tickUnits;
+    }
+
+    public double toPrice(long ticks) {
+        return (ticks * tickUnits) / unitsPerPrice;
+    }
+
+    // Exact price as an integer count of 10^-priceScale
+    public long toPriceUnits(long ticks) {
+        return ticks * tickUnits;
+    }
 }
@@ -0,0 +1,38 @@
+package com.commodities.matching.model;
+
+// An order as submitted, before the engine has assigned it an id; the price is in ticks
+public class NewOrder {
+    private final Commodity commodity;
+    private final OrderSide side;
+    private final OrderType type;
+    private final long price;
+    private final long quantity;
+
+    public NewOrder(Commodity commodity, OrderSide side, OrderType type, long price, long quantity) {
+        this.commodity = commodity;
+        this.side = side;
+        this.type = type;
+        this.price = price;
+        this.quantity = quantity;
+    }
+
+    public Commodity getCommodity() {
+        return commodity;
+    }
+
+    public OrderSide getSide() {
+        return side;
+    }
+
+    public OrderType getType() {
+        return type;
+    }
+
+    public long getPrice() {
+        return price;
+    }
+
+    public long getQuantity() {
+        return quantity;
+    }
+}
@@ -1,31 +1,56 @@
 package com.commodities.matching.model;
 
-import java.time.Instant;
-import java.util.concurrent.atomic.AtomicLong;
+import com.commodities.matching.engine.PriceLevel;
 
+// Resting orders are recycled by the matching engine, so an Order handed to a
+// listener is only valid for the duration of the callback.
 public class Order {
-    private static final AtomicLong ORDER_ID_GENERATOR = new AtomicLong(1);
-
-    private final long orderId;
-    private final Commodity commodity;
-    private final OrderSide side;
-    private final OrderType type;
-    private final double price;
-    private final long quantity;
+    private long orderId;
+    private Commodity commodity;
+    private OrderSide side;
+    private OrderType type;
+    private long price;
+    private long quantity;
     private long remainingQuantity;
-    private final Instant timestamp;
-    private final long nanoTime;
+    private long timestamp;
 
-    public Order(Commodity commodity, OrderSide side, OrderType type, double price, long quantity) {
-        this.orderId = ORDER_ID_GENERATOR.getAndIncrement();
+    // Intrusive links into the price level queue, maintained by the order book
+    private PriceLevel level;
+    private Order prev;
+    private Order next;
+
+    public Order() {
+    }
+
+    public Order(long orderId, Commodity commodity, OrderSide side, OrderType type, long price, long quantity) {
+        init(orderId, commodity, side, type, price, quantity, System.currentTimeMillis());
+    }
+
+    public void init(long orderId, Commodity commodity, OrderSide side, OrderType type,
+                     long price, long quantity, long timestamp) {
+        this.orderId = orderId;
         this.commodity = commodity;
         this.side = side;
         this.type = type;
         this.price = price;
         this.quantity = quantity;
         this.remainingQuantity = quantity;
-        this.timestamp = Instant.now();
-        this.nanoTime = System.nanoTime();
+        this.timestamp = timestamp;
+    }
+
+    // Changes price and total quantity, keeping what has already been executed
+    public void amend(long price, long quantity) {
+        long executed = this.quantity - remainingQuantity;
+        this.price = price;
+        this.quantity = quantity;
+        this.remainingQuantity = quantity - executed;
+    }
+
+    public void reset() {
+        init(0, null, null, null, 0, 0, 0);
+        level = null;
+        prev = null;
+        next = null;
     }
 
     public long getOrderId() {
@@ -44,7 +69,7 @@ public class Order {
         return type;
     }
 
-    public double getPrice() {
+    public long getPrice() {
         return price;
     }
 
@@ -60,15 +85,36 @@ public class Order {
         this.remainingQuantity = remainingQuantity;
     }
 
-    public Instant getTimestamp() {
+    // Epoch milliseconds at which the order was accepted
+    public long getTimestamp() {
         return timestamp;
     }
 
-    public long getNanoTime() {
-        return nanoTime;
-    }
-
     public boolean isFilled() {
         return remainingQuantity == 0;
     }
+
+    public PriceLevel getLevel() {
+        return level;
+    }
+
+    public void setLevel(PriceLevel level) {
+        this.level = level;
+    }
+
+    public Order getPrev() {
+        return prev;
+    }
+
+    public void setPrev(Order prev) {
+        this.prev = prev;
+    }
+
+    public Order getNext() {
+        return next;
+    }
+
+    public void setNext(Order next) {
+        this.next = next;
+    }
 }
@@ -1,26 +1,35 @@
 package com.commodities.matching.model;
 
-import java.time.Instant;
-
+// The matching engine reuses a single Trade per matching thread, so listeners
+// that keep a trade beyond the callback must copy the fields they need.
 public class Trade {
-    private final long tradeId;
-    private final long buyOrderId;
-    private final long sellOrderId;
-    private final Commodity commodity;
-    private final double price;
-    private final long quantity;
-    private final Instant timestamp;
-    private final long processingTimeNanos;
-
-    public Trade(long tradeId, long buyOrderId, long sellOrderId, Commodity commodity, 
-                 double price, long quantity, long processingTimeNanos) {
+    private long tradeId;
+    private long buyOrderId;
+    private long sellOrderId;
+    private Commodity commodity;
+    private long price;
+    private long quantity;
+    private long timestamp;
+    private long processingTimeNanos;
+
+    public Trade() {
+    }
+
+    public Trade(long tradeId, long buyOrderId, long sellOrderId, Commodity commodity,
+                 long price, long quantity, long processingTimeNanos) {
+        init(tradeId, buyOrderId, sellOrderId, commodity, price, quantity,
+            System.currentTimeMillis(), processingTimeNanos);
+    }
+
+    public void init(long tradeId, long buyOrderId, long sellOrderId, Commodity commodity,
+                     long price, long quantity, long timestamp, long processingTimeNanos) {
         this.tradeId = tradeId;
         this.buyOrderId = buyOrderId;
         this.sellOrderId = sellOrderId;
         this.commodity = commodity;
         this.price = price;
         this.quantity = quantity;
-        this.timestamp = Instant.now();
+        this.timestamp = timestamp;
         this.processingTimeNanos = processingTimeNanos;
     }
 
@@ -40,7 +49,7 @@ public class Trade {
         return commodity;
     }
 
-    public double getPrice() {
+    public long getPrice() {
         return price;
     }
 
@@ -48,7 +57,8 @@ public class Trade {
         return quantity;
     }
 
-    public Instant getTimestamp() {
+    // Epoch milliseconds at which the trade was executed
+    public long getTimestamp() {
         return timestamp;
     }
 
@@ -0,0 +1,448 @@
+package com.commodities.matching.repository;
+
+import com.commodities.matching.model.Commodity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+// Append-only trade history, one log per commodity, stored as column blocks in memory-mapped
+// segment files. Each block holds the trades of one commit, with every column zigzag delta
+// encoded as varints, so ids and timestamps cost a byte or two per trade. Queries walk a
+// sparse in-memory index of block time ranges and decode only the columns they need.
+//
+// Appends and commits come from a single writer thread; queries may run on any thread and
+// see every block committed before they started.
+public class TradeHistoryStore implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(TradeHistoryStore.class);
+    private static final String SEGMENT_SUFFIX = ".col";
+    private static final int COLUMNS = 7;
+    private static final int TIMESTAMP = 0;
+    private static final int PRICE = 1;
+    private static final int QUANTITY = 2;
+    private static final int TRADE_ID = 3;
+    private static final int BUY_ORDER_ID = 4;
+    private static final int SELL_ORDER_ID = 5;
+    private static final int PROCESSING_TIME = 6;
+    private static final int MAX_VARINT_BYTES = 10;
+    // Trade count, body length, min and max timestamp, body CRC, then the length of each column
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + 2 * Long.BYTES + Integer.BYTES + COLUMNS * Integer.BYTES;
+
+    private final CommodityLog[] logs;
+
+    public TradeHistoryStore(Path directory, long segmentSize, int maxBlockTrades) throws IOException {
+        long minimum = HEADER_SIZE + (long) COLUMNS * MAX_VARINT_BYTES * maxBlockTrades;
+        if (maxBlockTrades < 1 || segmentSize < minimum || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Trade history segment size " + segmentSize
+                + " must be between " + minimum + " and " + Integer.MAX_VALUE);
+        }
+        Commodity[] commodities = Commodity.values();
+        logs = new CommodityLog[commodities.length];
+        for (Commodity commodity : commodities) {
+            logs[commodity.ordinal()] = new CommodityLog(directory.resolve(commodity.name()), (int) segmentSize, maxBlockTrades);
+        }
+    }
+
+    // Stages a trade; it becomes visible to queries at the next commit. Trades of a commodity
+    // are expected in execution order.
+    public void append(Commodity commodity, long timestamp, long tradeId, long buyOrderId, long sellOrderId,
+                       long price, long quantity, long processingTimeNanos) throws IOException {
+        CommodityLog log = logs[commodity.ordinal()];
+        if (log.pending == log.maxBlockTrades) {
+            log.seal();
+        }
+        long[][] columns = log.columns;
+        int i = log.pending++;
+        columns[TIMESTAMP][i] = timestamp;
+        columns[PRICE][i] = price;
+        columns[QUANTITY][i] = quantity;
+        columns[TRADE_ID][i] = tradeId;
+        columns[BUY_ORDER_ID][i] = buyOrderId;
+        columns[SELL_ORDER_ID][i] = sellOrderId;
+        columns[PROCESSING_TIME][i] = processingTimeNanos;
+    }
+
+    // Writes every staged trade into a block of its commodity's log
+    public void commit() throws IOException {
+        for (CommodityLog log : logs) {
+            if (log.pending > 0) {
+                log.seal();
+            }
+        }
+    }
+
+    // Visits trades with fromMillis <= timestamp <= toMillis in execution order; returns how many
+    public long scan(Commodity commodity, long fromMillis, long toMillis, TradeVisitor visitor) {
+        BlockIndex index = logs[commodity.ordinal()].index;
+        byte[] block = new byte[index.largestBlock];
+        int[] cursors = new int[COLUMNS];
+        long[] values = new long[COLUMNS];
+        long visited = 0;
+        for (int b = index.firstBlockEndingAfter(fromMillis); b < index.count && index.minTimestamp[b] <= toMillis; b++) {
+            int count = index.load(b, block, cursors);
+            Arrays.fill(values, 0);
+            for (int i = 0; i < count; i++) {
+                for (int c = 0; c < COLUMNS; c++) {
+                    values[c] += zigzagDecode(readVarint(block, cursors, c));
+                }
+                if (values[TIMESTAMP] >= fromMillis && values[TIMESTAMP] <= toMillis) {
+                    visitor.visit(values[TIMESTAMP], values[TRADE_ID], values[BUY_ORDER_ID], values[SELL_ORDER_ID],
+                        values[PRICE], values[QUANTITY], values[PROCESSING_TIME]);
+                    visited++;
+                }
+            }
+        }
+        return visited;
+    }
+
+    // Decodes only the timestamp, price and quantity columns
+    public TradeAggregate aggregate(Commodity commodity, long fromMillis, long toMillis) {
+        BlockIndex index = logs[commodity.ordinal()].index;
+        byte[] block = new byte[index.largestBlock];
+        int[] cursors = new int[COLUMNS];
+        TradeAggregate aggregate = new TradeAggregate();
+        for (int b = index.firstBlockEndingAfter(fromMillis); b < index.count && index.minTimestamp[b] <= toMillis; b++) {
+            int count = index.load(b, block, cursors);
+            long timestamp = 0;
+            long price = 0;
+            long quantity = 0;
+            for (int i = 0; i < count; i++) {
+                timestamp += zigzagDecode(readVarint(block, cursors, TIMESTAMP));
+                price += zigzagDecode(readVarint(block, cursors, PRICE));
+                quantity += zigzagDecode(readVarint(block, cursors, QUANTITY));
+                if (timestamp >= fromMillis && timestamp <= toMillis) {
+                    aggregate.add(timestamp, price, quantity);
+                }
+            }
+        }
+        return aggregate;
+    }
+
+    public long size(Commodity commodity) {
+        return logs[commodity.ordinal()].index.trades;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (CommodityLog log : logs) {
+            log.close();
+        }
+    }
+
+    private static long readVarint(byte[] block, int[] cursors, int column) {
+        int position = cursors[column];
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = block[position++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        cursors[column] = position;
+        return value;
+    }
+
+    private static long zigzagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    @FunctionalInterface
+    public interface TradeVisitor {
+        void visit(long timestamp, long tradeId, long buyOrderId, long sellOrderId,
+                   long price, long quantity, long processingTimeNanos);
+    }
+
+    // Count, volume and OHLC of the trades in a time range; prices are in ticks
+    public static class TradeAggregate {
+        private long count;
+        private long volume;
+        private long notional;
+        private long open;
+        private long high = Long.MIN_VALUE;
+        private long low = Long.MAX_VALUE;
+        private long close;
+        private long firstTimestamp;
+        private long lastTimestamp;
+
+        void add(long timestamp, long price, long quantity) {
+            if (count == 0) {
+                open = price;
+                firstTimestamp = timestamp;
+            }
+            count++;
+            volume += quantity;
+            notional += price * quantity;
+            high = Math.max(high, price);
+            low = Math.min(low, price);
+            close = price;
+            lastTimestamp = timestamp;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getVolume() {
+            return volume;
+        }
+
+        // Sum of price * quantity, in ticks
+        public long getNotional() {
+            return notional;
+        }
+
+        public long getOpen() {
+            return open;
+        }
+
+        public long getHigh() {
+            return count == 0 ? 0 : high;
+        }
+
+        public long getLow() {
+            return count == 0 ? 0 : low;
+        }
+
+        public long getClose() {
+            return close;
+        }
+
+        public long getFirstTimestamp() {
+            return firstTimestamp;
+        }
+
+        public long getLastTimestamp() {
+            return lastTimestamp;
+        }
+    }
+
+    // Block locations and time ranges, published as a whole after each commit. Entries below
+    // count are never modified once published, so a new index can share the arrays.
+    private static final class BlockIndex {
+        final MappedByteBuffer[] segments;
+        final int[] segment;
+        final int[] offset;
+        final long[] minTimestamp;
+        // Running maximum up to and including each block, so it can be binary searched
+        final long[] maxTimestamp;
+        final int count;
+        final int largestBlock;
+        final long trades;
+
+        BlockIndex(MappedByteBuffer[] segments, int[] segment, int[] offset, long[] minTimestamp,
+                   long[] maxTimestamp, int count, int largestBlock, long trades) {
+            this.segments = segments;
+            this.segment = segment;
+            this.offset = offset;
+            this.minTimestamp = minTimestamp;
+            this.maxTimestamp = maxTimestamp;
+            this.count = count;
+            this.largestBlock = largestBlock;
+            this.trades = trades;
+        }
+
+        int firstBlockEndingAfter(long timestamp) {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (maxTimestamp[mid] < timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        // Copies block b into the scratch array and points a cursor at the start of each column
+        int load(int b, byte[] block, int[] cursors) {
+            MappedByteBuffer mapped = segments[segment[b]];
+            int position = offset[b];
+            int count = mapped.getInt(position);
+            int length = mapped.getInt(position + Integer.BYTES);
+            mapped.get(position + HEADER_SIZE, block, 0, length);
+            int cursor = 0;
+            for (int c = 0; c < COLUMNS; c++) {
+                cursors[c] = cursor;
+                cursor += mapped.getInt(position + HEADER_SIZE - (COLUMNS - c) * Integer.BYTES);
+            }
+            return count;
+        }
+    }
+
+    private static final class CommodityLog {
+        private final Path directory;
+        private final int segmentCapacity;
+        private final int maxBlockTrades;
+        private final long[][] columns;
+        private final byte[] body;
+        private final int[] columnLengths = new int[COLUMNS];
+        private final CRC32C crc = new CRC32C();
+        private final List<FileChannel> channels = new ArrayList<>();
+        private MappedByteBuffer current;
+        private int pending;
+        private volatile BlockIndex index;
+
+        CommodityLog(Path directory, int segmentCapacity, int maxBlockTrades) throws IOException {
+            Files.createDirectories(directory);
+            this.directory = directory;
+            this.segmentCapacity = segmentCapacity;
+            this.maxBlockTrades = maxBlockTrades;
+            this.columns = new long[COLUMNS][maxBlockTrades];
+            this.body = new byte[COLUMNS * MAX_VARINT_BYTES * maxBlockTrades];
+            this.index = new BlockIndex(new MappedByteBuffer[0], new int[16], new int[16], new long[16],
+                new long[16], 0, 0, 0);
+            recover();
+        }
+
+        // Rebuilds the index from the block headers. The first missing, torn or corrupt block
+        // ends the log; whatever follows it is discarded.
+        private void recover() throws IOException {
+            List<Path> files;
+            try (Stream<Path> list = Files.list(directory)) {
+                files = list.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList();
+            }
+            boolean ended = false;
+            for (Path file : files) {
+                if (ended) {
+                    logger.warn("Discarding trade history segment {} after a damaged block", file);
+                    Files.delete(file);
+                    continue;
+                }
+                openSegment(file);
+                while (true) {
+                    int position = current.position();
+                    if (current.remaining() < HEADER_SIZE) {
+                        break;
+                    }
+                    int count = current.getInt(position);
+                    int length = current.getInt(position + Integer.BYTES);
+                    if (count <= 0 || length <= 0 || length > current.remaining() - HEADER_SIZE) {
+                        ended = count != 0;
+                        break;
+                    }
+                    crc.reset();
+                    crc.update(current.slice(position + HEADER_SIZE, length));
+                    if ((int) crc.getValue() != current.getInt(position + 2 * Integer.BYTES + 2 * Long.BYTES)) {
+                        ended = true;
+                        break;
+                    }
+                    publish(position, current.getLong(position + 2 * Integer.BYTES),
+                        current.getLong(position + 2 * Integer.BYTES + Long.BYTES), HEADER_SIZE + length, count);
+                    current.position(position + HEADER_SIZE + length);
+                }
+                if (ended) {
+                    logger.warn("Trade history for {} ends at a damaged block in {}", directory.getFileName(), file);
+                    int position = current.position();
+                    while (current.remaining() >= Long.BYTES) {
+                        current.putLong(0);
+                    }
+                    current.position(position);
+                }
+            }
+        }
+
+        void seal() throws IOException {
+            long[][] values = columns;
+            int position = 0;
+            for (int c = 0; c < COLUMNS; c++) {
+                int start = position;
+                long previous = 0;
+                long[] column = values[c];
+                for (int i = 0; i < pending; i++) {
+                    long delta = column[i] - previous;
+                    previous = column[i];
+                    long value = (delta << 1) ^ (delta >> 63);
+                    while ((value & ~0x7FL) != 0) {
+                        body[position++] = (byte) ((value & 0x7F) | 0x80);
+                        value >>>= 7;
+                    }
+                    body[position++] = (byte) value;
+                }
+                columnLengths[c] = position - start;
+            }
+
+            long minTimestamp = Long.MAX_VALUE;
+            long maxTimestamp = Long.MIN_VALUE;
+            for (int i = 0; i < pending; i++) {
+                minTimestamp = Math.min(minTimestamp, values[TIMESTAMP][i]);
+                maxTimestamp = Math.max(maxTimestamp, values[TIMESTAMP][i]);
+            }
+
+            if (current == null || current.remaining() < HEADER_SIZE + position) {
+                openSegment(directory.resolve(String.format("%020d%s", index.trades, SEGMENT_SUFFIX)));
+            }
+            crc.reset();
+            crc.update(body, 0, position);
+            int offset = current.position();
+            current.putInt(pending);
+            current.putInt(position);
+            current.putLong(minTimestamp);
+            current.putLong(maxTimestamp);
+            current.putInt((int) crc.getValue());
+            for (int length : columnLengths) {
+                current.putInt(length);
+            }
+            current.put(body, 0, position);
+            publish(offset, minTimestamp, maxTimestamp, HEADER_SIZE + position, pending);
+            pending = 0;
+        }
+
+        private void publish(int offset, long minTimestamp, long maxTimestamp, int length, int trades) {
+            BlockIndex previous = index;
+            int count = previous.count;
+            int[] segment = previous.segment;
+            int[] offsets = previous.offset;
+            long[] minTimestamps = previous.minTimestamp;
+            long[] maxTimestamps = previous.maxTimestamp;
+            if (count == segment.length) {
+                segment = Arrays.copyOf(segment, count * 2);
+                offsets = Arrays.copyOf(offsets, count * 2);
+                minTimestamps = Arrays.copyOf(minTimestamps, count * 2);
+                maxTimestamps = Arrays.copyOf(maxTimestamps, count * 2);
+            }
+            MappedByteBuffer[] segments = previous.segments;
+            if (segments.length == 0 || segments[segments.length - 1] != current) {
+                segments = Arrays.copyOf(segments, segments.length + 1);
+                segments[segments.length - 1] = current;
+            }
+            segment[count] = segments.length - 1;
+            offsets[count] = offset;
+            minTimestamps[count] = minTimestamp;
+            maxTimestamps[count] = count == 0 ? maxTimestamp : Math.max(maxTimestamps[count - 1], maxTimestamp);
+            index = new BlockIndex(segments, segment, offsets, minTimestamps, maxTimestamps, count + 1,
+                Math.max(previous.largestBlock, length - HEADER_SIZE), previous.trades + trades);
+        }
+
+        private void openSegment(Path file) throws IOException {
+            if (current != null) {
+                current.force();
+            }
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+            channels.add(channel);
+            current = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), segmentCapacity));
+        }
+
+        void close() throws IOException {
+            if (current != null) {
+                current.force();
+            }
+            for (FileChannel channel : channels) {
+                channel.close();
+            }
+        }
+    }
+}
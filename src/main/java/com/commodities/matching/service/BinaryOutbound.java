@@ -0,0 +1,117 @@
+package com.commodities.matching.service;
+
+import com.lmax.disruptor.*;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+import io.micrometer.core.instrument.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Hands binary market data from the matching threads to the messaging template. A matching
+// thread claims a slot, encodes the message straight into the slot's buffer and publishes it,
+// which allocates nothing; the outbound thread copies the bytes out once and sends that array
+// to each of the message's destinations. Messages from one matching thread leave in the order
+// they were published.
+//
+// A full ring drops the message instead of stalling matching; drops are counted in
+// matching.engine.marketdata.binary.dropped. Book and BBO messages carry the book sequence, so
+// a client can see the gap and resync.
+final class BinaryOutbound {
+    private static final Logger logger = LoggerFactory.getLogger(BinaryOutbound.class);
+    private static final Map<String, Object> BINARY_HEADERS =
+        Map.of(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.APPLICATION_OCTET_STREAM);
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final Counter droppedCounter;
+    private final Disruptor<Message> disruptor;
+    private final RingBuffer<Message> ringBuffer;
+
+    BinaryOutbound(SimpMessagingTemplate messagingTemplate, Counter droppedCounter, int ringBufferSize) {
+        this.messagingTemplate = messagingTemplate;
+        this.droppedCounter = droppedCounter;
+        this.disruptor = new Disruptor<>(
+            Message::new,
+            ringBufferSize,
+            r -> {
+                Thread t = new Thread(r);
+                t.setName("market-data-outbound");
+                t.setDaemon(true);
+                return t;
+            },
+            ProducerType.MULTI,
+            new BlockingWaitStrategy()
+        );
+        disruptor.handleEventsWith(this::send);
+        this.ringBuffer = disruptor.getRingBuffer();
+    }
+
+    void start() {
+        disruptor.start();
+    }
+
+    // Sends what is already in the ring, waiting a bounded time
+    void shutdown() {
+        try {
+            disruptor.shutdown(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            logger.warn("Binary market data did not drain within {} seconds", SHUTDOWN_TIMEOUT_SECONDS);
+            disruptor.halt();
+        }
+    }
+
+    // Called on a matching thread; -1 when the ring is full and the message is dropped. A claimed
+    // slot must be published, with its destinations cleared first so a failed encoding is skipped.
+    long claim() {
+        try {
+            long sequence = ringBuffer.tryNext();
+            Message message = ringBuffer.get(sequence);
+            message.destination = null;
+            message.symbolDestination = null;
+            return sequence;
+        } catch (InsufficientCapacityException e) {
+            droppedCounter.increment();
+            return -1;
+        }
+    }
+
+    Message get(long sequence) {
+        return ringBuffer.get(sequence);
+    }
+
+    void publish(long sequence) {
+        ringBuffer.publish(sequence);
+    }
+
+    private void send(Message message, long sequence, boolean endOfBatch) {
+        if (message.destination == null && message.symbolDestination == null) {
+            return;
+        }
+        try {
+            byte[] payload = Arrays.copyOf(message.buffer.array(), message.buffer.position());
+            if (message.destination != null) {
+                messagingTemplate.convertAndSend(message.destination, payload, BINARY_HEADERS);
+            }
+            if (message.symbolDestination != null) {
+                messagingTemplate.convertAndSend(message.symbolDestination, payload, BINARY_HEADERS);
+            }
+        } catch (Exception e) {
+            logger.error("Failed to send binary market data to {}", message.destination, e);
+        }
+    }
+
+    // A preallocated slot: the encoded message, written from position 0, and up to two destinations
+    static final class Message {
+        ByteBuffer buffer = MarketDataEncoder.newBuffer();
+        String destination;
+        String symbolDestination;
+    }
+}
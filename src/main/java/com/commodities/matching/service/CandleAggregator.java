@@ -0,0 +1,145 @@
+package com.commodities.matching.service;
+
+import com.commodities.matching.model.Candle;
+import com.commodities.matching.model.CandleInterval;
+import com.commodities.matching.model.Commodity;
+
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+
+// Rolling OHLCV bars per commodity and interval, kept in fixed-size ring arrays indexed by
+// bar number, so a trade updates one slot per interval and never allocates.
+//
+// Each commodity's bars are written only by the matching thread that owns the commodity.
+// Readers on other threads use a per-commodity sequence lock: the version is odd while a
+// trade is being applied, and a read is retried if the version moved underneath it.
+public class CandleAggregator {
+    private static final CandleInterval[] INTERVALS = CandleInterval.values();
+
+    private final int capacity;
+    private final Series[] series;
+
+    public CandleAggregator(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Candle capacity must be positive");
+        }
+        this.capacity = capacity;
+        Commodity[] commodities = Commodity.values();
+        this.series = new Series[commodities.length];
+        for (Commodity commodity : commodities) {
+            series[commodity.ordinal()] = new Series(capacity);
+        }
+    }
+
+    // Called on the matching thread that owns the commodity
+    public void onTrade(Commodity commodity, long timestamp, long price, long quantity) {
+        Series s = series[commodity.ordinal()];
+        s.version++;
+        VarHandle.storeStoreFence();
+        for (int i = 0; i < INTERVALS.length; i++) {
+            long bar = timestamp / INTERVALS[i].getMillis();
+            int slot = (int) (bar % capacity);
+            long[] ohlcv = s.bars[i];
+            int base = slot * Series.FIELDS;
+            if (ohlcv[base + Series.BAR] != bar) {
+                ohlcv[base + Series.BAR] = bar;
+                ohlcv[base + Series.OPEN] = price;
+                ohlcv[base + Series.HIGH] = price;
+                ohlcv[base + Series.LOW] = price;
+                ohlcv[base + Series.VOLUME] = 0;
+                ohlcv[base + Series.TRADES] = 0;
+            } else {
+                ohlcv[base + Series.HIGH] = Math.max(ohlcv[base + Series.HIGH], price);
+                ohlcv[base + Series.LOW] = Math.min(ohlcv[base + Series.LOW], price);
+            }
+            ohlcv[base + Series.CLOSE] = price;
+            ohlcv[base + Series.VOLUME] += quantity;
+            ohlcv[base + Series.TRADES]++;
+            if (bar > s.latestBar[i]) {
+                s.latestBar[i] = bar;
+            }
+        }
+        s.version++;
+    }
+
+    // Up to limit of the most recent bars, oldest first; the last one may still be open.
+    // Intervals without trades have no bar.
+    public List<Candle> getCandles(Commodity commodity, CandleInterval interval, int limit) {
+        Series s = series[commodity.ordinal()];
+        int count = Math.min(limit, capacity);
+        long[] copy = new long[capacity * Series.FIELDS];
+        long latest;
+        long version;
+        do {
+            version = s.awaitStable();
+            latest = s.latestBar[interval.ordinal()];
+            System.arraycopy(s.bars[interval.ordinal()], 0, copy, 0, copy.length);
+            VarHandle.loadLoadFence();
+        } while (s.version != version);
+
+        List<Candle> candles = new ArrayList<>(count);
+        for (long bar = Math.max(0, latest - capacity + 1); bar <= latest && latest >= 0; bar++) {
+            int base = (int) (bar % capacity) * Series.FIELDS;
+            if (copy[base + Series.BAR] == bar) {
+                candles.add(toCandle(commodity, interval, copy, base));
+            }
+        }
+        return candles.size() > count ? candles.subList(candles.size() - count, candles.size()) : candles;
+    }
+
+    // The bar opening at openTime, or null if it had no trades or has been overwritten
+    public Candle getCandle(Commodity commodity, CandleInterval interval, long openTime) {
+        Series s = series[commodity.ordinal()];
+        long bar = openTime / interval.getMillis();
+        int base = (int) (bar % capacity) * Series.FIELDS;
+        long[] slot = new long[Series.FIELDS];
+        long version;
+        do {
+            version = s.awaitStable();
+            System.arraycopy(s.bars[interval.ordinal()], base, slot, 0, Series.FIELDS);
+            VarHandle.loadLoadFence();
+        } while (s.version != version);
+        return slot[Series.BAR] == bar ? toCandle(commodity, interval, slot, 0) : null;
+    }
+
+    private static Candle toCandle(Commodity commodity, CandleInterval interval, long[] ohlcv, int base) {
+        return new Candle(commodity, interval, ohlcv[base + Series.BAR] * interval.getMillis(),
+            ohlcv[base + Series.OPEN], ohlcv[base + Series.HIGH], ohlcv[base + Series.LOW],
+            ohlcv[base + Series.CLOSE], ohlcv[base + Series.VOLUME], ohlcv[base + Series.TRADES]);
+    }
+
+    private static final class Series {
+        static final int BAR = 0;
+        static final int OPEN = 1;
+        static final int HIGH = 2;
+        static final int LOW = 3;
+        static final int CLOSE = 4;
+        static final int VOLUME = 5;
+        static final int TRADES = 6;
+        static final int FIELDS = 7;
+
+        // Per interval, capacity slots of FIELDS longs each; BAR is the bar number, timestamp / interval
+        final long[][] bars = new long[INTERVALS.length][];
+        final long[] latestBar = new long[INTERVALS.length];
+        volatile long version;
+
+        Series(int capacity) {
+            for (int i = 0; i < INTERVALS.length; i++) {
+                bars[i] = new long[capacity * FIELDS];
+                for (int slot = 0; slot < capacity; slot++) {
+                    bars[i][slot * FIELDS + BAR] = -1;
+                }
+                latestBar[i] = -1;
+            }
+        }
+
+        long awaitStable() {
+            long v;
+            while (((v = version) & 1) != 0) {
+                Thread.onSpinWait();
+            }
+            return v;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.commodities.matching.service;
+
+import com.commodities.matching.config.MatchingEngineProperties;
+import com.commodities.matching.engine.MatchingEngine;
+import com.commodities.matching.model.*;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import jakarta.annotation.PostConstruct;
+import java.util.*;
+
+// Aggregates trades into candles on the matching threads and pushes each bar to
+// /topic/candles/{symbol} once its interval has ended, from the scheduler thread so
+// matching never waits on WebSocket delivery
+@Service
+public class CandleService {
+    // Allowance for a trade stamped just before a bar boundary to reach the aggregator
+    private static final long CLOSE_GRACE_MILLIS = 50;
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final MatchingEngine matchingEngine;
+    private final CandleAggregator aggregator;
+    // Open time of the newest bar pushed, per commodity and interval; only touched by the scheduler
+    private final long[][] lastPublished;
+
+    public CandleService(SimpMessagingTemplate messagingTemplate, MatchingEngine matchingEngine,
+                         MatchingEngineProperties properties) {
+        this.messagingTemplate = messagingTemplate;
+        this.matchingEngine = matchingEngine;
+        this.aggregator = new CandleAggregator(properties.getCandles().getCapacity());
+        this.lastPublished = new long[Commodity.values().length][CandleInterval.values().length];
+    }
+
+    @PostConstruct
+    public void init() {
+        long now = System.currentTimeMillis();
+        for (long[] published : lastPublished) {
+            for (CandleInterval interval : CandleInterval.values()) {
+                published[interval.ordinal()] = closedBarOpenTime(interval, now);
+            }
+        }
+        matchingEngine.addTradeListener(trade ->
+            aggregator.onTrade(trade.getCommodity(), trade.getTimestamp(), trade.getPrice(), trade.getQuantity()));
+    }
+
+    public List<Candle> getCandles(Commodity commodity, CandleInterval interval, int limit) {
+        return aggregator.getCandles(commodity, interval, limit);
+    }
+
+    @Scheduled(fixedRate = 250)
+    public void publishClosedCandles() {
+        long now = System.currentTimeMillis();
+        for (Commodity commodity : Commodity.values()) {
+            for (CandleInterval interval : CandleInterval.values()) {
+                long closed = closedBarOpenTime(interval, now);
+                long[] published = lastPublished[commodity.ordinal()];
+                for (long openTime = published[interval.ordinal()] + interval.getMillis(); openTime <= closed;
+                     openTime += interval.getMillis()) {
+                    Candle candle = aggregator.getCandle(commodity, interval, openTime);
+                    if (candle != null) {
+                        messagingTemplate.convertAndSend("/topic/candles/" + commodity.getSymbol(), toMap(candle));
+                    }
+                }
+                published[interval.ordinal()] = Math.max(published[interval.ordinal()], closed);
+            }
+        }
+    }
+
+    public static Map<String, Object> toMap(Candle candle) {
+        Commodity commodity = candle.getCommodity();
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("commodity", commodity.getSymbol());
+        data.put("interval", candle.getInterval().getLabel());
+        data.put("openTime", candle.getOpenTime());
+        data.put("closeTime", candle.getCloseTime());
+        data.put("open", commodity.toPrice(candle.getOpen()));
+        data.put("high", commodity.toPrice(candle.getHigh()));
+        data.put("low", commodity.toPrice(candle.getLow()));
+        data.put("close", commodity.toPrice(candle.getClose()));
+        data.put("volume", candle.getVolume());
+        data.put("trades", candle.getTrades());
+        return data;
+    }
+
+    // Open time of the latest bar whose interval has fully ended
+    private static long closedBarOpenTime(CandleInterval interval, long now) {
+        long millis = interval.getMillis();
+        return ((now - CLOSE_GRACE_MILLIS) / millis - 1) * millis;
+    }
+}
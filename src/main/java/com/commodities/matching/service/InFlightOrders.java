@@ -0,0 +1,60 @@
+package com.commodities.matching.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Pairs each generated order's intended send time with the time the matching thread accepted
+// it. Either side can arrive first, since the engine may pick an order up before submitOrder
+// has returned its id to the producer. Slots are indexed by order id, so the table only has to
+// hold the orders in flight at once; a slot left behind by an order that is never paired, such
+// as one submitted outside the load run, is taken over by the next id that maps to it.
+final class InFlightOrders {
+    private static final long SENT = 0;
+    private static final long ACCEPTED = 1;
+
+    private final int mask;
+    // Order id shifted left by one, plus the side that arrived first; 0 while free
+    private final AtomicLongArray marks;
+    private final long[] sentAt;
+    private final long[] acceptedAt;
+
+    InFlightOrders(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("In-flight capacity must be a power of two");
+        }
+        this.mask = capacity - 1;
+        this.marks = new AtomicLongArray(capacity);
+        this.sentAt = new long[capacity];
+        this.acceptedAt = new long[capacity];
+    }
+
+    // Each returns the order's latency once both times are in, or -1 while the other is missing
+    long sent(long orderId, long intendedTime) {
+        return arrive(orderId, SENT, intendedTime);
+    }
+
+    long accepted(long orderId, long time) {
+        return arrive(orderId, ACCEPTED, time);
+    }
+
+    private long arrive(long orderId, long side, long time) {
+        int slot = (int) (orderId & mask);
+        long mine = orderId << 1 | side;
+        long theirs = orderId << 1 | (side ^ 1);
+        // Published by the compare-and-set below
+        if (side == SENT) {
+            sentAt[slot] = time;
+        } else {
+            acceptedAt[slot] = time;
+        }
+        while (true) {
+            long mark = marks.get(slot);
+            if (mark == theirs) {
+                if (marks.compareAndSet(slot, mark, 0)) {
+                    return acceptedAt[slot] - sentAt[slot];
+                }
+            } else if (marks.compareAndSet(slot, mark, mine)) {
+                return -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package com.commodities.matching.service;
+
+import com.commodities.matching.dto.LoadProfile;
+import com.commodities.matching.engine.MatchingEngine;
+import com.commodities.matching.exception.ConflictException;
+import com.commodities.matching.metrics.LatencyHistogram;
+import com.commodities.matching.metrics.MetricsCollector;
+import com.commodities.matching.model.*;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Open-loop load generator: every producer thread sends on a fixed schedule derived from the
+// target rate instead of waiting for each order to be matched. submitOrder still blocks while
+// the ring buffer is full, so an overloaded engine does hold producers back; that shows up as
+// schedule lag, and latency is measured from the time an order was due to be sent, not from
+// when it actually went out, to the matching thread accepting it. A stalled engine therefore
+// shows up in full in the percentiles instead of being hidden by the producer falling behind
+// (coordinated omission). Cancels are counted towards throughput but have no acceptance to time.
+@Service
+public class LoadGenerator {
+    private static final Logger logger = LoggerFactory.getLogger(LoadGenerator.class);
+    private static final Commodity[] COMMODITIES = Commodity.values();
+    private static final int IN_FLIGHT_CAPACITY = 1 << 20;
+    // Own recent orders a producer picks cancels from
+    private static final int RECENT_ORDERS = 256;
+    // Sleep until this close to the next send time, then spin
+    private static final long SPIN_NANOS = 50_000;
+    // How long a finished run waits for the matching threads to accept the orders still queued
+    private static final long DRAIN_NANOS = 5_000_000_000L;
+
+    private final MatchingEngine matchingEngine;
+    private volatile Run current;
+
+    public LoadGenerator(MatchingEngine matchingEngine) {
+        this.matchingEngine = matchingEngine;
+    }
+
+    @PostConstruct
+    public void init() {
+        matchingEngine.addOrderListener(this::onOrderAccepted);
+    }
+
+    public synchronized void start(LoadProfile profile) {
+        if (current != null && current.isRunning()) {
+            throw new ConflictException("A load run is already in progress");
+        }
+        validate(profile);
+        current = new Run(profile);
+        current.start();
+        logger.info("Load run started: {} orders/s from {} producer threads for {} s",
+            profile.getTargetRate(), profile.getProducerThreads(), profile.getDurationSeconds());
+    }
+
+    @PreDestroy
+    public void stop() {
+        Run run = current;
+        if (run != null) {
+            run.stopping = true;
+        }
+    }
+
+    public Report getReport() {
+        Run run = current;
+        return run != null ? run.report() : Report.idle();
+    }
+
+    // Called on the matching thread that owns the order's commodity, for every order; a finished
+    // run's report is final, so only a run in progress does any work here
+    private void onOrderAccepted(Order order) {
+        Run run = current;
+        if (run == null || !run.isRunning()) {
+            return;
+        }
+        long latency = run.inFlight.accepted(order.getOrderId(), System.nanoTime());
+        if (latency >= 0) {
+            run.acceptedLatencies[order.getCommodity().ordinal()].record(latency);
+        }
+    }
+
+    private static void validate(LoadProfile profile) {
+        if (profile.getMinQuantity() > profile.getMaxQuantity()) {
+            throw new IllegalArgumentException("Minimum quantity exceeds maximum quantity");
+        }
+        if (profile.getLimitRatio() + profile.getMarketRatio() + profile.getCancelRatio() <= 0) {
+            throw new IllegalArgumentException("At least one of the limit, market and cancel ratios must be positive");
+        }
+        double weights = 0;
+        for (Double weight : profile.getCommodityMix().values()) {
+            if (weight == null || weight < 0) {
+                throw new IllegalArgumentException("Commodity weights must not be negative");
+            }
+            weights += weight;
+        }
+        if (!profile.getCommodityMix().isEmpty() && weights <= 0) {
+            throw new IllegalArgumentException("At least one commodity weight must be positive");
+        }
+    }
+
+    private final class Run {
+        final LoadProfile profile;
+        final InFlightOrders inFlight = new InFlightOrders(IN_FLIGHT_CAPACITY);
+        // Latencies completed by the matching thread, one histogram per commodity so each has one writer
+        final LatencyHistogram[] acceptedLatencies = new LatencyHistogram[COMMODITIES.length];
+        final Producer[] producers;
+        final AtomicInteger running;
+        // Cumulative commodity weights, for picking a commodity with one random draw
+        final double[] commodityWeights = new double[COMMODITIES.length];
+        final long[] startTicks = new long[COMMODITIES.length];
+        long startNanos;
+        long endNanos;
+        volatile long finishedNanos;
+        volatile boolean stopping;
+        volatile boolean complete;
+
+        Run(LoadProfile profile) {
+            this.profile = profile;
+            this.producers = new Producer[profile.getProducerThreads()];
+            this.running = new AtomicInteger(producers.length);
+            double total = 0;
+            for (Commodity commodity : COMMODITIES) {
+                acceptedLatencies[commodity.ordinal()] = new LatencyHistogram();
+                Double weight = profile.getCommodityMix().isEmpty() ? Double.valueOf(1.0)
+                    : profile.getCommodityMix().get(commodity);
+                total += weight != null ? weight : 0;
+                commodityWeights[commodity.ordinal()] = total;
+                startTicks[commodity.ordinal()] = referenceTicks(commodity);
+            }
+            long seed = profile.getSeed() != null ? profile.getSeed() : System.nanoTime();
+            for (int i = 0; i < producers.length; i++) {
+                producers[i] = new Producer(this, i, new SplittableRandom(seed + i));
+            }
+        }
+
+        void start() {
+            startNanos = System.nanoTime();
+            endNanos = startNanos + profile.getDurationSeconds() * 1_000_000_000L;
+            for (Producer producer : producers) {
+                Thread thread = new Thread(producer);
+                thread.setName("load-generator-" + producer.index);
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+
+        boolean isRunning() {
+            return !complete;
+        }
+
+        void producerFinished() {
+            if (running.decrementAndGet() == 0) {
+                finishedNanos = System.nanoTime();
+                awaitAcceptance();
+                complete = true;
+                Report report = report();
+                logger.info("Load run {}: {} orders and {} cancels in {} ms ({} per second), "
+                        + "latency p50 {} us, p99 {} us, p99.9 {} us, max {} us",
+                    report.status, report.ordersSent, report.cancelsSent, report.elapsedMillis,
+                    Math.round(report.achievedRate), report.latency.p50Micros, report.latency.p99Micros,
+                    report.latency.p999Micros, report.latency.maxMicros);
+            }
+        }
+
+        // Orders still queued in the ring buffers are usually the slowest, so the run stays open
+        // until the matching threads have accepted every order sent, or the wait times out
+        private void awaitAcceptance() {
+            long deadline = System.nanoTime() + DRAIN_NANOS;
+            while (System.nanoTime() < deadline) {
+                long sent = 0;
+                LatencyHistogram.Snapshot timed = new LatencyHistogram.Snapshot();
+                for (Producer producer : producers) {
+                    sent += producer.counters.get(Producer.ORDERS);
+                    timed.add(producer.latencies);
+                }
+                for (LatencyHistogram histogram : acceptedLatencies) {
+                    timed.add(histogram);
+                }
+                if (timed.getCount() >= sent) {
+                    return;
+                }
+                LockSupport.parkNanos(1_000_000);
+            }
+        }
+
+        Report report() {
+            Report report = new Report();
+            long finished = finishedNanos;
+            boolean done = !isRunning();
+            report.status = !done ? "running" : stopping ? "stopped" : "completed";
+            report.targetRate = profile.getTargetRate();
+            report.producerThreads = profile.getProducerThreads();
+            report.durationSeconds = profile.getDurationSeconds();
+            long elapsed = (done && finished != 0 ? finished : System.nanoTime()) - startNanos;
+            report.elapsedMillis = elapsed / 1_000_000;
+
+            LatencyHistogram.Snapshot latency = new LatencyHistogram.Snapshot();
+            long maxLag = 0;
+            for (Producer producer : producers) {
+                report.ordersSent += producer.counters.get(Producer.ORDERS);
+                report.cancelsSent += producer.counters.get(Producer.CANCELS);
+                maxLag = Math.max(maxLag, producer.counters.get(Producer.MAX_LAG));
+                latency.add(producer.latencies);
+            }
+            for (LatencyHistogram histogram : acceptedLatencies) {
+                latency.add(histogram);
+            }
+            report.achievedRate = elapsed > 0 ? (report.ordersSent + report.cancelsSent) * 1e9 / elapsed : 0;
+            report.maxScheduleLagMicros = maxLag / 1000.0;
+            report.latency = MetricsCollector.LatencyPercentiles.of(latency);
+            return report;
+        }
+
+        // Mid of the current book when it has both sides, otherwise the simulator's base price
+        private long referenceTicks(Commodity commodity) {
+            BookDepth view = matchingEngine.getBookView(commodity);
+            if (view.getBestBid() != null && view.getBestAsk() != null) {
+                return (view.getBestBid().getPrice() + view.getBestAsk().getPrice()) / 2;
+            }
+            return commodity.toTicks(OrderSimulator.basePrice(commodity));
+        }
+    }
+
+    private final class Producer implements Runnable {
+        static final int ORDERS = 0;
+        static final int CANCELS = 1;
+        static final int MAX_LAG = 2;
+
+        final Run run;
+        final int index;
+        final SplittableRandom random;
+        // Written only by this producer and read by reports
+        final AtomicLongArray counters = new AtomicLongArray(3);
+        // Latencies this producer completed, when the matching thread accepted the order first
+        final LatencyHistogram latencies = new LatencyHistogram();
+        final double[] midTicks = new double[COMMODITIES.length];
+        final long[] recentIds = new long[RECENT_ORDERS];
+        final int[] recentCommodities = new int[RECENT_ORDERS];
+        int recentCount;
+
+        Producer(Run run, int index, SplittableRandom random) {
+            this.run = run;
+            this.index = index;
+            this.random = random;
+            for (int i = 0; i < COMMODITIES.length; i++) {
+                midTicks[i] = run.startTicks[i];
+            }
+        }
+
+        @Override
+        public void run() {
+            LoadProfile profile = run.profile;
+            double periodNanos = 1e9 * run.producers.length / profile.getTargetRate();
+            // Producers are staggered evenly within one period, so the combined schedule is regular
+            long firstSend = run.startNanos + (long) (periodNanos * index / run.producers.length);
+            double limitShare = profile.getLimitRatio();
+            double marketShare = limitShare + profile.getMarketRatio();
+            double totalShare = marketShare + profile.getCancelRatio();
+            long sent = 0;
+            try {
+                while (!run.stopping) {
+                    long intended = firstSend + (long) (sent * periodNanos);
+                    if (intended >= run.endNanos) {
+                        break;
+                    }
+                    long now = awaitSendTime(intended);
+                    long lag = now - intended;
+                    if (lag > counters.get(MAX_LAG)) {
+                        counters.lazySet(MAX_LAG, lag);
+                    }
+
+                    double pick = random.nextDouble() * totalShare;
+                    if (pick >= marketShare && recentCount > 0) {
+                        cancel();
+                    } else {
+                        send(pick < limitShare || pick >= marketShare ? OrderType.LIMIT : OrderType.MARKET, intended);
+                    }
+                    sent++;
+                }
+            } catch (Exception e) {
+                logger.error("Load producer {} failed", index, e);
+            } finally {
+                run.producerFinished();
+            }
+        }
+
+        private long awaitSendTime(long intended) {
+            long now;
+            while ((now = System.nanoTime()) < intended) {
+                if (intended - now > 2 * SPIN_NANOS) {
+                    LockSupport.parkNanos(intended - now - SPIN_NANOS);
+                } else {
+                    Thread.onSpinWait();
+                }
+            }
+            return now;
+        }
+
+        private void send(OrderType type, long intended) {
+            LoadProfile profile = run.profile;
+            Commodity commodity = pickCommodity();
+            int c = commodity.ordinal();
+            midTicks[c] = Math.max(profile.getSpreadTicks() + 1, midTicks[c] + random.nextGaussian() * profile.getWalkStepTicks());
+            OrderSide side = random.nextBoolean() ? OrderSide.BUY : OrderSide.SELL;
+            long price = 0;
+            if (type == OrderType.LIMIT) {
+                int offset = random.nextInt(2 * profile.getSpreadTicks() + 1) - profile.getSpreadTicks();
+                price = Math.max(1, Math.round(midTicks[c]) + offset);
+            }
+
+            long orderId = matchingEngine.submitOrder(commodity, side, type, price, nextQuantity());
+            counters.lazySet(ORDERS, counters.get(ORDERS) + 1);
+            long latency = run.inFlight.sent(orderId, intended);
+            if (latency >= 0) {
+                latencies.record(latency);
+            }
+            if (type == OrderType.LIMIT) {
+                int slot = recentCount < RECENT_ORDERS ? recentCount++ : random.nextInt(RECENT_ORDERS);
+                recentIds[slot] = orderId;
+                recentCommodities[slot] = c;
+            }
+        }
+
+        // Cancels one of this producer's recent limit orders; it may already have traded, in
+        // which case the engine rejects the cancel as it would any late one
+        private void cancel() {
+            int slot = random.nextInt(recentCount);
+            matchingEngine.cancelOrder(COMMODITIES[recentCommodities[slot]], recentIds[slot]);
+            counters.lazySet(CANCELS, counters.get(CANCELS) + 1);
+            recentCount--;
+            recentIds[slot] = recentIds[recentCount];
+            recentCommodities[slot] = recentCommodities[recentCount];
+        }
+
+        private Commodity pickCommodity() {
+            double[] weights = run.commodityWeights;
+            double pick = random.nextDouble() * weights[weights.length - 1];
+            for (int i = 0; i < weights.length; i++) {
+                if (pick < weights[i]) {
+                    return COMMODITIES[i];
+                }
+            }
+            return COMMODITIES[weights.length - 1];
+        }
+
+        private long nextQuantity() {
+            LoadProfile profile = run.profile;
+            long min = profile.getMinQuantity();
+            long max = profile.getMaxQuantity();
+            if (profile.getQuantityDistribution() == LoadProfile.QuantityDistribution.EXPONENTIAL) {
+                double mean = (max - min) / 2.0;
+                return Math.min(max, min + Math.round(-Math.log(1 - random.nextDouble()) * mean));
+            }
+            return min + random.nextLong(max - min + 1);
+        }
+    }
+
+    public static class Report {
+        public String status;
+        public int targetRate;
+        public int producerThreads;
+        public int durationSeconds;
+        public long elapsedMillis;
+        public long ordersSent;
+        public long cancelsSent;
+        // Orders and cancels per second actually sent over the elapsed time
+        public double achievedRate;
+        // How far behind its schedule a producer fell; large values mean the producers themselves saturated
+        public double maxScheduleLagMicros;
+        public MetricsCollector.LatencyPercentiles latency;
+
+        static Report idle() {
+            Report report = new Report();
+            report.status = "idle";
+            report.latency = MetricsCollector.LatencyPercentiles.of(new LatencyHistogram.Snapshot());
+            return report;
+        }
+    }
+}
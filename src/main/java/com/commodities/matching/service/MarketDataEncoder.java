@@ -0,0 +1,110 @@
+package com.commodities.matching.service;
+
+import com.commodities.matching.engine.OrderBook;
+import com.commodities.matching.engine.PriceLevel;
+import com.commodities.matching.model.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Fixed-layout little-endian encoding of the market data feeds, for clients that negotiate
+// binary subscriptions. Every message starts with a 4-byte header: message type, layout
+// version, commodity ordinal and price scale. Prices are integers in units of
+// 10^-priceScale, and a zero quantity marks an empty level or side.
+//
+//   TRADE  header, tradeId, buyOrderId, sellOrderId, price, quantity, timestamp, latencyNanos (all i64)
+//   ORDER  header, orderId, price, quantity, timestamp (i64), side, type (u8 ordinals)
+//   BOOK   header, sequence (i64), level count (u16), then per level side (u8, 0 bid),
+//          price, quantity (i64), orders (i32)
+//   BBO    header, sequence, bid price, bid quantity, ask price, ask quantity (all i64)
+//
+// frontend/src/marketData.ts decodes the same layouts. Each call writes one message from
+// position 0 of a buffer the caller owns and reuses, and leaves the position at its end; the
+// buffer is only replaced by a larger one when a book update does not fit. Nothing else is
+// allocated, so the matching thread can encode straight into a ring buffer slot.
+final class MarketDataEncoder {
+    static final byte TRADE = 1;
+    static final byte ORDER = 2;
+    static final byte BOOK = 3;
+    static final byte BBO = 4;
+    static final byte VERSION = 1;
+
+    static final int HEADER_SIZE = 4;
+    static final int TRADE_SIZE = HEADER_SIZE + 7 * Long.BYTES;
+    static final int ORDER_SIZE = HEADER_SIZE + 4 * Long.BYTES + 2;
+    static final int BOOK_LEVEL_SIZE = 1 + 2 * Long.BYTES + Integer.BYTES;
+    static final int BBO_SIZE = HEADER_SIZE + 5 * Long.BYTES;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Commodity commodity;
+
+    MarketDataEncoder(Commodity commodity) {
+        this.commodity = commodity;
+    }
+
+    ByteBuffer encodeTrade(Trade trade, ByteBuffer target) {
+        ByteBuffer buffer = begin(target, TRADE, TRADE_SIZE);
+        buffer.putLong(trade.getTradeId());
+        buffer.putLong(trade.getBuyOrderId());
+        buffer.putLong(trade.getSellOrderId());
+        buffer.putLong(commodity.toPriceUnits(trade.getPrice()));
+        buffer.putLong(trade.getQuantity());
+        buffer.putLong(trade.getTimestamp());
+        buffer.putLong(trade.getProcessingTimeNanos());
+        return buffer;
+    }
+
+    ByteBuffer encodeOrder(Order order, ByteBuffer target) {
+        ByteBuffer buffer = begin(target, ORDER, ORDER_SIZE);
+        buffer.putLong(order.getOrderId());
+        buffer.putLong(commodity.toPriceUnits(order.getPrice()));
+        buffer.putLong(order.getQuantity());
+        buffer.putLong(order.getTimestamp());
+        buffer.put((byte) order.getSide().ordinal());
+        buffer.put((byte) order.getType().ordinal());
+        return buffer;
+    }
+
+    // The levels changed by the book's last update
+    ByteBuffer encodeBookUpdate(OrderBook orderBook, ByteBuffer target) {
+        int count = orderBook.getChangedLevelCount();
+        if (count > 0xFFFF) {
+            throw new IllegalStateException("Book update of " + count + " levels does not fit a binary message");
+        }
+        ByteBuffer buffer = begin(target, BOOK, HEADER_SIZE + Long.BYTES + Short.BYTES + count * BOOK_LEVEL_SIZE);
+        buffer.putLong(orderBook.getSequence());
+        buffer.putShort((short) count);
+        for (int i = 0; i < count; i++) {
+            buffer.put((byte) (orderBook.isChangedLevelBid(i) ? 0 : 1));
+            buffer.putLong(commodity.toPriceUnits(orderBook.getChangedLevelPrice(i)));
+            buffer.putLong(orderBook.getChangedLevelQuantity(i));
+            buffer.putInt(orderBook.getChangedLevelOrders(i));
+        }
+        return buffer;
+    }
+
+    ByteBuffer encodeBbo(long sequence, PriceLevel bid, PriceLevel ask, ByteBuffer target) {
+        ByteBuffer buffer = begin(target, BBO, BBO_SIZE);
+        buffer.putLong(sequence);
+        buffer.putLong(bid != null ? commodity.toPriceUnits(bid.getPrice()) : 0);
+        buffer.putLong(bid != null ? bid.getQuantity() : 0);
+        buffer.putLong(ask != null ? commodity.toPriceUnits(ask.getPrice()) : 0);
+        buffer.putLong(ask != null ? ask.getQuantity() : 0);
+        return buffer;
+    }
+
+    static ByteBuffer newBuffer() {
+        return ByteBuffer.allocate(INITIAL_CAPACITY).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private ByteBuffer begin(ByteBuffer target, byte type, int size) {
+        ByteBuffer buffer = target.capacity() >= size ? target
+            : ByteBuffer.allocate(Math.max(size, target.capacity() * 2)).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.clear();
+        buffer.put(type);
+        buffer.put(VERSION);
+        buffer.put((byte) commodity.ordinal());
+        buffer.put((byte) commodity.getPriceScale());
+        return buffer;
+    }
+}
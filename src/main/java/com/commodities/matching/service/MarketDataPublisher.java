@@ -0,0 +1,140 @@
+package com.commodities.matching.service;
+
+import com.commodities.matching.config.MatchingEngineProperties;
+import com.commodities.matching.engine.MatchingEngine;
+import com.commodities.matching.model.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.lang.invoke.VarHandle;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Conflated market data: the matching threads only bump running totals per commodity, and a
+// publisher thread sends one summary per active commodity every conflation interval to
+// /topic/market/{symbol}, plus all of them in one message to /topic/market. Message volume
+// is bounded by the interval however fast trades arrive.
+@Service
+public class MarketDataPublisher {
+    private static final Logger logger = LoggerFactory.getLogger(MarketDataPublisher.class);
+    private static final Commodity[] COMMODITIES = Commodity.values();
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final MatchingEngine matchingEngine;
+    private final long intervalMillis;
+    private final Totals[] totals = new Totals[COMMODITIES.length];
+    // Totals as of the last summary; only touched by the publisher thread
+    private final long[] publishedTrades = new long[COMMODITIES.length];
+    private final long[] publishedVolume = new long[COMMODITIES.length];
+    private ScheduledExecutorService publisher;
+
+    public MarketDataPublisher(SimpMessagingTemplate messagingTemplate, MatchingEngine matchingEngine,
+                               MatchingEngineProperties properties) {
+        this.messagingTemplate = messagingTemplate;
+        this.matchingEngine = matchingEngine;
+        this.intervalMillis = properties.getMarketData().getConflationInterval().toMillis();
+        for (Commodity commodity : COMMODITIES) {
+            totals[commodity.ordinal()] = new Totals();
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        matchingEngine.addTradeListener(this::onTrade);
+        publisher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r);
+            t.setName("market-data-publisher");
+            t.setDaemon(true);
+            return t;
+        });
+        publisher.scheduleAtFixedRate(this::publishSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        logger.info("Publishing conflated market data every {} ms", intervalMillis);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (publisher != null) {
+            publisher.shutdownNow();
+        }
+    }
+
+    // Runs on the matching thread that owns the commodity
+    private void onTrade(Trade trade) {
+        Totals t = totals[trade.getCommodity().ordinal()];
+        t.version++;
+        VarHandle.storeStoreFence();
+        t.trades++;
+        t.volume += trade.getQuantity();
+        t.lastPrice = trade.getPrice();
+        t.lastTradeTime = trade.getTimestamp();
+        t.version++;
+    }
+
+    private void publishSafely() {
+        try {
+            publish();
+        } catch (Exception e) {
+            logger.error("Failed to publish market data", e);
+        }
+    }
+
+    // One summary for each commodity that traded since the previous call
+    void publish() {
+        List<Map<String, Object>> summaries = new ArrayList<>();
+        for (Commodity commodity : COMMODITIES) {
+            int i = commodity.ordinal();
+            Totals t = totals[i];
+            long trades;
+            long volume;
+            long lastPrice;
+            long lastTradeTime;
+            long version;
+            do {
+                while (((version = t.version) & 1) != 0) {
+                    Thread.yield();
+                }
+                trades = t.trades;
+                volume = t.volume;
+                lastPrice = t.lastPrice;
+                lastTradeTime = t.lastTradeTime;
+                VarHandle.loadLoadFence();
+            } while (t.version != version);
+
+            if (trades == publishedTrades[i]) {
+                continue;
+            }
+            BookDepth top = matchingEngine.getBookView(commodity);
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("commodity", commodity.getSymbol());
+            summary.put("lastPrice", commodity.toPrice(lastPrice));
+            summary.put("volume", volume - publishedVolume[i]);
+            summary.put("trades", trades - publishedTrades[i]);
+            summary.put("bestBid", top.getBestBid() != null ? commodity.toPrice(top.getBestBid().getPrice()) : null);
+            summary.put("bestAsk", top.getBestAsk() != null ? commodity.toPrice(top.getBestAsk().getPrice()) : null);
+            summary.put("lastTradeTime", lastTradeTime);
+            summary.put("intervalMillis", intervalMillis);
+            publishedTrades[i] = trades;
+            publishedVolume[i] = volume;
+
+            messagingTemplate.convertAndSend("/topic/market/" + commodity.getSymbol(), summary);
+            summaries.add(summary);
+        }
+        if (!summaries.isEmpty()) {
+            messagingTemplate.convertAndSend("/topic/market", summaries);
+        }
+    }
+
+    // Running totals written by one matching thread and read under a sequence lock
+    private static final class Totals {
+        volatile long version;
+        long trades;
+        long volume;
+        long lastPrice;
+        long lastTradeTime;
+    }
+}
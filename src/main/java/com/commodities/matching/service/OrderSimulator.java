@@ -13,7 +13,7 @@ public class OrderSimulator {
     private final Random random = new Random();
     private final AtomicBoolean enabled = new AtomicBoolean(true);
     
-    private final double[] basePrices = {
+    private static final double[] BASE_PRICES = {
         75.0,
         2000.0,
         25.0,
@@ -36,18 +36,21 @@ public class OrderSimulator {
             OrderSide side = random.nextBoolean() ? OrderSide.BUY : OrderSide.SELL;
             OrderType type = random.nextDouble() < 0.9 ? OrderType.LIMIT : OrderType.MARKET;
             
-            double basePrice = basePrices[commodity.ordinal()];
-            double priceVariation = basePrice * 0.02;
-            double price = basePrice + (random.nextDouble() - 0.5) * priceVariation;
-            price = Math.round(price * 100.0) / 100.0;
+            long baseTicks = commodity.toTicks(basePrice(commodity));
+            long priceVariation = baseTicks / 50;
+            long price = baseTicks + Math.round((random.nextDouble() - 0.5) * priceVariation);
             
             long quantity = (random.nextInt(20) + 1) * 100;
             
-            Order order = new Order(commodity, side, type, price, quantity);
-            matchingEngine.submitOrder(order);
+            matchingEngine.submitOrder(commodity, side, type, price, quantity);
         }
     }
 
+    // Reference price orders are generated around when the book gives no better one
+    static double basePrice(Commodity commodity) {
+        return BASE_PRICES[commodity.ordinal()];
+    }
+
     public void setEnabled(boolean enabled) {
         this.enabled.set(enabled);
     }
@@ -0,0 +1,78 @@
+package com.commodities.matching.service;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Counts STOMP subscribers per destination, so per-event topics are only built and sent
+// while someone is listening. Publishers resolve the counter for a destination once and
+// check it on every event without a map lookup. Only destinations a publisher has resolved
+// are counted; subscriptions to any other destination are ignored, so clients cannot grow
+// the map with made-up destinations.
+@Component
+public class SubscriptionRegistry {
+    private final Map<String, AtomicInteger> subscribers = new ConcurrentHashMap<>();
+    // Session id to subscription id to destination
+    private final Map<String, Map<String, String>> sessions = new ConcurrentHashMap<>();
+
+    // Registers the destination for counting; called by publishers when they start
+    public AtomicInteger subscribers(String destination) {
+        return subscribers.computeIfAbsent(destination, d -> new AtomicInteger());
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        subscribe(accessor.getSessionId(), accessor.getSubscriptionId(), accessor.getDestination());
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        unsubscribe(accessor.getSessionId(), accessor.getSubscriptionId());
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        disconnect(event.getSessionId());
+    }
+
+    void subscribe(String sessionId, String subscriptionId, String destination) {
+        if (sessionId == null || subscriptionId == null || destination == null) {
+            return;
+        }
+        AtomicInteger count = subscribers.get(destination);
+        if (count == null) {
+            return;
+        }
+        String previous = sessions.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>())
+            .put(subscriptionId, destination);
+        if (previous != null) {
+            subscribers.get(previous).decrementAndGet();
+        }
+        count.incrementAndGet();
+    }
+
+    void unsubscribe(String sessionId, String subscriptionId) {
+        Map<String, String> subscriptions = sessionId != null ? sessions.get(sessionId) : null;
+        String destination = subscriptions != null && subscriptionId != null ? subscriptions.remove(subscriptionId) : null;
+        if (destination != null) {
+            subscribers.get(destination).decrementAndGet();
+        }
+    }
+
+    // A disconnect can be reported more than once for the same session
+    void disconnect(String sessionId) {
+        Map<String, String> subscriptions = sessionId != null ? sessions.remove(sessionId) : null;
+        if (subscriptions != null) {
+            subscriptions.values().forEach(destination -> subscribers.get(destination).decrementAndGet());
+        }
+    }
+}
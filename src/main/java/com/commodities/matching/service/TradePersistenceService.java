@@ -1,58 +1,373 @@
 package com.commodities.matching.service;
 
+import com.commodities.matching.config.MatchingEngineProperties;
+import com.commodities.matching.engine.MatchingEngine;
 import com.commodities.matching.entity.TradeEntity;
+import com.commodities.matching.exception.ConflictException;
+import com.commodities.matching.model.Commodity;
 import com.commodities.matching.model.Trade;
+import com.commodities.matching.repository.TradeHistoryStore;
 import com.commodities.matching.repository.TradeRepository;
+import com.lmax.disruptor.*;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+import io.micrometer.core.instrument.*;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+// Stores every trade through a dedicated consumer thread. The matching thread copies each
+// trade into a ring buffer slot, and the consumer writes them out as JDBC batch inserts keyed
+// by trade id, flushing when a batch fills or its oldest trade has waited max-delay.
+//
+// A full ring blocks the matching thread until the database catches up, so trades are never
+// dropped; the stalls are counted in matching.engine.persistence.backpressure.
+//
+// With the trade history store enabled, each batch is also appended to it, and history
+// queries are answered from the store instead of through JPA.
 @Service
 public class TradePersistenceService {
     
     private static final Logger logger = LoggerFactory.getLogger(TradePersistenceService.class);
+    private static final String INSERT_TRADE =
+        "INSERT INTO trades (id, trade_id, buy_order_id, sell_order_id, commodity, price, quantity, "
+            + "processing_time_nanos, timestamp) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
     private final TradeRepository tradeRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final MatchingEngine matchingEngine;
+    private final MatchingEngineProperties.Persistence settings;
+    private final MatchingEngineProperties.History historySettings;
+    private final Counter persistedCounter;
+    private final Counter failedCounter;
+    private final Counter backpressureCounter;
+    private final DistributionSummary batchSizeSummary;
+    private final Timer flushTimer;
+    private final Timer lagTimer;
+    private Disruptor<TradeRecord> disruptor;
+    private BatchWriter writer;
+    private TradeHistoryStore historyStore;
+    private RingBuffer<TradeRecord> ringBuffer;
+    private volatile boolean running;
     
-    public TradePersistenceService(TradeRepository tradeRepository) {
+    public TradePersistenceService(TradeRepository tradeRepository, JdbcTemplate jdbcTemplate,
+                                   MatchingEngine matchingEngine, MatchingEngineProperties properties,
+                                   MeterRegistry meterRegistry) {
         this.tradeRepository = tradeRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.matchingEngine = matchingEngine;
+        this.settings = properties.getPersistence();
+        this.historySettings = properties.getHistory();
+        this.persistedCounter = meterRegistry.counter("matching.engine.persistence.persisted");
+        this.failedCounter = meterRegistry.counter("matching.engine.persistence.failed");
+        this.backpressureCounter = meterRegistry.counter("matching.engine.persistence.backpressure");
+        this.batchSizeSummary = meterRegistry.summary("matching.engine.persistence.batch.size");
+        this.flushTimer = meterRegistry.timer("matching.engine.persistence.flush");
+        this.lagTimer = meterRegistry.timer("matching.engine.persistence.lag");
+
+        Gauge.builder("matching.engine.persistence.pending", this, TradePersistenceService::getPendingTrades)
+            .description("Trades executed but not yet handed to the database")
+            .register(meterRegistry);
     }
-    
-    @Async
-    @Transactional
+
+    @PostConstruct
+    public void init() {
+        if (historySettings.isEnabled()) {
+            try {
+                historyStore = new TradeHistoryStore(Path.of(historySettings.getDirectory()),
+                    historySettings.getSegmentSize().toBytes(), settings.getBatchSize());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open trade history in " + historySettings.getDirectory(), e);
+            }
+            for (Commodity commodity : Commodity.values()) {
+                logger.info("Trade history for {} holds {} trades", commodity, historyStore.size(commodity));
+            }
+        }
+        disruptor = new Disruptor<>(
+            TradeRecord::new,
+            settings.getRingBufferSize(),
+            r -> {
+                Thread t = new Thread(r);
+                t.setName("trade-persistence");
+                t.setDaemon(true);
+                return t;
+            },
+            ProducerType.MULTI,
+            new TimeoutBlockingWaitStrategy(settings.getMaxDelay().toNanos(), TimeUnit.NANOSECONDS)
+        );
+        writer = new BatchWriter(settings.getBatchSize(), settings.getMaxDelay().toNanos());
+        disruptor.handleEventsWith(writer);
+        disruptor.start();
+        ringBuffer = disruptor.getRingBuffer();
+        running = true;
+
+        matchingEngine.addTradeListener(this::persistTrade);
+        logger.info("Trade persistence started with batches of up to {} trades, flushed after {} ms",
+            settings.getBatchSize(), settings.getMaxDelay().toMillis());
+    }
+
+    // Destroyed after MatchingEngine has stopped as a lifecycle bean and drained its rings, so the
+    // trades matched during shutdown are already in this ring and are flushed here
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        if (disruptor != null) {
+            try {
+                disruptor.shutdown(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                logger.warn("Trade persistence did not drain within {} seconds; {} trades not stored",
+                    SHUTDOWN_TIMEOUT_SECONDS, getPendingTrades());
+                disruptor.halt();
+            }
+            // Halting is asynchronous; wait for the writer to store what it has staged
+            try {
+                writer.stopped.await(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (historyStore != null) {
+            try {
+                historyStore.close();
+            } catch (IOException e) {
+                logger.error("Failed to close trade history", e);
+            }
+        }
+    }
+
+    // Called on the matching thread; the trade is copied because the engine reuses it
     public void persistTrade(Trade trade) {
+        if (!running) {
+            logger.warn("Trade {} executed after persistence shut down and was not stored", trade.getTradeId());
+            return;
+        }
+        long sequence;
+        try {
+            sequence = ringBuffer.tryNext();
+        } catch (InsufficientCapacityException e) {
+            backpressureCounter.increment();
+            sequence = ringBuffer.next();
+        }
         try {
-            TradeEntity entity = new TradeEntity(
-                trade.getTradeId(),
-                trade.getBuyOrderId(),
-                trade.getSellOrderId(),
-                trade.getCommodity().getSymbol(),
-                trade.getPrice(),
-                trade.getQuantity(),
-                trade.getProcessingTimeNanos()
-            );
-            
-            tradeRepository.save(entity);
-            logger.debug("Trade {} persisted to database", trade.getTradeId());
-        } catch (Exception e) {
-            logger.error("Failed to persist trade {}", trade.getTradeId(), e);
+            ringBuffer.get(sequence).copyOf(trade);
+        } finally {
+            ringBuffer.publish(sequence);
         }
     }
+
+    public long getPendingTrades() {
+        RingBuffer<TradeRecord> buffer = ringBuffer;
+        return buffer == null ? 0 : buffer.getBufferSize() - buffer.remainingCapacity();
+    }
     
-    public List<TradeEntity> getRecentTrades(String commodity, int minutes) {
+    // Newest first
+    public List<TradeEntity> getRecentTrades(Commodity commodity, int minutes) {
         Instant since = Instant.now().minusSeconds(minutes * 60L);
-        return tradeRepository.findRecentTradesByCommodity(commodity, since);
+        if (historyStore == null) {
+            return tradeRepository.findRecentTradesByCommodity(commodity.getSymbol(), since);
+        }
+        List<TradeEntity> trades = findTrades(commodity, since.toEpochMilli(), Long.MAX_VALUE);
+        Collections.reverse(trades);
+        return trades;
     }
     
-    public List<TradeEntity> getTradesByCommodity(String commodity) {
-        return tradeRepository.findByCommodity(commodity);
+    public List<TradeEntity> getTradesByCommodity(Commodity commodity) {
+        if (historyStore == null) {
+            return tradeRepository.findByCommodity(commodity.getSymbol());
+        }
+        return findTrades(commodity, Long.MIN_VALUE, Long.MAX_VALUE);
     }
     
     public Long getTradeCountSince(Instant since) {
-        return tradeRepository.countTradesSince(since);
+        if (historyStore == null) {
+            return tradeRepository.countTradesSince(since);
+        }
+        long count = 0;
+        for (Commodity commodity : Commodity.values()) {
+            count += historyStore.aggregate(commodity, since.toEpochMilli(), Long.MAX_VALUE).getCount();
+        }
+        return count;
+    }
+
+    public TradeHistoryStore.TradeAggregate getTradeSummary(Commodity commodity, Instant from, Instant to) {
+        if (historyStore == null) {
+            throw new ConflictException("Trade summaries require the trade history store to be enabled");
+        }
+        return historyStore.aggregate(commodity, from.toEpochMilli(), to.toEpochMilli());
+    }
+
+    private List<TradeEntity> findTrades(Commodity commodity, long fromMillis, long toMillis) {
+        List<TradeEntity> trades = new ArrayList<>();
+        historyStore.scan(commodity, fromMillis, toMillis,
+            (timestamp, tradeId, buyOrderId, sellOrderId, price, quantity, processingTimeNanos) -> {
+                TradeEntity entity = new TradeEntity(tradeId, buyOrderId, sellOrderId, commodity.getSymbol(),
+                    commodity.toPrice(price), quantity, processingTimeNanos);
+                entity.setTimestamp(Instant.ofEpochMilli(timestamp));
+                trades.add(entity);
+            });
+        return trades;
+    }
+
+    static final class TradeRecord {
+        long tradeId;
+        long buyOrderId;
+        long sellOrderId;
+        Commodity commodity;
+        long price;
+        long quantity;
+        long timestamp;
+        long processingTimeNanos;
+
+        void copyOf(Trade trade) {
+            tradeId = trade.getTradeId();
+            buyOrderId = trade.getBuyOrderId();
+            sellOrderId = trade.getSellOrderId();
+            commodity = trade.getCommodity();
+            price = trade.getPrice();
+            quantity = trade.getQuantity();
+            timestamp = trade.getTimestamp();
+            processingTimeNanos = trade.getProcessingTimeNanos();
+        }
+    }
+
+    // Runs on the persistence thread. Trades are staged into preallocated columns and bound
+    // straight from them, so a flush allocates nothing per trade beyond the JDBC driver's own.
+    private final class BatchWriter implements EventHandler<TradeRecord>, TimeoutHandler, LifecycleAware,
+        BatchPreparedStatementSetter {
+        private final CountDownLatch stopped = new CountDownLatch(1);
+        private final long maxDelayNanos;
+        private final long[] tradeIds;
+        private final long[] buyOrderIds;
+        private final long[] sellOrderIds;
+        private final Commodity[] commodities;
+        private final long[] prices;
+        private final long[] quantities;
+        private final long[] timestamps;
+        private final long[] processingTimes;
+        private int size;
+        private long oldestStagedAt;
+
+        BatchWriter(int batchSize, long maxDelayNanos) {
+            this.maxDelayNanos = maxDelayNanos;
+            this.tradeIds = new long[batchSize];
+            this.buyOrderIds = new long[batchSize];
+            this.sellOrderIds = new long[batchSize];
+            this.commodities = new Commodity[batchSize];
+            this.prices = new long[batchSize];
+            this.quantities = new long[batchSize];
+            this.timestamps = new long[batchSize];
+            this.processingTimes = new long[batchSize];
+        }
+
+        @Override
+        public void onEvent(TradeRecord trade, long sequence, boolean endOfBatch) {
+            if (size == 0) {
+                oldestStagedAt = System.nanoTime();
+            }
+            tradeIds[size] = trade.tradeId;
+            buyOrderIds[size] = trade.buyOrderId;
+            sellOrderIds[size] = trade.sellOrderId;
+            commodities[size] = trade.commodity;
+            prices[size] = trade.price;
+            quantities[size] = trade.quantity;
+            timestamps[size] = trade.timestamp;
+            processingTimes[size] = trade.processingTimeNanos;
+            size++;
+
+            if (size == tradeIds.length || (endOfBatch && System.nanoTime() - oldestStagedAt >= maxDelayNanos)) {
+                flush();
+            }
+        }
+
+        // The ring has been idle for max-delay, so nothing else is coming to fill the batch
+        @Override
+        public void onTimeout(long sequence) {
+            flush();
+        }
+
+        @Override
+        public void onStart() {
+        }
+
+        @Override
+        public void onShutdown() {
+            flush();
+            stopped.countDown();
+        }
+
+        private void flush() {
+            if (size == 0) {
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                jdbcTemplate.batchUpdate(INSERT_TRADE, this);
+                persistedCounter.increment(size);
+            } catch (DataAccessException e) {
+                failedCounter.increment(size);
+                logger.error("Failed to persist {} trades ({} to {})", size, tradeIds[0], tradeIds[size - 1], e);
+            }
+            if (historyStore != null) {
+                appendHistory();
+            }
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            lagTimer.record(Math.max(0, System.currentTimeMillis() - timestamps[0]), TimeUnit.MILLISECONDS);
+            batchSizeSummary.record(size);
+            size = 0;
+        }
+
+        private void appendHistory() {
+            try {
+                for (int i = 0; i < size; i++) {
+                    historyStore.append(commodities[i], timestamps[i], tradeIds[i], buyOrderIds[i], sellOrderIds[i],
+                        prices[i], quantities[i], processingTimes[i]);
+                }
+                historyStore.commit();
+            } catch (IOException e) {
+                logger.error("Failed to append {} trades ({} to {}) to the trade history",
+                    size, tradeIds[0], tradeIds[size - 1], e);
+            }
+        }
+
+        @Override
+        public void setValues(PreparedStatement ps, int i) throws SQLException {
+            Commodity commodity = commodities[i];
+            ps.setLong(1, tradeIds[i]);
+            ps.setLong(2, tradeIds[i]);
+            ps.setLong(3, buyOrderIds[i]);
+            ps.setLong(4, sellOrderIds[i]);
+            ps.setString(5, commodity.getSymbol());
+            ps.setDouble(6, commodity.toPrice(prices[i]));
+            ps.setLong(7, quantities[i]);
+            ps.setLong(8, processingTimes[i]);
+            ps.setTimestamp(9, new Timestamp(timestamps[i]));
+        }
+
+        @Override
+        public int getBatchSize() {
+            return size;
+        }
     }
 }
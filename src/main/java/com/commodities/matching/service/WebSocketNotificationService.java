@@ -1,57 +1,266 @@
 package com.commodities.matching.service;
 
+import com.commodities.matching.config.WebSocketConfig;
 import com.commodities.matching.engine.MatchingEngine;
+import com.commodities.matching.engine.OrderBook;
+import com.commodities.matching.engine.PriceLevel;
 import com.commodities.matching.model.*;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
+// Full-fidelity feeds: one message per trade, order, book change and top-of-book change. Each
+// is only built and sent while a client subscribes to its global or per-symbol topic, as JSON
+// or in the binary layouts of MarketDataEncoder; everyone else should use the conflated
+// summaries from MarketDataPublisher. JSON is built and sent on the matching thread; binary
+// messages are encoded into a BinaryOutbound slot and sent from its thread.
 @Service
 public class WebSocketNotificationService {
+    private static final int BINARY_RING_SIZE = 1 << 14;
+
     private final SimpMessagingTemplate messagingTemplate;
     private final MatchingEngine matchingEngine;
+    private final Topic trades;
+    private final Topic orders;
+    private final Topic[] symbolTrades;
+    private final Topic[] symbolOrders;
+    private final Topic[] books;
+    private final Topic[] bbos;
+    // Per commodity, each used only by the matching thread that owns the commodity
+    private final MarketDataEncoder[] encoders;
+    private final long[] bboSequence;
+    private final long[] bbo;
+    private final BinaryOutbound binaryOutbound;
 
     public WebSocketNotificationService(SimpMessagingTemplate messagingTemplate, 
-                                       MatchingEngine matchingEngine) {
+                                       MatchingEngine matchingEngine,
+                                       SubscriptionRegistry subscriptions,
+                                       MeterRegistry meterRegistry) {
         this.messagingTemplate = messagingTemplate;
+        this.binaryOutbound = new BinaryOutbound(messagingTemplate,
+            meterRegistry.counter("matching.engine.marketdata.binary.dropped"), BINARY_RING_SIZE);
         this.matchingEngine = matchingEngine;
+        this.trades = new Topic(subscriptions, "trades");
+        this.orders = new Topic(subscriptions, "orders");
+        Commodity[] commodities = Commodity.values();
+        this.symbolTrades = new Topic[commodities.length];
+        this.symbolOrders = new Topic[commodities.length];
+        this.books = new Topic[commodities.length];
+        this.bbos = new Topic[commodities.length];
+        this.encoders = new MarketDataEncoder[commodities.length];
+        this.bboSequence = new long[commodities.length];
+        this.bbo = new long[commodities.length * 4];
+        for (Commodity commodity : commodities) {
+            int i = commodity.ordinal();
+            symbolTrades[i] = new Topic(subscriptions, "trades/" + commodity.getSymbol());
+            symbolOrders[i] = new Topic(subscriptions, "orders/" + commodity.getSymbol());
+            books[i] = new Topic(subscriptions, "book/" + commodity.getSymbol());
+            bbos[i] = new Topic(subscriptions, "bbo/" + commodity.getSymbol());
+            encoders[i] = new MarketDataEncoder(commodity);
+        }
     }
 
     @PostConstruct
     public void init() {
+        binaryOutbound.start();
         matchingEngine.addTradeListener(this::broadcastTrade);
         matchingEngine.addOrderListener(this::broadcastOrder);
+        matchingEngine.addBookListener(this::broadcastBookUpdate);
+    }
+
+    // Destroyed after MatchingEngine has stopped, so nothing is published into the ring any more
+    @PreDestroy
+    public void shutdown() {
+        binaryOutbound.shutdown();
     }
 
     private void broadcastTrade(Trade trade) {
-        Map<String, Object> tradeData = Map.of(
-            "tradeId", trade.getTradeId(),
-            "commodity", trade.getCommodity().getSymbol(),
-            "price", trade.getPrice(),
-            "quantity", trade.getQuantity(),
-            "buyOrderId", trade.getBuyOrderId(),
-            "sellOrderId", trade.getSellOrderId(),
-            "latencyMicros", trade.getProcessingTimeMicros(),
-            "timestamp", trade.getTimestamp().toEpochMilli()
-        );
-        
-        messagingTemplate.convertAndSend("/topic/trades", tradeData);
-        messagingTemplate.convertAndSend("/topic/trades/" + trade.getCommodity().getSymbol(), tradeData);
+        Topic symbol = symbolTrades[trade.getCommodity().ordinal()];
+        if (trades.json() || symbol.json()) {
+            Map<String, Object> tradeData = Map.of(
+                "tradeId", trade.getTradeId(),
+                "commodity", trade.getCommodity().getSymbol(),
+                "price", trade.getCommodity().toPrice(trade.getPrice()),
+                "quantity", trade.getQuantity(),
+                "buyOrderId", trade.getBuyOrderId(),
+                "sellOrderId", trade.getSellOrderId(),
+                "latencyMicros", trade.getProcessingTimeMicros(),
+                "timestamp", trade.getTimestamp()
+            );
+            sendJson(trades, symbol, tradeData);
+        }
+        if (trades.binary() || symbol.binary()) {
+            long sequence = binaryOutbound.claim();
+            if (sequence >= 0) {
+                BinaryOutbound.Message message = binaryOutbound.get(sequence);
+                try {
+                    message.buffer = encoders[trade.getCommodity().ordinal()].encodeTrade(trade, message.buffer);
+                    route(message, trades, symbol);
+                } finally {
+                    binaryOutbound.publish(sequence);
+                }
+            }
+        }
     }
 
     private void broadcastOrder(Order order) {
-        Map<String, Object> orderData = Map.of(
-            "orderId", order.getOrderId(),
-            "commodity", order.getCommodity().getSymbol(),
-            "side", order.getSide().toString(),
-            "type", order.getType().toString(),
-            "price", order.getPrice(),
-            "quantity", order.getQuantity(),
-            "timestamp", order.getTimestamp().toEpochMilli()
+        Topic symbol = symbolOrders[order.getCommodity().ordinal()];
+        if (orders.json() || symbol.json()) {
+            Map<String, Object> orderData = Map.of(
+                "orderId", order.getOrderId(),
+                "commodity", order.getCommodity().getSymbol(),
+                "side", order.getSide().toString(),
+                "type", order.getType().toString(),
+                "price", order.getCommodity().toPrice(order.getPrice()),
+                "quantity", order.getQuantity(),
+                "timestamp", order.getTimestamp()
+            );
+            sendJson(orders, symbol, orderData);
+        }
+        if (orders.binary() || symbol.binary()) {
+            long sequence = binaryOutbound.claim();
+            if (sequence >= 0) {
+                BinaryOutbound.Message message = binaryOutbound.get(sequence);
+                try {
+                    message.buffer = encoders[order.getCommodity().ordinal()].encodeOrder(order, message.buffer);
+                    route(message, orders, symbol);
+                } finally {
+                    binaryOutbound.publish(sequence);
+                }
+            }
+        }
+    }
+
+    private void broadcastBookUpdate(OrderBook orderBook) {
+        int i = orderBook.getCommodity().ordinal();
+        if (books[i].json()) {
+            sendBookUpdate(orderBook);
+        }
+        if (books[i].binary()) {
+            long sequence = binaryOutbound.claim();
+            if (sequence >= 0) {
+                BinaryOutbound.Message message = binaryOutbound.get(sequence);
+                try {
+                    message.buffer = encoders[i].encodeBookUpdate(orderBook, message.buffer);
+                    message.destination = books[i].binaryDestination;
+                } finally {
+                    binaryOutbound.publish(sequence);
+                }
+            }
+        }
+        if (bbos[i].json() || bbos[i].binary()) {
+            broadcastBbo(orderBook);
+        }
+    }
+
+    // Level deltas carry the new aggregate state, zero quantity meaning the level is gone. Clients
+    // apply them on top of /api/orderbook/{commodity}/levels, skipping sequences the snapshot covers.
+    private void sendBookUpdate(OrderBook orderBook) {
+        Commodity commodity = orderBook.getCommodity();
+        List<Map<String, Object>> bids = new ArrayList<>();
+        List<Map<String, Object>> asks = new ArrayList<>();
+        for (int i = 0; i < orderBook.getChangedLevelCount(); i++) {
+            Map<String, Object> level = Map.of(
+                "price", commodity.toPrice(orderBook.getChangedLevelPrice(i)),
+                "quantity", orderBook.getChangedLevelQuantity(i),
+                "orders", orderBook.getChangedLevelOrders(i)
+            );
+            (orderBook.isChangedLevelBid(i) ? bids : asks).add(level);
+        }
+
+        Map<String, Object> update = Map.of(
+            "commodity", commodity.getSymbol(),
+            "sequence", orderBook.getSequence(),
+            "bids", bids,
+            "asks", asks
         );
-        
-        messagingTemplate.convertAndSend("/topic/orders", orderData);
-        messagingTemplate.convertAndSend("/topic/orders/" + order.getCommodity().getSymbol(), orderData);
+        messagingTemplate.convertAndSend(books[commodity.ordinal()].destination, update);
+    }
+
+    // Sent only when the best price or quantity on either side moved
+    private void broadcastBbo(OrderBook orderBook) {
+        Commodity commodity = orderBook.getCommodity();
+        int i = commodity.ordinal();
+        PriceLevel bid = orderBook.getBestBidLevel();
+        PriceLevel ask = orderBook.getBestAskLevel();
+        long bidPrice = bid != null ? bid.getPrice() : 0;
+        long bidQuantity = bid != null ? bid.getQuantity() : 0;
+        long askPrice = ask != null ? ask.getPrice() : 0;
+        long askQuantity = ask != null ? ask.getQuantity() : 0;
+        int base = i * 4;
+        if (bboSequence[i] != 0 && bbo[base] == bidPrice && bbo[base + 1] == bidQuantity
+            && bbo[base + 2] == askPrice && bbo[base + 3] == askQuantity) {
+            return;
+        }
+        bboSequence[i] = orderBook.getSequence();
+        bbo[base] = bidPrice;
+        bbo[base + 1] = bidQuantity;
+        bbo[base + 2] = askPrice;
+        bbo[base + 3] = askQuantity;
+
+        if (bbos[i].json()) {
+            Map<String, Object> update = new LinkedHashMap<>();
+            update.put("commodity", commodity.getSymbol());
+            update.put("sequence", orderBook.getSequence());
+            update.put("bidPrice", bid != null ? commodity.toPrice(bidPrice) : null);
+            update.put("bidQuantity", bidQuantity);
+            update.put("askPrice", ask != null ? commodity.toPrice(askPrice) : null);
+            update.put("askQuantity", askQuantity);
+            messagingTemplate.convertAndSend(bbos[i].destination, update);
+        }
+        if (bbos[i].binary()) {
+            long sequence = binaryOutbound.claim();
+            if (sequence >= 0) {
+                BinaryOutbound.Message message = binaryOutbound.get(sequence);
+                try {
+                    message.buffer = encoders[i].encodeBbo(orderBook.getSequence(), bid, ask, message.buffer);
+                    message.destination = bbos[i].binaryDestination;
+                } finally {
+                    binaryOutbound.publish(sequence);
+                }
+            }
+        }
+    }
+
+    private void sendJson(Topic all, Topic symbol, Object payload) {
+        if (all.json()) {
+            messagingTemplate.convertAndSend(all.destination, payload);
+        }
+        if (symbol.json()) {
+            messagingTemplate.convertAndSend(symbol.destination, payload);
+        }
+    }
+
+    // Set only once the message is encoded, so a failed encoding is published without destinations
+    private static void route(BinaryOutbound.Message message, Topic all, Topic symbol) {
+        message.destination = all.binary() ? all.binaryDestination : null;
+        message.symbolDestination = symbol.binary() ? symbol.binaryDestination : null;
+    }
+
+    // A feed's JSON and binary destinations with their subscriber counts
+    private static final class Topic {
+        final String destination;
+        final String binaryDestination;
+        final AtomicInteger jsonSubscribers;
+        final AtomicInteger binarySubscribers;
+
+        Topic(SubscriptionRegistry subscriptions, String name) {
+            this.destination = "/topic/" + name;
+            this.binaryDestination = WebSocketConfig.BINARY_PREFIX + name;
+            this.jsonSubscribers = subscriptions.subscribers(destination);
+            this.binarySubscribers = subscriptions.subscribers(binaryDestination);
+        }
+
+        boolean json() {
+            return jsonSubscribers.get() > 0;
+        }
+
+        boolean binary() {
+            return binarySubscribers.get() > 0;
+        }
     }
 }
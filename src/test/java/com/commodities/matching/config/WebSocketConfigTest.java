@@ -0,0 +1,66 @@
+package com.commodities.matching.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+class WebSocketConfigTest {
+
+    private final WebSocketConfig.EncodingNegotiationInterceptor interceptor =
+        new WebSocketConfig.EncodingNegotiationInterceptor();
+
+    @Test
+    @DisplayName("Should move binary subscriptions to the binary destination")
+    void shouldMoveBinarySubscriptions() {
+        StompHeaderAccessor binary = subscribe("/topic/trades/GOLD", "binary", true);
+        StompHeaderAccessor json = subscribe("/topic/trades/GOLD", null, true);
+
+        interceptor.preSend(message(binary), null);
+        interceptor.preSend(message(json), null);
+
+        assertThat(binary.getDestination()).isEqualTo("/topic/binary/trades/GOLD");
+        assertThat(binary.getSubscriptionId()).isEqualTo("sub-0");
+        assertThat(json.getDestination()).isEqualTo("/topic/trades/GOLD");
+    }
+
+    @Test
+    @DisplayName("Should reject binary subscriptions that cannot be served")
+    void shouldRejectUnsupportedBinarySubscriptions() {
+        assertThatThrownBy(() -> interceptor.preSend(message(subscribe("/topic/candles/GOLD", "binary", true)), null))
+            .isInstanceOf(IllegalArgumentException.class);
+        // SockJS sessions only carry text frames
+        assertThatThrownBy(() -> interceptor.preSend(message(subscribe("/topic/trades", "binary", false)), null))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> interceptor.preSend(message(subscribe("/topic/binary/trades", null, false)), null))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static StompHeaderAccessor subscribe(String destination, String encoding, boolean binarySession) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setSessionId("s1");
+        accessor.setSubscriptionId("sub-0");
+        accessor.setDestination(destination);
+        if (encoding != null) {
+            accessor.setNativeHeader(WebSocketConfig.ENCODING_HEADER, encoding);
+        }
+        Map<String, Object> attributes = new HashMap<>();
+        if (binarySession) {
+            attributes.put(WebSocketConfig.BINARY_SESSION, Boolean.TRUE);
+        }
+        accessor.setSessionAttributes(attributes);
+        accessor.setLeaveMutable(true);
+        return accessor;
+    }
+
+    private static Message<byte[]> message(StompHeaderAccessor accessor) {
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
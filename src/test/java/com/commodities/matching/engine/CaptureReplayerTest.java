@@ -0,0 +1,126 @@
+package com.commodities.matching.engine;
+
+import com.commodities.matching.config.MatchingEngineProperties;
+import com.commodities.matching.metrics.MetricsCollector;
+import com.commodities.matching.model.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+
+class CaptureReplayerTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Should replay a capture into the same books and trades at any speed")
+    void shouldReproduceBooksAndTrades() throws Exception {
+        MatchingEngineProperties properties = properties(false);
+        MatchingEngine engine = new MatchingEngine(new MetricsCollector(new SimpleMeterRegistry()), properties);
+        AtomicLong trades = new AtomicLong();
+        engine.addTradeListener(trade -> trades.incrementAndGet());
+        engine.init();
+        int events = submitFlow(engine);
+        engine.awaitIdle();
+        String liveBooks = CaptureReplayer.bookChecksum(engine);
+        engine.shutdown();
+
+        CaptureReplayer.Report fast = CaptureReplayer.replay(captureDirectory(), 0, properties);
+        CaptureReplayer.Report paced = CaptureReplayer.replay(captureDirectory(), 50, properties);
+
+        assertThat(fast.events).isEqualTo(events);
+        assertThat(fast.trades).isEqualTo(trades.get()).isPositive();
+        assertThat(fast.bookChecksum).isEqualTo(liveBooks);
+        assertThat(fast.latency.count).isEqualTo(events);
+        assertThat(paced.bookChecksum).isEqualTo(fast.bookChecksum);
+        assertThat(paced.tradeChecksum).isEqualTo(fast.tradeChecksum);
+        assertThat(paced.speed).isEqualTo("50.0x");
+    }
+
+    @Test
+    @DisplayName("Should start the capture from the books recovered at startup")
+    void shouldSeedCaptureWithRecoveredBooks() throws Exception {
+        MatchingEngine first = new MatchingEngine(new MetricsCollector(new SimpleMeterRegistry()), properties(true));
+        first.init();
+        first.submitOrder(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, Commodity.GOLD.toTicks(1790.0), 10);
+        first.submitOrder(Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, Commodity.GOLD.toTicks(1810.0), 10);
+        first.submitOrder(Commodity.CRUDE_OIL, OrderSide.SELL, OrderType.LIMIT, Commodity.CRUDE_OIL.toTicks(80.0), 5);
+        first.awaitIdle();
+        first.shutdown();
+
+        MatchingEngineProperties properties = properties(true);
+        properties.getCapture().setEnabled(true);
+        MatchingEngine second = new MatchingEngine(new MetricsCollector(new SimpleMeterRegistry()), properties);
+        second.init();
+        second.submitOrder(Commodity.GOLD, OrderSide.BUY, OrderType.MARKET, 0, 4);
+        second.submitOrder(Commodity.CRUDE_OIL, OrderSide.BUY, OrderType.LIMIT, Commodity.CRUDE_OIL.toTicks(80.0), 2);
+        second.awaitIdle();
+        String liveBooks = CaptureReplayer.bookChecksum(second);
+        second.shutdown();
+
+        CaptureReplayer.Report report = CaptureReplayer.replay(captureDirectory(), 0, properties);
+
+        assertThat(report.events).isEqualTo(5);
+        assertThat(report.trades).isEqualTo(2);
+        assertThat(report.bookChecksum).isEqualTo(liveBooks);
+    }
+
+    @Test
+    @DisplayName("Should reject a directory without capture files")
+    void shouldRejectEmptyDirectory() {
+        assertThatThrownBy(() -> CaptureReplayer.replay(directory, 0, properties(false)))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // New orders on two shards, some crossing, plus cancels and amends of resting ones
+    private static int submitFlow(MatchingEngine engine) {
+        int events = 0;
+        for (int i = 0; i < 200; i++) {
+            Commodity commodity = i % 3 == 0 ? Commodity.CRUDE_OIL : Commodity.GOLD;
+            OrderSide side = i % 2 == 0 ? OrderSide.BUY : OrderSide.SELL;
+            long mid = commodity.toTicks(commodity == Commodity.GOLD ? 1800.0 : 80.0);
+            long orderId = engine.submitOrder(commodity, side, OrderType.LIMIT, mid + (i % 7) - 3, 10 + i % 5);
+            events++;
+            if (i % 5 == 0) {
+                engine.cancelOrder(commodity, orderId);
+                events++;
+            } else if (i % 11 == 0) {
+                engine.replaceOrder(commodity, orderId, mid - 10, 3);
+                events++;
+            }
+            if (i % 17 == 0) {
+                engine.submitOrder(commodity, OrderSide.BUY, OrderType.MARKET, 0, 25);
+                events++;
+            }
+        }
+        return events;
+    }
+
+    private MatchingEngineProperties properties(boolean journal) {
+        MatchingEngineProperties properties = new MatchingEngineProperties();
+        properties.getSharding().setEnabled(true);
+        properties.getJournal().setEnabled(journal);
+        properties.getJournal().setDirectory(directory.resolve("journal").toString());
+        properties.getSnapshot().setDirectory(directory.resolve("snapshots").toString());
+        properties.getCapture().setEnabled(!journal);
+        properties.getCapture().setDirectory(directory.resolve("captures").toString());
+        return properties;
+    }
+
+    private Path captureDirectory() throws Exception {
+        try (Stream<Path> runs = Files.list(directory.resolve("captures"))) {
+            List<Path> captures = runs.toList();
+            assertThat(captures).hasSize(1);
+            return captures.get(0);
+        }
+    }
+}
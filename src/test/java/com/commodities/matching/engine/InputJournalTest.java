@@ -0,0 +1,115 @@
+package com.commodities.matching.engine;
+
+import com.commodities.matching.model.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+
+class InputJournalTest {
+
+    private static final long SEGMENT_SIZE = OrderEventCodec.RECORD_SIZE * 10;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Should roll segments and replay every record in order")
+    void shouldRollSegmentsAndReplay() throws Exception {
+        InputJournal journal = open();
+        journal.replay((event, sequence, endOfBatch) -> fail("new journal should be empty"));
+        appendOrders(journal, 1, 25);
+        journal.close();
+
+        assertThat(segmentCount()).isEqualTo(3);
+        assertThat(replayOrderIds()).hasSize(25).startsWith(1L, 2L).endsWith(25L);
+    }
+
+    @Test
+    @DisplayName("Should continue the sequence after reopening")
+    void shouldContinueSequenceAfterReopen() throws Exception {
+        InputJournal journal = open();
+        journal.replay((event, sequence, endOfBatch) -> { });
+        appendOrders(journal, 1, 15);
+        journal.close();
+
+        InputJournal reopened = open();
+        assertThat(reopened.replay((event, sequence, endOfBatch) -> { })).isEqualTo(15);
+        assertThat(reopened.nextSequence()).isEqualTo(15);
+        appendOrders(reopened, 16, 10);
+        reopened.close();
+
+        List<Long> orderIds = replayOrderIds();
+        assertThat(orderIds).hasSize(25);
+        for (int i = 0; i < orderIds.size(); i++) {
+            assertThat(orderIds.get(i)).isEqualTo(i + 1);
+        }
+    }
+
+    @Test
+    @DisplayName("Should stop at a torn record and overwrite everything after it")
+    void shouldRecoverFromTornRecord() throws Exception {
+        InputJournal journal = open();
+        journal.replay((event, sequence, endOfBatch) -> { });
+        appendOrders(journal, 1, 25);
+        journal.close();
+
+        // Damage the fifth record of the second segment
+        Path segment = directory.resolve(String.format("%020d.seg", 10));
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 0x7f }), OrderEventCodec.RECORD_SIZE * 4 + 3);
+        }
+
+        InputJournal recovered = open();
+        assertThat(recovered.replay((event, sequence, endOfBatch) -> { })).isEqualTo(14);
+        appendOrders(recovered, 100, 3);
+        recovered.close();
+
+        assertThat(segmentCount()).isEqualTo(2);
+        assertThat(replayOrderIds()).hasSize(17).endsWith(13L, 14L, 100L, 101L, 102L);
+    }
+
+    private InputJournal open() throws IOException {
+        return new InputJournal(directory, SEGMENT_SIZE, false);
+    }
+
+    private static void appendOrders(InputJournal journal, long firstOrderId, int count) throws IOException {
+        MatchingEngine.OrderEvent event = new MatchingEngine.OrderEvent();
+        event.eventType = MatchingEngine.EventType.NEW;
+        event.commodity = Commodity.GOLD;
+        event.side = OrderSide.BUY;
+        event.type = OrderType.LIMIT;
+        event.price = 18000;
+        event.quantity = 1;
+        for (int i = 0; i < count; i++) {
+            event.orderId = firstOrderId + i;
+            journal.append(event);
+        }
+        journal.flush();
+    }
+
+    private List<Long> replayOrderIds() throws Exception {
+        List<Long> orderIds = new ArrayList<>();
+        InputJournal journal = open();
+        journal.replay((event, sequence, endOfBatch) -> orderIds.add(event.orderId));
+        journal.close();
+        return orderIds;
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.commodities.matching.engine;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.*;
+
+class LongObjectHashMapTest {
+    
+    private LongObjectHashMap<String> map;
+    
+    @BeforeEach
+    void setUp() {
+        map = new LongObjectHashMap<>(8);
+    }
+    
+    @Test
+    @DisplayName("Should put, get and remove entries")
+    void shouldPutGetAndRemove() {
+        assertThat(map.put(1L, "one")).isNull();
+        assertThat(map.put(2L, "two")).isNull();
+        assertThat(map.put(1L, "uno")).isEqualTo("one");
+        
+        assertThat(map.get(1L)).isEqualTo("uno");
+        assertThat(map.get(3L)).isNull();
+        assertThat(map.size()).isEqualTo(2);
+        
+        assertThat(map.remove(1L)).isEqualTo("uno");
+        assertThat(map.remove(1L)).isNull();
+        assertThat(map.containsKey(2L)).isTrue();
+        assertThat(map.size()).isEqualTo(1);
+    }
+    
+    @Test
+    @DisplayName("Should support zero and negative keys")
+    void shouldSupportZeroAndNegativeKeys() {
+        map.put(0L, "zero");
+        map.put(-5L, "minus five");
+        
+        assertThat(map.get(0L)).isEqualTo("zero");
+        assertThat(map.get(-5L)).isEqualTo("minus five");
+        assertThat(map.size()).isEqualTo(2);
+        assertThat(map.remove(0L)).isEqualTo("zero");
+        assertThat(map.get(0L)).isNull();
+    }
+    
+    @Test
+    @DisplayName("Should grow past its initial capacity")
+    void shouldGrow() {
+        for (long key = 1; key <= 100_000; key++) {
+            map.put(key, Long.toString(key));
+        }
+        
+        assertThat(map.size()).isEqualTo(100_000);
+        for (long key = 1; key <= 100_000; key++) {
+            assertThat(map.get(key)).isEqualTo(Long.toString(key));
+        }
+    }
+    
+    @Test
+    @DisplayName("Should stay consistent with HashMap under random puts and removes")
+    void shouldMatchReferenceMap() {
+        Map<Long, String> reference = new HashMap<>();
+        Random random = new Random(42);
+        
+        for (int i = 0; i < 200_000; i++) {
+            long key = random.nextInt(5_000);
+            if (random.nextBoolean()) {
+                String value = "v" + i;
+                assertThat(map.put(key, value)).isEqualTo(reference.put(key, value));
+            } else {
+                assertThat(map.remove(key)).isEqualTo(reference.remove(key));
+            }
+        }
+        
+        assertThat(map.size()).isEqualTo(reference.size());
+        for (long key = 0; key < 5_000; key++) {
+            assertThat(map.get(key)).isEqualTo(reference.get(key));
+        }
+    }
+    
+    @Test
+    @DisplayName("Should clear all entries")
+    void shouldClear() {
+        map.put(0L, "zero");
+        map.put(7L, "seven");
+        map.clear();
+        
+        assertThat(map.isEmpty()).isTrue();
+        assertThat(map.get(7L)).isNull();
+        assertThat(map.get(0L)).isNull();
+    }
+}
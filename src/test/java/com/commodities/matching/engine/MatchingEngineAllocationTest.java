@@ -0,0 +1,208 @@
+package com.commodities.matching.engine;
+
+import ch.qos.logback.classic.Level;
+import com.commodities.matching.config.WebSocketConfig;
+import com.commodities.matching.metrics.MetricsCollector;
+import com.commodities.matching.model.*;
+import com.commodities.matching.service.SubscriptionRegistry;
+import com.commodities.matching.service.WebSocketNotificationService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+class MatchingEngineAllocationTest {
+
+    private static final int WARMUP_ROUNDS = 200_000;
+    private static final int MEASURED_ROUNDS = 100_000;
+    private static final int ORDERS_PER_ROUND = 5;
+
+    private final ch.qos.logback.classic.Logger engineLogger =
+        (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(MatchingEngine.class);
+    private final MatchingEngine.OrderEvent event = new MatchingEngine.OrderEvent();
+    private final AtomicLong tradeCount = new AtomicLong();
+    private Level previousLevel;
+    private MatchingEngine matchingEngine;
+    private long nextOrderId = 1;
+    private long sequence;
+    // Views are published at the end of each batch; the per-order check runs mid-batch
+    private boolean endOfBatch;
+
+    @BeforeEach
+    void setUp() {
+        previousLevel = engineLogger.getLevel();
+        engineLogger.setLevel(Level.INFO);
+
+        // The handler is driven directly on this thread, so no Disruptor is started
+        matchingEngine = new MatchingEngine(new MetricsCollector(new SimpleMeterRegistry()));
+        matchingEngine.addTradeListener(trade -> tradeCount.incrementAndGet());
+        matchingEngine.addOrderListener(order -> { });
+    }
+
+    @AfterEach
+    void tearDown() {
+        engineLogger.setLevel(previousLevel);
+    }
+
+    @Test
+    @DisplayName("Should not allocate per order once warmed up")
+    void shouldNotAllocateInSteadyState() {
+        for (int i = 1; i <= 100; i++) {
+            handle(OrderSide.BUY, OrderType.LIMIT, 1700.0 - i, 10);
+            handle(OrderSide.SELL, OrderType.LIMIT, 1900.0 + i, 10);
+        }
+
+        runRounds(WARMUP_ROUNDS);
+        long tradesBefore = tradeCount.get();
+        long allocatedBefore = allocatedBytes();
+
+        runRounds(MEASURED_ROUNDS);
+
+        long allocated = allocatedBytes() - allocatedBefore;
+        long measuredOrders = (long) MEASURED_ROUNDS * ORDERS_PER_ROUND;
+        assertThat(tradeCount.get() - tradesBefore).isEqualTo(2L * MEASURED_ROUNDS);
+        assertThat(allocated)
+            .as("bytes allocated while matching %d orders", measuredOrders)
+            .isLessThan(measuredOrders);
+
+        OrderBook orderBook = matchingEngine.getOrderBook(Commodity.GOLD);
+        assertThat(orderBook.getBuyOrderCount()).isEqualTo(100);
+        assertThat(orderBook.getSellOrderCount()).isEqualTo(100);
+    }
+
+    @Test
+    @DisplayName("Should not allocate on the matching thread while binary feeds have subscribers")
+    void shouldNotAllocateForBinaryFeeds() throws InterruptedException {
+        AtomicLong sent = new AtomicLong();
+        SimpMessagingTemplate messagingTemplate = new SimpMessagingTemplate((message, timeout) -> {
+            sent.incrementAndGet();
+            return true;
+        });
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        SubscriptionRegistry subscriptions = new SubscriptionRegistry();
+        for (String topic : new String[] { "trades", "trades/GOLD", "orders", "book/GOLD", "bbo/GOLD" }) {
+            subscriptions.subscribers(WebSocketConfig.BINARY_PREFIX + topic).incrementAndGet();
+        }
+        WebSocketNotificationService notifications = new WebSocketNotificationService(
+            messagingTemplate, matchingEngine, subscriptions, meters);
+        notifications.init();
+        try {
+            for (int i = 1; i <= 100; i++) {
+                handle(OrderSide.BUY, OrderType.LIMIT, 1700.0 - i, 10);
+                handle(OrderSide.SELL, OrderType.LIMIT, 1900.0 + i, 10);
+            }
+            // Every round sends the same messages; measure how many once the backlog has gone out
+            Thread.sleep(200);
+            long before = sent.get();
+            runRounds(1);
+            Thread.sleep(200);
+            long sendsPerRound = sent.get() - before;
+            assertThat(sendsPerRound).isPositive();
+
+            // Paced so the outbound ring never fills: every message is encoded rather than dropped
+            runPacedRounds(WARMUP_ROUNDS / 10, sent, sendsPerRound);
+            long allocatedBefore = allocatedBytes();
+
+            int rounds = MEASURED_ROUNDS / 10;
+            runPacedRounds(rounds, sent, sendsPerRound);
+
+            long allocated = allocatedBytes() - allocatedBefore;
+            long measuredOrders = (long) rounds * ORDERS_PER_ROUND;
+            assertThat(allocated)
+                .as("bytes allocated on the matching thread while matching %d orders", measuredOrders)
+                .isLessThan(measuredOrders);
+        } finally {
+            notifications.shutdown();
+        }
+        assertThat(meters.counter("matching.engine.marketdata.binary.dropped").count()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should allocate only the published depth view per batch")
+    void shouldOnlyAllocateDepthViewPerBatch() {
+        for (int i = 1; i <= 100; i++) {
+            handle(OrderSide.BUY, OrderType.LIMIT, 1700.0 - i, 10);
+            handle(OrderSide.SELL, OrderType.LIMIT, 1900.0 + i, 10);
+        }
+        endOfBatch = true;
+
+        runRounds(WARMUP_ROUNDS / 10);
+        long allocatedBefore = allocatedBytes();
+
+        int rounds = MEASURED_ROUNDS / 10;
+        runRounds(rounds);
+
+        // Every one of a round's six events ends a batch here; a view of 20 levels a side is about 1 KB
+        long perBatch = (allocatedBytes() - allocatedBefore) / ((long) rounds * 6);
+        assertThat(perBatch).isLessThan(1536);
+        assertThat(matchingEngine.getBookView(Commodity.GOLD).getBidOrderCount()).isEqualTo(100);
+        assertThat(matchingEngine.getBookView(Commodity.GOLD).getAskLevelCount()).isEqualTo(100);
+    }
+
+    // Rests a bid inside the spread, partially fills it, then sweeps the rest with a market order;
+    // a second bid is rested, amended and cancelled
+    private void runRounds(int rounds) {
+        for (int i = 0; i < rounds; i++) {
+            handle(OrderSide.BUY, OrderType.LIMIT, 1800.0, 20);
+            handle(OrderSide.SELL, OrderType.LIMIT, 1800.0, 10);
+            handle(OrderSide.SELL, OrderType.MARKET, 0.0, 10);
+            long restingId = handle(OrderSide.BUY, OrderType.LIMIT, 1750.0, 10);
+            control(MatchingEngine.EventType.REPLACE, restingId, 1760.0, 5);
+            control(MatchingEngine.EventType.CANCEL, restingId, 0.0, 0);
+        }
+    }
+
+    // Waits after each round until the outbound thread has sent its messages
+    private void runPacedRounds(int rounds, AtomicLong sent, long sendsPerRound) {
+        long expected = sent.get();
+        for (int i = 0; i < rounds; i++) {
+            runRounds(1);
+            expected += sendsPerRound;
+            while (sent.get() < expected) {
+                Thread.yield();
+            }
+        }
+    }
+
+    private long handle(OrderSide side, OrderType type, double price, long quantity) {
+        long orderId = nextOrderId;
+        event.eventType = MatchingEngine.EventType.NEW;
+        event.orderId = nextOrderId++;
+        event.commodity = Commodity.GOLD;
+        event.side = side;
+        event.type = type;
+        event.price = type == OrderType.MARKET ? 0 : Commodity.GOLD.toTicks(price);
+        event.quantity = quantity;
+        event.timestamp = System.currentTimeMillis();
+        event.submissionTime = System.nanoTime();
+        matchingEngine.handleOrderEvent(event, sequence++, endOfBatch);
+        return orderId;
+    }
+
+    private void control(MatchingEngine.EventType eventType, long orderId, double price, long quantity) {
+        event.eventType = eventType;
+        event.orderId = orderId;
+        event.commodity = Commodity.GOLD;
+        event.side = null;
+        event.type = null;
+        event.price = eventType == MatchingEngine.EventType.CANCEL ? 0 : Commodity.GOLD.toTicks(price);
+        event.quantity = quantity;
+        event.timestamp = System.currentTimeMillis();
+        event.submissionTime = System.nanoTime();
+        matchingEngine.handleOrderEvent(event, sequence++, endOfBatch);
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threadBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
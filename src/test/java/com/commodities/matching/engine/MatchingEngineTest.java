@@ -1,12 +1,24 @@
 package com.commodities.matching.engine;
 
+import com.commodities.matching.config.MatchingEngineProperties;
+import com.commodities.matching.exception.ConflictException;
+import com.commodities.matching.metrics.LatencyHistogram;
+import com.commodities.matching.metrics.LatencyStage;
 import com.commodities.matching.metrics.MetricsCollector;
 import com.commodities.matching.model.*;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
 
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.*;
@@ -24,6 +36,11 @@ class MatchingEngineTest {
         matchingEngine.init();
     }
     
+    private long submit(Commodity commodity, OrderSide side, OrderType type, double price, long quantity) {
+        long ticks = type == OrderType.MARKET ? 0 : commodity.toTicks(price);
+        return matchingEngine.submitOrder(commodity, side, type, ticks, quantity);
+    }
+    
     @Test
     @DisplayName("Should initialize with all commodity order books")
     void shouldInitializeWithAllCommodities() {
@@ -36,17 +53,50 @@ class MatchingEngineTest {
     @Test
     @DisplayName("Should submit order successfully")
     void shouldSubmitOrder() {
-        Order order = new Order(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, 1800.0, 10);
+        assertDoesNotThrow(() -> submit(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, 1800.0, 10));
+    }
+    
+    @Test
+    @DisplayName("Should assign increasing order ids")
+    void shouldAssignIncreasingOrderIds() {
+        long first = submit(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, 1800.0, 10);
+        long second = submit(Commodity.SILVER, OrderSide.SELL, OrderType.LIMIT, 25.0, 10);
         
-        assertDoesNotThrow(() -> matchingEngine.submitOrder(order));
+        assertThat(second).isGreaterThan(first);
     }
     
     @Test
-    @DisplayName("Should throw exception when submitting null order")
-    void shouldThrowExceptionForNullOrder() {
-        assertThatThrownBy(() -> matchingEngine.submitOrder(null))
+    @DisplayName("Should throw exception when submitting incomplete order")
+    void shouldThrowExceptionForIncompleteOrder() {
+        assertThatThrownBy(() -> matchingEngine.submitOrder(null, OrderSide.BUY, OrderType.LIMIT, 100, 10))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Order commodity, side and type are required");
+        assertThatThrownBy(() -> matchingEngine.submitOrder(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, 100, 0))
             .isInstanceOf(IllegalArgumentException.class)
-            .hasMessage("Order cannot be null");
+            .hasMessage("Order quantity must be positive");
+        assertThatThrownBy(() -> matchingEngine.submitOrder(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, 0, 10))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Limit order price must be positive");
+        assertDoesNotThrow(() -> matchingEngine.submitOrder(Commodity.GOLD, OrderSide.BUY, OrderType.MARKET, 0, 10));
+    }
+    
+    @Test
+    @DisplayName("Should reject a replace with a non-positive price before it reaches the book")
+    void shouldRejectReplaceWithNonPositivePrice() throws InterruptedException {
+        long orderId = submit(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, 1800.0, 10);
+        
+        assertThatThrownBy(() -> matchingEngine.replaceOrder(Commodity.GOLD, orderId, 0, 10))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Order price must be positive");
+        assertThatThrownBy(() -> matchingEngine.replaceOrder(Commodity.GOLD, orderId, -Commodity.GOLD.toTicks(1800.0), 10))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Order price must be positive");
+        
+        Thread.sleep(100);
+        
+        Order resting = matchingEngine.getOrderBook(Commodity.GOLD).getOrder(orderId);
+        assertThat(resting.getPrice()).isEqualTo(Commodity.GOLD.toTicks(1800.0));
+        assertThat(resting.getRemainingQuantity()).isEqualTo(10);
     }
     
     @Test
@@ -59,20 +109,23 @@ class MatchingEngineTest {
         });
         
         // Submit sell order
-        Order sellOrder = new Order(Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, 1800.0, 10);
-        matchingEngine.submitOrder(sellOrder);
+        submit(Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, 1800.0, 10);
         
         // Give time for processing
         Thread.sleep(100);
         
         // Submit matching buy order
-        Order buyOrder = new Order(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, 1800.0, 10);
-        matchingEngine.submitOrder(buyOrder);
+        submit(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, 1800.0, 10);
         
         // Wait for matching
         Thread.sleep(100);
         
         assertThat(tradeCount.get()).isGreaterThan(0);
+        
+        LatencyHistogram.Snapshot endToEnd = metricsCollector.getLatency(Commodity.GOLD, LatencyStage.END_TO_END);
+        assertThat(endToEnd.getCount()).isEqualTo(2);
+        assertThat(endToEnd.getMax()).isGreaterThanOrEqualTo(
+            metricsCollector.getLatency(Commodity.GOLD, LatencyStage.MATCH).getMax());
     }
     
     @Test
@@ -85,14 +138,13 @@ class MatchingEngineTest {
         });
         
         // Add limit sell orders at different prices
-        matchingEngine.submitOrder(new Order(Commodity.OIL, OrderSide.SELL, OrderType.LIMIT, 80.0, 100));
-        matchingEngine.submitOrder(new Order(Commodity.OIL, OrderSide.SELL, OrderType.LIMIT, 81.0, 100));
+        submit(Commodity.CRUDE_OIL, OrderSide.SELL, OrderType.LIMIT, 80.0, 100);
+        submit(Commodity.CRUDE_OIL, OrderSide.SELL, OrderType.LIMIT, 81.0, 100);
         
         Thread.sleep(100);
         
         // Submit market buy order
-        Order marketBuy = new Order(Commodity.OIL, OrderSide.BUY, OrderType.MARKET, 0.0, 50);
-        matchingEngine.submitOrder(marketBuy);
+        submit(Commodity.CRUDE_OIL, OrderSide.BUY, OrderType.MARKET, 0.0, 50);
         
         Thread.sleep(100);
         
@@ -109,20 +161,165 @@ class MatchingEngineTest {
         });
         
         // Sell order with quantity 10
-        Order sellOrder = new Order(Commodity.SILVER, OrderSide.SELL, OrderType.LIMIT, 25.0, 10);
-        matchingEngine.submitOrder(sellOrder);
+        long sellOrderId = submit(Commodity.SILVER, OrderSide.SELL, OrderType.LIMIT, 25.0, 10);
         
         Thread.sleep(100);
         
         // Buy order with quantity 5 (partial fill)
-        Order buyOrder = new Order(Commodity.SILVER, OrderSide.BUY, OrderType.LIMIT, 25.0, 5);
-        matchingEngine.submitOrder(buyOrder);
+        long buyOrderId = submit(Commodity.SILVER, OrderSide.BUY, OrderType.LIMIT, 25.0, 5);
         
         Thread.sleep(100);
         
+        OrderBook orderBook = matchingEngine.getOrderBook(Commodity.SILVER);
         assertThat(tradeCount.get()).isGreaterThan(0);
-        assertThat(buyOrder.isFilled()).isTrue();
-        assertThat(sellOrder.getRemainingQuantity()).isEqualTo(5);
+        assertThat(orderBook.getOrder(buyOrderId)).isNull();
+        assertThat(orderBook.getOrder(sellOrderId).getRemainingQuantity()).isEqualTo(5);
+    }
+    
+    @Test
+    @DisplayName("Should sweep multiple price levels in price-time priority")
+    void shouldSweepMultiplePriceLevels() throws InterruptedException {
+        long farAsk = submit(Commodity.COPPER, OrderSide.SELL, OrderType.LIMIT, 4.2, 10);
+        long nearAsk = submit(Commodity.COPPER, OrderSide.SELL, OrderType.LIMIT, 4.1, 10);
+        long outOfRange = submit(Commodity.COPPER, OrderSide.SELL, OrderType.LIMIT, 4.5, 10);
+        
+        Thread.sleep(100);
+        
+        long buyOrder = submit(Commodity.COPPER, OrderSide.BUY, OrderType.LIMIT, 4.3, 25);
+        
+        Thread.sleep(100);
+        
+        OrderBook orderBook = matchingEngine.getOrderBook(Commodity.COPPER);
+        assertThat(orderBook.getOrder(nearAsk)).isNull();
+        assertThat(orderBook.getOrder(farAsk)).isNull();
+        assertThat(orderBook.getOrder(outOfRange).getRemainingQuantity()).isEqualTo(10);
+        assertThat(orderBook.getOrder(buyOrder).getRemainingQuantity()).isEqualTo(5);
+        assertThat(orderBook.getBestBid().getOrderId()).isEqualTo(buyOrder);
+        assertThat(orderBook.getBestAsk().getOrderId()).isEqualTo(outOfRange);
+    }
+    
+    @Test
+    @DisplayName("Should fill a market order through more than a hundred resting orders")
+    void shouldFillLargeMarketOrderAcrossWholeBook() throws InterruptedException {
+        AtomicInteger tradeCount = new AtomicInteger(0);
+        matchingEngine.addTradeListener(trade -> tradeCount.incrementAndGet());
+        
+        for (int i = 0; i < 250; i++) {
+            submit(Commodity.SILVER, OrderSide.SELL, OrderType.LIMIT, 25.0 + (i % 25) * 0.005, 1);
+        }
+        
+        Thread.sleep(100);
+        
+        submit(Commodity.SILVER, OrderSide.BUY, OrderType.MARKET, 0.0, 250);
+        
+        Thread.sleep(200);
+        
+        assertThat(tradeCount.get()).isEqualTo(250);
+        assertThat(matchingEngine.getOrderBook(Commodity.SILVER).getBestAskLevel()).isNull();
+    }
+    
+    @Test
+    @DisplayName("Should fill the head of a deep book without touching the levels behind it")
+    void shouldMatchAtTheTopOfADeepBook() {
+        long midTicks = Commodity.CRUDE_OIL.toTicks(80.0);
+        for (int i = 0; i < 10_000; i++) {
+            matchingEngine.submitOrder(Commodity.CRUDE_OIL, OrderSide.BUY, OrderType.LIMIT, midTicks - 1 - i / 10, 10);
+            matchingEngine.submitOrder(Commodity.CRUDE_OIL, OrderSide.SELL, OrderType.LIMIT, midTicks + 1 + i / 10, 10);
+        }
+        matchingEngine.awaitIdle();
+        OrderBook orderBook = matchingEngine.getOrderBook(Commodity.CRUDE_OIL);
+        long bestAsk = orderBook.getBestAskLevel().getPrice();
+        long head = orderBook.getBestAsk().getOrderId();
+        
+        long buy = matchingEngine.submitOrder(Commodity.CRUDE_OIL, OrderSide.BUY, OrderType.LIMIT, bestAsk, 10);
+        matchingEngine.awaitIdle();
+        
+        assertThat(orderBook.getOrder(head)).isNull();
+        assertThat(orderBook.getOrder(buy)).isNull();
+        assertThat(orderBook.getBestAskLevel().getPrice()).isEqualTo(bestAsk);
+        assertThat(orderBook.getBestAskLevel().size()).isEqualTo(9);
+        assertThat(orderBook.getSellOrderCount()).isEqualTo(9_999);
+        assertThat(orderBook.getAskLevelCount()).isEqualTo(1_000);
+        assertThat(orderBook.getBuyOrderCount()).isEqualTo(10_000);
+    }
+    
+    @Test
+    @DisplayName("Should remove a resting order when it is cancelled")
+    void shouldCancelRestingOrder() throws InterruptedException {
+        long orderId = submit(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, 1800.0, 10);
+        matchingEngine.cancelOrder(Commodity.GOLD, orderId);
+        
+        Thread.sleep(100);
+        
+        OrderBook orderBook = matchingEngine.getOrderBook(Commodity.GOLD);
+        assertThat(orderBook.getOrder(orderId)).isNull();
+        assertThat(orderBook.getBestBidLevel()).isNull();
+    }
+    
+    @Test
+    @DisplayName("Should ignore a cancel for an unknown order")
+    void shouldIgnoreUnknownCancel() throws InterruptedException {
+        long orderId = submit(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, 1800.0, 10);
+        matchingEngine.cancelOrder(Commodity.GOLD, orderId + 1000);
+        matchingEngine.cancelOrder(Commodity.SILVER, orderId);
+        
+        Thread.sleep(100);
+        
+        assertThat(matchingEngine.getOrderBook(Commodity.GOLD).getOrder(orderId).getRemainingQuantity()).isEqualTo(10);
+    }
+    
+    @Test
+    @DisplayName("Should keep time priority when quantity is reduced")
+    void shouldKeepPriorityOnQuantityReduction() throws InterruptedException {
+        long first = submit(Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, 1800.0, 10);
+        long second = submit(Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, 1800.0, 10);
+        matchingEngine.replaceOrder(Commodity.GOLD, first, Commodity.GOLD.toTicks(1800.0), 4);
+        
+        Thread.sleep(100);
+        
+        OrderBook orderBook = matchingEngine.getOrderBook(Commodity.GOLD);
+        assertThat(orderBook.getBestAsk().getOrderId()).isEqualTo(first);
+        assertThat(orderBook.getOrder(first).getRemainingQuantity()).isEqualTo(4);
+        
+        submit(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, 1800.0, 6);
+        
+        Thread.sleep(100);
+        
+        assertThat(orderBook.getOrder(first)).isNull();
+        assertThat(orderBook.getOrder(second).getRemainingQuantity()).isEqualTo(8);
+    }
+    
+    @Test
+    @DisplayName("Should lose time priority when price changes")
+    void shouldLosePriorityOnPriceChange() throws InterruptedException {
+        long first = submit(Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, 1800.0, 10);
+        long second = submit(Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, 1801.0, 10);
+        matchingEngine.replaceOrder(Commodity.GOLD, first, Commodity.GOLD.toTicks(1801.0), 10);
+        
+        Thread.sleep(100);
+        
+        OrderBook orderBook = matchingEngine.getOrderBook(Commodity.GOLD);
+        assertThat(orderBook.getBestAskLevel().size()).isEqualTo(2);
+        assertThat(orderBook.getBestAsk().getOrderId()).isEqualTo(second);
+        assertThat(orderBook.getOrder(first).getPrice()).isEqualTo(Commodity.GOLD.toTicks(1801.0));
+    }
+    
+    @Test
+    @DisplayName("Should match an amended order that now crosses the spread")
+    void shouldMatchAmendedOrderThatCrosses() throws InterruptedException {
+        AtomicInteger tradeCount = new AtomicInteger(0);
+        matchingEngine.addTradeListener(trade -> tradeCount.incrementAndGet());
+        
+        long ask = submit(Commodity.SILVER, OrderSide.SELL, OrderType.LIMIT, 25.0, 10);
+        long bid = submit(Commodity.SILVER, OrderSide.BUY, OrderType.LIMIT, 24.0, 15);
+        matchingEngine.replaceOrder(Commodity.SILVER, bid, Commodity.SILVER.toTicks(25.0), 15);
+        
+        Thread.sleep(100);
+        
+        OrderBook orderBook = matchingEngine.getOrderBook(Commodity.SILVER);
+        assertThat(tradeCount.get()).isEqualTo(1);
+        assertThat(orderBook.getOrder(ask)).isNull();
+        assertThat(orderBook.getOrder(bid).getRemainingQuantity()).isEqualTo(5);
     }
     
     @Test
@@ -130,8 +327,8 @@ class MatchingEngineTest {
     void shouldMaintainOrderBookDepth() throws InterruptedException {
         // Submit multiple orders
         for (int i = 0; i < 5; i++) {
-            matchingEngine.submitOrder(new Order(Commodity.COPPER, OrderSide.BUY, OrderType.LIMIT, 4.0 + i * 0.1, 10));
-            matchingEngine.submitOrder(new Order(Commodity.COPPER, OrderSide.SELL, OrderType.LIMIT, 4.5 + i * 0.1, 10));
+            submit(Commodity.COPPER, OrderSide.BUY, OrderType.LIMIT, 4.0 + i * 0.1, 10);
+            submit(Commodity.COPPER, OrderSide.SELL, OrderType.LIMIT, 4.5 + i * 0.1, 10);
         }
         
         Thread.sleep(100);
@@ -141,6 +338,568 @@ class MatchingEngineTest {
         assertThat(orderBook.getSellOrderCount()).isGreaterThan(0);
     }
     
+    @Test
+    @DisplayName("Should accept orders from concurrent producers")
+    void shouldAcceptConcurrentSubmissions() throws InterruptedException {
+        int threadCount = 10;
+        Thread[] threads = new Thread[threadCount];
+        
+        for (int i = 0; i < threadCount; i++) {
+            final int index = i;
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 100; j++) {
+                    submit(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, 1800.0 + index, 10);
+                }
+            });
+            threads[i].start();
+        }
+        
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        Thread.sleep(200);
+        
+        assertThat(matchingEngine.getOrderBook(Commodity.GOLD).getBuyOrderCount()).isEqualTo(threadCount * 100);
+    }
+    
+    @Test
+    @DisplayName("Should match each commodity group on its own thread when sharded")
+    void shouldMatchShardsOnSeparateThreads() throws InterruptedException {
+        MatchingEngineProperties properties = new MatchingEngineProperties();
+        properties.getSharding().setEnabled(true);
+        properties.getSharding().getGroups().add(EnumSet.of(Commodity.GOLD, Commodity.SILVER));
+        MatchingEngine shardedEngine = new MatchingEngine(new MetricsCollector(new SimpleMeterRegistry()), properties);
+        shardedEngine.init();
+        
+        Map<Commodity, String> matchingThreads = new ConcurrentHashMap<>();
+        shardedEngine.addTradeListener(trade -> matchingThreads.put(trade.getCommodity(), Thread.currentThread().getName()));
+        
+        for (Commodity commodity : List.of(Commodity.GOLD, Commodity.SILVER, Commodity.CRUDE_OIL)) {
+            long ticks = commodity.toTicks(10.0);
+            shardedEngine.submitOrder(commodity, OrderSide.SELL, OrderType.LIMIT, ticks, 10);
+            shardedEngine.submitOrder(commodity, OrderSide.BUY, OrderType.LIMIT, ticks, 10);
+        }
+        
+        Thread.sleep(100);
+        shardedEngine.shutdown();
+        
+        assertThat(shardedEngine.getShardCount()).isEqualTo(Commodity.values().length - 1);
+        assertThat(matchingThreads).hasSize(3);
+        assertThat(matchingThreads.get(Commodity.GOLD)).isEqualTo(matchingThreads.get(Commodity.SILVER));
+        assertThat(matchingThreads.get(Commodity.CRUDE_OIL)).isNotEqualTo(matchingThreads.get(Commodity.GOLD));
+    }
+    
+    @Test
+    @DisplayName("Should preserve per-commodity order sequence across shards")
+    void shouldPreserveOrderingWithinShard() throws InterruptedException {
+        MatchingEngineProperties properties = new MatchingEngineProperties();
+        properties.getSharding().setEnabled(true);
+        MatchingEngine shardedEngine = new MatchingEngine(new MetricsCollector(new SimpleMeterRegistry()), properties);
+        shardedEngine.init();
+        
+        Map<Commodity, List<Long>> passiveSellIds = new ConcurrentHashMap<>();
+        shardedEngine.addTradeListener(trade ->
+            passiveSellIds.computeIfAbsent(trade.getCommodity(), c -> new CopyOnWriteArrayList<>()).add(trade.getSellOrderId()));
+        
+        Map<Commodity, List<Long>> submittedSellIds = new EnumMap<>(Commodity.class);
+        for (Commodity commodity : Commodity.values()) {
+            long ticks = commodity.toTicks(10.0);
+            List<Long> ids = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                ids.add(shardedEngine.submitOrder(commodity, OrderSide.SELL, OrderType.LIMIT, ticks, 1));
+            }
+            submittedSellIds.put(commodity, ids);
+        }
+        for (Commodity commodity : Commodity.values()) {
+            shardedEngine.submitOrder(commodity, OrderSide.BUY, OrderType.MARKET, 0, 50);
+        }
+        
+        Thread.sleep(200);
+        shardedEngine.shutdown();
+        
+        for (Commodity commodity : Commodity.values()) {
+            assertThat(passiveSellIds.get(commodity)).containsExactlyElementsOf(submittedSellIds.get(commodity));
+        }
+    }
+    
+    @Test
+    @DisplayName("Should match and record wake-up latency with every wait strategy")
+    void shouldMatchWithEveryWaitStrategy() {
+        for (MatchingEngineProperties.WaitStrategyType waitStrategy : MatchingEngineProperties.WaitStrategyType.values()) {
+            MatchingEngineProperties properties = new MatchingEngineProperties();
+            properties.getDisruptor().setWaitStrategy(waitStrategy);
+            properties.getDisruptor().setRingBufferSize(1024);
+            MetricsCollector collector = new MetricsCollector(new SimpleMeterRegistry());
+            MatchingEngine engine = new MatchingEngine(collector, properties);
+            engine.init();
+            
+            long ticks = Commodity.GOLD.toTicks(1800.0);
+            for (int i = 0; i < 200; i++) {
+                engine.submitOrder(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, ticks, 1);
+            }
+            engine.awaitIdle();
+            engine.shutdown();
+            
+            assertThat(engine.getWaitStrategy()).isEqualTo(waitStrategy);
+            assertThat(engine.getOrderBook(Commodity.GOLD).getBuyOrderCount()).as(waitStrategy.name()).isEqualTo(200);
+            assertThat(collector.getAvgWakeupLatencyMicros()).as(waitStrategy.name()).isPositive();
+        }
+    }
+    
+    @Test
+    @DisplayName("Should submit a batch of orders with contiguous ids")
+    void shouldSubmitBatchOfOrders() throws InterruptedException {
+        List<NewOrder> orders = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Commodity commodity = i % 2 == 0 ? Commodity.GOLD : Commodity.COPPER;
+            orders.add(new NewOrder(commodity, OrderSide.BUY, OrderType.LIMIT, commodity.toTicks(1.0 + i), 1));
+        }
+        
+        long[] orderIds = matchingEngine.submitOrders(orders);
+        
+        Thread.sleep(100);
+        
+        assertThat(orderIds).hasSize(100);
+        for (int i = 1; i < orderIds.length; i++) {
+            assertThat(orderIds[i]).isEqualTo(orderIds[0] + i);
+        }
+        assertThat(matchingEngine.getOrderBook(Commodity.GOLD).getBuyOrderCount()).isEqualTo(50);
+        assertThat(matchingEngine.getOrderBook(Commodity.COPPER).getBuyOrderCount()).isEqualTo(50);
+        assertThat(matchingEngine.getOrderBook(Commodity.GOLD).getOrder(orderIds[98]).getPrice())
+            .isEqualTo(Commodity.GOLD.toTicks(99.0));
+    }
+    
+    @Test
+    @DisplayName("Should match a batch larger than the ring buffer in submission order")
+    void shouldSubmitBatchLargerThanRingBuffer() throws InterruptedException {
+        MatchingEngineProperties properties = new MatchingEngineProperties();
+        properties.getSharding().setEnabled(true);
+        properties.getDisruptor().setRingBufferSize(64);
+        MatchingEngine shardedEngine = new MatchingEngine(new MetricsCollector(new SimpleMeterRegistry()), properties);
+        shardedEngine.init();
+        
+        List<Long> passiveSellIds = new CopyOnWriteArrayList<>();
+        shardedEngine.addTradeListener(trade -> passiveSellIds.add(trade.getSellOrderId()));
+        
+        long ticks = Commodity.SILVER.toTicks(25.0);
+        List<NewOrder> orders = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            orders.add(new NewOrder(Commodity.SILVER, OrderSide.SELL, OrderType.LIMIT, ticks, 1));
+            orders.add(new NewOrder(Commodity.NATURAL_GAS, OrderSide.SELL, OrderType.LIMIT, ticks, 1));
+        }
+        orders.add(new NewOrder(Commodity.SILVER, OrderSide.BUY, OrderType.MARKET, 0, 500));
+        
+        long[] orderIds = shardedEngine.submitOrders(orders);
+        
+        Thread.sleep(200);
+        shardedEngine.shutdown();
+        
+        List<Long> silverSellIds = new ArrayList<>();
+        for (int i = 0; i < 1000; i += 2) {
+            silverSellIds.add(orderIds[i]);
+        }
+        assertThat(passiveSellIds).containsExactlyElementsOf(silverSellIds);
+        assertThat(shardedEngine.getOrderBook(Commodity.NATURAL_GAS).getSellOrderCount()).isEqualTo(500);
+    }
+    
+    @Test
+    @DisplayName("Should reject a batch containing an invalid order")
+    void shouldRejectInvalidBatch() {
+        List<NewOrder> orders = List.of(
+            new NewOrder(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, 100, 1),
+            new NewOrder(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, 100, 0));
+        
+        assertThatThrownBy(() -> matchingEngine.submitOrders(orders))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Order quantity must be positive");
+    }
+    
+    @Test
+    @DisplayName("Should not match an event until the replicator has seen it")
+    void shouldGateMatchingOnReplication() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Long> replicatedOrderIds = new CopyOnWriteArrayList<>();
+        Replicator replicator = (shard, record) -> {
+            replicatedOrderIds.add(record.getLong(8));
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        MatchingEngine pipelinedEngine = new MatchingEngine(
+            new MetricsCollector(new SimpleMeterRegistry()), new MatchingEngineProperties(), replicator);
+        pipelinedEngine.init();
+        AtomicInteger tradeCount = new AtomicInteger(0);
+        pipelinedEngine.addTradeListener(trade -> tradeCount.incrementAndGet());
+        
+        long sellId = pipelinedEngine.submitOrder(Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, 18000, 10);
+        long buyId = pipelinedEngine.submitOrder(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, 18000, 10);
+        
+        Thread.sleep(100);
+        
+        assertThat(replicatedOrderIds).containsExactly(sellId);
+        assertThat(pipelinedEngine.getOrderBook(Commodity.GOLD).getBestAskLevel()).isNull();
+        
+        release.countDown();
+        Thread.sleep(100);
+        pipelinedEngine.shutdown();
+        
+        assertThat(replicatedOrderIds).containsExactly(sellId, buyId);
+        assertThat(tradeCount.get()).isEqualTo(1);
+    }
+    
+    @Test
+    @DisplayName("Should journal every input event in sequence order")
+    void shouldJournalInputEvents(@TempDir Path journalDirectory) throws Exception {
+        MatchingEngineProperties properties = new MatchingEngineProperties();
+        properties.getJournal().setEnabled(true);
+        properties.getJournal().setDirectory(journalDirectory.toString());
+        MatchingEngine journalledEngine = new MatchingEngine(new MetricsCollector(new SimpleMeterRegistry()), properties);
+        journalledEngine.init();
+        
+        long orderId = journalledEngine.submitOrder(Commodity.COPPER, OrderSide.BUY, OrderType.LIMIT, 40000, 10);
+        journalledEngine.replaceOrder(Commodity.COPPER, orderId, 40010, 8);
+        journalledEngine.cancelOrder(Commodity.COPPER, orderId);
+        
+        Thread.sleep(100);
+        journalledEngine.shutdown();
+        
+        InputJournal journal = new InputJournal(journalDirectory.resolve("matching-engine"), 1 << 20, false);
+        List<Long> sequences = new ArrayList<>();
+        List<MatchingEngine.EventType> eventTypes = new ArrayList<>();
+        MatchingEngine.OrderEvent[] lastEvent = new MatchingEngine.OrderEvent[1];
+        journal.replay((event, sequence, endOfBatch) -> {
+            assertThat(event.orderId).isEqualTo(orderId);
+            sequences.add(sequence);
+            eventTypes.add(event.eventType);
+            lastEvent[0] = event;
+        });
+        journal.close();
+        
+        assertThat(sequences).containsExactly(0L, 1L, 2L);
+        assertThat(eventTypes).containsExactly(
+            MatchingEngine.EventType.NEW, MatchingEngine.EventType.REPLACE, MatchingEngine.EventType.CANCEL);
+        assertThat(lastEvent[0].price).isZero();
+    }
+    
+    @Test
+    @DisplayName("Should stop matching and reject input without stalling the ring when the journal fails")
+    void shouldFailShardWhenJournalWriteFails(@TempDir Path journalDirectory) throws Exception {
+        MatchingEngineProperties properties = new MatchingEngineProperties();
+        properties.getJournal().setEnabled(true);
+        properties.getJournal().setDirectory(journalDirectory.toString());
+        // One record per segment, so the second append has to open a new segment file
+        properties.getJournal().setSegmentSize(DataSize.ofBytes(OrderEventCodec.RECORD_SIZE));
+        MatchingEngine journalledEngine = new MatchingEngine(new MetricsCollector(new SimpleMeterRegistry()), properties);
+        AtomicInteger tradeCount = new AtomicInteger(0);
+        journalledEngine.addTradeListener(trade -> tradeCount.incrementAndGet());
+        journalledEngine.init();
+        assertThat(journalledEngine.getFailedShards()).isEmpty();
+
+        FileSystemUtils.deleteRecursively(journalDirectory.resolve("matching-engine"));
+        journalledEngine.submitOrder(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, 18000, 10);
+        journalledEngine.submitOrder(Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, 18000, 10);
+
+        assertTimeoutPreemptively(java.time.Duration.ofSeconds(10), journalledEngine::awaitIdle);
+        assertThat(journalledEngine.getFailedShards()).containsOnlyKeys("matching-engine");
+        assertThat(tradeCount.get()).isZero();
+        assertThatThrownBy(() -> journalledEngine.submitOrder(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, 18000, 10))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("Journal write failed");
+        assertThatThrownBy(() -> journalledEngine.cancelOrder(Commodity.GOLD, 1))
+            .isInstanceOf(IllegalStateException.class);
+
+        assertTimeoutPreemptively(java.time.Duration.ofSeconds(10), journalledEngine::shutdown);
+    }
+
+    @Test
+    @DisplayName("Should rebuild order books from the journal on restart")
+    void shouldRecoverBooksFromJournal(@TempDir Path journalDirectory) throws InterruptedException {
+        MatchingEngineProperties properties = new MatchingEngineProperties();
+        properties.getSharding().setEnabled(true);
+        properties.getJournal().setEnabled(true);
+        properties.getJournal().setDirectory(journalDirectory.toString());
+        properties.getJournal().setSegmentSize(DataSize.ofBytes(OrderEventCodec.RECORD_SIZE * 4));
+        
+        MatchingEngine first = new MatchingEngine(new MetricsCollector(new SimpleMeterRegistry()), properties);
+        first.init();
+        long crossedAsk = first.submitOrder(Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, 18000, 10);
+        long restingAsk = first.submitOrder(Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, 18010, 10);
+        long restingBid = first.submitOrder(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, 18000, 15);
+        long cancelled = first.submitOrder(Commodity.SILVER, OrderSide.BUY, OrderType.LIMIT, 25000, 10);
+        first.cancelOrder(Commodity.SILVER, cancelled);
+        long amended = first.submitOrder(Commodity.COPPER, OrderSide.SELL, OrderType.LIMIT, 45000, 10);
+        first.replaceOrder(Commodity.COPPER, amended, 45000, 4);
+        
+        Thread.sleep(100);
+        first.shutdown();
+        
+        AtomicInteger replayedTrades = new AtomicInteger(0);
+        MetricsCollector recoveryMetrics = new MetricsCollector(new SimpleMeterRegistry());
+        MatchingEngine second = new MatchingEngine(recoveryMetrics, properties);
+        second.addTradeListener(trade -> replayedTrades.incrementAndGet());
+        second.init();
+        assertThat(recoveryMetrics.getMetrics().totalOrders).isZero();
+        assertThat(recoveryMetrics.getMetrics().totalTrades).isZero();
+        
+        OrderBook gold = second.getOrderBook(Commodity.GOLD);
+        assertThat(gold.getOrder(crossedAsk)).isNull();
+        assertThat(gold.getOrder(restingAsk).getRemainingQuantity()).isEqualTo(10);
+        assertThat(gold.getOrder(restingBid).getRemainingQuantity()).isEqualTo(5);
+        assertThat(second.getOrderBook(Commodity.SILVER).getOrder(cancelled)).isNull();
+        assertThat(second.getOrderBook(Commodity.COPPER).getOrder(amended).getRemainingQuantity()).isEqualTo(4);
+        assertThat(replayedTrades.get()).isZero();
+        
+        long next = second.submitOrder(Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, 18000, 5);
+        
+        Thread.sleep(100);
+        second.shutdown();
+        
+        assertThat(next).isGreaterThan(amended);
+        assertThat(gold.getOrder(restingBid)).isNull();
+        assertThat(replayedTrades.get()).isEqualTo(1);
+        assertThat(recoveryMetrics.getMetrics().totalOrders).isEqualTo(1);
+        assertThat(recoveryMetrics.getMetrics().totalTrades).isEqualTo(1);
+    }
+    
+    @Test
+    @DisplayName("Should replay a journal of crossing flow into the same resting book")
+    void shouldReplayCrossingFlowFromJournal(@TempDir Path journalDirectory) throws Exception {
+        MatchingEngineProperties properties = new MatchingEngineProperties();
+        properties.getJournal().setEnabled(true);
+        properties.getJournal().setDirectory(journalDirectory.toString());
+        
+        // A thousand resting bids, then pairs that trade with each other and leave the bids alone
+        InputJournal journal = new InputJournal(journalDirectory.resolve("matching-engine"),
+            properties.getJournal().getSegmentSize().toBytes(), false);
+        journal.replay((event, sequence, endOfBatch) -> { });
+        MatchingEngine.OrderEvent event = new MatchingEngine.OrderEvent();
+        event.eventType = MatchingEngine.EventType.NEW;
+        event.commodity = Commodity.CRUDE_OIL;
+        event.type = OrderType.LIMIT;
+        event.quantity = 10;
+        long mid = Commodity.CRUDE_OIL.toTicks(80.0);
+        for (int i = 0; i < 20_000; i++) {
+            event.orderId = i + 1;
+            event.timestamp = i;
+            if (i < 1000) {
+                event.side = OrderSide.BUY;
+                event.price = mid - 1 - i % 100;
+            } else {
+                event.side = i % 2 == 0 ? OrderSide.SELL : OrderSide.BUY;
+                event.price = mid;
+            }
+            journal.append(event);
+        }
+        journal.close();
+        
+        MatchingEngine recovered = new MatchingEngine(new MetricsCollector(new SimpleMeterRegistry()), properties);
+        recovered.init();
+        long next = recovered.submitOrder(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, 18000, 1);
+        recovered.shutdown();
+        
+        OrderBook crudeOil = recovered.getOrderBook(Commodity.CRUDE_OIL);
+        assertThat(crudeOil.getBuyOrderCount()).isEqualTo(1000);
+        assertThat(crudeOil.getBidLevelCount()).isEqualTo(100);
+        assertThat(crudeOil.getSellOrderCount()).isZero();
+        assertThat(next).isEqualTo(20_001);
+    }
+    
+    @Test
+    @DisplayName("Should restart from the latest snapshot and replay only the journal after it")
+    void shouldRecoverFromSnapshot(@TempDir Path dataDirectory) throws InterruptedException {
+        MatchingEngineProperties properties = new MatchingEngineProperties();
+        properties.getJournal().setEnabled(true);
+        properties.getJournal().setDirectory(dataDirectory.resolve("journal").toString());
+        properties.getSnapshot().setDirectory(dataDirectory.resolve("snapshots").toString());
+        
+        MatchingEngine first = new MatchingEngine(new MetricsCollector(new SimpleMeterRegistry()), properties);
+        first.init();
+        long older = first.submitOrder(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, 18000, 10);
+        long newer = first.submitOrder(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, 18000, 10);
+        first.submitOrder(Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, 18000, 4);
+        assertThat(first.requestSnapshot()).isEqualTo(1);
+        long afterSnapshot = first.submitOrder(Commodity.SILVER, OrderSide.SELL, OrderType.LIMIT, 25000, 3);
+        
+        Thread.sleep(100);
+        first.shutdown();
+        
+        MetricsCollector recoveryMetrics = new MetricsCollector(new SimpleMeterRegistry());
+        MatchingEngine second = new MatchingEngine(recoveryMetrics, properties);
+        second.init();
+        second.shutdown();
+        
+        OrderBook gold = second.getOrderBook(Commodity.GOLD);
+        assertThat(gold.getBuyOrders(10)).extracting(Order::getOrderId).containsExactly(older, newer);
+        assertThat(gold.getOrder(older).getRemainingQuantity()).isEqualTo(6);
+        assertThat(second.getOrderBook(Commodity.SILVER).getOrder(afterSnapshot).getRemainingQuantity()).isEqualTo(3);
+        assertThat(recoveryMetrics.getMetrics().totalOrders).isZero();
+    }
+    
+    @Test
+    @DisplayName("Should restore the same books from a snapshot as from a full journal replay")
+    void shouldRestoreSnapshotLikeFullReplay(@TempDir Path dataDirectory) throws Exception {
+        MatchingEngineProperties properties = new MatchingEngineProperties();
+        properties.getJournal().setEnabled(true);
+        properties.getJournal().setDirectory(dataDirectory.resolve("journal").toString());
+        properties.getSnapshot().setDirectory(dataDirectory.resolve("snapshots").toString());
+        
+        MatchingEngine first = new MatchingEngine(new MetricsCollector(new SimpleMeterRegistry()), properties);
+        first.init();
+        long mid = Commodity.CRUDE_OIL.toTicks(80.0);
+        for (int i = 0; i < 1000; i++) {
+            first.submitOrder(Commodity.CRUDE_OIL, OrderSide.BUY, OrderType.LIMIT, mid - 1 - i % 100, 10);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            first.submitOrder(Commodity.CRUDE_OIL, i % 2 == 0 ? OrderSide.SELL : OrderSide.BUY, OrderType.LIMIT, mid, 10);
+        }
+        first.awaitIdle();
+        first.shutdown();
+        
+        MatchingEngine replayed = new MatchingEngine(new MetricsCollector(new SimpleMeterRegistry()), properties);
+        replayed.init();
+        String replayedBooks = CaptureReplayer.bookChecksum(replayed);
+        replayed.requestSnapshot();
+        replayed.awaitIdle();
+        replayed.shutdown();
+        
+        MetricsCollector restoredMetrics = new MetricsCollector(new SimpleMeterRegistry());
+        MatchingEngine restored = new MatchingEngine(restoredMetrics, properties);
+        restored.init();
+        restored.shutdown();
+        
+        assertThat(restored.getOrderBook(Commodity.CRUDE_OIL).getBuyOrderCount()).isEqualTo(1000);
+        assertThat(CaptureReplayer.bookChecksum(restored)).isEqualTo(replayedBooks);
+        assertThat(restoredMetrics.getMetrics().totalOrders).isZero();
+    }
+    
+    @Test
+    @DisplayName("Should not reuse trade ids after shards snapshot at different times")
+    void shouldNotReuseTradeIdsAfterRecovery(@TempDir Path dataDirectory) {
+        MatchingEngineProperties properties = new MatchingEngineProperties();
+        properties.getSharding().setEnabled(true);
+        properties.getJournal().setEnabled(true);
+        properties.getJournal().setDirectory(dataDirectory.resolve("journal").toString());
+        properties.getSnapshot().setDirectory(dataDirectory.resolve("snapshots").toString());
+        properties.getSnapshot().setEveryEvents(2);
+
+        Set<Long> tradeIds = ConcurrentHashMap.newKeySet();
+        List<Long> duplicates = new CopyOnWriteArrayList<>();
+        MatchingEngine first = new MatchingEngine(new MetricsCollector(new SimpleMeterRegistry()), properties);
+        first.addTradeListener(trade -> tradeIds.add(trade.getTradeId()));
+        first.init();
+        // Gold snapshots after its first trade, silver after a later one, then gold trades again
+        first.submitOrder(Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, 18000, 20);
+        first.submitOrder(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, 18000, 10);
+        first.awaitIdle();
+        first.submitOrder(Commodity.SILVER, OrderSide.SELL, OrderType.LIMIT, 25000, 10);
+        first.submitOrder(Commodity.SILVER, OrderSide.BUY, OrderType.LIMIT, 25000, 10);
+        first.awaitIdle();
+        first.submitOrder(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, 18000, 10);
+        first.awaitIdle();
+        first.shutdown();
+        assertThat(tradeIds).hasSize(3);
+
+        MatchingEngine second = new MatchingEngine(new MetricsCollector(new SimpleMeterRegistry()), properties);
+        second.addTradeListener(trade -> {
+            if (!tradeIds.add(trade.getTradeId())) {
+                duplicates.add(trade.getTradeId());
+            }
+        });
+        second.init();
+        for (Commodity commodity : List.of(Commodity.GOLD, Commodity.SILVER)) {
+            second.submitOrder(commodity, OrderSide.SELL, OrderType.LIMIT, 30000, 10);
+            second.submitOrder(commodity, OrderSide.BUY, OrderType.LIMIT, 30000, 10);
+        }
+        second.awaitIdle();
+        second.shutdown();
+
+        assertThat(duplicates).isEmpty();
+        assertThat(tradeIds).hasSize(5);
+    }
+
+    @Test
+    @DisplayName("Should refuse snapshot requests without a journal")
+    void shouldRejectSnapshotWithoutJournal() {
+        assertThatThrownBy(() -> matchingEngine.requestSnapshot())
+            .isInstanceOf(ConflictException.class)
+            .hasMessage("Snapshots require the input journal to be enabled");
+    }
+    
+    @Test
+    @DisplayName("Should publish sequenced level deltas that keep a snapshot in sync")
+    void shouldPublishLevelDeltas() throws InterruptedException {
+        OrderBook orderBook = matchingEngine.getOrderBook(Commodity.COPPER);
+        submit(Commodity.COPPER, OrderSide.BUY, OrderType.LIMIT, 4.0, 100);
+        submit(Commodity.COPPER, OrderSide.SELL, OrderType.LIMIT, 4.01, 50);
+        Thread.sleep(100);
+        
+        BookDepth snapshot = orderBook.getView();
+        Map<Long, Long> bids = new TreeMap<>();
+        Map<Long, Long> asks = new TreeMap<>();
+        snapshot.getBids().forEach(level -> bids.put(level.getPrice(), level.getQuantity()));
+        snapshot.getAsks().forEach(level -> asks.put(level.getPrice(), level.getQuantity()));
+        List<Long> sequences = new CopyOnWriteArrayList<>();
+        matchingEngine.addBookListener(book -> {
+            sequences.add(book.getSequence());
+            for (int i = 0; i < book.getChangedLevelCount(); i++) {
+                Map<Long, Long> side = book.isChangedLevelBid(i) ? bids : asks;
+                if (book.getChangedLevelQuantity(i) == 0) {
+                    side.remove(book.getChangedLevelPrice(i));
+                } else {
+                    side.put(book.getChangedLevelPrice(i), book.getChangedLevelQuantity(i));
+                }
+            }
+        });
+        
+        long bid = submit(Commodity.COPPER, OrderSide.BUY, OrderType.LIMIT, 3.99, 30);
+        submit(Commodity.COPPER, OrderSide.SELL, OrderType.LIMIT, 4.0, 40);
+        submit(Commodity.COPPER, OrderSide.BUY, OrderType.MARKET, 0, 20);
+        matchingEngine.cancelOrder(Commodity.COPPER, bid);
+        submit(Commodity.COPPER, OrderSide.SELL, OrderType.LIMIT, 4.02, 10);
+        Thread.sleep(100);
+        
+        BookDepth current = orderBook.getView();
+        assertThat(sequences).containsExactly(snapshot.getSequence() + 1, snapshot.getSequence() + 2,
+            snapshot.getSequence() + 3, snapshot.getSequence() + 4, snapshot.getSequence() + 5);
+        assertThat(current.getSequence()).isEqualTo(snapshot.getSequence() + 5);
+        assertThat(bids).containsExactly(entry(Commodity.COPPER.toTicks(4.0), 60L));
+        assertThat(asks).containsExactly(entry(Commodity.COPPER.toTicks(4.01), 30L), entry(Commodity.COPPER.toTicks(4.02), 10L));
+        assertThat(current.getBids()).extracting(BookDepth.Level::getQuantity).containsExactly(60L);
+        assertThat(current.getAsks()).extracting(BookDepth.Level::getQuantity).containsExactly(30L, 10L);
+    }
+    
+    @Test
+    @DisplayName("Should publish an immutable depth view once the batch is processed")
+    void shouldPublishDepthView() throws InterruptedException {
+        BookDepth empty = matchingEngine.getBookView(Commodity.SILVER);
+        submit(Commodity.SILVER, OrderSide.BUY, OrderType.LIMIT, 24.5, 100);
+        submit(Commodity.SILVER, OrderSide.BUY, OrderType.LIMIT, 24.5, 50);
+        submit(Commodity.SILVER, OrderSide.BUY, OrderType.LIMIT, 24.4, 10);
+        submit(Commodity.SILVER, OrderSide.SELL, OrderType.LIMIT, 24.6, 70);
+        Thread.sleep(100);
+        
+        BookDepth view = matchingEngine.getBookView(Commodity.SILVER);
+        assertThat(view.getSequence()).isEqualTo(matchingEngine.getOrderBook(Commodity.SILVER).getSequence());
+        assertThat(view.getBestBid().getPrice()).isEqualTo(Commodity.SILVER.toTicks(24.5));
+        assertThat(view.getBestBid().getQuantity()).isEqualTo(150);
+        assertThat(view.getBestBid().getOrders()).isEqualTo(2);
+        assertThat(view.getBestAsk().getQuantity()).isEqualTo(70);
+        assertThat(view.getBidOrderCount()).isEqualTo(3);
+        assertThat(view.getBidLevelCount()).isEqualTo(2);
+        assertThat(view.getAskOrderCount()).isEqualTo(1);
+        assertThat(empty.getBids()).isEmpty();
+        
+        submit(Commodity.SILVER, OrderSide.SELL, OrderType.MARKET, 0, 150);
+        Thread.sleep(100);
+        
+        assertThat(view.getBestBid().getQuantity()).isEqualTo(150);
+        assertThat(matchingEngine.getBookView(Commodity.SILVER).getBids())
+            .extracting(BookDepth.Level::getQuantity).containsExactly(10L);
+    }
+    
     @Test
     @DisplayName("Should trigger order listener when order is submitted")
     void shouldTriggerOrderListener() throws InterruptedException {
@@ -150,8 +909,7 @@ class MatchingEngineTest {
             orderCount.incrementAndGet();
         });
         
-        Order order = new Order(Commodity.NATURAL_GAS, OrderSide.BUY, OrderType.LIMIT, 3.5, 100);
-        matchingEngine.submitOrder(order);
+        submit(Commodity.NATURAL_GAS, OrderSide.BUY, OrderType.LIMIT, 3.5, 100);
         
         Thread.sleep(100);
         
@@ -165,17 +923,14 @@ class MatchingEngineTest {
         
         for (int i = 0; i < orderCount; i++) {
             OrderSide side = i % 2 == 0 ? OrderSide.BUY : OrderSide.SELL;
-            double price = 100.0 + (i % 10) * 0.1;
-            matchingEngine.submitOrder(new Order(Commodity.OIL, side, OrderType.LIMIT, price, 10));
+            long price = Commodity.CRUDE_OIL.toTicks(100.0) + (i % 10) * 10;
+            matchingEngine.submitOrder(Commodity.CRUDE_OIL, side, OrderType.LIMIT, price, 10);
         }
         
         // Allow processing time
         Thread.sleep(500);
         
         // Verify system is still responsive
-        assertDoesNotThrow(() -> {
-            Order testOrder = new Order(Commodity.OIL, OrderSide.BUY, OrderType.LIMIT, 100.0, 10);
-            matchingEngine.submitOrder(testOrder);
-        });
+        assertDoesNotThrow(() -> submit(Commodity.CRUDE_OIL, OrderSide.BUY, OrderType.LIMIT, 100.0, 10));
     }
 }
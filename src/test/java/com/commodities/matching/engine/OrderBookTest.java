@@ -5,6 +5,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.*;
@@ -12,12 +13,17 @@ import static org.assertj.core.api.Assertions.*;
 class OrderBookTest {
     
     private OrderBook orderBook;
+    private long nextOrderId = 1;
     
     @BeforeEach
     void setUp() {
         orderBook = new OrderBook(Commodity.GOLD);
     }
     
+    private static long ticks(double price) {
+        return Commodity.GOLD.toTicks(price);
+    }
+    
     @Test
     @DisplayName("Should initialize with correct commodity")
     void shouldInitializeWithCommodity() {
@@ -27,7 +33,7 @@ class OrderBookTest {
     @Test
     @DisplayName("Should add buy order to order book")
     void shouldAddBuyOrder() {
-        Order order = new Order(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, 1800.0, 10);
+        Order order = new Order(nextOrderId++, Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, ticks(1800.0), 10);
         orderBook.addOrder(order);
         
         assertThat(orderBook.getBuyOrderCount()).isEqualTo(1);
@@ -37,7 +43,7 @@ class OrderBookTest {
     @Test
     @DisplayName("Should add sell order to order book")
     void shouldAddSellOrder() {
-        Order order = new Order(Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, 1800.0, 10);
+        Order order = new Order(nextOrderId++, Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, ticks(1800.0), 10);
         orderBook.addOrder(order);
         
         assertThat(orderBook.getSellOrderCount()).isEqualTo(1);
@@ -47,9 +53,9 @@ class OrderBookTest {
     @Test
     @DisplayName("Should maintain price-time priority for buy orders")
     void shouldMaintainPriceTimePriorityForBuys() {
-        Order order1 = new Order(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, 1800.0, 10);
-        Order order2 = new Order(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, 1805.0, 10);
-        Order order3 = new Order(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, 1795.0, 10);
+        Order order1 = new Order(nextOrderId++, Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, ticks(1800.0), 10);
+        Order order2 = new Order(nextOrderId++, Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, ticks(1805.0), 10);
+        Order order3 = new Order(nextOrderId++, Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, ticks(1795.0), 10);
         
         orderBook.addOrder(order1);
         orderBook.addOrder(order2);
@@ -62,9 +68,9 @@ class OrderBookTest {
     @Test
     @DisplayName("Should maintain price-time priority for sell orders")
     void shouldMaintainPriceTimePriorityForSells() {
-        Order order1 = new Order(Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, 1800.0, 10);
-        Order order2 = new Order(Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, 1795.0, 10);
-        Order order3 = new Order(Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, 1805.0, 10);
+        Order order1 = new Order(nextOrderId++, Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, ticks(1800.0), 10);
+        Order order2 = new Order(nextOrderId++, Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, ticks(1795.0), 10);
+        Order order3 = new Order(nextOrderId++, Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, ticks(1805.0), 10);
         
         orderBook.addOrder(order1);
         orderBook.addOrder(order2);
@@ -77,7 +83,7 @@ class OrderBookTest {
     @Test
     @DisplayName("Should remove order from order book")
     void shouldRemoveOrder() {
-        Order order = new Order(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, 1800.0, 10);
+        Order order = new Order(nextOrderId++, Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, ticks(1800.0), 10);
         orderBook.addOrder(order);
         
         assertThat(orderBook.getBuyOrderCount()).isEqualTo(1);
@@ -87,11 +93,42 @@ class OrderBookTest {
         assertThat(orderBook.getBuyOrderCount()).isEqualTo(0);
     }
     
+    @Test
+    @DisplayName("Should keep time priority within a price level")
+    void shouldKeepTimePriorityWithinLevel() {
+        Order first = new Order(nextOrderId++, Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, ticks(1800.0), 10);
+        Order second = new Order(nextOrderId++, Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, ticks(1800.0), 10);
+        
+        orderBook.addOrder(first);
+        orderBook.addOrder(second);
+        
+        assertThat(orderBook.getBestAskLevel().size()).isEqualTo(2);
+        assertThat(orderBook.getBestAsk()).isEqualTo(first);
+        
+        orderBook.removeOrder(first.getOrderId());
+        
+        assertThat(orderBook.getBestAsk()).isEqualTo(second);
+    }
+    
+    @Test
+    @DisplayName("Should move to next price level when best level empties")
+    void shouldAdvanceBestLevelWhenEmptied() {
+        Order best = new Order(nextOrderId++, Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, ticks(1805.0), 10);
+        Order next = new Order(nextOrderId++, Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, ticks(1800.0), 10);
+        
+        orderBook.addOrder(best);
+        orderBook.addOrder(next);
+        orderBook.removeOrder(best.getOrderId());
+        
+        assertThat(orderBook.getBestBidLevel().getPrice()).isEqualTo(ticks(1800.0));
+        assertThat(orderBook.getBestBid()).isEqualTo(next);
+    }
+    
     @Test
     @DisplayName("Should get buy orders up to limit")
     void shouldGetBuyOrdersWithLimit() {
         for (int i = 0; i < 10; i++) {
-            Order order = new Order(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, 1800.0 + i, 10);
+            Order order = new Order(nextOrderId++, Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, ticks(1800.0 + i), 10);
             orderBook.addOrder(order);
         }
         
@@ -103,7 +140,7 @@ class OrderBookTest {
     @DisplayName("Should get sell orders up to limit")
     void shouldGetSellOrdersWithLimit() {
         for (int i = 0; i < 10; i++) {
-            Order order = new Order(Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, 1800.0 + i, 10);
+            Order order = new Order(nextOrderId++, Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, ticks(1800.0 + i), 10);
             orderBook.addOrder(order);
         }
         
@@ -114,8 +151,8 @@ class OrderBookTest {
     @Test
     @DisplayName("Should exclude filled orders from count")
     void shouldExcludeFilledOrders() {
-        Order order1 = new Order(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, 1800.0, 10);
-        Order order2 = new Order(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, 1805.0, 10);
+        Order order1 = new Order(nextOrderId++, Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, ticks(1800.0), 10);
+        Order order2 = new Order(nextOrderId++, Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, ticks(1805.0), 10);
         
         orderBook.addOrder(order1);
         orderBook.addOrder(order2);
@@ -129,26 +166,163 @@ class OrderBookTest {
     }
     
     @Test
-    @DisplayName("Should handle concurrent order additions")
-    void shouldHandleConcurrentAdditions() throws InterruptedException {
-        int threadCount = 10;
-        Thread[] threads = new Thread[threadCount];
+    @DisplayName("Should cancel an order from the middle of a price level")
+    void shouldCancelFromMiddleOfLevel() {
+        Order first = new Order(nextOrderId++, Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, ticks(1800.0), 10);
+        Order middle = new Order(nextOrderId++, Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, ticks(1800.0), 10);
+        Order last = new Order(nextOrderId++, Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, ticks(1800.0), 10);
+        
+        orderBook.addOrder(first);
+        orderBook.addOrder(middle);
+        orderBook.addOrder(last);
+        
+        assertThat(orderBook.removeOrder(middle.getOrderId())).isEqualTo(middle);
+        
+        assertThat(orderBook.getOrder(middle.getOrderId())).isNull();
+        assertThat(orderBook.getBestBidLevel().size()).isEqualTo(2);
+        assertThat(orderBook.getBuyOrders(10)).containsExactly(first, last);
+    }
+    
+    @Test
+    @DisplayName("Should ignore cancels for unknown orders")
+    void shouldIgnoreUnknownCancel() {
+        Order order = new Order(nextOrderId++, Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, ticks(1800.0), 10);
+        orderBook.addOrder(order);
+        
+        assertThat(orderBook.removeOrder(order.getOrderId() + 1000)).isNull();
+        assertThat(orderBook.removeOrder(order.getOrderId())).isEqualTo(order);
+        assertThat(orderBook.removeOrder(order.getOrderId())).isNull();
+        assertThat(orderBook.getBestAskLevel()).isNull();
+    }
+    
+    @Test
+    @DisplayName("Should cancel many resting orders in any order")
+    void shouldCancelManyOrders() {
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            Order order = new Order(nextOrderId++, Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, ticks(1800.0 + i % 50), 10);
+            orders.add(order);
+            orderBook.addOrder(order);
+        }
+        
+        for (int i = 0; i < orders.size(); i += 2) {
+            orderBook.removeOrder(orders.get(i).getOrderId());
+        }
         
-        for (int i = 0; i < threadCount; i++) {
-            final int index = i;
-            threads[i] = new Thread(() -> {
-                for (int j = 0; j < 100; j++) {
-                    Order order = new Order(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, 1800.0 + index, 10);
-                    orderBook.addOrder(order);
-                }
-            });
-            threads[i].start();
+        assertThat(orderBook.getSellOrderCount()).isEqualTo(5_000);
+        for (int i = 1; i < orders.size(); i += 2) {
+            assertThat(orderBook.getOrder(orders.get(i).getOrderId())).isEqualTo(orders.get(i));
         }
+        assertThat(orderBook.getBestAsk()).isEqualTo(orders.get(1));
+    }
+    
+    @Test
+    @DisplayName("Should keep level quantity and order count through adds, fills, amends and removals")
+    void shouldMaintainLevelAggregates() {
+        Order first = new Order(nextOrderId++, Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, ticks(1800.0), 10);
+        Order second = new Order(nextOrderId++, Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, ticks(1800.0), 15);
+        orderBook.addOrder(first);
+        orderBook.addOrder(second);
+        PriceLevel level = orderBook.getBestBidLevel();
+        assertThat(level.getQuantity()).isEqualTo(25);
+        assertThat(level.size()).isEqualTo(2);
+        
+        orderBook.fill(first, 4);
+        assertThat(level.getQuantity()).isEqualTo(21);
+        
+        orderBook.amend(second, ticks(1800.0), 5);
+        assertThat(level.getQuantity()).isEqualTo(11);
+        assertThat(orderBook.getBestBid()).isEqualTo(first);
+        
+        orderBook.removeOrder(first.getOrderId());
+        assertThat(level.getQuantity()).isEqualTo(5);
+        assertThat(level.size()).isEqualTo(1);
+    }
+    
+    @Test
+    @DisplayName("Should report each changed level and advance the sequence once per update")
+    void shouldReportChangedLevels() {
+        Order resting = new Order(nextOrderId++, Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, ticks(1801.0), 10);
+        orderBook.beginUpdate();
+        orderBook.addOrder(resting);
+        orderBook.addOrder(new Order(nextOrderId++, Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, ticks(1799.0), 7));
+        assertThat(orderBook.endUpdate()).isEqualTo(2);
+        assertThat(orderBook.getSequence()).isEqualTo(1);
+        assertThat(orderBook.isChangedLevelBid(0)).isFalse();
+        assertThat(orderBook.getChangedLevelPrice(0)).isEqualTo(ticks(1801.0));
+        assertThat(orderBook.getChangedLevelQuantity(0)).isEqualTo(10);
+        assertThat(orderBook.getChangedLevelOrders(0)).isEqualTo(1);
+        assertThat(orderBook.isChangedLevelBid(1)).isTrue();
+        
+        orderBook.beginUpdate();
+        orderBook.fill(resting, 10);
+        orderBook.removeOrder(resting.getOrderId());
+        assertThat(orderBook.endUpdate()).isEqualTo(1);
+        assertThat(orderBook.getSequence()).isEqualTo(2);
+        assertThat(orderBook.getChangedLevelQuantity(0)).isZero();
+        assertThat(orderBook.getChangedLevelOrders(0)).isZero();
         
-        for (Thread thread : threads) {
-            thread.join();
+        orderBook.beginUpdate();
+        assertThat(orderBook.endUpdate()).isZero();
+        assertThat(orderBook.getSequence()).isEqualTo(2);
+    }
+    
+    @Test
+    @DisplayName("Should publish an aggregated depth view best price first")
+    void shouldPublishAggregatedDepthView() {
+        long firstBid = nextOrderId;
+        for (int i = 0; i < 6; i++) {
+            orderBook.addOrder(new Order(nextOrderId++, Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, ticks(1800.0 - i % 3), 10));
+            orderBook.addOrder(new Order(nextOrderId++, Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, ticks(1801.0 + i % 3), 5));
         }
         
-        assertThat(orderBook.getBuyOrderCount()).isGreaterThan(0);
+        assertThat(orderBook.getView().getBids()).isEmpty();
+        assertThat(orderBook.publishView(2)).isTrue();
+        assertThat(orderBook.publishView(2)).isFalse();
+        
+        BookDepth depth = orderBook.getView();
+        assertThat(depth.getBids()).extracting(BookDepth.Level::getPrice).containsExactly(ticks(1800.0), ticks(1799.0));
+        assertThat(depth.getAsks()).extracting(BookDepth.Level::getPrice).containsExactly(ticks(1801.0), ticks(1802.0));
+        assertThat(depth.getBids().get(0).getQuantity()).isEqualTo(20);
+        assertThat(depth.getAsks().get(0).getOrders()).isEqualTo(2);
+        assertThat(depth.getBidLevelCount()).isEqualTo(3);
+        assertThat(depth.getAskOrderCount()).isEqualTo(6);
+        
+        // A published view never changes; the next change goes into a new one
+        orderBook.removeOrder(firstBid);
+        assertThat(orderBook.publishView(2)).isTrue();
+        assertThat(depth.getBids().get(0).getQuantity()).isEqualTo(20);
+        assertThat(orderBook.getView().getBids().get(0).getQuantity()).isEqualTo(10);
+    }
+    
+    @Test
+    @DisplayName("Should keep running order counts and quantities through fills, amends and cancels")
+    void shouldKeepRunningTotals() {
+        Order first = new Order(nextOrderId++, Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, ticks(1800.0), 100);
+        Order second = new Order(nextOrderId++, Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, ticks(1799.0), 50);
+        Order ask = new Order(nextOrderId++, Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, ticks(1801.0), 30);
+        orderBook.addOrder(first);
+        orderBook.addOrder(second);
+        orderBook.addOrder(ask);
+        
+        orderBook.fill(first, 40);
+        orderBook.amend(second, ticks(1799.0), 20);
+        
+        assertThat(orderBook.getBuyOrderCount()).isEqualTo(2);
+        assertThat(orderBook.getBuyQuantity()).isEqualTo(80);
+        assertThat(orderBook.getSellQuantity()).isEqualTo(30);
+        assertThat(orderBook.getBidLevelCount()).isEqualTo(2);
+        
+        orderBook.removeOrder(first.getOrderId());
+        orderBook.removeOrder(ask.getOrderId());
+        orderBook.publishView(10);
+        
+        assertThat(orderBook.getBuyOrderCount()).isEqualTo(1);
+        assertThat(orderBook.getSellOrderCount()).isZero();
+        assertThat(orderBook.getBuyQuantity()).isEqualTo(20);
+        assertThat(orderBook.getSellQuantity()).isZero();
+        assertThat(orderBook.getView().getBidQuantity()).isEqualTo(20);
+        assertThat(orderBook.getView().getImbalance()).isEqualTo(1.0);
+        assertThat(orderBook.getView().getImbalance(1)).isEqualTo(1.0);
     }
 }
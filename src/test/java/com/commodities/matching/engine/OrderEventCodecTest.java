@@ -0,0 +1,83 @@
+package com.commodities.matching.engine;
+
+import com.commodities.matching.model.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.*;
+
+class OrderEventCodecTest {
+
+    private OrderEventCodec codec;
+    private ByteBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        codec = new OrderEventCodec();
+        buffer = ByteBuffer.allocate(OrderEventCodec.RECORD_SIZE * 4);
+    }
+
+    @Test
+    @DisplayName("Should round-trip a new order event")
+    void shouldRoundTripNewOrder() {
+        MatchingEngine.OrderEvent event = event(MatchingEngine.EventType.NEW, OrderSide.SELL, OrderType.LIMIT);
+        codec.encode(event, 42, buffer);
+        buffer.flip();
+
+        MatchingEngine.OrderEvent decoded = new MatchingEngine.OrderEvent();
+        assertThat(codec.decode(buffer, decoded)).isEqualTo(42);
+        assertThat(buffer.hasRemaining()).isFalse();
+        assertThat(decoded.eventType).isEqualTo(MatchingEngine.EventType.NEW);
+        assertThat(decoded.orderId).isEqualTo(7);
+        assertThat(decoded.commodity).isEqualTo(Commodity.SILVER);
+        assertThat(decoded.side).isEqualTo(OrderSide.SELL);
+        assertThat(decoded.type).isEqualTo(OrderType.LIMIT);
+        assertThat(decoded.price).isEqualTo(25_005);
+        assertThat(decoded.quantity).isEqualTo(300);
+        assertThat(decoded.timestamp).isEqualTo(1_700_000_000_000L);
+    }
+
+    @Test
+    @DisplayName("Should round-trip a cancel without side or type")
+    void shouldRoundTripCancel() {
+        codec.encode(event(MatchingEngine.EventType.CANCEL, null, null), 1, buffer);
+        buffer.flip();
+
+        MatchingEngine.OrderEvent decoded = new MatchingEngine.OrderEvent();
+        assertThat(codec.decode(buffer, decoded)).isEqualTo(1);
+        assertThat(decoded.side).isNull();
+        assertThat(decoded.type).isNull();
+    }
+
+    @Test
+    @DisplayName("Should reject a corrupted or truncated record without consuming it")
+    void shouldRejectDamagedRecords() {
+        codec.encode(event(MatchingEngine.EventType.NEW, OrderSide.BUY, OrderType.MARKET), 3, buffer);
+        buffer.flip();
+        buffer.put(9, (byte) (buffer.get(9) ^ 1));
+
+        MatchingEngine.OrderEvent decoded = new MatchingEngine.OrderEvent();
+        assertThat(codec.decode(buffer, decoded)).isEqualTo(-1);
+        assertThat(buffer.position()).isZero();
+
+        buffer.limit(OrderEventCodec.RECORD_SIZE - 1);
+        assertThat(codec.decode(buffer, decoded)).isEqualTo(-1);
+        assertThat(codec.decode(ByteBuffer.allocate(OrderEventCodec.RECORD_SIZE), decoded)).isEqualTo(-1);
+    }
+
+    private static MatchingEngine.OrderEvent event(MatchingEngine.EventType eventType, OrderSide side, OrderType type) {
+        MatchingEngine.OrderEvent event = new MatchingEngine.OrderEvent();
+        event.eventType = eventType;
+        event.orderId = 7;
+        event.commodity = Commodity.SILVER;
+        event.side = side;
+        event.type = type;
+        event.price = 25_005;
+        event.quantity = 300;
+        event.timestamp = 1_700_000_000_000L;
+        return event;
+    }
+}
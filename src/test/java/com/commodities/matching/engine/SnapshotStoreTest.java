@@ -0,0 +1,96 @@
+package com.commodities.matching.engine;
+
+import com.commodities.matching.model.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+
+class SnapshotStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Should restore resting orders in price-time priority")
+    void shouldRestoreBooksInPriority() throws Exception {
+        OrderBook gold = new OrderBook(Commodity.GOLD);
+        gold.addOrder(order(1, Commodity.GOLD, OrderSide.BUY, 18000, 10));
+        gold.addOrder(order(2, Commodity.GOLD, OrderSide.BUY, 18010, 10));
+        gold.addOrder(order(3, Commodity.GOLD, OrderSide.BUY, 18010, 10));
+        gold.addOrder(order(4, Commodity.GOLD, OrderSide.SELL, 18100, 10));
+        gold.getOrder(3).setRemainingQuantity(4);
+        OrderBook silver = new OrderBook(Commodity.SILVER);
+        silver.addOrder(order(5, Commodity.SILVER, OrderSide.SELL, 25000, 7));
+
+        SnapshotStore store = new SnapshotStore(directory, 2);
+        store.write("shard", 42, SnapshotStore.capture(42, 6, 9, List.of(gold, silver)));
+        store.close();
+
+        SnapshotStore.Snapshot snapshot = new SnapshotStore(directory, 2).loadLatest("shard");
+        OrderBook[] books = emptyBooks();
+        assertThat(snapshot.sequence).isEqualTo(42);
+        assertThat(snapshot.nextOrderId).isEqualTo(6);
+        assertThat(snapshot.nextTradeId).isEqualTo(9);
+        assertThat(snapshot.restore(books)).isEqualTo(5);
+
+        OrderBook restored = books[Commodity.GOLD.ordinal()];
+        assertThat(restored.getBuyOrders(10)).extracting(Order::getOrderId).containsExactly(2L, 3L, 1L);
+        assertThat(restored.getOrder(3).getQuantity()).isEqualTo(10);
+        assertThat(restored.getOrder(3).getRemainingQuantity()).isEqualTo(4);
+        assertThat(restored.getBestAsk().getOrderId()).isEqualTo(4);
+        assertThat(books[Commodity.SILVER.ordinal()].getBestAsk().getRemainingQuantity()).isEqualTo(7);
+    }
+
+    @Test
+    @DisplayName("Should fall back to an older snapshot when the newest is damaged")
+    void shouldSkipDamagedSnapshot() throws Exception {
+        OrderBook gold = new OrderBook(Commodity.GOLD);
+        SnapshotStore store = new SnapshotStore(directory, 2);
+        store.write("shard", 10, SnapshotStore.capture(10, 1, 1, List.of(gold)));
+        store.write("shard", 20, SnapshotStore.capture(20, 1, 1, List.of(gold)));
+        store.close();
+
+        Path newest = directory.resolve("shard").resolve(String.format("%020d.snap", 20));
+        byte[] bytes = Files.readAllBytes(newest);
+        bytes[12] ^= 1;
+        Files.write(newest, bytes);
+
+        assertThat(new SnapshotStore(directory, 2).loadLatest("shard").sequence).isEqualTo(10);
+        assertThat(new SnapshotStore(directory, 2).loadLatest("other")).isNull();
+    }
+
+    @Test
+    @DisplayName("Should keep only the configured number of snapshots")
+    void shouldPruneOldSnapshots() throws Exception {
+        OrderBook gold = new OrderBook(Commodity.GOLD);
+        SnapshotStore store = new SnapshotStore(directory, 2);
+        for (long sequence = 1; sequence <= 5; sequence++) {
+            store.write("shard", sequence, SnapshotStore.capture(sequence, 1, 1, List.of(gold)));
+        }
+        store.close();
+
+        try (Stream<Path> files = Files.list(directory.resolve("shard"))) {
+            assertThat(files.map(file -> file.getFileName().toString()))
+                .containsExactlyInAnyOrder(String.format("%020d.snap", 4), String.format("%020d.snap", 5));
+        }
+    }
+
+    private static Order order(long orderId, Commodity commodity, OrderSide side, long price, long quantity) {
+        return new Order(orderId, commodity, side, OrderType.LIMIT, price, quantity);
+    }
+
+    private static OrderBook[] emptyBooks() {
+        OrderBook[] books = new OrderBook[Commodity.values().length];
+        for (Commodity commodity : Commodity.values()) {
+            books[commodity.ordinal()] = new OrderBook(commodity);
+        }
+        return books;
+    }
+}
@@ -0,0 +1,68 @@
+package com.commodities.matching.metrics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    @DisplayName("Should report quantiles within the bucket precision")
+    void shouldReportQuantiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long nanos = 1; nanos <= 100_000; nanos++) {
+            histogram.record(nanos * 10);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertThat(snapshot.getCount()).isEqualTo(100_000);
+        assertThat(snapshot.getMax()).isEqualTo(1_000_000);
+        assertThat(snapshot.getValueAtQuantile(0.5)).isCloseTo(500_000L, withinPercentage(3));
+        assertThat(snapshot.getValueAtQuantile(0.99)).isCloseTo(990_000L, withinPercentage(3));
+        assertThat(snapshot.getValueAtQuantile(0.999)).isCloseTo(999_000L, withinPercentage(3));
+        assertThat(snapshot.getValueAtQuantile(1.0)).isEqualTo(1_000_000);
+    }
+
+    @Test
+    @DisplayName("Should merge histograms and keep the overall maximum")
+    void shouldMergeHistograms() {
+        LatencyHistogram fast = new LatencyHistogram();
+        LatencyHistogram slow = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            fast.record(1_000);
+        }
+        slow.record(5_000_000);
+        slow.record(-1);
+
+        LatencyHistogram.Snapshot merged = new LatencyHistogram.Snapshot().add(fast).add(slow);
+
+        assertThat(merged.getCount()).isEqualTo(101);
+        assertThat(merged.getMax()).isEqualTo(5_000_000);
+        assertThat(merged.getValueAtQuantile(0.5)).isCloseTo(1_000L, withinPercentage(3));
+        assertThat(merged.getValueAtQuantile(0.999)).isEqualTo(5_000_000);
+        assertThat(new LatencyHistogram().snapshot().getValueAtQuantile(0.99)).isZero();
+    }
+
+    @Test
+    @DisplayName("Should report only the values recorded since an earlier snapshot")
+    void shouldSubtractEarlierSnapshot() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 1000; i++) {
+            histogram.record(1_000);
+        }
+        histogram.record(9_000_000);
+        LatencyHistogram.Snapshot earlier = histogram.snapshot();
+        for (int i = 0; i < 100; i++) {
+            histogram.record(2_000);
+        }
+
+        LatencyHistogram.Snapshot recent = histogram.snapshot().since(earlier);
+
+        assertThat(recent.getCount()).isEqualTo(100);
+        assertThat(recent.getValueAtQuantile(0.99)).isCloseTo(2_000L, withinPercentage(3));
+        assertThat(recent.getMax()).isCloseTo(2_000L, withinPercentage(3));
+        assertThat(histogram.snapshot().since(histogram.snapshot()).getValueAtQuantile(0.99)).isZero();
+    }
+}
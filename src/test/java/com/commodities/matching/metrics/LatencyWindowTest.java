@@ -0,0 +1,40 @@
+package com.commodities.matching.metrics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class LatencyWindowTest {
+
+    private static final long PERIOD = 60_000_000_000L;
+
+    private long now;
+
+    @Test
+    @DisplayName("Should drop a tail spike once it is more than two periods old")
+    void shouldForgetOldValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        LatencyWindow window = new LatencyWindow(histogram, PERIOD, () -> now);
+        for (int i = 0; i < 1000; i++) {
+            histogram.record(1_000);
+        }
+        for (int i = 0; i < 20; i++) {
+            histogram.record(5_000_000);
+        }
+        assertThat(window.snapshot().getValueAtQuantile(0.99)).isCloseTo(5_000_000L, withinPercentage(3));
+
+        now += PERIOD;
+        assertThat(window.snapshot().getCount()).isEqualTo(1020);
+
+        now += PERIOD;
+        for (int i = 0; i < 1000; i++) {
+            histogram.record(1_000);
+        }
+        LatencyHistogram.Snapshot recent = window.snapshot();
+        assertThat(recent.getCount()).isEqualTo(1000);
+        assertThat(recent.getValueAtQuantile(0.99)).isCloseTo(1_000L, withinPercentage(3));
+        assertThat(recent.getMax()).isCloseTo(1_000L, withinPercentage(3));
+        assertThat(histogram.snapshot().getMax()).isEqualTo(5_000_000);
+    }
+}
@@ -0,0 +1,84 @@
+package com.commodities.matching.metrics;
+
+import com.commodities.matching.model.Commodity;
+import com.commodities.matching.model.Trade;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+class MetricsCollectorTest {
+
+    @Test
+    @DisplayName("Should expose recorded counts through meters read at scrape time")
+    void shouldExposeCountsAtScrape() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MetricsCollector metricsCollector = new MetricsCollector(registry);
+        Trade trade = new Trade();
+        trade.init(1, 1, 2, Commodity.GOLD, Commodity.GOLD.toTicks(1800.0), 10, 0, 5_000);
+
+        metricsCollector.recordOrderReceived(Commodity.GOLD);
+        metricsCollector.recordOrderReceived(Commodity.GOLD);
+        metricsCollector.recordOrderReceived(Commodity.SILVER);
+        metricsCollector.recordTrade(trade, Commodity.GOLD.toTicks(0.5));
+        metricsCollector.recordCompleteFill(Commodity.GOLD);
+        metricsCollector.recordPartialFill(Commodity.GOLD);
+
+        FunctionCounter received = registry.get("matching.engine.orders.received")
+            .tag("commodity", Commodity.GOLD.getSymbol()).functionCounter();
+        FunctionTimer tradeLatency = registry.get("matching.engine.trade.latency")
+            .tag("commodity", Commodity.GOLD.getSymbol()).functionTimer();
+        assertThat(received.count()).isEqualTo(2);
+        assertThat(tradeLatency.count()).isEqualTo(1);
+        assertThat(tradeLatency.totalTime(TimeUnit.NANOSECONDS)).isEqualTo(5_000);
+        assertThat(registry.get("matching.engine.total.orders").gauge().value()).isEqualTo(3);
+
+        MetricsCollector.EngineMetrics metrics = metricsCollector.getMetrics();
+        MetricsCollector.CommodityMetrics gold = metrics.commodities.get(Commodity.GOLD.getSymbol());
+        assertThat(metrics.totalTrades).isEqualTo(1);
+        assertThat(gold.fillRate).isEqualTo(50.0);
+        assertThat(gold.avgSlippage).isCloseTo(0.5, within(1e-9));
+    }
+
+    @Test
+    @DisplayName("Should record without allocating")
+    void shouldRecordWithoutAllocating() {
+        MetricsCollector metricsCollector = new MetricsCollector(new SimpleMeterRegistry());
+        Trade trade = new Trade();
+        trade.init(1, 1, 2, Commodity.GOLD, Commodity.GOLD.toTicks(1800.0), 10, 0, 5_000);
+        for (int i = 0; i < 200_000; i++) {
+            record(metricsCollector, trade, i);
+        }
+
+        long allocatedBefore = allocatedBytes();
+        for (int i = 0; i < 100_000; i++) {
+            record(metricsCollector, trade, i);
+        }
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        assertThat(allocated).as("bytes allocated while recording").isLessThan(1_000);
+        assertThat(metricsCollector.getMetrics().totalOrders).isEqualTo(300_000);
+    }
+
+    private static void record(MetricsCollector metricsCollector, Trade trade, int i) {
+        metricsCollector.recordWakeupLatency(Commodity.GOLD, 1_000 + i % 100);
+        metricsCollector.recordOrderReceived(Commodity.GOLD);
+        metricsCollector.recordTrade(trade, 1);
+        metricsCollector.recordPartialFill(Commodity.GOLD);
+        metricsCollector.recordOrderAdded(Commodity.GOLD);
+        metricsCollector.recordOrderProcessingTime(Commodity.GOLD, 2_000 + i % 100);
+        metricsCollector.recordLatencies(Commodity.GOLD, 1_000, 2_000, 500, 3_500 + i % 100);
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threadBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,48 @@
+package com.commodities.matching.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import static org.assertj.core.api.Assertions.*;
+
+class CommodityTest {
+    
+    @Test
+    @DisplayName("Should convert prices to integer ticks and back")
+    void shouldRoundTripPrices() {
+        assertThat(Commodity.CRUDE_OIL.toTicks(75.37)).isEqualTo(7537);
+        assertThat(Commodity.CRUDE_OIL.toPrice(7537)).isEqualTo(75.37);
+        
+        assertThat(Commodity.GOLD.toTicks(2003.4)).isEqualTo(20034);
+        assertThat(Commodity.GOLD.toPrice(20034)).isEqualTo(2003.4);
+        
+        assertThat(Commodity.COPPER.toTicks(4.1005)).isEqualTo(8201);
+        assertThat(Commodity.COPPER.toPrice(8201)).isEqualTo(4.1005);
+    }
+    
+    @Test
+    @DisplayName("Should tolerate binary rounding of decimal prices")
+    void shouldTolerateBinaryRounding() {
+        assertThat(Commodity.COPPER.toTicks(4.0 + 3 * 0.1)).isEqualTo(Commodity.COPPER.toTicks(4.3));
+        assertThat(Commodity.CRUDE_OIL.toTicks(0.1 + 0.2)).isEqualTo(30);
+    }
+    
+    @Test
+    @DisplayName("Should reject prices that are not on the tick grid")
+    void shouldRejectOffTickPrices() {
+        assertThatThrownBy(() -> Commodity.GOLD.toTicks(2003.45))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("tick size");
+        assertThatThrownBy(() -> Commodity.SILVER.toTicks(25.001))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+    
+    @Test
+    @DisplayName("Should expose tick size derived from price scale")
+    void shouldExposeTickSize() {
+        assertThat(Commodity.CRUDE_OIL.getTickSize()).isEqualTo(0.01);
+        assertThat(Commodity.GOLD.getTickSize()).isEqualTo(0.1);
+        assertThat(Commodity.SILVER.getTickSize()).isEqualTo(0.005);
+        assertThat(Commodity.COPPER.getPriceScale()).isEqualTo(4);
+    }
+}
@@ -0,0 +1,190 @@
+package com.commodities.matching.repository;
+
+import com.commodities.matching.model.Commodity;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+
+class TradeHistoryStoreTest {
+
+    private static final long SEGMENT_SIZE = 1 << 20;
+    private static final long BASE_TIME = 1_700_000_000_000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Should return every column of the trades in a time range")
+    void shouldScanTimeRange() throws Exception {
+        try (TradeHistoryStore store = new TradeHistoryStore(directory, SEGMENT_SIZE, 4)) {
+            for (int i = 0; i < 10; i++) {
+                // Prices fall as well as rise, so deltas are negative too
+                store.append(Commodity.GOLD, BASE_TIME + i * 1000, i + 1, 100 + i, 200 - i,
+                    185_000 + (i % 3 == 0 ? -i : i), 10 + i, 5_000 + i);
+            }
+            store.append(Commodity.SILVER, BASE_TIME + 4000, 11, 1, 2, 2_500, 7, 1);
+            store.commit();
+
+            List<long[]> trades = new ArrayList<>();
+            long visited = store.scan(Commodity.GOLD, BASE_TIME + 3000, BASE_TIME + 6000,
+                (timestamp, tradeId, buyOrderId, sellOrderId, price, quantity, processingTimeNanos) ->
+                    trades.add(new long[] { timestamp, tradeId, buyOrderId, sellOrderId, price, quantity, processingTimeNanos }));
+
+            assertThat(visited).isEqualTo(4);
+            assertThat(trades).extracting(trade -> trade[1]).containsExactly(4L, 5L, 6L, 7L);
+            assertThat(trades.get(0)).containsExactly(BASE_TIME + 3000, 4, 103, 197, 184_997, 13, 5_003);
+            assertThat(trades.get(1)).containsExactly(BASE_TIME + 4000, 5, 104, 196, 185_004, 14, 5_004);
+            assertThat(store.size(Commodity.GOLD)).isEqualTo(10);
+            assertThat(store.size(Commodity.SILVER)).isEqualTo(1);
+        }
+    }
+
+    @Test
+    @DisplayName("Should aggregate count, volume and OHLC over a time range")
+    void shouldAggregateTimeRange() throws Exception {
+        try (TradeHistoryStore store = new TradeHistoryStore(directory, SEGMENT_SIZE, 100)) {
+            long[] prices = { 100, 104, 98, 101 };
+            for (int i = 0; i < prices.length; i++) {
+                store.append(Commodity.CRUDE_OIL, BASE_TIME + i, i + 1, 0, 0, prices[i], 10, 0);
+                store.commit();
+            }
+
+            TradeHistoryStore.TradeAggregate all = store.aggregate(Commodity.CRUDE_OIL, BASE_TIME, BASE_TIME + 3);
+            assertThat(all.getCount()).isEqualTo(4);
+            assertThat(all.getVolume()).isEqualTo(40);
+            assertThat(all.getNotional()).isEqualTo(4030);
+            assertThat(all.getOpen()).isEqualTo(100);
+            assertThat(all.getHigh()).isEqualTo(104);
+            assertThat(all.getLow()).isEqualTo(98);
+            assertThat(all.getClose()).isEqualTo(101);
+
+            assertThat(store.aggregate(Commodity.CRUDE_OIL, BASE_TIME + 1, BASE_TIME + 2).getCount()).isEqualTo(2);
+            assertThat(store.aggregate(Commodity.CRUDE_OIL, BASE_TIME + 10, BASE_TIME + 20).getCount()).isZero();
+        }
+    }
+
+    @Test
+    @DisplayName("Should agree between aggregate and full scan across many blocks")
+    void shouldAggregateLikeScanAcrossBlocks() throws Exception {
+        int tradeCount = 100_000;
+        try (TradeHistoryStore store = new TradeHistoryStore(directory, 16L << 20, 1000)) {
+            Random random = new Random(42);
+            long timestamp = BASE_TIME;
+            long price = 185_000;
+            long volume = 0;
+            for (int i = 0; i < tradeCount; i++) {
+                timestamp += random.nextInt(3);
+                price += random.nextInt(5) - 2;
+                long quantity = (random.nextInt(20) + 1) * 100;
+                volume += quantity;
+                store.append(Commodity.GOLD, timestamp, i + 1, 2L * i + 1, 2L * i + 2, price, quantity,
+                    2_000 + random.nextInt(5_000));
+                if (i % 1000 == 999) {
+                    store.commit();
+                }
+            }
+            store.commit();
+
+            TradeHistoryStore.TradeAggregate aggregate = store.aggregate(Commodity.GOLD, Long.MIN_VALUE, Long.MAX_VALUE);
+            long[] scanned = new long[2];
+            store.scan(Commodity.GOLD, Long.MIN_VALUE, Long.MAX_VALUE,
+                (ts, tradeId, buyOrderId, sellOrderId, p, quantity, processingTimeNanos) -> {
+                    scanned[0]++;
+                    scanned[1] += quantity;
+                });
+
+            assertThat(aggregate.getCount()).isEqualTo(tradeCount);
+            assertThat(aggregate.getVolume()).isEqualTo(volume);
+            assertThat(aggregate.getClose()).isEqualTo(price);
+            assertThat(scanned).containsExactly(tradeCount, volume);
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep committed blocks across a reopen and drop a damaged tail")
+    void shouldRecoverCommittedBlocks() throws Exception {
+        try (TradeHistoryStore store = new TradeHistoryStore(directory, SEGMENT_SIZE, 10)) {
+            for (int i = 0; i < 30; i++) {
+                store.append(Commodity.COPPER, BASE_TIME + i, i + 1, 0, 0, 40_000 + i, 1, 0);
+            }
+            store.commit();
+        }
+        // Flip a byte in the body of the last of the three blocks
+        Path segment = singleSegment(directory.resolve(Commodity.COPPER.name()));
+        long lastBlockEnd;
+        try (TradeHistoryStore store = new TradeHistoryStore(directory, SEGMENT_SIZE, 10)) {
+            assertThat(store.size(Commodity.COPPER)).isEqualTo(30);
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            lastBlockEnd = findEnd(file);
+            file.seek(lastBlockEnd - 1);
+            int last = file.read();
+            file.seek(lastBlockEnd - 1);
+            file.write(last ^ 0x01);
+        }
+
+        try (TradeHistoryStore store = new TradeHistoryStore(directory, SEGMENT_SIZE, 10)) {
+            assertThat(store.size(Commodity.COPPER)).isEqualTo(20);
+            store.append(Commodity.COPPER, BASE_TIME + 100, 31, 0, 0, 40_100, 1, 0);
+            store.commit();
+        }
+        try (TradeHistoryStore store = new TradeHistoryStore(directory, SEGMENT_SIZE, 10)) {
+            assertThat(store.size(Commodity.COPPER)).isEqualTo(21);
+            assertThat(store.aggregate(Commodity.COPPER, BASE_TIME, BASE_TIME + 100).getClose()).isEqualTo(40_100);
+        }
+    }
+
+    @Test
+    @DisplayName("Should roll over to new segments and query across them")
+    void shouldQueryAcrossSegments() throws Exception {
+        long segmentSize = 8 * 1024;
+        try (TradeHistoryStore store = new TradeHistoryStore(directory, segmentSize, 100)) {
+            for (int i = 0; i < 5000; i++) {
+                store.append(Commodity.NATURAL_GAS, BASE_TIME + i, i + 1, i, i, 3_500 + i % 50, 1, 0);
+                if (i % 100 == 99) {
+                    store.commit();
+                }
+            }
+        }
+        try (Stream<Path> files = Files.list(directory.resolve(Commodity.NATURAL_GAS.name()))) {
+            assertThat(files.count()).isGreaterThan(1);
+        }
+        try (TradeHistoryStore store = new TradeHistoryStore(directory, segmentSize, 100)) {
+            assertThat(store.size(Commodity.NATURAL_GAS)).isEqualTo(5000);
+            assertThat(store.aggregate(Commodity.NATURAL_GAS, BASE_TIME + 1000, BASE_TIME + 3999).getCount())
+                .isEqualTo(3000);
+        }
+    }
+
+    private static Path singleSegment(Path commodityDirectory) throws Exception {
+        try (Stream<Path> files = Files.list(commodityDirectory)) {
+            List<Path> segments = files.toList();
+            assertThat(segments).hasSize(1);
+            return segments.get(0);
+        }
+    }
+
+    // Offset just past the last block, walking the count and length at the start of each header
+    private static long findEnd(RandomAccessFile file) throws Exception {
+        long position = 0;
+        while (true) {
+            file.seek(position);
+            int count = file.readInt();
+            int length = file.readInt();
+            if (count == 0) {
+                return position;
+            }
+            position += 2 * Integer.BYTES + 2 * Long.BYTES + Integer.BYTES + 7 * Integer.BYTES + length;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.commodities.matching.service;
+
+import com.commodities.matching.model.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.*;
+
+class CandleAggregatorTest {
+
+    private static final long BASE_TIME = 1_700_000_000_000L;
+
+    @Test
+    @DisplayName("Should build OHLCV bars for every interval")
+    void shouldBuildBarsPerInterval() {
+        CandleAggregator aggregator = new CandleAggregator(100);
+        aggregator.onTrade(Commodity.GOLD, BASE_TIME, 100, 5);
+        aggregator.onTrade(Commodity.GOLD, BASE_TIME + 300, 104, 1);
+        aggregator.onTrade(Commodity.GOLD, BASE_TIME + 600, 98, 2);
+        aggregator.onTrade(Commodity.GOLD, BASE_TIME + 1200, 101, 3);
+
+        List<Candle> seconds = aggregator.getCandles(Commodity.GOLD, CandleInterval.ONE_SECOND, 10);
+        assertThat(seconds).hasSize(2);
+        assertCandle(seconds.get(0), BASE_TIME, 100, 104, 98, 98, 8, 3);
+        assertCandle(seconds.get(1), BASE_TIME + 1000, 101, 101, 101, 101, 3, 1);
+
+        List<Candle> minutes = aggregator.getCandles(Commodity.GOLD, CandleInterval.ONE_MINUTE, 10);
+        long minuteStart = BASE_TIME / 60_000 * 60_000;
+        assertThat(minutes).hasSize(1);
+        assertCandle(minutes.get(0), minuteStart, 100, 104, 98, 101, 11, 4);
+        assertThat(aggregator.getCandles(Commodity.GOLD, CandleInterval.ONE_HOUR, 10).get(0).getVolume()).isEqualTo(11);
+        assertThat(aggregator.getCandles(Commodity.SILVER, CandleInterval.ONE_MINUTE, 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should skip intervals without trades and overwrite the oldest bars")
+    void shouldOverwriteOldestBars() {
+        CandleAggregator aggregator = new CandleAggregator(4);
+        for (int second = 0; second < 10; second += 2) {
+            aggregator.onTrade(Commodity.SILVER, BASE_TIME + second * 1000L, 2500 + second, 1);
+        }
+
+        List<Candle> candles = aggregator.getCandles(Commodity.SILVER, CandleInterval.ONE_SECOND, 10);
+        assertThat(candles).extracting(Candle::getOpenTime)
+            .containsExactly(BASE_TIME + 6000, BASE_TIME + 8000);
+        assertThat(aggregator.getCandles(Commodity.SILVER, CandleInterval.ONE_SECOND, 1))
+            .extracting(Candle::getOpen).containsExactly(2508L);
+        assertThat(aggregator.getCandle(Commodity.SILVER, CandleInterval.ONE_SECOND, BASE_TIME + 6000).getOpen())
+            .isEqualTo(2506);
+        assertThat(aggregator.getCandle(Commodity.SILVER, CandleInterval.ONE_SECOND, BASE_TIME + 7000)).isNull();
+        assertThat(aggregator.getCandle(Commodity.SILVER, CandleInterval.ONE_SECOND, BASE_TIME)).isNull();
+    }
+
+    @Test
+    @DisplayName("Readers should never see a partly applied trade")
+    void readersShouldSeeConsistentBars() throws InterruptedException {
+        CandleAggregator aggregator = new CandleAggregator(16);
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            long timestamp = BASE_TIME;
+            while (running.get()) {
+                // Every trade has quantity 1 and a price equal to its count within the bar
+                aggregator.onTrade(Commodity.COPPER, timestamp, timestamp % 1000 + 1, 1);
+                timestamp++;
+            }
+        });
+        writer.start();
+
+        for (int read = 0; read < 20_000; read++) {
+            for (Candle candle : aggregator.getCandles(Commodity.COPPER, CandleInterval.ONE_SECOND, 16)) {
+                assertThat(candle.getVolume()).isEqualTo(candle.getTrades());
+                assertThat(candle.getClose()).isEqualTo(candle.getTrades());
+                assertThat(candle.getHigh()).isEqualTo(candle.getClose());
+            }
+        }
+        running.set(false);
+        writer.join();
+    }
+
+    private static void assertCandle(Candle candle, long openTime, long open, long high, long low, long close,
+                                     long volume, long trades) {
+        assertThat(candle.getOpenTime()).isEqualTo(openTime);
+        assertThat(candle.getOpen()).isEqualTo(open);
+        assertThat(candle.getHigh()).isEqualTo(high);
+        assertThat(candle.getLow()).isEqualTo(low);
+        assertThat(candle.getClose()).isEqualTo(close);
+        assertThat(candle.getVolume()).isEqualTo(volume);
+        assertThat(candle.getTrades()).isEqualTo(trades);
+    }
+}
@@ -0,0 +1,122 @@
+package com.commodities.matching.service;
+
+import com.commodities.matching.dto.LoadProfile;
+import com.commodities.matching.engine.MatchingEngine;
+import com.commodities.matching.exception.ConflictException;
+import com.commodities.matching.metrics.MetricsCollector;
+import com.commodities.matching.model.Commodity;
+import com.commodities.matching.model.OrderSide;
+import com.commodities.matching.model.OrderType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+class LoadGeneratorTest {
+
+    private MatchingEngine matchingEngine;
+    private LoadGenerator loadGenerator;
+
+    @BeforeEach
+    void setUp() {
+        matchingEngine = new MatchingEngine(new MetricsCollector(new SimpleMeterRegistry()));
+        matchingEngine.init();
+        loadGenerator = new LoadGenerator(matchingEngine);
+        loadGenerator.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        loadGenerator.stop();
+        matchingEngine.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should send at the target rate and time every acknowledged order")
+    void shouldSendAtTargetRate() throws InterruptedException {
+        LoadProfile profile = new LoadProfile();
+        profile.setTargetRate(5_000);
+        profile.setProducerThreads(2);
+        profile.setDurationSeconds(1);
+        profile.setCommodityMix(Map.of(Commodity.GOLD, 3.0, Commodity.SILVER, 1.0));
+        profile.setSeed(7L);
+
+        loadGenerator.start(profile);
+        LoadGenerator.Report report = awaitCompletion();
+
+        assertThat(report.status).isEqualTo("completed");
+        assertThat(report.ordersSent + report.cancelsSent).isEqualTo(5_000);
+        assertThat(report.cancelsSent).isPositive();
+        assertThat(report.latency.count).isEqualTo(report.ordersSent);
+        assertThat(report.latency.maxMicros).isGreaterThanOrEqualTo(report.latency.p50Micros).isPositive();
+        assertThat(matchingEngine.getOrderBook(Commodity.COPPER).getBuyOrderCount()).isZero();
+        assertThat(matchingEngine.getOrderBook(Commodity.GOLD).getBuyOrderCount()
+            + matchingEngine.getOrderBook(Commodity.GOLD).getSellOrderCount()).isPositive();
+    }
+
+    @Test
+    @DisplayName("Should leave a finished run's report unchanged while other orders flow")
+    void shouldFreezeReportOnceFinished() throws InterruptedException {
+        LoadProfile profile = new LoadProfile();
+        profile.setTargetRate(2_000);
+        profile.setDurationSeconds(1);
+        profile.setCancelRatio(0);
+        profile.setSeed(11L);
+        loadGenerator.start(profile);
+        LoadGenerator.Report finished = awaitCompletion();
+
+        long ticks = Commodity.COPPER.toTicks(4.0);
+        for (int i = 0; i < 1_000; i++) {
+            matchingEngine.submitOrder(Commodity.COPPER, OrderSide.BUY, OrderType.LIMIT, ticks, 1);
+        }
+        Thread.sleep(100);
+        LoadGenerator.Report later = loadGenerator.getReport();
+
+        assertThat(finished.status).isEqualTo("completed");
+        assertThat(finished.latency.count).isEqualTo(finished.ordersSent);
+        assertThat(later.latency.count).isEqualTo(finished.latency.count);
+        assertThat(later.latency.maxMicros).isEqualTo(finished.latency.maxMicros);
+    }
+
+    @Test
+    @DisplayName("Should reject a second run while one is in progress")
+    void shouldRejectConcurrentRun() throws InterruptedException {
+        LoadProfile profile = new LoadProfile();
+        profile.setTargetRate(1_000);
+        profile.setDurationSeconds(10);
+        loadGenerator.start(profile);
+
+        assertThatThrownBy(() -> loadGenerator.start(new LoadProfile()))
+            .isInstanceOf(ConflictException.class);
+
+        loadGenerator.stop();
+        assertThat(awaitCompletion().status).isEqualTo("stopped");
+    }
+
+    @Test
+    @DisplayName("Should reject a profile whose quantity bounds are inverted")
+    void shouldRejectInvertedQuantityBounds() {
+        LoadProfile profile = new LoadProfile();
+        profile.setMinQuantity(500);
+        profile.setMaxQuantity(100);
+
+        assertThatThrownBy(() -> loadGenerator.start(profile))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThat(loadGenerator.getReport().status).isEqualTo("idle");
+    }
+
+    private LoadGenerator.Report awaitCompletion() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 15_000;
+        LoadGenerator.Report report = loadGenerator.getReport();
+        while (report.status.equals("running") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            report = loadGenerator.getReport();
+        }
+        return report;
+    }
+}
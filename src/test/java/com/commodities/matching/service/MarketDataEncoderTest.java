@@ -0,0 +1,128 @@
+package com.commodities.matching.service;
+
+import com.commodities.matching.engine.MatchingEngine;
+import com.commodities.matching.metrics.MetricsCollector;
+import com.commodities.matching.model.*;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.*;
+
+class MarketDataEncoderTest {
+
+    @Test
+    @DisplayName("Should encode a trade in the fixed little-endian layout")
+    void shouldEncodeTrade() {
+        Trade trade = new Trade();
+        trade.init(42, 7, 8, Commodity.SILVER, Commodity.SILVER.toTicks(24.515), 300, 1700000000000L, 12345);
+
+        ByteBuffer message = new MarketDataEncoder(Commodity.SILVER).encodeTrade(trade, MarketDataEncoder.newBuffer())
+            .flip();
+
+        assertThat(message.order()).isEqualTo(ByteOrder.LITTLE_ENDIAN);
+        assertThat(message.limit()).isEqualTo(MarketDataEncoder.TRADE_SIZE);
+        assertThat(message.get()).isEqualTo(MarketDataEncoder.TRADE);
+        assertThat(message.get()).isEqualTo(MarketDataEncoder.VERSION);
+        assertThat(message.get()).isEqualTo((byte) Commodity.SILVER.ordinal());
+        assertThat(message.get()).isEqualTo((byte) 3);
+        assertThat(message.getLong()).isEqualTo(42);
+        assertThat(message.getLong()).isEqualTo(7);
+        assertThat(message.getLong()).isEqualTo(8);
+        assertThat(message.getLong()).isEqualTo(24515);
+        assertThat(message.getLong()).isEqualTo(300);
+        assertThat(message.getLong()).isEqualTo(1700000000000L);
+        assertThat(message.getLong()).isEqualTo(12345);
+    }
+
+    @Test
+    @DisplayName("Should encode the levels changed by a book update")
+    void shouldEncodeBookUpdate() throws InterruptedException {
+        MatchingEngine matchingEngine = new MatchingEngine(new MetricsCollector(new SimpleMeterRegistry()));
+        MarketDataEncoder encoder = new MarketDataEncoder(Commodity.GOLD);
+        AtomicReference<ByteBuffer> lastUpdate = new AtomicReference<>();
+        CountDownLatch updates = new CountDownLatch(3);
+        matchingEngine.addBookListener(book -> {
+            lastUpdate.set(encoder.encodeBookUpdate(book, MarketDataEncoder.newBuffer()));
+            updates.countDown();
+        });
+        matchingEngine.init();
+        try {
+            matchingEngine.submitOrder(Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, Commodity.GOLD.toTicks(1850.0), 10);
+            matchingEngine.submitOrder(Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, Commodity.GOLD.toTicks(1850.1), 10);
+            // Takes out the first level and rests the remainder as the best bid
+            matchingEngine.submitOrder(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, Commodity.GOLD.toTicks(1850.0), 15);
+            assertThat(updates.await(5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            matchingEngine.shutdown();
+        }
+
+        ByteBuffer message = lastUpdate.get().flip();
+        assertThat(message.get(0)).isEqualTo(MarketDataEncoder.BOOK);
+        message.position(MarketDataEncoder.HEADER_SIZE);
+        assertThat(message.getLong()).isEqualTo(3);
+        assertThat(message.getShort()).isEqualTo((short) 2);
+        assertThat(message.remaining()).isEqualTo(2 * MarketDataEncoder.BOOK_LEVEL_SIZE);
+        for (int i = 0; i < 2; i++) {
+            byte side = message.get();
+            long price = message.getLong();
+            long quantity = message.getLong();
+            int orders = message.getInt();
+            assertThat(price).isEqualTo(185000);
+            if (side == 0) {
+                assertThat(quantity).isEqualTo(5);
+                assertThat(orders).isEqualTo(1);
+            } else {
+                assertThat(quantity).isZero();
+                assertThat(orders).isZero();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should encode trades in less than half the bytes of JSON")
+    void shouldEncodeTradesSmallerThanJson() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        MarketDataEncoder encoder = new MarketDataEncoder(Commodity.GOLD);
+        Trade trade = new Trade(123456, 2345678, 2345679, Commodity.GOLD, Commodity.GOLD.toTicks(1850.3), 25, 4321);
+
+        byte[] json = objectMapper.writeValueAsBytes(Map.of(
+            "tradeId", trade.getTradeId(),
+            "commodity", trade.getCommodity().getSymbol(),
+            "price", trade.getCommodity().toPrice(trade.getPrice()),
+            "quantity", trade.getQuantity(),
+            "buyOrderId", trade.getBuyOrderId(),
+            "sellOrderId", trade.getSellOrderId(),
+            "latencyMicros", trade.getProcessingTimeMicros(),
+            "timestamp", trade.getTimestamp()
+        ));
+
+        assertThat(encoder.encodeTrade(trade, MarketDataEncoder.newBuffer()).position() * 2).isLessThan(json.length);
+    }
+
+    @Test
+    @DisplayName("Should reuse the caller's buffer and only grow it for a message that does not fit")
+    void shouldReuseTargetBuffer() {
+        MarketDataEncoder encoder = new MarketDataEncoder(Commodity.GOLD);
+        Trade trade = new Trade(1, 2, 3, Commodity.GOLD, Commodity.GOLD.toTicks(1850.3), 25, 4321);
+        ByteBuffer buffer = MarketDataEncoder.newBuffer();
+
+        assertThat(encoder.encodeTrade(trade, buffer)).isSameAs(buffer);
+        assertThat(encoder.encodeBbo(7, null, null, buffer)).isSameAs(buffer);
+        assertThat(buffer.position()).isEqualTo(MarketDataEncoder.BBO_SIZE);
+
+        ByteBuffer small = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer grown = encoder.encodeTrade(trade, small);
+        assertThat(grown).isNotSameAs(small);
+        assertThat(grown.order()).isEqualTo(ByteOrder.LITTLE_ENDIAN);
+        assertThat(grown.position()).isEqualTo(MarketDataEncoder.TRADE_SIZE);
+    }
+}
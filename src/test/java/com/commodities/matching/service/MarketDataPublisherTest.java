@@ -0,0 +1,158 @@
+package com.commodities.matching.service;
+
+import com.commodities.matching.config.MatchingEngineProperties;
+import com.commodities.matching.engine.MatchingEngine;
+import com.commodities.matching.metrics.MetricsCollector;
+import com.commodities.matching.model.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class MarketDataPublisherTest {
+
+    private SimpMessagingTemplate messagingTemplate;
+    private MatchingEngine matchingEngine;
+    private MarketDataPublisher publisher;
+    private final AtomicLong trades = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        messagingTemplate = mock(SimpMessagingTemplate.class);
+        matchingEngine = new MatchingEngine(new MetricsCollector(new SimpleMeterRegistry()));
+        matchingEngine.init();
+        // Published by hand, so the scheduled run never fires during a test
+        MatchingEngineProperties properties = new MatchingEngineProperties();
+        properties.getMarketData().setConflationInterval(Duration.ofHours(1));
+        publisher = new MarketDataPublisher(messagingTemplate, matchingEngine, properties);
+        publisher.init();
+        // Registered after the publisher, so a counted trade has already been applied to its totals
+        matchingEngine.addTradeListener(trade -> trades.incrementAndGet());
+    }
+
+    @AfterEach
+    void tearDown() {
+        publisher.shutdown();
+        matchingEngine.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should conflate all trades of an interval into one summary per commodity")
+    @SuppressWarnings("unchecked")
+    void shouldConflateTradesIntoOneSummary() throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            matchingEngine.submitOrder(Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, Commodity.GOLD.toTicks(1850.0 + i), 10);
+            matchingEngine.submitOrder(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, Commodity.GOLD.toTicks(1850.0 + i), 10);
+        }
+        matchingEngine.submitOrder(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, Commodity.GOLD.toTicks(1800.0), 5);
+        awaitTrades(100);
+
+        publisher.publish();
+
+        ArgumentCaptor<Map<String, Object>> summary = ArgumentCaptor.forClass(Map.class);
+        verify(messagingTemplate).convertAndSend(eq("/topic/market/GOLD"), summary.capture());
+        assertThat(summary.getValue())
+            .containsEntry("commodity", "GOLD")
+            .containsEntry("lastPrice", 1949.0)
+            .containsEntry("volume", 1000L)
+            .containsEntry("trades", 100L)
+            .containsEntry("bestBid", 1800.0)
+            .containsEntry("bestAsk", null);
+        verify(messagingTemplate).convertAndSend(eq("/topic/market"), any(Object.class));
+        verify(messagingTemplate, never()).convertAndSend(eq("/topic/market/SILVER"), any(Object.class));
+
+        // Nothing traded since, so nothing more is sent
+        reset(messagingTemplate);
+        publisher.publish();
+        verify(messagingTemplate, never()).convertAndSend(anyString(), any(Object.class));
+    }
+
+    @Test
+    @DisplayName("Should report only the trades since the previous summary")
+    @SuppressWarnings("unchecked")
+    void shouldReportTradesSincePreviousSummary() throws InterruptedException {
+        matchingEngine.submitOrder(Commodity.SILVER, OrderSide.SELL, OrderType.LIMIT, Commodity.SILVER.toTicks(24.5), 30);
+        matchingEngine.submitOrder(Commodity.SILVER, OrderSide.BUY, OrderType.LIMIT, Commodity.SILVER.toTicks(24.5), 30);
+        awaitTrades(1);
+        publisher.publish();
+
+        reset(messagingTemplate);
+        matchingEngine.submitOrder(Commodity.SILVER, OrderSide.SELL, OrderType.LIMIT, Commodity.SILVER.toTicks(24.6), 7);
+        matchingEngine.submitOrder(Commodity.SILVER, OrderSide.BUY, OrderType.LIMIT, Commodity.SILVER.toTicks(24.6), 7);
+        awaitTrades(2);
+        publisher.publish();
+
+        ArgumentCaptor<Map<String, Object>> summary = ArgumentCaptor.forClass(Map.class);
+        verify(messagingTemplate).convertAndSend(eq("/topic/market/SILVER"), summary.capture());
+        assertThat(summary.getValue())
+            .containsEntry("lastPrice", 24.6)
+            .containsEntry("volume", 7L)
+            .containsEntry("trades", 1L);
+    }
+
+    @Test
+    @DisplayName("Should track subscribers per destination until unsubscribe or disconnect")
+    void shouldTrackSubscribersPerDestination() {
+        SubscriptionRegistry registry = new SubscriptionRegistry();
+        registry.subscribers("/topic/trades");
+        registry.subscribers("/topic/trades/GOLD");
+
+        registry.subscribe("s1", "sub-0", "/topic/trades");
+        registry.subscribe("s1", "sub-1", "/topic/trades/GOLD");
+        registry.subscribe("s2", "sub-0", "/topic/trades");
+        assertThat(registry.subscribers("/topic/trades").get()).isEqualTo(2);
+        assertThat(registry.subscribers("/topic/trades/GOLD").get()).isEqualTo(1);
+
+        registry.unsubscribe("s1", "sub-1");
+        registry.unsubscribe("s1", "sub-1");
+        assertThat(registry.subscribers("/topic/trades/GOLD").get()).isZero();
+
+        registry.disconnect("s1");
+        registry.disconnect("s1");
+        assertThat(registry.subscribers("/topic/trades").get()).isEqualTo(1);
+        registry.disconnect("s2");
+        assertThat(registry.subscribers("/topic/trades").get()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should ignore subscriptions to destinations no publisher has registered")
+    void shouldIgnoreUnregisteredDestinations() {
+        SubscriptionRegistry registry = new SubscriptionRegistry();
+        registry.subscribers("/topic/trades");
+
+        registry.subscribe("s1", "sub-0", "/topic/made-up-1");
+        registry.subscribe("s1", "sub-1", "/topic/trades");
+        registry.subscribe("s1", "sub-1", "/topic/made-up-2");
+        assertThat(registry.subscribers("/topic/trades").get()).isEqualTo(1);
+        assertThat(registry.subscribers("/topic/made-up-1").get()).isZero();
+
+        registry.unsubscribe("s1", "sub-0");
+        registry.disconnect("s1");
+        assertThat(registry.subscribers("/topic/trades").get()).isZero();
+        assertThat(registry.subscribers("/topic/made-up-1").get()).isZero();
+    }
+
+    private void awaitTrades(long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            if (trades.get() >= expected) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        fail("Timed out waiting for " + expected + " trades");
+    }
+}
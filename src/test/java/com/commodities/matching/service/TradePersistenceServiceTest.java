@@ -0,0 +1,184 @@
+package com.commodities.matching.service;
+
+import com.commodities.matching.config.MatchingEngineProperties;
+import com.commodities.matching.engine.MatchingEngine;
+import com.commodities.matching.metrics.MetricsCollector;
+import com.commodities.matching.entity.TradeEntity;
+import com.commodities.matching.model.*;
+import com.commodities.matching.repository.TradeRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class TradePersistenceServiceTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private JdbcTemplate jdbcTemplate;
+    private MatchingEngine matchingEngine;
+    private TradePersistenceService persistenceService;
+
+    @TempDir
+    Path historyDirectory;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+            "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE trades (id BIGINT PRIMARY KEY, trade_id BIGINT NOT NULL, "
+            + "buy_order_id BIGINT NOT NULL, sell_order_id BIGINT NOT NULL, commodity VARCHAR(255) NOT NULL, "
+            + "price DOUBLE NOT NULL, quantity BIGINT NOT NULL, processing_time_nanos BIGINT NOT NULL, "
+            + "timestamp TIMESTAMP(6) WITH TIME ZONE NOT NULL)");
+        meterRegistry = new SimpleMeterRegistry();
+        matchingEngine = new MatchingEngine(new MetricsCollector(meterRegistry));
+        matchingEngine.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        persistenceService.shutdown();
+        matchingEngine.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should store every trade through batched inserts")
+    void shouldStoreTradesInBatches() throws InterruptedException {
+        start(100, Duration.ofMillis(50));
+
+        for (int i = 0; i < 1000; i++) {
+            matchingEngine.submitOrder(Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, Commodity.GOLD.toTicks(1850.0), 10);
+            matchingEngine.submitOrder(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, Commodity.GOLD.toTicks(1850.0), 10);
+        }
+
+        awaitStoredTrades(1000);
+        assertThat(meterRegistry.summary("matching.engine.persistence.batch.size").count()).isLessThan(1000);
+        Map<String, Object> first = jdbcTemplate.queryForMap("SELECT * FROM trades WHERE trade_id = 1");
+        assertThat(first.get("ID")).isEqualTo(1L);
+        assertThat(first.get("COMMODITY")).isEqualTo("GOLD");
+        assertThat(first.get("PRICE")).isEqualTo(1850.0);
+        assertThat(first.get("QUANTITY")).isEqualTo(10L);
+        assertThat(persistenceService.getPendingTrades()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should write a partial batch once max delay has passed")
+    void shouldFlushPartialBatchAfterMaxDelay() throws InterruptedException {
+        start(1000, Duration.ofMillis(50));
+
+        matchingEngine.submitOrder(Commodity.SILVER, OrderSide.SELL, OrderType.LIMIT, Commodity.SILVER.toTicks(25.0), 5);
+        matchingEngine.submitOrder(Commodity.SILVER, OrderSide.BUY, OrderType.LIMIT, Commodity.SILVER.toTicks(25.0), 5);
+
+        awaitStoredTrades(1);
+        assertThat(meterRegistry.counter("matching.engine.persistence.persisted").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should write staged trades on shutdown")
+    void shouldFlushOnShutdown() throws InterruptedException {
+        start(1000, Duration.ofMinutes(10));
+
+        matchingEngine.submitOrder(Commodity.SILVER, OrderSide.SELL, OrderType.LIMIT, Commodity.SILVER.toTicks(25.0), 5);
+        matchingEngine.submitOrder(Commodity.SILVER, OrderSide.BUY, OrderType.LIMIT, Commodity.SILVER.toTicks(25.0), 5);
+        Thread.sleep(100);
+        assertThat(storedTrades()).isZero();
+
+        persistenceService.shutdown();
+
+        assertThat(storedTrades()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should store trades still being matched when the application context closes")
+    void shouldStoreTradesMatchedDuringShutdown() {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.registerBean(MeterRegistry.class, () -> meterRegistry);
+        context.registerBean(MetricsCollector.class, () -> new MetricsCollector(meterRegistry));
+        context.registerBean(MatchingEngineProperties.class, () -> properties(100, Duration.ofMillis(50)));
+        context.registerBean(JdbcTemplate.class, () -> jdbcTemplate);
+        context.registerBean(TradeRepository.class, () -> mock(TradeRepository.class));
+        context.registerBean(MatchingEngine.class);
+        context.registerBean(TradePersistenceService.class);
+        context.refresh();
+        MatchingEngine engine = context.getBean(MatchingEngine.class);
+        persistenceService = context.getBean(TradePersistenceService.class);
+
+        long price = Commodity.GOLD.toTicks(1850.0);
+        for (int i = 0; i < 20_000; i++) {
+            engine.submitOrder(Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, price, 10);
+            engine.submitOrder(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, price, 10);
+        }
+        context.close();
+
+        assertThat(storedTrades()).isEqualTo(20_000);
+    }
+
+    @Test
+    @DisplayName("Should answer history queries from the trade history store")
+    void shouldQueryTradeHistoryStore() throws InterruptedException {
+        MatchingEngineProperties properties = properties(100, Duration.ofMillis(50));
+        properties.getHistory().setEnabled(true);
+        properties.getHistory().setDirectory(historyDirectory.toString());
+        start(properties);
+
+        for (int i = 0; i < 3; i++) {
+            matchingEngine.submitOrder(Commodity.GOLD, OrderSide.SELL, OrderType.LIMIT, Commodity.GOLD.toTicks(1850.0 + i), 10);
+            matchingEngine.submitOrder(Commodity.GOLD, OrderSide.BUY, OrderType.LIMIT, Commodity.GOLD.toTicks(1850.0 + i), 10);
+        }
+        awaitStoredTrades(3);
+        // The store is appended to right after the database batch
+        Thread.sleep(100);
+
+        List<TradeEntity> recent = persistenceService.getRecentTrades(Commodity.GOLD, 5);
+        assertThat(recent).extracting(TradeEntity::getTradeId).containsExactly(3L, 2L, 1L);
+        assertThat(recent.get(0).getPrice()).isEqualTo(1852.0);
+        assertThat(recent.get(0).getBuyOrderId()).isEqualTo(6L);
+        assertThat(persistenceService.getTradeCountSince(Instant.now().minusSeconds(60))).isEqualTo(3L);
+        assertThat(persistenceService.getTradeSummary(Commodity.GOLD, Instant.now().minusSeconds(60), Instant.now())
+            .getVolume()).isEqualTo(30);
+    }
+
+    private void start(int batchSize, Duration maxDelay) {
+        start(properties(batchSize, maxDelay));
+    }
+
+    private void start(MatchingEngineProperties properties) {
+        persistenceService = new TradePersistenceService(mock(TradeRepository.class), jdbcTemplate,
+            matchingEngine, properties, meterRegistry);
+        persistenceService.init();
+    }
+
+    private static MatchingEngineProperties properties(int batchSize, Duration maxDelay) {
+        MatchingEngineProperties properties = new MatchingEngineProperties();
+        properties.getPersistence().setRingBufferSize(1024);
+        properties.getPersistence().setBatchSize(batchSize);
+        properties.getPersistence().setMaxDelay(maxDelay);
+        return properties;
+    }
+
+    private long storedTrades() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM trades", Long.class);
+    }
+
+    private void awaitStoredTrades(long expected) throws InterruptedException {
+        for (int attempt = 0; attempt < 100 && storedTrades() < expected; attempt++) {
+            Thread.sleep(50);
+        }
+        assertThat(storedTrades()).isEqualTo(expected);
+    }
+}